@@ -0,0 +1,124 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.calculator;
+
+import com.google.common.collect.ImmutableList;
+import me.lucko.luckperms.common.cacheddata.CacheMetadata;
+import me.lucko.luckperms.common.cacheddata.result.TristateResult;
+import me.lucko.luckperms.common.calculator.processor.DirectProcessor;
+import me.lucko.luckperms.common.calculator.processor.RegexProcessor;
+import me.lucko.luckperms.common.calculator.processor.WildcardProcessor;
+import me.lucko.luckperms.common.model.HolderType;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.plugin.logging.PluginLogger;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
+import me.lucko.luckperms.common.query.QueryOptionsImpl;
+import me.lucko.luckperms.common.treeview.PermissionRegistry;
+import me.lucko.luckperms.common.verbose.VerboseCheckTarget;
+import me.lucko.luckperms.common.verbose.VerboseHandler;
+import me.lucko.luckperms.common.verbose.event.CheckOrigin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Measures {@link PermissionCalculator#checkPermission(String, CheckOrigin)} when the
+ * result is already in the lookup cache (hit), and the cost of calculating a result
+ * from the processor chain when it isn't (miss).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermissionCalculatorBenchmark {
+
+    private static final CacheMetadata METADATA = new CacheMetadata(
+            HolderType.USER,
+            VerboseCheckTarget.of(VerboseCheckTarget.USER_TYPE, "benchmark"),
+            QueryOptionsImpl.DEFAULT_CONTEXTUAL
+    );
+
+    @Param({"100", "1000", "10000"})
+    public int nodeCount;
+
+    private PermissionCalculator calculator;
+    private String[] hits;
+    private String[] misses;
+    private int index;
+
+    @Setup
+    public void setup() {
+        LuckPermsPlugin plugin = mock(LuckPermsPlugin.class, withSettings().stubOnly());
+        when(plugin.getVerboseHandler()).thenReturn(new VerboseHandler(mock(SchedulerAdapter.class, withSettings().stubOnly()), mock(PluginLogger.class, withSettings().stubOnly())));
+        when(plugin.getPermissionRegistry()).thenReturn(mock(PermissionRegistry.class, withSettings().stubOnly()));
+
+        this.calculator = new PermissionCalculator(plugin, METADATA, ImmutableList.of(new DirectProcessor(), new RegexProcessor(), new WildcardProcessor()));
+        this.calculator.setSourcePermissions(PermissionSets.mixed(this.nodeCount));
+
+        this.hits = new String[PermissionSets.QUERY_COUNT];
+        for (int i = 0; i < this.hits.length; i++) {
+            this.hits[i] = PermissionSets.direct((i * 31) % this.nodeCount);
+        }
+        this.misses = PermissionSets.queries(this.nodeCount);
+
+        // populate the lookup cache for the hit benchmark
+        for (String permission : this.hits) {
+            this.calculator.checkPermission(permission, CheckOrigin.INTERNAL);
+        }
+    }
+
+    private int next() {
+        return this.index++ & (PermissionSets.QUERY_COUNT - 1);
+    }
+
+    @Benchmark
+    public TristateResult checkPermissionHit() {
+        return this.calculator.checkPermission(this.hits[next()], CheckOrigin.INTERNAL);
+    }
+
+    @Benchmark
+    public TristateResult checkPermissionMiss() {
+        // bypass the lookup cache, this is the work done when a check misses it
+        return this.calculator.apply(this.misses[next()]);
+    }
+
+}
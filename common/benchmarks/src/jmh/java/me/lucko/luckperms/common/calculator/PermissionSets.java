@@ -0,0 +1,126 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.calculator;
+
+import me.lucko.luckperms.common.node.factory.NodeBuilders;
+import net.luckperms.api.node.Node;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Generates the source permission maps used by the calculator benchmarks.
+ */
+final class PermissionSets {
+    private PermissionSets() {}
+
+    /** The number of distinct permissions each benchmark cycles through - must be a power of 2 */
+    static final int QUERY_COUNT = 1024;
+
+    /**
+     * Creates a source map containing a mixture of direct, wildcard and regex nodes.
+     *
+     * @param size the number of nodes
+     * @return the source map
+     */
+    static Map<String, Node> mixed(int size) {
+        Map<String, Node> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String key;
+            if (i % 100 == 0) {
+                key = "r=plugin" + (i % 50) + "\\.extra\\d+";
+            } else if (i % 10 == 0) {
+                key = "plugin" + (i % 50) + ".feature" + (i / 50) + ".*";
+            } else {
+                key = direct(i);
+            }
+            put(map, key, i % 3 != 0);
+        }
+        return map;
+    }
+
+    /**
+     * Creates a source map containing only wildcard nodes.
+     *
+     * @param size the number of nodes
+     * @return the source map
+     */
+    static Map<String, Node> wildcards(int size) {
+        Map<String, Node> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            put(map, "plugin" + (i % 50) + ".feature" + (i / 50) + ".*", i % 3 != 0);
+        }
+        return map;
+    }
+
+    /**
+     * Creates a source map containing only regex nodes.
+     *
+     * @param size the number of nodes
+     * @return the source map
+     */
+    static Map<String, Node> regex(int size) {
+        Map<String, Node> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            put(map, "r=plugin" + (i % 50) + "\\.feature" + (i / 50) + "\\.[a-z]+\\d*", i % 3 != 0);
+        }
+        return map;
+    }
+
+    /**
+     * Gets the key of the i-th direct node generated by {@link #mixed(int)}.
+     *
+     * @param i the index
+     * @return the permission
+     */
+    static String direct(int i) {
+        return "plugin" + (i % 50) + ".feature" + (i / 50) + ".action" + (i % 7);
+    }
+
+    /**
+     * Creates an array of permissions which are matched by wildcard and regex nodes in
+     * the generated maps, interleaved with permissions which are not matched by anything.
+     *
+     * @param size the number of nodes in the generated map
+     * @return the permissions
+     */
+    static String[] queries(int size) {
+        String[] queries = new String[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            int n = (i * 31) % size;
+            queries[i] = (i & 1) == 0
+                    ? "plugin" + (n % 50) + ".feature" + (n / 50) + ".other"
+                    : "unknown" + n + ".feature.other";
+        }
+        return queries;
+    }
+
+    private static void put(Map<String, Node> map, String key, boolean value) {
+        Node node = NodeBuilders.determineMostApplicable(key).value(value).build();
+        map.put(node.getKey(), node);
+    }
+
+}
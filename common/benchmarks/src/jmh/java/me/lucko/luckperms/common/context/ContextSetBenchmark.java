@@ -0,0 +1,117 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.context;
+
+import net.luckperms.api.context.ContextSatisfyMode;
+import net.luckperms.api.context.ImmutableContextSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building {@link ImmutableContextSetImpl}s and checking whether one set is
+ * satisfied by another.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextSetBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int size;
+
+    private String[] keys;
+    private String[] values;
+
+    /** A subset of the player context */
+    private ImmutableContextSet node;
+
+    /** The context of a player, with an extra value for every key */
+    private ImmutableContextSet player;
+
+    /** A set which shares keys with the player context, but not values */
+    private ImmutableContextSet other;
+
+    @Setup
+    public void setup() {
+        this.keys = new String[this.size];
+        this.values = new String[this.size];
+
+        ImmutableContextSetImpl.BuilderImpl node = new ImmutableContextSetImpl.BuilderImpl();
+        ImmutableContextSetImpl.BuilderImpl player = new ImmutableContextSetImpl.BuilderImpl();
+        ImmutableContextSetImpl.BuilderImpl other = new ImmutableContextSetImpl.BuilderImpl();
+        for (int i = 0; i < this.size; i++) {
+            this.keys[i] = "key" + i;
+            this.values[i] = "value" + i;
+
+            node.add(this.keys[i], this.values[i]);
+            player.add(this.keys[i], this.values[i]);
+            player.add(this.keys[i], "extra" + i);
+            other.add(this.keys[i], "other" + i);
+        }
+        this.node = node.build();
+        this.player = player.build();
+        this.other = other.build();
+    }
+
+    @Benchmark
+    public ImmutableContextSet build() {
+        ImmutableContextSetImpl.BuilderImpl builder = new ImmutableContextSetImpl.BuilderImpl();
+        for (int i = 0; i < this.size; i++) {
+            builder.add(this.keys[i], this.values[i]);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public boolean isSatisfiedByAtLeastOneValuePerKey() {
+        return this.node.isSatisfiedBy(this.player, ContextSatisfyMode.AT_LEAST_ONE_VALUE_PER_KEY);
+    }
+
+    @Benchmark
+    public boolean isSatisfiedByAllValuesPerKey() {
+        return this.node.isSatisfiedBy(this.player, ContextSatisfyMode.ALL_VALUES_PER_KEY);
+    }
+
+    @Benchmark
+    public boolean isNotSatisfiedBy() {
+        return this.node.isSatisfiedBy(this.other, ContextSatisfyMode.AT_LEAST_ONE_VALUE_PER_KEY);
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.inheritance;
+
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.config.LuckPermsConfiguration;
+import me.lucko.luckperms.common.event.EventDispatcher;
+import me.lucko.luckperms.common.graph.TraversalAlgorithm;
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.PermissionHolder;
+import me.lucko.luckperms.common.model.PrimaryGroupHolder;
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.model.manager.group.GroupManager;
+import me.lucko.luckperms.common.model.manager.group.StandardGroupManager;
+import me.lucko.luckperms.common.node.types.Inheritance;
+import me.lucko.luckperms.common.node.types.Weight;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.query.QueryOptionsImpl;
+import net.luckperms.api.context.ContextSatisfyMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Measures {@link InheritanceGraph#traverse(TraversalAlgorithm, boolean, PermissionHolder)}
+ * for a user at the bottom of a deep inheritance tree.
+ *
+ * <p>Each level of the tree inherits the next level and a "side" group with a lower
+ * weight, which in turn inherits a shared base group.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InheritanceGraphBenchmark {
+
+    @Param({"5", "25", "100"})
+    public int depth;
+
+    @Param({"DEPTH_FIRST_PRE_ORDER", "BREADTH_FIRST"})
+    public TraversalAlgorithm algorithm;
+
+    @Param({"false", "true"})
+    public boolean postTraversalSort;
+
+    private LuckPermsPlugin plugin;
+    private User user;
+    private InheritanceGraph graph;
+
+    @Setup
+    public void setup() {
+        this.plugin = mock(LuckPermsPlugin.class, withSettings().stubOnly());
+        LuckPermsConfiguration configuration = mock(LuckPermsConfiguration.class, withSettings().stubOnly());
+        StandardGroupManager groupManager = new StandardGroupManager(this.plugin);
+
+        //noinspection unchecked,rawtypes
+        when(this.plugin.getGroupManager()).thenReturn((GroupManager) groupManager);
+        when(this.plugin.getInheritanceGraphFactory()).thenReturn(new InheritanceGraphFactory(this.plugin));
+        when(this.plugin.getConfiguration()).thenReturn(configuration);
+        when(this.plugin.getEventDispatcher()).thenReturn(mock(EventDispatcher.class, withSettings().stubOnly()));
+        when(configuration.get(ConfigKeys.COPY_ON_WRITE_NODE_MAPS)).thenReturn(false);
+        when(configuration.get(ConfigKeys.INCREMENTAL_CACHE_UPDATES)).thenReturn(false);
+        when(configuration.get(ConfigKeys.CONTEXT_SATISFY_MODE)).thenReturn(ContextSatisfyMode.AT_LEAST_ONE_VALUE_PER_KEY);
+        when(configuration.get(ConfigKeys.GROUP_WEIGHTS)).thenReturn(Collections.emptyMap());
+        when(configuration.get(ConfigKeys.PRIMARY_GROUP_CALCULATION)).thenReturn(PrimaryGroupHolder.AllParentsByWeight::new);
+
+        Group base = groupManager.getOrMake("base");
+        Group parent = null;
+        for (int i = this.depth - 1; i >= 0; i--) {
+            Group side = groupManager.getOrMake("side" + i);
+            side.normalData().add(Weight.builder(i).build());
+            side.normalData().add(Inheritance.builder(base.getName()).build());
+
+            Group group = groupManager.getOrMake("level" + i);
+            group.normalData().add(Weight.builder(this.depth + i).build());
+            group.normalData().add(Inheritance.builder(side.getName()).build());
+            if (parent != null) {
+                group.normalData().add(Inheritance.builder(parent.getName()).build());
+            }
+            parent = group;
+        }
+
+        this.user = new User(UUID.randomUUID(), this.plugin);
+        this.user.normalData().add(Inheritance.builder(parent.getName()).build());
+
+        this.graph = new InheritanceGraph(this.plugin, QueryOptionsImpl.DEFAULT_CONTEXTUAL);
+    }
+
+    @Benchmark
+    public Iterable<PermissionHolder> traverseMemoized() {
+        return this.graph.traverse(this.algorithm, this.postTraversalSort, this.user);
+    }
+
+    @Benchmark
+    public Iterable<PermissionHolder> traverseCold() {
+        InheritanceGraph graph = new InheritanceGraph(this.plugin, QueryOptionsImpl.DEFAULT_CONTEXTUAL);
+        return graph.traverse(this.algorithm, this.postTraversalSort, this.user);
+    }
+
+}
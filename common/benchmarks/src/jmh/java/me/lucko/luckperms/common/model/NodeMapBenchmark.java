@@ -0,0 +1,172 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.model;
+
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.config.LuckPermsConfiguration;
+import me.lucko.luckperms.common.context.ImmutableContextSetImpl;
+import me.lucko.luckperms.common.event.EventDispatcher;
+import me.lucko.luckperms.common.model.nodemap.CopyOnWriteNodeMap;
+import me.lucko.luckperms.common.model.nodemap.NodeMap;
+import me.lucko.luckperms.common.model.nodemap.NodeMapMutable;
+import me.lucko.luckperms.common.node.factory.NodeBuilders;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.query.QueryOptionsBuilderImpl;
+import net.luckperms.api.context.ContextSatisfyMode;
+import net.luckperms.api.model.data.DataType;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.NodeBuilder;
+import net.luckperms.api.node.NodeType;
+import net.luckperms.api.node.types.MetaNode;
+import net.luckperms.api.query.QueryMode;
+import net.luckperms.api.query.QueryOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Measures populating, and copying nodes out of, the {@link NodeMap} implementations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeMapBenchmark {
+
+    @Param({"mutable", "copy-on-write"})
+    public String implementation;
+
+    @Param({"10", "100", "1000"})
+    public int nodeCount;
+
+    private Group holder;
+    private Node[] nodes;
+    private NodeMap populated;
+    private QueryOptions queryOptions;
+
+    @Setup
+    public void setup() {
+        LuckPermsPlugin plugin = mock(LuckPermsPlugin.class, withSettings().stubOnly());
+        LuckPermsConfiguration configuration = mock(LuckPermsConfiguration.class, withSettings().stubOnly());
+        when(plugin.getConfiguration()).thenReturn(configuration);
+        when(plugin.getEventDispatcher()).thenReturn(mock(EventDispatcher.class, withSettings().stubOnly()));
+        when(configuration.get(ConfigKeys.COPY_ON_WRITE_NODE_MAPS)).thenReturn(false);
+
+        this.holder = new Group("benchmark", plugin);
+        this.nodes = new Node[this.nodeCount];
+        for (int i = 0; i < this.nodeCount; i++) {
+            String key;
+            if (i % 10 == 0) {
+                key = "group.group" + i;
+            } else if (i % 10 == 1) {
+                key = "meta.key" + i + ".value";
+            } else {
+                key = "plugin" + (i % 50) + ".feature" + i;
+            }
+
+            NodeBuilder<?, ?> builder = NodeBuilders.determineMostApplicable(key);
+            if (i % 4 == 0) {
+                builder.withContext("server", "survival");
+            } else if (i % 4 == 1) {
+                builder.withContext("server", "creative");
+            }
+            this.nodes[i] = builder.build();
+        }
+
+        this.populated = createMap();
+        for (Node node : this.nodes) {
+            this.populated.add(node);
+        }
+
+        this.queryOptions = new QueryOptionsBuilderImpl(QueryMode.CONTEXTUAL)
+                .context(ImmutableContextSetImpl.of("server", "survival"))
+                .build();
+    }
+
+    private NodeMap createMap() {
+        // override the satisfy mode to avoid reading it from the (mocked) config on each query
+        switch (this.implementation) {
+            case "mutable":
+                return new NodeMapMutable(this.holder, DataType.NORMAL) {
+                    @Override
+                    protected ContextSatisfyMode defaultSatisfyMode() {
+                        return ContextSatisfyMode.AT_LEAST_ONE_VALUE_PER_KEY;
+                    }
+                };
+            case "copy-on-write":
+                return new CopyOnWriteNodeMap(this.holder, DataType.NORMAL) {
+                    @Override
+                    protected ContextSatisfyMode defaultSatisfyMode() {
+                        return ContextSatisfyMode.AT_LEAST_ONE_VALUE_PER_KEY;
+                    }
+                };
+            default:
+                throw new IllegalArgumentException(this.implementation);
+        }
+    }
+
+    @Benchmark
+    public NodeMap add() {
+        NodeMap map = createMap();
+        for (Node node : this.nodes) {
+            map.add(node);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public List<Node> copyTo() {
+        List<Node> list = new ArrayList<>();
+        this.populated.copyTo(list, this.queryOptions);
+        return list;
+    }
+
+    @Benchmark
+    public List<MetaNode> copyToByType() {
+        List<MetaNode> list = new ArrayList<>();
+        this.populated.copyTo(list, NodeType.META, this.queryOptions);
+        return list;
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage;
+
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.config.LuckPermsConfiguration;
+import me.lucko.luckperms.common.event.EventDispatcher;
+import me.lucko.luckperms.common.inheritance.InheritanceGraphFactory;
+import me.lucko.luckperms.common.model.PrimaryGroupHolder;
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.model.manager.user.StandardUserManager;
+import me.lucko.luckperms.common.model.manager.user.UserManager;
+import me.lucko.luckperms.common.node.types.Inheritance;
+import me.lucko.luckperms.common.node.types.Permission;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.plugin.bootstrap.LuckPermsBootstrap;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
+import me.lucko.luckperms.common.storage.implementation.sql.SqlStorage;
+import me.lucko.luckperms.common.storage.implementation.sql.connection.ConnectionFactory;
+import me.lucko.luckperms.common.storage.implementation.sql.connection.file.NonClosableConnection;
+import net.luckperms.api.node.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.mockito.AdditionalAnswers.answer;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Measures {@link SqlStorage#loadUser(UUID, String)} and {@link SqlStorage#saveUser(User)}
+ * against an in-memory H2 database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqlStorageBenchmark {
+    private static final UUID UNIQUE_ID = UUID.fromString("069a79f4-44e9-4726-a5be-fca90e38aaf5");
+    private static final String USERNAME = "Notch";
+
+    @Param({"10", "100", "1000"})
+    public int nodeCount;
+
+    private SqlStorage storage;
+    private User user;
+    private Node toggledNode;
+    private boolean toggled;
+
+    @Setup
+    public void setup() throws Exception {
+        LuckPermsPlugin plugin = mock(LuckPermsPlugin.class, withSettings().stubOnly());
+        LuckPermsBootstrap bootstrap = mock(LuckPermsBootstrap.class, withSettings().stubOnly());
+        LuckPermsConfiguration configuration = mock(LuckPermsConfiguration.class, withSettings().stubOnly());
+
+        when(plugin.getBootstrap()).thenReturn(bootstrap);
+        when(plugin.getConfiguration()).thenReturn(configuration);
+        when(plugin.getEventDispatcher()).thenReturn(mock(EventDispatcher.class, withSettings().stubOnly()));
+        when(plugin.getInheritanceGraphFactory()).thenReturn(new InheritanceGraphFactory(plugin));
+        when(bootstrap.getScheduler()).thenReturn(mock(SchedulerAdapter.class, withSettings().stubOnly()));
+        when(bootstrap.getResourceStream(anyString()))
+                .then(answer((String path) -> SqlStorageBenchmark.class.getClassLoader().getResourceAsStream(path)));
+        when(configuration.get(ConfigKeys.COPY_ON_WRITE_NODE_MAPS)).thenReturn(false);
+        when(configuration.get(ConfigKeys.INCREMENTAL_CACHE_UPDATES)).thenReturn(false);
+        when(configuration.get(ConfigKeys.PRIMARY_GROUP_CALCULATION)).thenReturn(PrimaryGroupHolder.AllParentsByWeight::new);
+        when(configuration.get(ConfigKeys.PRIMARY_GROUP_CALCULATION_METHOD)).thenReturn("parents-by-weight");
+
+        //noinspection unchecked,rawtypes
+        when(plugin.getUserManager()).thenReturn((UserManager) new StandardUserManager(plugin));
+
+        this.storage = new SqlStorage(plugin, new H2ConnectionFactory(), "luckperms_");
+        this.storage.init();
+
+        this.user = this.storage.loadUser(UNIQUE_ID, USERNAME);
+        for (int i = 0; i < this.nodeCount; i++) {
+            Node node = i % 10 == 0
+                    ? Inheritance.builder("group" + i).build()
+                    : Permission.builder().permission("plugin" + (i % 50) + ".feature" + i).withContext("server", "survival").build();
+            this.user.normalData().add(node);
+        }
+        this.storage.saveUser(this.user);
+
+        this.toggledNode = Permission.builder().permission("benchmark.toggled").build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.storage.shutdown();
+    }
+
+    @Benchmark
+    public User loadUser() throws Exception {
+        return this.storage.loadUser(UNIQUE_ID, USERNAME);
+    }
+
+    @Benchmark
+    public void saveUser() throws Exception {
+        // alternately add and remove a node, so each save writes a single change
+        if (this.toggled) {
+            this.user.normalData().remove(this.toggledNode);
+        } else {
+            this.user.normalData().add(this.toggledNode);
+        }
+        this.toggled = !this.toggled;
+        this.storage.saveUser(this.user);
+    }
+
+    private static final class H2ConnectionFactory implements ConnectionFactory {
+        private final NonClosableConnection connection;
+
+        H2ConnectionFactory() throws SQLException {
+            this.connection = new NonClosableConnection(
+                    DriverManager.getConnection("jdbc:h2:mem:benchmark")
+            );
+        }
+
+        @Override
+        public Connection getConnection() {
+            return this.connection;
+        }
+
+        @Override
+        public String getImplementationName() {
+            return "H2";
+        }
+
+        @Override
+        public StorageMetadata getMeta() {
+            return new StorageMetadata();
+        }
+
+        @Override
+        public void init(LuckPermsPlugin plugin) {
+
+        }
+
+        @Override
+        public Function<String, String> getStatementProcessor() {
+            return s -> s.replace('\'', '`')
+                    .replace("LIKE", "ILIKE")
+                    .replace("value", "`value`")
+                    .replace("``value``", "`value`");
+        }
+
+        @Override
+        public void shutdown() throws Exception {
+            this.connection.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.actionlog;
+
+import net.luckperms.api.actionlog.Action;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * A filter for action log queries.
+ *
+ * <p>Filters are evaluated by the storage implementation, so only the
+ * matching entries need to be read.</p>
+ */
+public final class ActionFilter {
+    private static final ActionFilter ALL = new ActionFilter(null, null, null, null, null);
+
+    public static ActionFilter all() {
+        return ALL;
+    }
+
+    public static ActionFilter source(UUID uniqueId) {
+        return new ActionFilter(Objects.requireNonNull(uniqueId, "uniqueId"), null, null, null, null);
+    }
+
+    public static ActionFilter user(UUID uniqueId) {
+        return new ActionFilter(null, Action.Target.Type.USER, Objects.requireNonNull(uniqueId, "uniqueId"), null, null);
+    }
+
+    public static ActionFilter group(String name) {
+        return new ActionFilter(null, Action.Target.Type.GROUP, null, Objects.requireNonNull(name, "name"), null);
+    }
+
+    public static ActionFilter track(String name) {
+        return new ActionFilter(null, Action.Target.Type.TRACK, null, Objects.requireNonNull(name, "name"), null);
+    }
+
+    public static ActionFilter search(String query) {
+        return new ActionFilter(null, null, null, null, Objects.requireNonNull(query, "query").toLowerCase(Locale.ROOT));
+    }
+
+    private final UUID sourceUniqueId;
+    private final Action.Target.Type targetType;
+    private final UUID targetUniqueId;
+    private final String targetName;
+    private final String search;
+
+    private ActionFilter(UUID sourceUniqueId, Action.Target.Type targetType, UUID targetUniqueId, String targetName, String search) {
+        this.sourceUniqueId = sourceUniqueId;
+        this.targetType = targetType;
+        this.targetUniqueId = targetUniqueId;
+        this.targetName = targetName;
+        this.search = search;
+    }
+
+    public UUID getSourceUniqueId() {
+        return this.sourceUniqueId;
+    }
+
+    public Action.Target.Type getTargetType() {
+        return this.targetType;
+    }
+
+    public UUID getTargetUniqueId() {
+        return this.targetUniqueId;
+    }
+
+    public String getTargetName() {
+        return this.targetName;
+    }
+
+    /**
+     * Gets the (lowercase) search query.
+     *
+     * @return the search query, or null
+     */
+    public String getSearch() {
+        return this.search;
+    }
+
+    public boolean test(LoggedAction action) {
+        if (this.sourceUniqueId != null && !this.sourceUniqueId.equals(action.getSource().getUniqueId())) {
+            return false;
+        }
+        if (this.targetType != null && this.targetType != action.getTarget().getType()) {
+            return false;
+        }
+        if (this.targetUniqueId != null && !action.getTarget().getUniqueId().filter(this.targetUniqueId::equals).isPresent()) {
+            return false;
+        }
+        if (this.targetName != null && !this.targetName.equals(action.getTarget().getName())) {
+            return false;
+        }
+        return this.search == null || action.matchesSearch(this.search);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ActionFilter)) return false;
+        ActionFilter that = (ActionFilter) o;
+        return Objects.equals(this.sourceUniqueId, that.sourceUniqueId) &&
+                this.targetType == that.targetType &&
+                Objects.equals(this.targetUniqueId, that.targetUniqueId) &&
+                Objects.equals(this.targetName, that.targetName) &&
+                Objects.equals(this.search, that.search);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.sourceUniqueId, this.targetType, this.targetUniqueId, this.targetName, this.search);
+    }
+
+    @Override
+    public String toString() {
+        return "ActionFilter(" +
+                "sourceUniqueId=" + this.sourceUniqueId + ", " +
+                "targetType=" + this.targetType + ", " +
+                "targetUniqueId=" + this.targetUniqueId + ", " +
+                "targetName=" + this.targetName + ", " +
+                "search=" + this.search + ")";
+    }
+}
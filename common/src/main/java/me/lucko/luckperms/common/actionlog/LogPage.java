@@ -0,0 +1,90 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.actionlog;
+
+import com.google.common.collect.ImmutableList;
+import me.lucko.luckperms.common.util.Paginated;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single page of action log entries, ordered from newest to oldest.
+ */
+public final class LogPage {
+
+    private final List<LoggedAction> content;
+    private final int pageNumber;
+    private final int pageSize;
+    private final int totalEntries;
+
+    public LogPage(List<LoggedAction> content, int pageNumber, int pageSize, int totalEntries) {
+        this.content = ImmutableList.copyOf(content);
+        this.pageNumber = pageNumber;
+        this.pageSize = pageSize;
+        this.totalEntries = totalEntries;
+    }
+
+    public List<LoggedAction> getContent() {
+        return this.content;
+    }
+
+    /**
+     * Gets the entries on this page, numbered by their position in the
+     * filtered log, where position 1 is the most recent entry.
+     *
+     * @return the entries
+     */
+    public List<Paginated.Entry<LoggedAction>> getEntries() {
+        int offset = Paginated.offset(this.pageNumber, this.pageSize);
+        List<Paginated.Entry<LoggedAction>> entries = new ArrayList<>(this.content.size());
+        for (int i = 0; i < this.content.size(); i++) {
+            entries.add(new Paginated.Entry<>(offset + i + 1, this.content.get(i)));
+        }
+        return entries;
+    }
+
+    public int getPageNumber() {
+        return this.pageNumber;
+    }
+
+    public int getPageSize() {
+        return this.pageSize;
+    }
+
+    public int getTotalEntries() {
+        return this.totalEntries;
+    }
+
+    public int getMaxPages() {
+        return (int) Math.ceil((double) this.totalEntries / (double) this.pageSize);
+    }
+
+    @Override
+    public String toString() {
+        return "LogPage(pageNumber=" + this.pageNumber + ", pageSize=" + this.pageSize + ", totalEntries=" + this.totalEntries + ", content=" + this.content + ")";
+    }
+}
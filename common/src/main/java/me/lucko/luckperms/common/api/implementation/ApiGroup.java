@@ -27,6 +27,7 @@ package me.lucko.luckperms.common.api.implementation;
 
 import com.google.common.base.Preconditions;
 import me.lucko.luckperms.common.cacheddata.GroupCachedDataManager;
+import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.model.Group;
 import net.luckperms.api.query.QueryOptions;
 import org.checkerframework.checker.nullness.qual.NonNull;
@@ -81,6 +82,11 @@ public class ApiGroup extends ApiPermissionHolder implements net.luckperms.api.m
 
     @Override
     protected void onNodeChange() {
+        // when incremental updates are enabled, the change has already been applied to any affected caches
+        if (this.handle.getPlugin().getConfiguration().get(ConfigKeys.INCREMENTAL_CACHE_UPDATES)) {
+            return;
+        }
+
         // invalidate caches - they have potentially been affected by
         // this change.
         this.handle.getPlugin().getGroupManager().invalidateAllGroupCaches();
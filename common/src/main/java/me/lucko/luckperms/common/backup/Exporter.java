@@ -25,7 +25,11 @@
 
 package me.lucko.luckperms.common.backup;
 
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.http.AbstractHttpClient;
 import me.lucko.luckperms.common.http.UnsuccessfulRequestException;
 import me.lucko.luckperms.common.locale.Message;
@@ -37,7 +41,7 @@ import me.lucko.luckperms.common.node.utils.NodeJsonSerializer;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.sender.Sender;
 import me.lucko.luckperms.common.storage.Storage;
-import me.lucko.luckperms.common.util.CompletableFutures;
+import me.lucko.luckperms.common.util.Iterators;
 import me.lucko.luckperms.common.util.gson.GsonProvider;
 import me.lucko.luckperms.common.util.gson.JArray;
 import me.lucko.luckperms.common.util.gson.JObject;
@@ -46,28 +50,29 @@ import net.kyori.adventure.text.Component;
 import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.zip.GZIPOutputStream;
@@ -78,6 +83,15 @@ import java.util.zip.GZIPOutputStream;
 public abstract class Exporter implements Runnable {
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss z");
 
+    /** The number of users to load from storage in a single request */
+    private static final int USER_BATCH_SIZE = 100;
+
+    /** The maximum number of users which can be loaded but not yet written */
+    private static final int MAX_PENDING_USERS = 1000;
+
+    /** How often to report export progress, in milliseconds */
+    private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+
     protected final LuckPermsPlugin plugin;
     private final Sender executor;
     private final boolean includeUsers;
@@ -97,62 +111,87 @@ public abstract class Exporter implements Runnable {
 
     @Override
     public void run() {
-        JsonObject json = new JsonObject();
-        json.add("metadata", new JObject()
-                .add("generatedBy", this.executor.getNameWithLocation())
-                .add("generatedAt", DATE_FORMAT.format(new Date(System.currentTimeMillis())))
-                .toJson());
-
-        if (this.includeGroups) {
-            this.log.log("Gathering group data...");
-            json.add("groups", exportGroups());
-
-            this.log.log("Gathering track data...");
-            json.add("tracks", exportTracks());
-        }
+        try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(openOutputStream()), StandardCharsets.UTF_8)))) {
+            writer.beginObject();
+            writer.name("metadata");
+            GsonProvider.normal().toJson(new JObject()
+                    .add("generatedBy", this.executor.getNameWithLocation())
+                    .add("generatedAt", DATE_FORMAT.format(new Date(System.currentTimeMillis())))
+                    .toJson(), writer);
+
+            if (this.includeGroups) {
+                this.log.log("Writing group data...");
+                writer.name("groups");
+                exportGroups(writer);
+
+                this.log.log("Writing track data...");
+                writer.name("tracks");
+                exportTracks(writer);
+            }
 
-        if (this.includeUsers) {
-            this.log.log("Gathering user data...");
-            json.add("users", exportUsers());
+            if (this.includeUsers) {
+                this.log.log("Writing user data...");
+                writer.name("users");
+                exportUsers(writer);
+            }
+
+            writer.endObject();
+        } catch (IOException e) {
+            this.plugin.getLogger().severe("Error whilst writing export data", e);
+            this.log.getListeners().forEach(Message.EXPORT_FILE_FAILURE::send);
+            return;
         }
 
-        processOutput(json);
+        processOutput();
     }
 
-    protected abstract void processOutput(JsonObject json);
+    /**
+     * Opens the stream the (compressed) export data should be written to.
+     *
+     * @return the output stream
+     * @throws IOException if the stream could not be opened
+     */
+    protected abstract OutputStream openOutputStream() throws IOException;
+
+    /**
+     * Called once all of the export data has been written and the stream has been closed.
+     */
+    protected abstract void processOutput();
 
-    private JsonObject exportGroups() {
-        JsonObject out = new JsonObject();
+    private void exportGroups(JsonWriter writer) throws IOException {
         List<Group> groups = this.plugin.getGroupManager().getAll().values().stream()
                 .sorted(Comparator.<Group>comparingInt(o -> o.getWeight().orElse(0)).reversed()
                         .thenComparing(Group::getName)
                 )
                 .collect(Collectors.toList());
 
+        writer.beginObject();
         for (Group group : groups) {
-            out.add(group.getName(), new JObject()
+            writer.name(group.getName());
+            GsonProvider.normal().toJson(new JObject()
                     .add("nodes", NodeJsonSerializer.serializeNodes(group.normalData().asSet()))
-                    .toJson());
+                    .toJson(), writer);
         }
-        return out;
+        writer.endObject();
     }
 
-    private JsonObject exportTracks() {
-        JsonObject out = new JsonObject();
+    private void exportTracks(JsonWriter writer) throws IOException {
         Collection<Track> tracks = this.plugin.getTrackManager().getAll().values().stream()
                 .sorted(Comparator.comparing(Track::getName))
                 .collect(Collectors.toList());
 
+        writer.beginObject();
         for (Track track : tracks) {
-            out.add(track.getName(), new JObject()
+            writer.name(track.getName());
+            GsonProvider.normal().toJson(new JObject()
                     .add("groups", new JArray().consume(arr -> track.getGroups().forEach(arr::add)))
-                    .toJson());
+                    .toJson(), writer);
         }
-        return out;
+        writer.endObject();
     }
 
-    private JsonObject exportUsers() {
-        // Users are migrated in separate threads.
+    private void exportUsers(JsonWriter writer) throws IOException {
+        // Users are loaded in batches, using a separate pool of threads.
         // This is because there are likely to be a lot of them, and because we can.
         // It's a big speed improvement, since the database/files are split up and can handle concurrent reads.
 
@@ -160,64 +199,128 @@ public abstract class Exporter implements Runnable {
 
         // Find all of the unique users we need to export
         Storage ds = this.plugin.getStorage();
-        Set<UUID> users = ds.getUniqueUsers().join();
+        List<UUID> users = new ArrayList<>(ds.getUniqueUsers().join());
+        users.sort(Comparator.naturalOrder());
         this.log.log("Found " + users.size() + " unique users to export.");
 
-        // create a threadpool to process the users concurrently
-        ExecutorService executor = Executors.newFixedThreadPool(32);
-
-        // A set of futures, which are really just the processes we need to wait for.
-        Set<CompletableFuture<Void>> futures = new HashSet<>();
-
-        AtomicInteger userCount = new AtomicInteger(0);
-        Map<UUID, JsonObject> out = Collections.synchronizedMap(new TreeMap<>());
-
-        // iterate through each user.
-        for (UUID uuid : users) {
-            // register a task for the user, and schedule it's execution with the pool
-            futures.add(CompletableFuture.runAsync(() -> {
-                User user = this.plugin.getStorage().loadUser(uuid, null).join();
-                out.put(user.getUniqueId(), new JObject()
-                        .consume(obj -> {
-                            user.getUsername().ifPresent(username -> obj.add("username", username));
-                            if (!user.getPrimaryGroup().getStoredValue().orElse(GroupManager.DEFAULT_GROUP_NAME).equalsIgnoreCase(GroupManager.DEFAULT_GROUP_NAME)) {
-                                obj.add("primaryGroup", user.getPrimaryGroup().getStoredValue().get());
-                            }
-                        })
-                        .add("nodes", NodeJsonSerializer.serializeNodes(user.normalData().asSet()))
-                        .toJson());
-                this.plugin.getUserManager().getHouseKeeper().cleanup(user.getUniqueId());
-                userCount.incrementAndGet();
-            }, executor));
+        // create a bounded threadpool to process the batches concurrently
+        int threads = this.plugin.getConfiguration().get(ConfigKeys.EXPORT_THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("luckperms-exporter-%d")
+                .build()
+        );
+
+        // batches are written in order as soon as they have been loaded, so only a
+        // bounded number of users are held in memory at once
+        int maxPendingBatches = Math.max(threads * 2, MAX_PENDING_USERS / USER_BATCH_SIZE);
+        Deque<CompletableFuture<List<Map.Entry<UUID, JsonObject>>>> pending = new ArrayDeque<>();
+        UserProgress progress = new UserProgress();
+
+        writer.beginObject();
+        try {
+            for (List<UUID> batch : Iterators.divideIterable(users, USER_BATCH_SIZE)) {
+                if (pending.size() >= maxPendingBatches) {
+                    writeUsers(writer, pending.removeFirst(), progress);
+                }
+                pending.addLast(CompletableFuture.supplyAsync(() -> exportUsers(batch, progress), executor));
+            }
+
+            while (!pending.isEmpty()) {
+                writeUsers(writer, pending.removeFirst(), progress);
+            }
+        } finally {
+            executor.shutdown();
         }
+        writer.endObject();
 
-        // all of the threads have been scheduled now and are running. we just need to wait for them all to complete
-        CompletableFuture<Void> overallFuture = CompletableFutures.allOf(futures);
+        long seconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - progress.startTime));
+        this.log.log("Exported " + progress.count + " users in " + seconds + "s (" + (progress.count / seconds) + " users/sec).");
 
-        while (true) {
-            try {
-                overallFuture.get(5, TimeUnit.SECONDS);
-            } catch (InterruptedException | ExecutionException e) {
-                // abnormal error - just break
-                e.printStackTrace();
-                break;
-            } catch (TimeoutException e) {
-                // still executing - send a progress report and continue waiting
-                this.log.logProgress("Exported " + userCount.get() + " users so far.");
+        int missing = progress.missing.get();
+        if (missing != 0) {
+            this.log.log(missing + " users could not be loaded and are missing from the export, see the console for details.");
+        }
+    }
+
+    private List<Map.Entry<UUID, JsonObject>> exportUsers(List<UUID> batch, UserProgress progress) {
+        Map<UUID, User> loaded;
+        try {
+            loaded = this.plugin.getStorage().loadUsers(new HashSet<>(batch)).join();
+        } catch (CompletionException e) {
+            // retry the users one at a time, so a single bad user doesn't lose the whole batch
+            this.plugin.getLogger().warn("Exception whilst loading a batch of users to export, retrying them individually", e.getCause());
+            loaded = loadUsersIndividually(batch, progress);
+        }
+
+        List<Map.Entry<UUID, JsonObject>> data = new ArrayList<>(batch.size());
+        for (UUID uuid : batch) {
+            User user = loaded.get(uuid);
+            if (user == null) {
                 continue;
             }
 
-            // process is complete
-            break;
+            data.add(Maps.immutableEntry(uuid, new JObject()
+                    .consume(obj -> {
+                        user.getUsername().ifPresent(username -> obj.add("username", username));
+                        if (!user.getPrimaryGroup().getStoredValue().orElse(GroupManager.DEFAULT_GROUP_NAME).equalsIgnoreCase(GroupManager.DEFAULT_GROUP_NAME)) {
+                            obj.add("primaryGroup", user.getPrimaryGroup().getStoredValue().get());
+                        }
+                    })
+                    .add("nodes", NodeJsonSerializer.serializeNodes(user.normalData().asSet()))
+                    .toJson()
+            ));
+        }
+
+        for (UUID uuid : loaded.keySet()) {
+            this.plugin.getUserManager().getHouseKeeper().cleanup(uuid);
+        }
+        return data;
+    }
+
+    private Map<UUID, User> loadUsersIndividually(List<UUID> batch, UserProgress progress) {
+        Map<UUID, User> loaded = new HashMap<>();
+        for (UUID uuid : batch) {
+            try {
+                loaded.put(uuid, this.plugin.getStorage().loadUser(uuid, null).join());
+            } catch (CompletionException e) {
+                this.plugin.getLogger().severe("Exception whilst loading user " + uuid + " to export", e.getCause());
+                progress.missing.incrementAndGet();
+            }
+        }
+        return loaded;
+    }
+
+    private void writeUsers(JsonWriter writer, CompletableFuture<List<Map.Entry<UUID, JsonObject>>> batch, UserProgress progress) throws IOException {
+        List<Map.Entry<UUID, JsonObject>> data;
+        try {
+            data = batch.join();
+        } catch (CompletionException e) {
+            // don't produce an export which silently leaves the batch out
+            throw new IOException("Exception whilst exporting a batch of users", e.getCause());
         }
 
-        executor.shutdown();
+        for (Map.Entry<UUID, JsonObject> entry : data) {
+            writer.name(entry.getKey().toString());
+            GsonProvider.normal().toJson(entry.getValue(), writer);
+        }
 
-        JsonObject outJson = new JsonObject();
-        for (Map.Entry<UUID, JsonObject> entry : out.entrySet()) {
-            outJson.add(entry.getKey().toString(), entry.getValue());
+        progress.count += data.size();
+        long now = System.currentTimeMillis();
+        if (now - progress.lastReport >= PROGRESS_INTERVAL) {
+            progress.lastReport = now;
+            long seconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(now - progress.startTime));
+            this.log.logProgress("Exported " + progress.count + " users so far (" + (progress.count / seconds) + " users/sec).");
         }
-        return outJson;
+    }
+
+    private static final class UserProgress {
+        private final long startTime = System.currentTimeMillis();
+        private int count = 0;
+        private long lastReport = this.startTime;
+
+        /** The number of users which couldn't be loaded, updated by the export threads */
+        private final AtomicInteger missing = new AtomicInteger();
     }
 
     public static final class SaveFile extends Exporter {
@@ -229,21 +332,19 @@ public abstract class Exporter implements Runnable {
         }
 
         @Override
-        protected void processOutput(JsonObject json) {
-            this.log.log("Finished gathering data, writing file...");
-
-            try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(this.filePath)), StandardCharsets.UTF_8))) {
-                GsonProvider.normal().toJson(json, out);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        protected OutputStream openOutputStream() throws IOException {
+            return Files.newOutputStream(this.filePath);
+        }
 
+        @Override
+        protected void processOutput() {
             this.log.getListeners().forEach(l -> Message.EXPORT_FILE_SUCCESS.send(l, this.filePath.toFile().getAbsolutePath()));
         }
     }
 
     public static final class WebUpload extends Exporter {
         private final String label;
+        private final ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
 
         public WebUpload(LuckPermsPlugin plugin, Sender executor, boolean includeUsers, boolean includeGroups, String label) {
             super(plugin, executor, includeUsers, includeGroups);
@@ -251,18 +352,16 @@ public abstract class Exporter implements Runnable {
         }
 
         @Override
-        protected void processOutput(JsonObject json) {
-            this.log.log("Finished gathering data, uploading data...");
+        protected OutputStream openOutputStream() {
+            return this.bytesOut;
+        }
 
-            ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
-            try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(bytesOut), StandardCharsets.UTF_8)) {
-                GsonProvider.normal().toJson(json, writer);
-            } catch (IOException e) {
-                this.plugin.getLogger().severe("Error compressing data", e);
-            }
+        @Override
+        protected void processOutput() {
+            this.log.log("Finished writing data, uploading data...");
 
             try {
-                String pasteId = this.plugin.getBytebin().postContent(bytesOut.toByteArray(), AbstractHttpClient.JSON_TYPE).key();
+                String pasteId = this.plugin.getBytebin().postContent(this.bytesOut.toByteArray(), AbstractHttpClient.JSON_TYPE).key();
                 this.log.getListeners().forEach(l -> Message.EXPORT_WEB_SUCCESS.send(l, pasteId, this.label));
             } catch (UnsuccessfulRequestException e) {
                 this.log.getListeners().forEach(l -> Message.HTTP_REQUEST_FAILURE.send(l, e.getResponse().code(), e.getResponse().message()));
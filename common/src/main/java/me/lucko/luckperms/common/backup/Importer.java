@@ -26,10 +26,13 @@
 package me.lucko.luckperms.common.backup;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
 import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import me.lucko.luckperms.common.locale.Message;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.HolderType;
@@ -40,14 +43,14 @@ import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.sender.Sender;
 import me.lucko.luckperms.common.util.CompletableFutures;
 import me.lucko.luckperms.common.util.Uuids;
+import me.lucko.luckperms.common.util.gson.GsonProvider;
 import net.luckperms.api.event.cause.CreationCause;
 import net.luckperms.api.model.data.DataType;
 import net.luckperms.api.node.Node;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -57,21 +60,43 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Handles import operations
+ *
+ * <p>The data is read incrementally, and entries are applied in batches as they are read,
+ * so the whole data set is never held in memory at once.</p>
  */
 public class Importer implements Runnable {
+    /** The number of users to load and save together */
+    private static final int USER_BATCH_SIZE = 100;
+
+    /** The maximum number of tasks which can be queued but not yet completed */
+    private static final int MAX_PENDING_TASKS = 32;
+
+    /** How often to report progress whilst the data is still being read, in milliseconds */
+    private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toMillis(2);
 
     private final LuckPermsPlugin plugin;
     private final Set<Sender> notify;
-    private final JsonObject data;
+    private final Reader data;
     private final boolean merge;
 
-    public Importer(LuckPermsPlugin plugin, Sender executor, JsonObject data, boolean merge) {
+    // processing state
+    private ExecutorService executor;
+    private final Semaphore pendingTasks = new Semaphore(MAX_PENDING_TASKS);
+    private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+    private final List<Map.Entry<UUID, UserData>> userBatch = new ArrayList<>(USER_BATCH_SIZE);
+    private final AtomicInteger processedCount = new AtomicInteger(0);
+    private int total = 0;
+    private long lastProgressReport = 0;
+    private boolean webEditorData = false;
+
+    public Importer(LuckPermsPlugin plugin, Sender executor, Reader data, boolean merge) {
         this.plugin = plugin;
 
         if (executor.isConsole()) {
@@ -111,157 +136,235 @@ public class Importer implements Runnable {
         this.plugin.getStorage().saveTrack(track).join();
     }
 
-    private void processUser(UUID uuid, UserData userData) {
-        User user = this.plugin.getStorage().loadUser(uuid, userData.username).join();
-        if (userData.primaryGroup != null) {
-            user.getPrimaryGroup().setStoredValue(userData.primaryGroup);
-        }
-        if (this.merge) {
-            user.mergeNodes(DataType.NORMAL, userData.nodes);
-        } else {
-            user.setNodes(DataType.NORMAL, userData.nodes, false);
+    private void processUsers(List<Map.Entry<UUID, UserData>> batch) {
+        List<User> users = new ArrayList<>(batch.size());
+        for (Map.Entry<UUID, UserData> entry : batch) {
+            UserData userData = entry.getValue();
+            User user = this.plugin.getStorage().loadUser(entry.getKey(), userData.username).join();
+            if (userData.primaryGroup != null) {
+                user.getPrimaryGroup().setStoredValue(userData.primaryGroup);
+            }
+            if (this.merge) {
+                user.mergeNodes(DataType.NORMAL, userData.nodes);
+            } else {
+                user.setNodes(DataType.NORMAL, userData.nodes, false);
+            }
+            users.add(user);
         }
-        this.plugin.getStorage().saveUser(user).join();
-        this.plugin.getUserManager().getHouseKeeper().cleanup(user.getUniqueId());
-    }
 
-    private Set<Map.Entry<String, JsonElement>> getDataSection(String id) {
-        if (this.data.has(id)) {
-            return this.data.get(id).getAsJsonObject().entrySet();
-        } else {
-            return Collections.emptySet();
+        // save the whole batch at once
+        this.plugin.getStorage().saveUsers(users).join();
+        for (User user : users) {
+            this.plugin.getUserManager().getHouseKeeper().cleanup(user.getUniqueId());
         }
     }
 
-    private void parseExportData(Map<String, Set<Node>> groups, Map<String, List<String>> tracks, Map<UUID, UserData> users) {
-        for (Map.Entry<String, JsonElement> group : getDataSection("groups")) {
-            groups.put(group.getKey(), NodeJsonSerializer.deserializeNodes(group.getValue().getAsJsonObject().get("nodes").getAsJsonArray()));
-        }
-        for (Map.Entry<String, JsonElement> track : getDataSection("tracks")) {
-            JsonArray trackGroups = track.getValue().getAsJsonObject().get("groups").getAsJsonArray();
-            List<String> trackGroupsList = new ArrayList<>();
-            trackGroups.forEach(g -> trackGroupsList.add(g.getAsString()));
-            tracks.put(track.getKey(), trackGroupsList);
+    /**
+     * Schedules a task to be executed by the import thread pool, waiting first
+     * if too many tasks are already pending.
+     *
+     * @param task the task
+     * @param entries the number of entries processed by the task
+     */
+    private void submit(Runnable task, int entries) {
+        this.pendingTasks.acquireUninterruptibly();
+        this.total += entries;
+        this.futures.add(CompletableFuture.runAsync(() -> {
+            try {
+                task.run();
+                this.processedCount.addAndGet(entries);
+            } finally {
+                this.pendingTasks.release();
+            }
+        }, this.executor));
+
+        long now = System.currentTimeMillis();
+        if (now - this.lastProgressReport >= PROGRESS_INTERVAL) {
+            this.lastProgressReport = now;
+            int processed = this.processedCount.get();
+            int read = this.total;
+            this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "Read " + read + " entries so far, " + processed + " have been imported"));
         }
-        for (Map.Entry<String, JsonElement> user : getDataSection("users")) {
-            JsonObject jsonData = user.getValue().getAsJsonObject();
+    }
 
-            UUID uuid = UUID.fromString(user.getKey());
-            String username = null;
-            String primaryGroup = null;
-            Set<Node> nodes = NodeJsonSerializer.deserializeNodes(jsonData.get("nodes").getAsJsonArray());
+    private void submitGroup(String groupName, Set<Node> nodes) {
+        submit(() -> processGroup(groupName, nodes), 1);
+    }
 
-            if (jsonData.has("username")) {
-                username = jsonData.get("username").getAsString();
-            }
-            if (jsonData.has("primaryGroup")) {
-                primaryGroup = jsonData.get("primaryGroup").getAsString();
-            }
+    private void submitTrack(String trackName, List<String> groups) {
+        submit(() -> processTrack(trackName, groups), 1);
+    }
 
-            users.put(uuid, new UserData(username, primaryGroup, nodes));
+    private void submitUser(UUID uuid, UserData userData) {
+        this.userBatch.add(Maps.immutableEntry(uuid, userData));
+        if (this.userBatch.size() >= USER_BATCH_SIZE) {
+            flushUserBatch();
         }
     }
 
-    private void parseWebEditorData(Map<String, Set<Node>> groups, Map<String, List<String>> tracks, Map<UUID, UserData> users) {
-        JsonArray holdersArray = this.data.get("permissionHolders").getAsJsonArray();
-        for (JsonElement holderElement : holdersArray) {
-            JsonObject jsonData = holderElement.getAsJsonObject();
-
-            HolderType type = HolderType.valueOf(jsonData.get("type").getAsString().toUpperCase(Locale.ROOT));
-            String id = jsonData.get("id").getAsString();
+    private void flushUserBatch() {
+        if (this.userBatch.isEmpty()) {
+            return;
+        }
 
-            if (type == HolderType.GROUP) {
-                groups.put(id, NodeJsonSerializer.deserializeNodes(jsonData.get("nodes").getAsJsonArray()));
-            } else {
-                UUID uuid = UUID.fromString(id);
-                String username = null;
+        List<Map.Entry<UUID, UserData>> batch = new ArrayList<>(this.userBatch);
+        this.userBatch.clear();
+        submit(() -> processUsers(batch), batch.size());
+    }
 
-                String displayName = jsonData.get("displayName").getAsString();
-                if (!Uuids.PREDICATE.test(displayName)) {
-                    username = displayName;
-                }
+    private void markWebEditorData() {
+        if (!this.webEditorData) {
+            this.webEditorData = true;
+            this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "The data appears to be from a web editor upload - attempting to recover from it"));
+        }
+    }
 
-                Set<Node> nodes = NodeJsonSerializer.deserializeNodes(jsonData.get("nodes").getAsJsonArray());
-                users.put(uuid, new UserData(username, null, nodes));
+    /**
+     * Reads the import data, submitting entries for processing as they are read.
+     *
+     * <p>Both the export format and the web editor format are supported. The format
+     * of each section is determined from its name and type, so the order of the
+     * sections doesn't matter.</p>
+     *
+     * @param reader the reader
+     * @throws IOException if the data could not be read
+     */
+    private void readData(JsonReader reader) throws IOException {
+        Gson gson = GsonProvider.normal();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String section = reader.nextName();
+            switch (section) {
+                case "groups":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String groupName = reader.nextName();
+                        JsonObject jsonData = gson.fromJson(reader, JsonObject.class);
+                        submitGroup(groupName, NodeJsonSerializer.deserializeNodes(jsonData.get("nodes").getAsJsonArray()));
+                    }
+                    reader.endObject();
+                    break;
+                case "tracks":
+                    if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        // web editor format
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            JsonObject jsonData = gson.fromJson(reader, JsonObject.class);
+                            submitTrack(jsonData.get("id").getAsString(), readTrackGroups(jsonData));
+                        }
+                        reader.endArray();
+                    } else {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            String trackName = reader.nextName();
+                            JsonObject jsonData = gson.fromJson(reader, JsonObject.class);
+                            submitTrack(trackName, readTrackGroups(jsonData));
+                        }
+                        reader.endObject();
+                    }
+                    break;
+                case "users":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        UUID uuid = UUID.fromString(reader.nextName());
+                        JsonObject jsonData = gson.fromJson(reader, JsonObject.class);
+
+                        String username = null;
+                        String primaryGroup = null;
+                        Set<Node> nodes = NodeJsonSerializer.deserializeNodes(jsonData.get("nodes").getAsJsonArray());
+
+                        if (jsonData.has("username")) {
+                            username = jsonData.get("username").getAsString();
+                        }
+                        if (jsonData.has("primaryGroup")) {
+                            primaryGroup = jsonData.get("primaryGroup").getAsString();
+                        }
+
+                        submitUser(uuid, new UserData(username, primaryGroup, nodes));
+                    }
+                    reader.endObject();
+                    break;
+                case "permissionHolders":
+                    markWebEditorData();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readWebEditorHolder(gson.fromJson(reader, JsonObject.class));
+                    }
+                    reader.endArray();
+                    break;
+                case "knownPermissions":
+                    markWebEditorData();
+                    reader.skipValue();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
             }
         }
+        reader.endObject();
 
-        JsonArray tracksArray = this.data.get("tracks").getAsJsonArray();
-        for (JsonElement trackElement : tracksArray) {
-            JsonObject jsonData = trackElement.getAsJsonObject();
+        flushUserBatch();
+    }
 
-            String name = jsonData.get("id").getAsString();
-            JsonArray trackGroups = jsonData.get("groups").getAsJsonArray();
+    private void readWebEditorHolder(JsonObject jsonData) {
+        HolderType type = HolderType.valueOf(jsonData.get("type").getAsString().toUpperCase(Locale.ROOT));
+        String id = jsonData.get("id").getAsString();
 
-            List<String> trackGroupsList = new ArrayList<>();
-            trackGroups.forEach(g -> trackGroupsList.add(g.getAsString()));
-            tracks.put(name, trackGroupsList);
+        if (type == HolderType.GROUP) {
+            submitGroup(id, NodeJsonSerializer.deserializeNodes(jsonData.get("nodes").getAsJsonArray()));
+        } else {
+            UUID uuid = UUID.fromString(id);
+            String username = null;
+
+            String displayName = jsonData.get("displayName").getAsString();
+            if (!Uuids.PREDICATE.test(displayName)) {
+                username = displayName;
+            }
+
+            Set<Node> nodes = NodeJsonSerializer.deserializeNodes(jsonData.get("nodes").getAsJsonArray());
+            submitUser(uuid, new UserData(username, null, nodes));
         }
     }
 
+    private static List<String> readTrackGroups(JsonObject jsonData) {
+        JsonArray trackGroups = jsonData.get("groups").getAsJsonArray();
+        List<String> trackGroupsList = new ArrayList<>();
+        trackGroups.forEach(g -> trackGroupsList.add(g.getAsString()));
+        return trackGroupsList;
+    }
+
     @Override
     public void run() {
         long startTime = System.currentTimeMillis();
         this.notify.forEach(Message.IMPORT_START::send);
 
-        // start an update task in the background - we'll #join this later
+        // start an update task in the background, and wait for it before applying any changes
         CompletableFuture<Void> updateTask = CompletableFuture.runAsync(() -> this.plugin.getSyncTaskBuffer().requestDirectly());
 
-        this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "Reading data..."));
-
-        Map<String, Set<Node>> groups = new HashMap<>();
-        Map<String, List<String>> tracks = new HashMap<>();
-        Map<UUID, UserData> users = new HashMap<>();
-
-        if (this.data.has("knownPermissions")) {
-            this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "The data appears to be from a web editor upload - attempting to recover from it"));
-            parseWebEditorData(groups, tracks, users);
-        } else {
-            parseExportData(groups, tracks, users);
-        }
-
         this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "Waiting for initial update task to complete..."));
-
-        // join the update task future before scheduling command executions
         updateTask.join();
 
         this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "Setting up data processor..."));
 
         // create a threadpool for the processing
-        ExecutorService executor = Executors.newFixedThreadPool(16, new ThreadFactoryBuilder().setNameFormat("luckperms-importer-%d").build());
+        this.executor = Executors.newFixedThreadPool(16, new ThreadFactoryBuilder().setNameFormat("luckperms-importer-%d").build());
 
-        // A set of futures, which are really just the processes we need to wait for.
-        Set<CompletableFuture<Void>> futures = new HashSet<>();
-
-        int total = 0;
-        AtomicInteger processedCount = new AtomicInteger(0);
+        this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "Reading data..."));
 
-        for (Map.Entry<String, Set<Node>> group : groups.entrySet()) {
-            futures.add(CompletableFuture.completedFuture(group).thenAcceptAsync(ent -> {
-                processGroup(ent.getKey(), ent.getValue());
-                processedCount.incrementAndGet();
-            }, executor));
-            total++;
-        }
-        for (Map.Entry<String, List<String>> track : tracks.entrySet()) {
-            futures.add(CompletableFuture.completedFuture(track).thenAcceptAsync(ent -> {
-                processTrack(ent.getKey(), ent.getValue());
-                processedCount.incrementAndGet();
-            }, executor));
-            total++;
-        }
-        for (Map.Entry<UUID, UserData> user : users.entrySet()) {
-            futures.add(CompletableFuture.completedFuture(user).thenAcceptAsync(ent -> {
-                processUser(ent.getKey(), ent.getValue());
-                processedCount.incrementAndGet();
-            }, executor));
-            total++;
+        boolean readSuccessfully = true;
+        try (JsonReader reader = new JsonReader(this.data)) {
+            readData(reader);
+        } catch (IOException | RuntimeException e) {
+            // entries read before the error have already been scheduled, and are still applied
+            this.plugin.getLogger().warn("Error whilst reading the import data", e);
+            readSuccessfully = false;
         }
 
         // all of the threads have been scheduled now and are running. we just need to wait for them all to complete
-        CompletableFuture<Void> overallFuture = CompletableFutures.allOf(futures);
+        CompletableFuture<Void> overallFuture = CompletableFutures.allOf(this.futures);
 
-        this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "All data entries have been processed and scheduled for import - now waiting for the execution to complete."));
+        this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "All data entries have been read and scheduled for import - now waiting for the execution to complete."));
 
         while (true) {
             try {
@@ -272,7 +375,7 @@ public class Importer implements Runnable {
                 break;
             } catch (TimeoutException e) {
                 // still executing - send a progress report and continue waiting
-                sendProgress(processedCount.get(), total);
+                sendProgress(this.processedCount.get(), this.total);
                 continue;
             }
 
@@ -280,7 +383,12 @@ public class Importer implements Runnable {
             break;
         }
 
-        executor.shutdown();
+        this.executor.shutdown();
+
+        if (!readSuccessfully) {
+            this.notify.forEach(Message.IMPORT_FILE_READ_FAILURE::send);
+            return;
+        }
 
         long endTime = System.currentTimeMillis();
         double seconds = (endTime - startTime) / 1000.0;
@@ -289,7 +397,7 @@ public class Importer implements Runnable {
     }
 
     private void sendProgress(int processedCount, int total) {
-        int percent = processedCount * 100 / total;
+        int percent = total == 0 ? 100 : processedCount * 100 / total;
         this.notify.forEach(s -> Message.IMPORT_PROGRESS.send(s, percent, processedCount, total));
     }
 
@@ -55,6 +55,9 @@ public final class BulkUpdate {
     private final BulkUpdateStatistics statistics = new BulkUpdateStatistics();
     private final boolean trackStatistics;
 
+    // if the operation should be abandoned by the storage implementation
+    private volatile boolean cancelled = false;
+
     public BulkUpdate(DataType dataType, Action action, List<Query> queries, boolean trackStatistics) {
         this.dataType = dataType;
         this.action = action;
@@ -196,6 +199,19 @@ public final class BulkUpdate {
         return this.statistics;
     }
 
+    /**
+     * Requests that the storage implementation stops applying this update.
+     *
+     * <p>Holders which have already been processed are not reverted.</p>
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == this) return true;
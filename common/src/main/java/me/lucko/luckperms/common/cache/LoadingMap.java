@@ -29,6 +29,7 @@ import com.google.common.collect.ForwardingMap;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 public class LoadingMap<K, V> extends ForwardingMap<K, V> implements Map<K, V> {
@@ -66,4 +67,37 @@ public class LoadingMap<K, V> extends ForwardingMap<K, V> implements Map<K, V> {
         //noinspection unchecked
         return this.map.computeIfAbsent((K) key, this.function);
     }
+
+    // ForwardingMap doesn't forward the default Map methods, so these would otherwise
+    // fall back to non-atomic implementations
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return this.map.putIfAbsent(key, value);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return this.map.remove(key, value);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        return this.map.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        return this.map.computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return this.map.computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return this.map.compute(key, remappingFunction);
+    }
 }
\ No newline at end of file
@@ -31,9 +31,11 @@ import me.lucko.luckperms.common.cacheddata.type.MonitoredMetaCache;
 import me.lucko.luckperms.common.cacheddata.type.PermissionCache;
 import me.lucko.luckperms.common.calculator.CalculatorFactory;
 import me.lucko.luckperms.common.calculator.PermissionCalculator;
+import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.util.CaffeineFactory;
 import me.lucko.luckperms.common.util.CompletableFutures;
+import me.lucko.luckperms.common.util.Predicates;
 import net.luckperms.api.cacheddata.CachedData;
 import net.luckperms.api.cacheddata.CachedDataManager;
 import net.luckperms.api.cacheddata.CachedMetaData;
@@ -44,14 +46,20 @@ import net.luckperms.api.node.Node;
 import net.luckperms.api.query.QueryOptions;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.IntFunction;
+import java.util.function.Predicate;
 
 /**
  * Abstract implementation of {@link CachedDataManager}.
@@ -63,8 +71,8 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
 
     protected AbstractCachedDataManager(LuckPermsPlugin plugin) {
         this.plugin = plugin;
-        this.permission = new AbstractContainer<>(this::calculatePermissions);
-        this.meta = new AbstractContainer<>(this::calculateMeta);
+        this.permission = new AbstractContainer<>(this::calculatePermissions, this::calculateCombined);
+        this.meta = new AbstractContainer<>(this::calculateMeta, this::calculateCombined);
     }
 
     public LuckPermsPlugin getPlugin() {
@@ -141,6 +149,18 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
      */
     protected abstract <M extends Map<String, Node>> M resolvePermissions(IntFunction<M> mapFactory, QueryOptions queryOptions);
 
+    /**
+     * Resolves the owners permissions data for the given {@link QueryOptions}, only
+     * including entries for the given (lowercase) keys.
+     *
+     * @param mapFactory a function to create a map instance to return the results in
+     * @param queryOptions the query options
+     * @param keys the keys to resolve
+     * @param <M> the map type
+     * @return the resolved permissions
+     */
+    protected abstract <M extends Map<String, Node>> M resolvePermissions(IntFunction<M> mapFactory, QueryOptions queryOptions, Set<String> keys);
+
     /**
      * Resolves the owners meta data for the given {@link QueryOptions}.
      *
@@ -148,12 +168,36 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
      * @param queryOptions the query options
      */
     protected abstract void resolveMeta(MetaAccumulator accumulator, QueryOptions queryOptions);
+
+    /**
+     * Resolves the owners permissions and meta data for the given {@link QueryOptions}
+     * at the same time.
+     *
+     * @param mapFactory a function to create a map instance to return the permissions in
+     * @param accumulator the accumulator to add resolved meta to
+     * @param queryOptions the query options
+     * @param <M> the map type
+     * @return the resolved permissions
+     */
+    protected abstract <M extends Map<String, Node>> M resolvePermissionsAndMeta(IntFunction<M> mapFactory, MetaAccumulator accumulator, QueryOptions queryOptions);
     
     private PermissionCache calculatePermissions(QueryOptions queryOptions) {
         Objects.requireNonNull(queryOptions, "queryOptions");
         CacheMetadata metadata = getMetadataForQueryOptions(queryOptions);
 
         ConcurrentHashMap<String, Node> sourcePermissions = resolvePermissions(ConcurrentHashMap::new, queryOptions);
+        return newPermissionCache(queryOptions, metadata, sourcePermissions);
+    }
+
+    /**
+     * Creates a {@link PermissionCache} for a set of newly resolved permissions.
+     *
+     * @param queryOptions the query options
+     * @param metadata the metadata for the cache
+     * @param sourcePermissions the resolved permissions
+     * @return the cache
+     */
+    protected PermissionCache newPermissionCache(QueryOptions queryOptions, CacheMetadata metadata, ConcurrentHashMap<String, Node> sourcePermissions) {
         return new PermissionCache(queryOptions, metadata, getCalculatorFactory(), sourcePermissions);
     }
     
@@ -167,6 +211,34 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
         return new MonitoredMetaCache(this.plugin, queryOptions, metadata, accumulator);
     }
 
+    /**
+     * Called when there is a cache miss for the given query options, before the missing
+     * data is calculated.
+     *
+     * <p>If combined resolution is enabled and neither permission nor meta data is cached,
+     * both are calculated together and offered to their containers.</p>
+     *
+     * @param queryOptions the query options
+     */
+    private void calculateCombined(QueryOptions queryOptions) {
+        if (!this.plugin.getConfiguration().get(ConfigKeys.COMBINED_CACHED_DATA_RESOLUTION)) {
+            return;
+        }
+
+        long permissionModifications = this.permission.modifications();
+        long metaModifications = this.meta.modifications();
+        if (this.permission.cache.containsKey(queryOptions) || this.meta.cache.containsKey(queryOptions)) {
+            return;
+        }
+
+        CacheMetadata metadata = getMetadataForQueryOptions(queryOptions);
+        MetaAccumulator accumulator = newAccumulator(queryOptions);
+        ConcurrentHashMap<String, Node> sourcePermissions = resolvePermissionsAndMeta(ConcurrentHashMap::new, accumulator, queryOptions);
+
+        this.permission.offer(queryOptions, newPermissionCache(queryOptions, metadata, sourcePermissions), permissionModifications);
+        this.meta.offer(queryOptions, new MonitoredMetaCache(this.plugin, queryOptions, metadata, accumulator), metaModifications);
+    }
+
     @Override
     public final void invalidate() {
         this.permission.invalidate();
@@ -178,20 +250,221 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
         this.permission.cache.values().forEach(PermissionCache::invalidateCache);
     }
 
+    /**
+     * Applies a change to the permission keys of the owner (or one of its parents)
+     * to the existing cached data, instead of invalidating it.
+     *
+     * <p>Only the changed keys are re-resolved and patched into the existing
+     * {@link PermissionCache}s. Meta data is invalidated if it was affected.</p>
+     *
+     * <p>Caches which can't have changes applied to them are invalidated instead.</p>
+     *
+     * @param affected a predicate to test if the cached data for the given query options is affected
+     * @param changedKeys the (lowercase) permission keys which have changed
+     * @param metaChanged if meta data has been affected by the change
+     */
+    protected final void applyChanges(Predicate<? super QueryOptions> affected, Set<String> changedKeys, boolean metaChanged) {
+        this.permission.modified();
+        Set<QueryOptions> recalculate = new HashSet<>();
+        for (Map.Entry<QueryOptions, PermissionCache> entry : this.permission.cache.entrySet()) {
+            if (affected.test(entry.getKey())) {
+                if (!entry.getValue().canApplyChanges()) {
+                    recalculate.add(entry.getKey());
+                    continue;
+                }
+
+                Map<String, Node> resolved = resolvePermissions(HashMap::new, entry.getKey(), changedKeys);
+                if (!entry.getValue().applyChanges(resolved, changedKeys)) {
+                    recalculate.add(entry.getKey());
+                }
+            }
+        }
+
+        if (!recalculate.isEmpty()) {
+            this.permission.invalidate(recalculate::contains);
+        }
+
+        if (metaChanged) {
+            this.meta.invalidate(affected);
+        }
+    }
+
+    /**
+     * Invalidates the cached data for any query options matching the predicate.
+     *
+     * @param affected a predicate to test if the cached data for the given query options is affected
+     */
+    protected final void invalidate(Predicate<? super QueryOptions> affected) {
+        this.permission.invalidate(affected);
+        this.meta.invalidate(affected);
+    }
+
     public final void performCacheCleanup() {
         this.permission.cleanup();
         this.meta.cleanup();
     }
 
-    private static final class AbstractContainer<C extends I, I extends CachedData> implements Container<I> {
+    private boolean isStaleWhileRevalidate() {
+        return this.plugin.getConfiguration().get(ConfigKeys.ASYNC_CACHED_DATA_REFRESH);
+    }
+
+    private final class AbstractContainer<C extends I, I extends CachedData> implements Container<I> {
         private final Function<QueryOptions, C> cacheLoader;
+        private final Consumer<QueryOptions> missHandler;
         private final LoadingMap<QueryOptions, C> cache;
 
-        public AbstractContainer(Function<QueryOptions, C> cacheLoader) {
+        /**
+         * Entries which have been marked as stale and are waiting to be refreshed,
+         * mapped to the stamp of the most recent invalidation
+         */
+        private final Map<QueryOptions, Long> stale = new ConcurrentHashMap<>();
+        private final AtomicLong staleStamp = new AtomicLong();
+
+        /**
+         * Counts invalidations, so values calculated concurrently with one aren't offered
+         * to the cache
+         */
+        private final AtomicLong modifications = new AtomicLong();
+
+        public AbstractContainer(Function<QueryOptions, C> cacheLoader, Consumer<QueryOptions> missHandler) {
             this.cacheLoader = cacheLoader;
+            this.missHandler = missHandler;
             this.cache = LoadingMap.of(this.cacheLoader);
         }
 
+        long modifications() {
+            return this.modifications.get();
+        }
+
+        long modified() {
+            return this.modifications.incrementAndGet();
+        }
+
+        /**
+         * Adds a value calculated outside of the cache loader, unless the cache has been
+         * modified since the calculation started.
+         *
+         * @param queryOptions the query options
+         * @param value the value
+         * @param expectedModifications the modification count when the calculation started
+         */
+        void offer(QueryOptions queryOptions, C value, long expectedModifications) {
+            if (this.modifications.get() != expectedModifications) {
+                return;
+            }
+
+            // if an invalidation raced with the put, take the value back out again
+            if (this.cache.putIfAbsent(queryOptions, value) == null && this.modifications.get() != expectedModifications) {
+                this.cache.remove(queryOptions, value);
+            }
+        }
+
+        /**
+         * Replaces the value with one calculated outside of the cache loader, unless the
+         * value it was calculated to replace has changed in the meantime.
+         *
+         * <p>If there was no value to replace, the new value is {@link #offer(QueryOptions, Object, long) offered}
+         * instead.</p>
+         *
+         * @param queryOptions the query options
+         * @param value the value
+         * @param expected the value when the calculation started, or null if there was none
+         * @param expectedModifications the modification count when the calculation started
+         * @return the value which is now cached, or {@code value} if there is none
+         */
+        C replace(QueryOptions queryOptions, C value, C expected, long expectedModifications) {
+            if (expected == null) {
+                offer(queryOptions, value, expectedModifications);
+            } else {
+                // compared inside compute, so an invalidation or refresh of this entry is
+                // either seen here or happens after the value has been put
+                this.cache.computeIfPresent(queryOptions, (k, previous) -> previous == expected ? value : previous);
+            }
+
+            C current = this.cache.getIfPresent(queryOptions);
+            return current != null ? current : value;
+        }
+
+        /**
+         * Invalidates the entries matching the predicate.
+         *
+         * <p>In stale-while-revalidate mode, the entries are kept and refreshed in the
+         * background instead, so readers can continue to use the previous value until
+         * the new one is ready.</p>
+         *
+         * @param affected the predicate
+         */
+        void invalidate(Predicate<? super QueryOptions> affected) {
+            modified();
+            if (this.cache.isEmpty()) {
+                return;
+            }
+
+            if (isStaleWhileRevalidate()) {
+                for (QueryOptions queryOptions : this.cache.keySet()) {
+                    if (affected.test(queryOptions)) {
+                        markStale(queryOptions);
+                    }
+                }
+            } else {
+                this.cache.keySet().removeIf(affected);
+            }
+        }
+
+        private void markStale(QueryOptions queryOptions) {
+            long stamp = this.staleStamp.incrementAndGet();
+
+            // only schedule a refresh if one isn't already waiting to run
+            if (this.stale.put(queryOptions, stamp) == null) {
+                scheduleRefresh(queryOptions);
+            }
+        }
+
+        private void scheduleRefresh(QueryOptions queryOptions) {
+            try {
+                getPlugin().getBootstrap().getScheduler().async().execute(() -> refresh(queryOptions));
+            } catch (RejectedExecutionException e) {
+                // shutting down - fall back to removing the entry
+                this.stale.remove(queryOptions);
+                this.cache.remove(queryOptions);
+            }
+        }
+
+        private void refresh(QueryOptions queryOptions) {
+            Long stamp = this.stale.get(queryOptions);
+            if (stamp == null) {
+                return;
+            }
+
+            C value;
+            try {
+                value = this.cacheLoader.apply(queryOptions);
+            } catch (Throwable e) {
+                // let the next reader recalculate the value synchronously
+                this.stale.remove(queryOptions, stamp);
+                this.cache.remove(queryOptions);
+                throw e;
+            }
+
+            // only swap the new value in if the entry wasn't invalidated again while
+            // it was being calculated - clearing the stale marker and swapping the value
+            // must be atomic, so a newer refresh can't be overwritten by this one
+            boolean[] swapped = new boolean[1];
+            this.cache.computeIfPresent(queryOptions, (k, previous) -> {
+                if (this.stale.remove(queryOptions, stamp)) {
+                    swapped[0] = true;
+                    return value;
+                }
+                return previous;
+            });
+
+            // if the entry was removed in the meantime, just clear the marker. otherwise a newer
+            // invalidation replaced the stamp without scheduling another refresh, so do that now
+            if (!swapped[0] && !this.stale.remove(queryOptions, stamp)) {
+                scheduleRefresh(queryOptions);
+            }
+        }
+
         public void cleanup() {
             this.cache.values().removeIf(value -> ((UsageTracked) value).usedSince(TimeUnit.MINUTES.toMillis(2)));
         }
@@ -200,7 +473,13 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
         public @NonNull C get(@NonNull QueryOptions queryOptions) {
             Objects.requireNonNull(queryOptions, "queryOptions");
 
-            C data = this.cache.get(queryOptions);
+            C data = this.cache.getIfPresent(queryOptions);
+            if (data == null) {
+                // called outside of the loader, so other containers can be populated too
+                this.missHandler.accept(queryOptions);
+                data = this.cache.get(queryOptions);
+            }
+
             ((UsageTracked) data).recordUsage();
             return data;
         }
@@ -214,9 +493,11 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
         @Override
         public void recalculate(@NonNull QueryOptions queryOptions) {
             Objects.requireNonNull(queryOptions, "queryOptions");
+            C previous = this.cache.getIfPresent(queryOptions);
+            long modifications = modifications();
             CompletableFuture.runAsync(() -> {
                 final C value = this.cacheLoader.apply(queryOptions);
-                this.cache.put(queryOptions, value);
+                replace(queryOptions, value, previous, modifications);
             }, CaffeineFactory.executor());
         }
 
@@ -224,7 +505,19 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
         public @NonNull CompletableFuture<? extends C> reload(@NonNull QueryOptions queryOptions) {
             Objects.requireNonNull(queryOptions, "queryOptions");
 
+            if (isStaleWhileRevalidate()) {
+                // keep serving the previous value until we're done recalculating, but don't
+                // overwrite a newer value if the cache is modified again in the meantime
+                C previous = this.cache.getIfPresent(queryOptions);
+                long modifications = modifications();
+                return CompletableFuture.supplyAsync(() -> {
+                    C value = this.cacheLoader.apply(queryOptions);
+                    return replace(queryOptions, value, previous, modifications);
+                }, CaffeineFactory.executor());
+            }
+
             // invalidate the previous value until we're done recalculating
+            modified();
             this.cache.remove(queryOptions);
 
             // request recalculation from the cache
@@ -246,12 +539,12 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
         @Override
         public void invalidate(@NonNull QueryOptions queryOptions) {
             Objects.requireNonNull(queryOptions, "queryOptions");
-            this.cache.remove(queryOptions);
+            invalidate(queryOptions::equals);
         }
 
         @Override
         public void invalidate() {
-            this.cache.clear();
+            invalidate(Predicates.alwaysTrue());
         }
     }
     
@@ -28,13 +28,16 @@ package me.lucko.luckperms.common.cacheddata;
 import me.lucko.luckperms.common.cacheddata.type.MetaAccumulator;
 import me.lucko.luckperms.common.calculator.CalculatorFactory;
 import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.inheritance.InheritanceGraph;
 import me.lucko.luckperms.common.model.PermissionHolder;
 import net.luckperms.api.metastacking.MetaStackDefinition;
 import net.luckperms.api.node.ChatMetaType;
 import net.luckperms.api.node.Node;
+import net.luckperms.api.query.Flag;
 import net.luckperms.api.query.QueryOptions;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.function.IntFunction;
 
 /**
@@ -79,8 +82,57 @@ public abstract class HolderCachedDataManager<T extends PermissionHolder> extend
         return this.holder.exportPermissions(mapFactory, queryOptions, true, getPlugin().getConfiguration().get(ConfigKeys.APPLYING_SHORTHAND));
     }
 
+    @Override
+    protected <M extends Map<String, Node>> M resolvePermissions(IntFunction<M> mapFactory, QueryOptions queryOptions, Set<String> keys) {
+        return this.holder.exportPermissions(mapFactory, queryOptions, true, getPlugin().getConfiguration().get(ConfigKeys.APPLYING_SHORTHAND), keys::contains);
+    }
+
     @Override
     protected void resolveMeta(MetaAccumulator accumulator, QueryOptions queryOptions) {
         this.holder.accumulateMeta(accumulator, queryOptions);
     }
+
+    @Override
+    protected <M extends Map<String, Node>> M resolvePermissionsAndMeta(IntFunction<M> mapFactory, MetaAccumulator accumulator, QueryOptions queryOptions) {
+        return this.holder.exportPermissionsAndMeta(mapFactory, accumulator, queryOptions, true, getPlugin().getConfiguration().get(ConfigKeys.APPLYING_SHORTHAND));
+    }
+
+    /**
+     * Applies a change made to the nodes of {@code origin} to any cached data
+     * which is affected by it.
+     *
+     * @param origin the holder whose nodes were changed
+     * @param changedKeys the (lowercase) permission keys which have changed
+     * @param metaChanged if meta data has been affected by the change
+     */
+    public void applyChanges(PermissionHolder origin, Set<String> changedKeys, boolean metaChanged) {
+        applyChanges(queryOptions -> inherits(origin, queryOptions), changedKeys, metaChanged);
+    }
+
+    /**
+     * Invalidates any cached data which is affected by a change to the nodes of {@code origin}.
+     *
+     * @param origin the holder whose nodes were changed
+     */
+    public void invalidate(PermissionHolder origin) {
+        invalidate(queryOptions -> inherits(origin, queryOptions));
+    }
+
+    private boolean inherits(PermissionHolder origin, QueryOptions queryOptions) {
+        if (origin == this.holder) {
+            return true;
+        }
+
+        if (!queryOptions.flag(Flag.RESOLVE_INHERITANCE)) {
+            return false;
+        }
+
+        InheritanceGraph graph = getPlugin().getInheritanceGraphFactory().getGraph(queryOptions);
+        for (PermissionHolder holder : graph.traverse(this.holder)) {
+            if (holder == origin) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,268 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.cacheddata;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import me.lucko.luckperms.common.cacheddata.result.TristateResult;
+import me.lucko.luckperms.common.calculator.PermissionCalculator;
+import me.lucko.luckperms.common.model.InheritanceOrigin;
+import me.lucko.luckperms.common.model.PermissionHolderIdentifier;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.util.CaffeineFactory;
+import me.lucko.luckperms.common.verbose.event.CheckOrigin;
+import net.luckperms.api.model.PermissionHolder.Identifier;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.metadata.types.InheritanceOriginMetadata;
+import net.luckperms.api.query.QueryOptions;
+
+import java.util.Map;
+
+/**
+ * Shares resolved permission data between holders whose data is identical.
+ *
+ * <p>Most players only inherit from one or two groups, so many of them end up with
+ * exactly the same resolved permissions. Interning the data means only one copy of the
+ * permission map, and one {@link PermissionCalculator} (along with its lookup cache) is
+ * kept for all of them.</p>
+ *
+ * <p>Entries are keyed by the content of the resolved permission map and the query options.
+ * Nodes inherited from the holder itself are considered equal regardless of which holder
+ * that is, so players with the same own nodes can share data too.</p>
+ */
+public class PermissionCacheInterner {
+    private final LuckPermsPlugin plugin;
+
+    /**
+     * The interned entries - values are held weakly, so entries are removed once
+     * they are no longer used by any cache
+     */
+    private final Cache<Key, Entry> entries = CaffeineFactory.newBuilder().weakValues().build();
+
+    public PermissionCacheInterner(LuckPermsPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Gets a shared entry for the given resolved permissions, creating one if an entry with
+     * identical data doesn't exist yet.
+     *
+     * <p>If a new entry is created, {@code sourcePermissions} becomes the shared map, so it
+     * must not be modified after it has been passed to this method.</p>
+     *
+     * @param holder the holder the permissions were resolved for
+     * @param metadata the metadata for the cache
+     * @param sourcePermissions the resolved permissions
+     * @return the shared entry
+     */
+    public Entry intern(PermissionHolderIdentifier holder, CacheMetadata metadata, Map<String, Node> sourcePermissions) {
+        Key key = new Key(holder, metadata.getQueryOptions(), sourcePermissions);
+        return this.entries.get(key, k -> new Entry(this.plugin, k, this.plugin.getCalculatorFactory().build(k.queryOptions, metadata)));
+    }
+
+    /**
+     * Gets the approximate number of shared entries.
+     *
+     * @return the number of entries
+     */
+    public long size() {
+        return this.entries.estimatedSize();
+    }
+
+    /**
+     * Permission data which is shared between holders.
+     */
+    public static final class Entry {
+        private final LuckPermsPlugin plugin;
+
+        /** The holder the data was originally resolved for */
+        private final PermissionHolderIdentifier owner;
+
+        /** The shared permission map - never modified */
+        private final Map<String, Node> permissions;
+
+        /** The shared calculator */
+        private final PermissionCalculator calculator;
+
+        Entry(LuckPermsPlugin plugin, Key key, PermissionCalculator calculator) {
+            this.plugin = plugin;
+            this.owner = key.holder;
+            this.permissions = key.permissions;
+            this.calculator = calculator;
+            this.calculator.setSourcePermissions(this.permissions);
+        }
+
+        public Map<String, Node> getPermissions() {
+            return this.permissions;
+        }
+
+        public PermissionCalculator getCalculator() {
+            return this.calculator;
+        }
+
+        /**
+         * Creates a cache for the results localised for one of the holders sharing this entry.
+         *
+         * <p>Results are keyed by identity, and held weakly, so they are removed once the
+         * shared calculator no longer holds the original result.</p>
+         *
+         * @return a new cache
+         */
+        public static Cache<TristateResult, TristateResult> newLocalisedResultCache() {
+            return CaffeineFactory.newBuilder().weakKeys().build();
+        }
+
+        /**
+         * Performs a permission check on behalf of one of the holders sharing this entry.
+         *
+         * @param permission the permission to check
+         * @param origin marks where this check originated from
+         * @param holder the holder performing the check
+         * @param metadata the metadata of the holders cache
+         * @param localisedResults the results already localised for the holder
+         * @return the result
+         * @see #newLocalisedResultCache()
+         */
+        public TristateResult checkPermission(String permission, CheckOrigin origin, PermissionHolderIdentifier holder, CacheMetadata metadata, Cache<TristateResult, TristateResult> localisedResults) {
+            TristateResult result = localise(this.calculator.lookup(permission), holder, localisedResults);
+            this.plugin.getVerboseHandler().offerPermissionCheckEvent(origin, metadata.getVerboseCheckInfo(), metadata.getQueryOptions(), permission, result);
+            return result;
+        }
+
+        /**
+         * Rewrites a result caused by one of the original owners own nodes, so it appears to
+         * have been inherited from the given holder instead.
+         *
+         * <p>The rewritten result is cached, so repeated checks of the same permission
+         * don't create new nodes.</p>
+         *
+         * @param result the result
+         * @param holder the holder
+         * @param localisedResults the results already localised for the holder
+         * @return the localised result
+         */
+        private TristateResult localise(TristateResult result, PermissionHolderIdentifier holder, Cache<TristateResult, TristateResult> localisedResults) {
+            Node node = result.node();
+            if (node == null || holder.equals(this.owner)) {
+                return result;
+            }
+
+            TristateResult cached = localisedResults.getIfPresent(result);
+            if (cached != null) {
+                return cached;
+            }
+
+            InheritanceOriginMetadata origin = node.getMetadata(InheritanceOriginMetadata.KEY).orElse(null);
+            if (origin == null || !origin.getOrigin().equals(this.owner)) {
+                return result;
+            }
+
+            Node localised = node.toBuilder().withMetadata(InheritanceOriginMetadata.KEY, new InheritanceOrigin(holder, origin.getDataType())).build();
+            TristateResult localisedResult = result.withNode(localised);
+            localisedResults.put(result, localisedResult);
+            return localisedResult;
+        }
+    }
+
+    /**
+     * Compares resolved permission maps by content, treating nodes inherited from
+     * the holder itself as equal.
+     */
+    static final class Key {
+        private final PermissionHolderIdentifier holder;
+        private final QueryOptions queryOptions;
+        private final Map<String, Node> permissions;
+        private final int hashCode;
+
+        Key(PermissionHolderIdentifier holder, QueryOptions queryOptions, Map<String, Node> permissions) {
+            this.holder = holder;
+            this.queryOptions = queryOptions;
+            this.permissions = permissions;
+            this.hashCode = calculateHashCode();
+        }
+
+        private int calculateHashCode() {
+            int hash = 0;
+            for (Map.Entry<String, Node> entry : this.permissions.entrySet()) {
+                Node node = entry.getValue();
+                hash += entry.getKey().hashCode() ^ node.hashCode() ^ originHashCode(node);
+            }
+            return 31 * this.queryOptions.hashCode() + hash;
+        }
+
+        private int originHashCode(Node node) {
+            InheritanceOriginMetadata origin = node.getMetadata(InheritanceOriginMetadata.KEY).orElse(null);
+            if (origin == null) {
+                return 0;
+            }
+            Identifier identifier = origin.getOrigin();
+            return 31 * origin.getDataType().hashCode() + (identifier.equals(this.holder) ? 1 : identifier.hashCode());
+        }
+
+        private boolean originEquals(Node node, Key other, Node otherNode) {
+            InheritanceOriginMetadata origin = node.getMetadata(InheritanceOriginMetadata.KEY).orElse(null);
+            InheritanceOriginMetadata otherOrigin = otherNode.getMetadata(InheritanceOriginMetadata.KEY).orElse(null);
+            if (origin == null || otherOrigin == null) {
+                return origin == otherOrigin;
+            }
+            if (origin.getDataType() != otherOrigin.getDataType()) {
+                return false;
+            }
+
+            boolean self = origin.getOrigin().equals(this.holder);
+            boolean otherSelf = otherOrigin.getOrigin().equals(other.holder);
+            return self ? otherSelf : !otherSelf && origin.getOrigin().equals(otherOrigin.getOrigin());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+
+            if (this.hashCode != other.hashCode || this.permissions.size() != other.permissions.size() || !this.queryOptions.equals(other.queryOptions)) {
+                return false;
+            }
+
+            for (Map.Entry<String, Node> entry : this.permissions.entrySet()) {
+                Node node = entry.getValue();
+                Node otherNode = other.permissions.get(entry.getKey());
+                if (otherNode == null || !node.equals(otherNode) || !originEquals(node, other, otherNode)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public String toString() {
+            return "Key(holder=" + this.holder + ", queryOptions=" + this.queryOptions + ", size=" + this.permissions.size() + ')';
+        }
+    }
+}
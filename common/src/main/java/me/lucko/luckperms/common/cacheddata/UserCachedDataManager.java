@@ -25,12 +25,18 @@
 
 package me.lucko.luckperms.common.cacheddata;
 
+import me.lucko.luckperms.common.cacheddata.type.PermissionCache;
+import me.lucko.luckperms.common.cacheddata.type.SharedPermissionCache;
+import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.model.HolderType;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.verbose.VerboseCheckTarget;
 import net.luckperms.api.cacheddata.CachedDataManager;
+import net.luckperms.api.node.Node;
 import net.luckperms.api.query.QueryOptions;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Holds an easily accessible cache of a user's data in a number of contexts
  */
@@ -45,4 +51,14 @@ public class UserCachedDataManager extends HolderCachedDataManager<User> impleme
         return new CacheMetadata(HolderType.USER, VerboseCheckTarget.user(this.holder), queryOptions);
     }
 
+    @Override
+    protected PermissionCache newPermissionCache(QueryOptions queryOptions, CacheMetadata metadata, ConcurrentHashMap<String, Node> sourcePermissions) {
+        if (!getPlugin().getConfiguration().get(ConfigKeys.SHARE_PERMISSION_CACHES)) {
+            return super.newPermissionCache(queryOptions, metadata, sourcePermissions);
+        }
+
+        PermissionCacheInterner.Entry shared = getPlugin().getPermissionCacheInterner().intern(this.holder.getIdentifier(), metadata, sourcePermissions);
+        return new SharedPermissionCache(queryOptions, metadata, this.holder.getIdentifier(), shared, permissionData());
+    }
+
 }
@@ -87,6 +87,18 @@ public final class TristateResult implements Result<Tristate, Node> {
         this.overriddenResult = overriddenResult;
     }
 
+    /**
+     * Creates a copy of this result, caused by a different node.
+     *
+     * @param node the node
+     * @return the copy
+     */
+    public TristateResult withNode(Node node) {
+        TristateResult copy = new TristateResult(this.result, node, this.processorClass);
+        copy.overriddenResult = this.overriddenResult;
+        return copy;
+    }
+
     @Override
     public String toString() {
         return "TristateResult(" +
@@ -32,6 +32,7 @@ import me.lucko.luckperms.common.cacheddata.result.StringResult;
 import me.lucko.luckperms.common.node.types.Prefix;
 import me.lucko.luckperms.common.node.types.Suffix;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.verbose.VerboseHandler;
 import me.lucko.luckperms.common.verbose.event.CheckOrigin;
 import net.luckperms.api.cacheddata.CachedMetaData;
 import net.luckperms.api.node.types.MetaNode;
@@ -92,14 +93,20 @@ public class MonitoredMetaCache extends MetaCache implements CachedMetaData {
     @Override
     public @NonNull IntegerResult<WeightNode> getWeight(CheckOrigin origin) {
         IntegerResult<WeightNode> value = super.getWeight(origin);
-        this.plugin.getVerboseHandler().offerMetaCheckEvent(origin, this.metadata.getVerboseCheckInfo(), this.metadata.getQueryOptions(), "weight", value.asStringResult());
+        VerboseHandler verboseHandler = this.plugin.getVerboseHandler();
+        if (verboseHandler.wantsMetaCheckEvent(this.metadata.getVerboseCheckInfo(), "weight", value.isNull() ? null : value.intResult())) {
+            verboseHandler.offerMetaCheckEvent(origin, this.metadata.getVerboseCheckInfo(), this.metadata.getQueryOptions(), "weight", value.asStringResult());
+        }
         return value;
     }
 
     @Override
     public @Nullable String getPrimaryGroup(CheckOrigin origin) {
         String value = super.getPrimaryGroup(origin);
-        this.plugin.getVerboseHandler().offerMetaCheckEvent(origin, this.metadata.getVerboseCheckInfo(), this.metadata.getQueryOptions(), "primarygroup", StringResult.of(value));
+        VerboseHandler verboseHandler = this.plugin.getVerboseHandler();
+        if (verboseHandler.wantsMetaCheckEvent(this.metadata.getVerboseCheckInfo(), "primarygroup", value)) {
+            verboseHandler.offerMetaCheckEvent(origin, this.metadata.getVerboseCheckInfo(), this.metadata.getQueryOptions(), "primarygroup", StringResult.of(value));
+        }
         return value;
     }
 
@@ -126,9 +133,10 @@ public class MonitoredMetaCache extends MetaCache implements CachedMetaData {
             String key = (String) k;
             List<StringResult<MetaNode>> values = super.get(key);
 
+            VerboseHandler verboseHandler = MonitoredMetaCache.this.plugin.getVerboseHandler();
             if (values == null || values.isEmpty()) {
-                MonitoredMetaCache.this.plugin.getVerboseHandler().offerMetaCheckEvent(this.origin, MonitoredMetaCache.this.metadata.getVerboseCheckInfo(), MonitoredMetaCache.this.metadata.getQueryOptions(), key, StringResult.nullResult());
-            } else {
+                verboseHandler.offerMetaCheckEvent(this.origin, MonitoredMetaCache.this.metadata.getVerboseCheckInfo(), MonitoredMetaCache.this.metadata.getQueryOptions(), key, StringResult.nullResult());
+            } else if (verboseHandler.wantsMetaCheckEvent(MonitoredMetaCache.this.metadata.getVerboseCheckInfo(), key, values.get(0).result())) {
                 Iterator<StringResult<MetaNode>> it = values.iterator();
                 StringResult<MetaNode> result = it.next().copy();
 
@@ -139,7 +147,7 @@ public class MonitoredMetaCache extends MetaCache implements CachedMetaData {
                     root = nested;
                 }
 
-                MonitoredMetaCache.this.plugin.getVerboseHandler().offerMetaCheckEvent(this.origin, MonitoredMetaCache.this.metadata.getVerboseCheckInfo(), MonitoredMetaCache.this.metadata.getQueryOptions(), key, result);
+                verboseHandler.offerMetaCheckEvent(this.origin, MonitoredMetaCache.this.metadata.getVerboseCheckInfo(), MonitoredMetaCache.this.metadata.getQueryOptions(), key, result);
             }
 
             return values;
@@ -41,6 +41,7 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -79,11 +80,60 @@ public class PermissionCache extends UsageTracked implements CachedPermissionDat
         this.calculator.setSourcePermissions(this.permissions);
     }
 
+    /**
+     * Creates a cache backed by an existing permission map and calculator.
+     *
+     * @param queryOptions the query options
+     * @param permissions the permission map
+     * @param calculator a calculator which has already been given the permission map
+     */
+    protected PermissionCache(QueryOptions queryOptions, Map<String, Node> permissions, PermissionCalculator calculator) {
+        this.queryOptions = queryOptions;
+        this.permissions = permissions;
+        this.permissionsView = Collections.unmodifiableMap(Maps.transformValues(this.permissions, Node::getValue));
+        this.calculator = calculator;
+    }
+
     @Override
     public void invalidateCache() {
         this.calculator.invalidateCache();
     }
 
+    /**
+     * Gets if changes can be patched into this cache with
+     * {@link #applyChanges(Map, Set)}, or if it has to be recalculated instead.
+     *
+     * @return if changes can be applied
+     */
+    public boolean canApplyChanges() {
+        return true;
+    }
+
+    /**
+     * Patches a set of re-resolved keys into the permission map, and refreshes
+     * the calculator accordingly.
+     *
+     * @param resolved the newly resolved entries for the changed keys
+     * @param changedKeys the keys which have changed
+     * @return true if the changes were applied, false if the cache has to be recalculated instead
+     */
+    public boolean applyChanges(Map<String, Node> resolved, Set<String> changedKeys) {
+        if (!canApplyChanges()) {
+            return false;
+        }
+
+        for (String key : changedKeys) {
+            Node node = resolved.get(key);
+            if (node == null) {
+                this.permissions.remove(key);
+            } else {
+                this.permissions.put(key, node);
+            }
+        }
+        this.calculator.refresh(changedKeys);
+        return true;
+    }
+
     public PermissionCalculator getCalculator() {
         return this.calculator;
     }
@@ -0,0 +1,98 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.cacheddata.type;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import me.lucko.luckperms.common.cacheddata.CacheMetadata;
+import me.lucko.luckperms.common.cacheddata.PermissionCacheInterner;
+import me.lucko.luckperms.common.cacheddata.result.TristateResult;
+import me.lucko.luckperms.common.model.PermissionHolderIdentifier;
+import me.lucko.luckperms.common.verbose.event.CheckOrigin;
+import net.luckperms.api.cacheddata.CachedDataManager;
+import net.luckperms.api.cacheddata.CachedPermissionData;
+import net.luckperms.api.query.QueryOptions;
+
+/**
+ * A {@link PermissionCache} backed by data shared with other holders.
+ *
+ * <p>The shared data can't be changed in place, so the cache is recalculated instead
+ * of having changes applied to it, and invalidating it only drops this holder's entry
+ * from its container.</p>
+ */
+public class SharedPermissionCache extends PermissionCache {
+
+    /**
+     * The holder this cache belongs to
+     */
+    private final PermissionHolderIdentifier holder;
+
+    /**
+     * Info about the holder, used for verbose checks
+     */
+    private final CacheMetadata metadata;
+
+    /**
+     * The shared data
+     */
+    private final PermissionCacheInterner.Entry shared;
+
+    /**
+     * The container holding this cache
+     */
+    private final CachedDataManager.Container<CachedPermissionData> container;
+
+    /**
+     * The shared results which have been localised for this holder
+     */
+    private final Cache<TristateResult, TristateResult> localisedResults = PermissionCacheInterner.Entry.newLocalisedResultCache();
+
+    public SharedPermissionCache(QueryOptions queryOptions, CacheMetadata metadata, PermissionHolderIdentifier holder, PermissionCacheInterner.Entry shared, CachedDataManager.Container<CachedPermissionData> container) {
+        super(queryOptions, shared.getPermissions(), shared.getCalculator());
+        this.holder = holder;
+        this.metadata = metadata;
+        this.shared = shared;
+        this.container = container;
+    }
+
+    @Override
+    public boolean canApplyChanges() {
+        return false;
+    }
+
+    @Override
+    public void invalidateCache() {
+        // the calculator is shared with other holders, so recalculate this holder's cache instead
+        this.container.invalidate(getQueryOptions());
+    }
+
+    @Override
+    public TristateResult checkPermission(String permission, CheckOrigin origin) {
+        if (permission == null) {
+            throw new NullPointerException("permission");
+        }
+        return this.shared.checkPermission(permission, origin, this.holder, this.metadata, this.localisedResults);
+    }
+
+}
@@ -25,11 +25,16 @@
 
 package me.lucko.luckperms.common.calculator;
 
-import me.lucko.luckperms.common.cache.LoadingMap;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import me.lucko.luckperms.common.cacheddata.CacheMetadata;
 import me.lucko.luckperms.common.cacheddata.result.TristateResult;
 import me.lucko.luckperms.common.calculator.processor.PermissionProcessor;
+import me.lucko.luckperms.common.calculator.processor.WildcardProcessor;
+import me.lucko.luckperms.common.node.AbstractNode;
+import me.lucko.luckperms.common.node.types.RegexPermission;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.util.CaffeineFactory;
 import me.lucko.luckperms.common.verbose.event.CheckOrigin;
 import net.luckperms.api.node.Node;
 import org.checkerframework.checker.nullness.qual.NonNull;
@@ -37,6 +42,8 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import java.util.Collection;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 /**
@@ -44,6 +51,9 @@ import java.util.function.Function;
  */
 public class PermissionCalculator implements Function<String, TristateResult> {
 
+    /** The default maximum number of entries to keep in the lookup cache */
+    public static final int DEFAULT_LOOKUP_CACHE_SIZE = 10000;
+
     /** The plugin instance */
     private final LuckPermsPlugin plugin;
 
@@ -54,12 +64,36 @@ public class PermissionCalculator implements Function<String, TristateResult> {
     private final PermissionProcessor[] processors;
 
     /** Loading cache for permission checks */
-    private final LoadingMap<String, TristateResult> lookupCache = LoadingMap.of(this);
+    private final LoadingCache<String, TristateResult> lookupCache;
+
+    /**
+     * Incremented each time the processors are refreshed or invalidated, so lookups
+     * calculated against the previous state can be discarded
+     */
+    private final AtomicLong generation = new AtomicLong();
 
     public PermissionCalculator(LuckPermsPlugin plugin, CacheMetadata metadata, Collection<PermissionProcessor> processors) {
+        this(plugin, metadata, processors, DEFAULT_LOOKUP_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a new permission calculator.
+     *
+     * @param plugin the plugin instance
+     * @param metadata info about the nature of the calculator
+     * @param processors the processors which back the calculator
+     * @param lookupCacheSize the maximum number of entries to keep in the lookup cache, or 0 for no limit
+     */
+    public PermissionCalculator(LuckPermsPlugin plugin, CacheMetadata metadata, Collection<PermissionProcessor> processors, int lookupCacheSize) {
         this.plugin = plugin;
         this.metadata = metadata;
         this.processors = processors.toArray(new PermissionProcessor[0]);
+
+        Caffeine<Object, Object> cacheBuilder = CaffeineFactory.newBuilder();
+        if (lookupCacheSize > 0) {
+            cacheBuilder.maximumSize(lookupCacheSize);
+        }
+        this.lookupCache = cacheBuilder.build(this::apply);
     }
 
     /**
@@ -73,7 +107,7 @@ public class PermissionCalculator implements Function<String, TristateResult> {
      */
     public TristateResult checkPermission(String permission, CheckOrigin origin) {
         // get the result
-        TristateResult result = this.lookupCache.get(permission);
+        TristateResult result = lookup(permission);
 
         // log this permission lookup to the verbose handler
         this.plugin.getVerboseHandler().offerPermissionCheckEvent(origin, this.metadata.getVerboseCheckInfo(), this.metadata.getQueryOptions(), permission, result);
@@ -82,6 +116,25 @@ public class PermissionCalculator implements Function<String, TristateResult> {
         return result;
     }
 
+    /**
+     * Gets the result of a permission check, without logging it to the verbose handler.
+     *
+     * @param permission the permission to check
+     * @return the result
+     */
+    public TristateResult lookup(String permission) {
+        long generation = this.generation.get();
+        TristateResult result = this.lookupCache.get(permission);
+
+        // if the processors were refreshed while the result was being calculated, it may
+        // reflect the previous state - the refresh can't have removed it, as it wasn't in
+        // the cache yet, so remove it here instead
+        if (this.generation.get() != generation) {
+            this.lookupCache.asMap().remove(permission, result);
+        }
+        return result;
+    }
+
     @Override
     public TristateResult apply(@NonNull String permission) {
         // convert the permission to lowercase, as all values in the backing map are also lowercase.
@@ -113,10 +166,54 @@ public class PermissionCalculator implements Function<String, TristateResult> {
         }
     }
 
+    /**
+     * Called after a set of keys in the source permissions map have been changed in place.
+     *
+     * <p>Processors are refreshed, and only the lookup results which could have been affected
+     * by the changed keys are invalidated.</p>
+     *
+     * @param changedKeys the keys which have changed
+     */
+    public synchronized void refresh(Set<String> changedKeys) {
+        for (PermissionProcessor processor : this.processors) {
+            processor.refresh(changedKeys);
+        }
+        this.generation.incrementAndGet();
+
+        for (String key : changedKeys) {
+            // these can match anything, so clear everything
+            if (WildcardProcessor.isRootWildcard(key) || RegexPermission.parse(key) != null) {
+                this.lookupCache.invalidateAll();
+                return;
+            }
+        }
+
+        this.lookupCache.asMap().keySet().removeIf(permission -> isAffectedBy(permission, changedKeys));
+    }
+
+    private static boolean isAffectedBy(String permission, Set<String> changedKeys) {
+        permission = permission.toLowerCase(Locale.ROOT);
+        for (String key : changedKeys) {
+            if (permission.equals(key)) {
+                return true;
+            }
+
+            // wildcards (a.b.*) affect their children, and so do implicit wildcards (a.b)
+            String prefix = WildcardProcessor.isWildcardPermission(key)
+                    ? key.substring(0, key.length() - 1)
+                    : key + AbstractNode.NODE_SEPARATOR;
+            if (permission.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void invalidateCache() {
         for (PermissionProcessor processor : this.processors) {
             processor.invalidate();
         }
-        this.lookupCache.clear();
+        this.generation.incrementAndGet();
+        this.lookupCache.invalidateAll();
     }
 }
@@ -0,0 +1,75 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.calculator.processor;
+
+import me.lucko.luckperms.common.cacheddata.result.TristateResult;
+
+/**
+ * Permission processor which compiles the source map into a {@link PermissionTrie}.
+ *
+ * <p>Replaces the {@link DirectProcessor}, {@link RegexProcessor}, {@link WildcardProcessor}
+ * and {@link SpongeWildcardProcessor} chain with a single lookup. Results are reported as if they
+ * came from the equivalent processor in the chain.</p>
+ */
+public class CompiledTrieProcessor extends AbstractSourceBasedProcessor implements PermissionProcessor {
+    private final boolean wildcards;
+    private final boolean implicitWildcards;
+
+    /** Regex permissions can't be encoded in the trie, so are delegated to a regular processor */
+    private final RegexProcessor regexProcessor;
+
+    private PermissionTrie trie = PermissionTrie.EMPTY;
+
+    public CompiledTrieProcessor(boolean regex, boolean wildcards, boolean implicitWildcards) {
+        this.wildcards = wildcards;
+        this.implicitWildcards = implicitWildcards;
+        this.regexProcessor = regex ? new RegexProcessor() : null;
+    }
+
+    @Override
+    public TristateResult hasPermission(String permission) {
+        TristateResult result = this.trie.lookup(permission);
+
+        // regex permissions take priority over wildcards, but not over direct matches
+        if (this.regexProcessor != null && result.processorClass() != DirectProcessor.class) {
+            TristateResult regexResult = this.regexProcessor.hasPermission(permission);
+            if (regexResult != TristateResult.UNDEFINED) {
+                return regexResult;
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public void refresh() {
+        if (this.regexProcessor != null) {
+            this.regexProcessor.setSource(this.sourceMap);
+            this.regexProcessor.refresh();
+        }
+        this.trie = PermissionTrie.compile(this.sourceMap, this.wildcards, this.implicitWildcards);
+    }
+}
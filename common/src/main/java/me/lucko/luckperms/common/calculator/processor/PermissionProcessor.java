@@ -30,6 +30,7 @@ import me.lucko.luckperms.common.calculator.PermissionCalculator;
 import net.luckperms.api.node.Node;
 
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A processor within a {@link PermissionCalculator}.
@@ -64,6 +65,15 @@ public interface PermissionProcessor {
 
     }
 
+    /**
+     * Called after a set of keys in the source map have been changed in place
+     *
+     * @param changedKeys the keys which have changed
+     */
+    default void refresh(Set<String> changedKeys) {
+        refresh();
+    }
+
     /**
      * Called after the parent calculator has been invalidated
      */
@@ -0,0 +1,271 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.calculator.processor;
+
+import me.lucko.luckperms.common.cacheddata.result.TristateResult;
+import me.lucko.luckperms.common.node.AbstractNode;
+import net.luckperms.api.node.Node;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable trie of permission segments, compiled from a resolved source map.
+ *
+ * <p>Each node in the trie represents a single dot-separated segment of a permission
+ * string, and holds the precomputed results for direct, wildcard ({@code prefix.*})
+ * and implicit (Sponge style) matches at that point.</p>
+ *
+ * <p>Lookups walk the characters of the permission once, hashing each segment in place
+ * and comparing against the child table using {@link String#regionMatches(int, String, int, int)},
+ * so no intermediate strings are allocated.</p>
+ */
+public final class PermissionTrie {
+    private static final TristateResult.Factory DIRECT_RESULT_FACTORY = new TristateResult.Factory(DirectProcessor.class);
+    private static final TristateResult.Factory WILDCARD_RESULT_FACTORY = new TristateResult.Factory(WildcardProcessor.class);
+    private static final TristateResult.Factory IMPLICIT_WILDCARD_RESULT_FACTORY = new TristateResult.Factory(SpongeWildcardProcessor.class);
+
+    private static final String ROOT_WILDCARD = "*";
+    private static final String ROOT_WILDCARD_WITH_QUOTES = "'*'";
+
+    private static final String[] EMPTY_SEGMENTS = new String[0];
+    private static final TrieNode[] EMPTY_CHILDREN = new TrieNode[0];
+
+    /** An empty trie instance */
+    public static final PermissionTrie EMPTY = new PermissionTrie(new TrieNode(EMPTY_SEGMENTS, EMPTY_CHILDREN, null, null, null), TristateResult.UNDEFINED);
+
+    /**
+     * Compiles a trie from the given source map.
+     *
+     * @param sourceMap the source map, keyed by lowercase permission
+     * @param wildcards if wildcard ({@code .*} and root {@code *}) permissions should be encoded
+     * @param implicitWildcards if Sponge style implicit wildcards should be encoded
+     * @return the compiled trie
+     */
+    public static PermissionTrie compile(Map<String, Node> sourceMap, boolean wildcards, boolean implicitWildcards) {
+        if (sourceMap.isEmpty()) {
+            return EMPTY;
+        }
+
+        Builder root = new Builder();
+        for (Map.Entry<String, Node> e : sourceMap.entrySet()) {
+            String key = e.getKey();
+            Node node = e.getValue();
+
+            root.path(key, key.length()).direct = DIRECT_RESULT_FACTORY.result(node);
+
+            if (wildcards && key.endsWith(WildcardProcessor.WILDCARD_SUFFIX) && key.length() > 2) {
+                root.path(key, key.length() - 2).wildcard = WILDCARD_RESULT_FACTORY.result(node);
+            }
+
+            if (implicitWildcards && !key.isEmpty()) {
+                root.path(key, key.length()).implicit = IMPLICIT_WILDCARD_RESULT_FACTORY.result(node);
+            }
+        }
+
+        TristateResult rootWildcard = TristateResult.UNDEFINED;
+        if (wildcards) {
+            Node rootWildcardNode = sourceMap.get(ROOT_WILDCARD);
+            if (rootWildcardNode == null) {
+                rootWildcardNode = sourceMap.get(ROOT_WILDCARD_WITH_QUOTES);
+            }
+            if (rootWildcardNode != null) {
+                rootWildcard = WILDCARD_RESULT_FACTORY.result(rootWildcardNode);
+            }
+        }
+
+        return new PermissionTrie(root.build(), rootWildcard);
+    }
+
+    /** The root node of the trie */
+    private final TrieNode root;
+
+    /** The result of the root wildcard, if any */
+    private final TristateResult rootWildcard;
+
+    private PermissionTrie(TrieNode root, TristateResult rootWildcard) {
+        this.root = root;
+        this.rootWildcard = rootWildcard;
+    }
+
+    /**
+     * Looks up a permission in the trie.
+     *
+     * <p>Results are returned in the same order of precedence as the processor chain:
+     * a direct match, then the most specific wildcard, then the root wildcard, and finally
+     * the most specific implicit wildcard.</p>
+     *
+     * @param permission the permission, in lowercase
+     * @return the result
+     */
+    public TristateResult lookup(String permission) {
+        TristateResult wildcard = null;
+        TristateResult implicit = null;
+
+        TrieNode node = this.root;
+        int length = permission.length();
+        int start = 0;
+
+        while (true) {
+            int end = permission.indexOf(AbstractNode.NODE_SEPARATOR, start);
+            if (end == -1) {
+                end = length;
+            }
+
+            node = node.child(permission, start, end);
+            if (node == null) {
+                break;
+            }
+
+            if (end == length) {
+                if (node.direct != null) {
+                    return node.direct;
+                }
+                break;
+            }
+
+            // the permission continues past this node, so it is a parent of the permission
+            if (node.wildcard != null) {
+                wildcard = node.wildcard;
+            }
+            if (node.implicit != null) {
+                implicit = node.implicit;
+            }
+
+            start = end + 1;
+        }
+
+        if (wildcard != null) {
+            return wildcard;
+        }
+        if (this.rootWildcard != TristateResult.UNDEFINED) {
+            return this.rootWildcard;
+        }
+        if (implicit != null) {
+            return implicit;
+        }
+        return TristateResult.UNDEFINED;
+    }
+
+    private static int hash(String string, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + string.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static final class TrieNode {
+        /** Open addressed table of child segments, sized to a power of two */
+        private final String[] segments;
+        private final TrieNode[] children;
+
+        private final TristateResult direct;
+        private final TristateResult wildcard;
+        private final TristateResult implicit;
+
+        TrieNode(String[] segments, TrieNode[] children, TristateResult direct, TristateResult wildcard, TristateResult implicit) {
+            this.segments = segments;
+            this.children = children;
+            this.direct = direct;
+            this.wildcard = wildcard;
+            this.implicit = implicit;
+        }
+
+        TrieNode child(String permission, int start, int end) {
+            String[] segments = this.segments;
+            if (segments.length == 0) {
+                return null;
+            }
+
+            int length = end - start;
+            int mask = segments.length - 1;
+            int i = hash(permission, start, end) & mask;
+
+            while (true) {
+                String segment = segments[i];
+                if (segment == null) {
+                    return null;
+                }
+                if (segment.length() == length && permission.regionMatches(start, segment, 0, length)) {
+                    return this.children[i];
+                }
+                i = (i + 1) & mask;
+            }
+        }
+    }
+
+    private static final class Builder {
+        private final Map<String, Builder> children = new HashMap<>();
+        private TristateResult direct;
+        private TristateResult wildcard;
+        private TristateResult implicit;
+
+        /**
+         * Gets (or creates) the builder node for the first {@code end} characters of the key.
+         */
+        Builder path(String key, int end) {
+            Builder node = this;
+            int start = 0;
+            while (true) {
+                int sep = key.indexOf(AbstractNode.NODE_SEPARATOR, start);
+                if (sep == -1 || sep > end) {
+                    sep = end;
+                }
+                node = node.children.computeIfAbsent(key.substring(start, sep), s -> new Builder());
+                if (sep == end) {
+                    return node;
+                }
+                start = sep + 1;
+            }
+        }
+
+        TrieNode build() {
+            if (this.children.isEmpty()) {
+                return new TrieNode(EMPTY_SEGMENTS, EMPTY_CHILDREN, this.direct, this.wildcard, this.implicit);
+            }
+
+            // keep the load factor at or below 0.5 so probe sequences stay short
+            int size = Integer.highestOneBit(this.children.size()) << 2;
+            String[] segments = new String[size];
+            TrieNode[] children = new TrieNode[size];
+            int mask = size - 1;
+
+            for (Map.Entry<String, Builder> e : this.children.entrySet()) {
+                String segment = e.getKey();
+                int i = hash(segment, 0, segment.length()) & mask;
+                while (segments[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                segments[i] = segment;
+                children[i] = e.getValue().build();
+            }
+
+            return new TrieNode(segments, children, this.direct, this.wildcard, this.implicit);
+        }
+    }
+
+}
@@ -34,6 +34,7 @@ import net.luckperms.api.node.Node;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 public class RegexProcessor extends AbstractSourceBasedProcessor implements PermissionProcessor {
@@ -51,6 +52,16 @@ public class RegexProcessor extends AbstractSourceBasedProcessor implements Perm
         return TristateResult.UNDEFINED;
     }
 
+    @Override
+    public void refresh(Set<String> changedKeys) {
+        for (String key : changedKeys) {
+            if (RegexPermission.parse(key) != null) {
+                refresh();
+                return;
+            }
+        }
+    }
+
     @Override
     public void refresh() {
         ImmutableList.Builder<Map.Entry<Pattern, TristateResult>> builder = ImmutableList.builder();
@@ -33,6 +33,7 @@ import net.luckperms.api.util.Tristate;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 
 public class WildcardProcessor extends AbstractSourceBasedProcessor implements PermissionProcessor {
     private static final TristateResult.Factory RESULT_FACTORY = new TristateResult.Factory(WildcardProcessor.class);
@@ -74,6 +75,16 @@ public class WildcardProcessor extends AbstractSourceBasedProcessor implements P
         return this.rootWildcardState;
     }
 
+    @Override
+    public void refresh(Set<String> changedKeys) {
+        for (String key : changedKeys) {
+            if (isWildcardPermission(key)) {
+                refresh();
+                return;
+            }
+        }
+    }
+
     @Override
     public void refresh() {
         ImmutableMap.Builder<String, TristateResult> builder = ImmutableMap.builder();
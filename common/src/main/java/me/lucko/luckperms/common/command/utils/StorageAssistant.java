@@ -27,6 +27,7 @@ package me.lucko.luckperms.common.command.utils;
 
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.locale.Message;
+import me.lucko.luckperms.common.messaging.HolderDelta;
 import me.lucko.luckperms.common.messaging.InternalMessagingService;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.HolderType;
@@ -35,9 +36,12 @@ import me.lucko.luckperms.common.model.Track;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.sender.Sender;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Utility methods for saving users, groups and tracks.
@@ -75,30 +79,33 @@ public final class StorageAssistant {
     }
 
     public static void save(User user, Sender sender, LuckPermsPlugin plugin) {
-        try {
-            plugin.getStorage().saveUser(user).get();
-        } catch (Exception e) {
+        HolderDelta delta = captureDelta(user, plugin);
+        boolean saved = awaitSave(plugin.getStorage().saveUser(user), plugin, e -> {
             plugin.getLogger().warn("Error whilst saving user", e);
             Message.USER_SAVE_ERROR.send(sender, user);
+        });
+        if (!saved) {
             return;
         }
 
         Optional<InternalMessagingService> messagingService = plugin.getMessagingService();
         if (messagingService.isPresent() && plugin.getConfiguration().get(ConfigKeys.AUTO_PUSH_UPDATES)) {
-            messagingService.get().pushUserUpdate(user);
+            messagingService.get().queueUserUpdate(user, delta);
         }
     }
 
     public static CompletableFuture<Void> save(Group group, Sender sender, LuckPermsPlugin plugin) {
-        try {
-            plugin.getStorage().saveGroup(group).get();
-        } catch (Exception e) {
+        HolderDelta delta = captureDelta(group, plugin);
+        CompletableFuture<Void> future = plugin.getStorage().saveGroup(group);
+        boolean saved = awaitSave(future, plugin, e -> {
             plugin.getLogger().warn("Error whilst saving group", e);
             Message.GROUP_SAVE_ERROR.send(sender, group);
-            return failedFuture(e);
+        });
+        if (!saved) {
+            return future;
         }
 
-        return invalidateCachesAndPushUpdates(plugin);
+        return invalidateCachesAndPushUpdates(plugin, service -> service.queueGroupUpdate(group, delta));
     }
 
     public static CompletableFuture<Void> save(Track track, Sender sender, LuckPermsPlugin plugin) {
@@ -110,7 +117,7 @@ public final class StorageAssistant {
             return failedFuture(e);
         }
 
-        return invalidateCachesAndPushUpdates(plugin);
+        return invalidateCachesAndPushUpdates(plugin, service -> service.queueTrackUpdate(track));
     }
 
     public static void save(PermissionHolder holder, Sender sender, LuckPermsPlugin plugin) {
@@ -125,13 +132,51 @@ public final class StorageAssistant {
         }
     }
 
-    public static CompletableFuture<Void> invalidateCachesAndPushUpdates(LuckPermsPlugin plugin) {
-        plugin.getGroupManager().invalidateAllGroupCaches();
-        plugin.getUserManager().invalidateAllUserCaches();
+    /**
+     * Waits for a user or group save to complete. If saves are being buffered, the
+     * save isn't waited for, and any error is reported once it has been written.
+     *
+     * @param future the save future
+     * @param plugin the plugin
+     * @param errorHandler reports an error
+     * @return false if the save has already failed
+     */
+    private static boolean awaitSave(CompletableFuture<Void> future, LuckPermsPlugin plugin, Consumer<Throwable> errorHandler) {
+        if (plugin.getStorage().isBufferingSaves()) {
+            future.whenComplete((v, ex) -> {
+                if (ex != null) {
+                    errorHandler.accept(ex);
+                }
+            });
+            return true;
+        }
+
+        try {
+            future.get();
+            return true;
+        } catch (Exception e) {
+            errorHandler.accept(e);
+            return false;
+        }
+    }
+
+    private static @Nullable HolderDelta captureDelta(PermissionHolder holder, LuckPermsPlugin plugin) {
+        if (plugin.getMessagingService().isPresent() && plugin.getConfiguration().get(ConfigKeys.AUTO_PUSH_UPDATES) && plugin.getConfiguration().get(ConfigKeys.PUSH_UPDATE_DELTAS)) {
+            return HolderDelta.capture(holder);
+        }
+        return null;
+    }
+
+    public static CompletableFuture<Void> invalidateCachesAndPushUpdates(LuckPermsPlugin plugin, Function<InternalMessagingService, CompletableFuture<Void>> pushUpdate) {
+        // when incremental updates are enabled, holders apply changes to their dependents' caches themselves
+        if (!plugin.getConfiguration().get(ConfigKeys.INCREMENTAL_CACHE_UPDATES)) {
+            plugin.getGroupManager().invalidateAllGroupCaches();
+            plugin.getUserManager().invalidateAllUserCaches();
+        }
 
         Optional<InternalMessagingService> messagingService = plugin.getMessagingService();
         if (messagingService.isPresent() && plugin.getConfiguration().get(ConfigKeys.AUTO_PUSH_UPDATES)) {
-            return messagingService.get().getUpdateBuffer().request();
+            return pushUpdate.apply(messagingService.get());
         } else {
             return CompletableFuture.completedFuture(null);
         }
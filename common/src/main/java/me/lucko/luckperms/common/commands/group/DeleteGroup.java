@@ -109,6 +109,11 @@ public class DeleteGroup extends SingleCommand {
 
         if (!args.remove("--update-parent-lists")) {
             plugin.getSyncTaskBuffer().request();
+
+            Optional<InternalMessagingService> messagingService = plugin.getMessagingService();
+            if (messagingService.isPresent() && plugin.getConfiguration().get(ConfigKeys.AUTO_PUSH_UPDATES)) {
+                messagingService.get().queueGroupUpdate(group);
+            }
         } else {
             // the group is now deleted, proceed to remove its representing inheritance nodes
             BulkUpdate operation = BulkUpdateBuilder.create()
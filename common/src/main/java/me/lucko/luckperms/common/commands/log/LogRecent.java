@@ -25,7 +25,9 @@
 
 package me.lucko.luckperms.common.commands.log;
 
-import me.lucko.luckperms.common.actionlog.Log;
+import com.google.common.collect.Lists;
+import me.lucko.luckperms.common.actionlog.ActionFilter;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.actionlog.LoggedAction;
 import me.lucko.luckperms.common.command.abstraction.ChildCommand;
 import me.lucko.luckperms.common.command.access.CommandPermission;
@@ -34,13 +36,14 @@ import me.lucko.luckperms.common.command.utils.ArgumentList;
 import me.lucko.luckperms.common.locale.Message;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.sender.Sender;
+import me.lucko.luckperms.common.storage.Storage;
 import me.lucko.luckperms.common.util.Paginated;
 import me.lucko.luckperms.common.util.Predicates;
 
 import java.util.List;
 import java.util.UUID;
 
-public class LogRecent extends ChildCommand<Log> {
+public class LogRecent extends ChildCommand<Storage> {
     private static final int ENTRIES_PER_PAGE = 10;
     
     public LogRecent() {
@@ -48,18 +51,16 @@ public class LogRecent extends ChildCommand<Log> {
     }
 
     @Override
-    public void execute(LuckPermsPlugin plugin, Sender sender, Log log, ArgumentList args, String label) {
+    public void execute(LuckPermsPlugin plugin, Sender sender, Storage storage, ArgumentList args, String label) {
         if (args.isEmpty()) {
             // No page or user
-            Paginated<LoggedAction> content = new Paginated<>(log.getContent());
-            showLog(content.getMaxPages(ENTRIES_PER_PAGE), false, sender, content);
+            showLog(1, null, storage, sender);
             return;
         }
 
         int page = args.getIntOrDefault(0, Integer.MIN_VALUE);
         if (page != Integer.MIN_VALUE) {
-            Paginated<LoggedAction> content = new Paginated<>(log.getContent());
-            showLog(page, false, sender, content);
+            showLog(page, null, storage, sender);
             return;
         }
 
@@ -69,17 +70,14 @@ public class LogRecent extends ChildCommand<Log> {
             return;
         }
 
-        Paginated<LoggedAction> content = new Paginated<>(log.getContent(uuid));
         page = args.getIntOrDefault(1, Integer.MIN_VALUE);
-        if (page != Integer.MIN_VALUE) {
-            showLog(page, true, sender, content);
-        } else {
-            showLog(content.getMaxPages(ENTRIES_PER_PAGE), true, sender, content);
-        }
+        showLog(page != Integer.MIN_VALUE ? page : 1, uuid, storage, sender);
     }
 
-    private static void showLog(int page, boolean specificUser, Sender sender, Paginated<LoggedAction> log) {
-        int maxPage = log.getMaxPages(ENTRIES_PER_PAGE);
+    private static void showLog(int page, UUID actor, Storage storage, Sender sender) {
+        ActionFilter filter = actor != null ? ActionFilter.source(actor) : ActionFilter.all();
+        LogPage log = storage.getLogPage(filter, Math.max(1, page), ENTRIES_PER_PAGE).join();
+        int maxPage = log.getMaxPages();
         if (maxPage == 0) {
             Message.LOG_NO_ENTRIES.send(sender);
             return;
@@ -90,8 +88,8 @@ public class LogRecent extends ChildCommand<Log> {
             return;
         }
 
-        List<Paginated.Entry<LoggedAction>> entries = log.getPage(page, ENTRIES_PER_PAGE);
-        if (specificUser) {
+        List<Paginated.Entry<LoggedAction>> entries = log.getEntries();
+        if (actor != null) {
             String name = entries.stream().findAny().get().value().getSource().getName();
             if (name.contains("@")) {
                 name = name.split("@")[0];
@@ -101,7 +99,8 @@ public class LogRecent extends ChildCommand<Log> {
             Message.LOG_RECENT_HEADER.send(sender, page, maxPage);
         }
 
-        for (Paginated.Entry<LoggedAction> e : entries) {
+        // entries are newest first, send the most recent last
+        for (Paginated.Entry<LoggedAction> e : Lists.reverse(entries)) {
             Message.LOG_ENTRY.send(sender, e.position(), e.value());
         }
     }
@@ -25,7 +25,6 @@
 
 package me.lucko.luckperms.common.commands.misc;
 
-import com.google.gson.JsonObject;
 import me.lucko.luckperms.common.backup.Importer;
 import me.lucko.luckperms.common.command.abstraction.SingleCommand;
 import me.lucko.luckperms.common.command.access.CommandPermission;
@@ -36,11 +35,11 @@ import me.lucko.luckperms.common.locale.Message;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.sender.Sender;
 import me.lucko.luckperms.common.util.Predicates;
-import me.lucko.luckperms.common.util.gson.GsonProvider;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -63,7 +62,7 @@ public class ImportCommand extends SingleCommand {
 
         boolean fromFile = !args.remove("--upload");
 
-        JsonObject data;
+        Reader data;
         if (fromFile) {
             String fileName = args.get(0);
             Path dataDirectory = plugin.getBootstrap().getDataDirectory();
@@ -97,8 +96,8 @@ public class ImportCommand extends SingleCommand {
                 return;
             }
 
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(path)), StandardCharsets.UTF_8))) {
-                data = GsonProvider.normal().fromJson(reader, JsonObject.class);
+            try {
+                data = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(path)), StandardCharsets.UTF_8));
             } catch (IOException e) {
                 plugin.getLogger().warn("Error whilst reading from the import file", e);
                 Message.IMPORT_FILE_READ_FAILURE.send(sender);
@@ -114,7 +113,7 @@ public class ImportCommand extends SingleCommand {
             }
 
             try {
-                data = plugin.getBytebin().getJsonContent(code).getAsJsonObject();
+                data = plugin.getBytebin().getContentReader(code);
             } catch (UnsuccessfulRequestException e) {
                 Message.HTTP_REQUEST_FAILURE.send(sender, e.getResponse().code(), e.getResponse().message());
                 return;
@@ -123,19 +122,16 @@ public class ImportCommand extends SingleCommand {
                 Message.HTTP_UNKNOWN_FAILURE.send(sender);
                 return;
             }
-
-            if (data == null) {
-                Message.IMPORT_UNABLE_TO_READ.send(sender, code);
-                return;
-            }
         }
 
         Importer importer = new Importer(plugin, sender, data, !args.contains("--replace"));
 
         // Run the importer in its own thread.
         plugin.getBootstrap().getScheduler().executeAsync(() -> {
-            try {
+            try (Reader ignored = data) {
                 importer.run();
+            } catch (IOException e) {
+                plugin.getLogger().warn("Error whilst closing the import data", e);
             } finally {
                 this.running.set(false);
             }
@@ -38,24 +38,26 @@ import me.lucko.luckperms.common.command.tabcomplete.TabCompletions;
 import me.lucko.luckperms.common.command.utils.ArgumentList;
 import me.lucko.luckperms.common.locale.Message;
 import me.lucko.luckperms.common.model.HolderType;
-import me.lucko.luckperms.common.node.comparator.NodeEntryComparator;
 import me.lucko.luckperms.common.node.matcher.ConstraintNodeMatcher;
 import me.lucko.luckperms.common.node.matcher.StandardNodeMatchers;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerTask;
 import me.lucko.luckperms.common.sender.Sender;
 import me.lucko.luckperms.common.storage.misc.NodeEntry;
-import me.lucko.luckperms.common.util.Iterators;
+import me.lucko.luckperms.common.storage.misc.NodeEntryPage;
 import me.lucko.luckperms.common.util.Predicates;
 import net.luckperms.api.node.Node;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class SearchCommand extends SingleCommand {
+    private static final int PAGE_SIZE = 15;
+
     public SearchCommand() {
         super(CommandSpec.SEARCH, "Search", CommandPermission.SEARCH, Predicates.notInRange(1, 3));
     }
@@ -69,25 +71,43 @@ public class SearchCommand extends SingleCommand {
         }
 
         ConstraintNodeMatcher<Node> matcher = StandardNodeMatchers.of(Constraint.of(comparison, args.get(1)));
-        int page = args.getIntOrDefault(2, 1);
+        int page = Math.max(1, args.getIntOrDefault(2, 1));
 
         Message.SEARCH_SEARCHING.send(sender, matcher.toString());
 
-        List<NodeEntry<UUID, Node>> matchedUsers = plugin.getStorage().searchUserNodes(matcher).join();
-        List<NodeEntry<String, Node>> matchedGroups = plugin.getStorage().searchGroupNodes(matcher).join();
+        // stop searching if the sender goes away before the results are ready
+        SchedulerTask disconnectCheck = plugin.getBootstrap().getScheduler().asyncRepeating(() -> {
+            if (!sender.isValid()) {
+                matcher.cancel();
+            }
+        }, 1, TimeUnit.SECONDS);
+
+        NodeEntryPage<UUID, Node> matchedUsers;
+        NodeEntryPage<String, Node> matchedGroups;
+        try {
+            // out of range pages fall back to the first page
+            matchedUsers = plugin.getStorage().searchUserNodes(matcher, page, PAGE_SIZE).join();
+            matchedGroups = plugin.getStorage().searchGroupNodes(matcher, page, PAGE_SIZE).join();
+        } finally {
+            disconnectCheck.cancel();
+        }
 
-        int users = matchedUsers.size();
-        int groups = matchedGroups.size();
+        if (matcher.isCancelled()) {
+            return;
+        }
+
+        int users = matchedUsers.getTotalEntries();
+        int groups = matchedGroups.getTotalEntries();
 
         Message.SEARCH_RESULT.send(sender, users + groups, users, groups);
 
-        if (!matchedUsers.isEmpty()) {
+        if (users != 0) {
             Map<UUID, String> uuidLookups = LoadingMap.of(u -> plugin.lookupUsername(u).orElseGet(u::toString));
-            sendResult(sender, matchedUsers, uuidLookups::get, Message.SEARCH_SHOWING_USERS, HolderType.USER, label, page, comparison);
+            sendResult(sender, matchedUsers, uuidLookups::get, Message.SEARCH_SHOWING_USERS, HolderType.USER, label, comparison);
         }
 
-        if (!matchedGroups.isEmpty()) {
-            sendResult(sender, matchedGroups, Function.identity(), Message.SEARCH_SHOWING_GROUPS, HolderType.GROUP, label, page, comparison);
+        if (groups != 0) {
+            sendResult(sender, matchedGroups, Function.identity(), Message.SEARCH_SHOWING_GROUPS, HolderType.GROUP, label, comparison);
         }
     }
 
@@ -98,26 +118,13 @@ public class SearchCommand extends SingleCommand {
                 .complete(args);
     }
 
-    private static <T extends Comparable<T>> void sendResult(Sender sender, List<NodeEntry<T, Node>> results, Function<T, String> lookupFunction, Message.Args3<Integer, Integer, Integer> headerMessage, HolderType holderType, String label, int page, Comparison comparison) {
-        results = new ArrayList<>(results);
-        results.sort(NodeEntryComparator.normal());
-
-        int pageIndex = page - 1;
-        List<List<NodeEntry<T, Node>>> pages = Iterators.divideIterable(results, 15);
-
-        if (pageIndex < 0 || pageIndex >= pages.size()) {
-            page = 1;
-            pageIndex = 0;
-        }
-
-        List<NodeEntry<T, Node>> content = pages.get(pageIndex);
-
-        List<Map.Entry<String, NodeEntry<T, Node>>> mappedContent = content.stream()
+    private static <T extends Comparable<T>> void sendResult(Sender sender, NodeEntryPage<T, Node> results, Function<T, String> lookupFunction, Message.Args3<Integer, Integer, Integer> headerMessage, HolderType holderType, String label, Comparison comparison) {
+        List<Map.Entry<String, NodeEntry<T, Node>>> mappedContent = results.getContent().stream()
                 .map(hp -> Maps.immutableEntry(lookupFunction.apply(hp.getHolder()), hp))
                 .collect(Collectors.toList());
 
         // send header
-        headerMessage.send(sender, page, pages.size(), results.size());
+        headerMessage.send(sender, results.getPageNumber(), results.getMaxPages(), results.getTotalEntries());
 
         for (Map.Entry<String, NodeEntry<T, Node>> ent : mappedContent) {
             Message.SEARCH_NODE_ENTRY.send(sender, comparison != StandardComparison.EQUAL, ent.getValue().getNode(), ent.getKey(), holderType, label, sender.getPlugin());
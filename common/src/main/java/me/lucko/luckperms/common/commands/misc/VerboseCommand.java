@@ -97,10 +97,11 @@ public class VerboseCommand extends SingleCommand {
             plugin.getBootstrap().getScheduler().sync().execute(() -> {
                 Message.VERBOSE_ON_COMMAND.send(sender, executor.getName(), command);
 
-                verboseHandler.registerListener(sender, VerboseFilter.acceptAll(), true);
+                verboseHandler.registerListener(sender, VerboseFilter.acceptAll(), true, false);
                 executor.performCommand(command);
 
                 VerboseListener listener = verboseHandler.unregisterListener(sender);
+                listener.close();
                 if (listener.getMatchedCount() == 0) {
                     Message.VERBOSE_OFF_COMMAND_NO_CHECKS.send(sender);
                 } else {
@@ -129,6 +130,10 @@ public class VerboseCommand extends SingleCommand {
 
             boolean notify = !mode.equals("record");
 
+            verboseHandler.setCaptureLimits(
+                    plugin.getConfiguration().get(ConfigKeys.VERBOSE_SAMPLE_RATE),
+                    plugin.getConfiguration().get(ConfigKeys.VERBOSE_MAX_EVENTS_PER_SECOND)
+            );
             verboseHandler.registerListener(sender, compiledFilter, notify);
 
             if (notify) {
@@ -174,6 +179,9 @@ public class VerboseCommand extends SingleCommand {
                     return;
                 }
             } else {
+                if (listener != null) {
+                    listener.close();
+                }
                 Message.VERBOSE_OFF.send(sender);
             }
 
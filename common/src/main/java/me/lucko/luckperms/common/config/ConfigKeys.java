@@ -29,7 +29,9 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import me.lucko.luckperms.common.cacheddata.type.SimpleMetaValueSelector;
+import me.lucko.luckperms.common.calculator.PermissionCalculator;
 import me.lucko.luckperms.common.config.generic.KeyedConfiguration;
+import me.lucko.luckperms.common.config.generic.adapter.ConfigurationAdapter;
 import me.lucko.luckperms.common.config.generic.key.ConfigKey;
 import me.lucko.luckperms.common.config.generic.key.SimpleConfigKey;
 import me.lucko.luckperms.common.context.calculator.WorldNameRewriter;
@@ -187,6 +189,16 @@ public final class ConfigKeys {
      */
     public static final ConfigKey<Boolean> RESOLVE_COMMAND_SELECTORS = booleanKey("resolve-command-selectors", false);
 
+    /**
+     * Only 1 in every N permission/meta checks are captured by verbose
+     */
+    public static final ConfigKey<Integer> VERBOSE_SAMPLE_RATE = key(c -> Math.max(1, c.getInteger("verbose-sample-rate", 1)));
+
+    /**
+     * The maximum number of checks verbose will capture each second, or 0 for no limit
+     */
+    public static final ConfigKey<Integer> VERBOSE_MAX_EVENTS_PER_SECOND = key(c -> Math.max(0, c.getInteger("verbose-max-events-per-second", 0)));
+
     /**
      * Controls how temporary add commands should behave
      */
@@ -274,6 +286,16 @@ public final class ConfigKeys {
      */
     public static final ConfigKey<Boolean> APPLYING_SHORTHAND = notReloadable(booleanKey("apply-shorthand", true));
 
+    /**
+     * If the direct, regex and wildcard processors should be replaced by a single compiled permission trie
+     */
+    public static final ConfigKey<Boolean> USE_COMPILED_PERMISSION_TRIE = notReloadable(booleanKey("use-compiled-permission-trie", false));
+
+    /**
+     * The maximum number of permission lookup results to cache per calculator, or 0 for no limit
+     */
+    public static final ConfigKey<Integer> PERMISSION_LOOKUP_CACHE_SIZE = notReloadable(key(c -> Math.max(0, c.getInteger("permission-lookup-cache-size", PermissionCalculator.DEFAULT_LOOKUP_CACHE_SIZE))));
+
     /**
      * If Bukkit child permissions are being applied. This setting is ignored on other platforms.
      */
@@ -314,6 +336,36 @@ public final class ConfigKeys {
      */
     public static final ConfigKey<Boolean> APPLY_SPONGE_DEFAULT_SUBJECTS = notReloadable(booleanKey("apply-sponge-default-subjects", true));
 
+    /**
+     * If node changes should be applied to existing cached data, instead of invalidating it
+     */
+    public static final ConfigKey<Boolean> INCREMENTAL_CACHE_UPDATES = booleanKey("incremental-cache-updates", false);
+
+    /**
+     * If permission and meta data should be resolved together, with a single traversal of the inheritance tree
+     */
+    public static final ConfigKey<Boolean> COMBINED_CACHED_DATA_RESOLUTION = booleanKey("combined-cached-data-resolution", false);
+
+    /**
+     * The minimum size of an inheritance tree before node collection is spread over the worker pool, or 0 to disable
+     */
+    public static final ConfigKey<Integer> CACHED_DATA_PARALLELISM_THRESHOLD = key(c -> Math.max(0, c.getInteger("cached-data-parallelism-threshold", 0)));
+
+    /**
+     * If invalidated cached data should continue to be used while it is recalculated in the background
+     */
+    public static final ConfigKey<Boolean> ASYNC_CACHED_DATA_REFRESH = booleanKey("async-cached-data-refresh", false);
+
+    /**
+     * If players with identical resolved permissions should share a single permission cache
+     */
+    public static final ConfigKey<Boolean> SHARE_PERMISSION_CACHES = booleanKey("share-permission-caches", false);
+
+    /**
+     * If holders should store their nodes in copy-on-write node maps
+     */
+    public static final ConfigKey<Boolean> COPY_ON_WRITE_NODE_MAPS = notReloadable(booleanKey("copy-on-write-node-maps", false));
+
     /**
      * The algorithm LuckPerms should use when traversing the "inheritance tree"
      */
@@ -543,7 +595,7 @@ public final class ConfigKeys {
      * The database settings, username, password, etc for use by any database
      */
     public static final ConfigKey<StorageCredentials> DATABASE_VALUES = notReloadable(key(c -> {
-        int maxPoolSize = c.getInteger("data.pool-settings.maximum-pool-size", c.getInteger("data.pool-size", 10));
+        int maxPoolSize = maximumPoolSize(c);
         int minIdle = c.getInteger("data.pool-settings.minimum-idle", maxPoolSize);
         int maxLifetime = c.getInteger("data.pool-settings.maximum-lifetime", 1800000);
         int keepAliveTime = c.getInteger("data.pool-settings.keepalive-time", 0);
@@ -610,6 +662,29 @@ public final class ConfigKeys {
         return ImmutableMap.copyOf(map);
     }));
 
+    /**
+     * The delay in milliseconds before queued user & group saves are written to storage, or 0 to write immediately
+     */
+    public static final ConfigKey<Integer> WRITE_BEHIND_DELAY = notReloadable(key(c -> Math.max(0, c.getInteger("write-behind-delay", 0))));
+
+    /**
+     * The maximum number of connecting players whose data can be loaded in a single batch
+     */
+    public static final ConfigKey<Integer> LOGIN_BATCH_SIZE = notReloadable(key(c -> Math.max(1, c.getInteger("login-batch-size", 100))));
+
+    /**
+     * The number of threads used to load users during an export
+     */
+    public static final ConfigKey<Integer> EXPORT_THREADS = notReloadable(key(c -> {
+        int threads = c.getInteger("export-threads", 0);
+        if (threads > 0) {
+            return threads;
+        }
+
+        // by default, leave half of the connection pool free for players logging in
+        return Math.max(1, maximumPoolSize(c) / 2);
+    }));
+
     /**
      * The name of the messaging service in use, or "none" if not enabled
      */
@@ -620,6 +695,21 @@ public final class ConfigKeys {
      */
     public static final ConfigKey<Boolean> AUTO_PUSH_UPDATES = notReloadable(booleanKey("auto-push-updates", true));
 
+    /**
+     * If updates pushed by the messaging service should only identify the groups, tracks and users which changed
+     */
+    public static final ConfigKey<Boolean> PUSH_TARGETED_UPDATES = notReloadable(booleanKey("push-targeted-updates", false));
+
+    /**
+     * If targeted updates should include the changes made to users and groups
+     */
+    public static final ConfigKey<Boolean> PUSH_UPDATE_DELTAS = notReloadable(booleanKey("push-update-deltas", false));
+
+    /**
+     * If outgoing messages should be collected and sent in batches
+     */
+    public static final ConfigKey<Boolean> PUSH_BATCHED_MESSAGES = notReloadable(booleanKey("push-batched-messages", false));
+
     /**
      * If LuckPerms should push logging entries to connected servers via the messaging service
      */
@@ -755,6 +845,16 @@ public final class ConfigKeys {
         return KEYS;
     }
 
+    /**
+     * Reads the maximum size of the database connection pool, accepting the legacy "pool-size" option.
+     *
+     * @param c the config
+     * @return the maximum pool size
+     */
+    private static int maximumPoolSize(ConfigurationAdapter c) {
+        return c.getInteger("data.pool-settings.maximum-pool-size", c.getInteger("data.pool-size", 10));
+    }
+
     /**
      * Check if the value at the given path should be censored in console/log output
      *
@@ -36,9 +36,10 @@ import okhttp3.ResponseBody;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 
 public class BytebinClient extends AbstractHttpClient {
 
@@ -86,8 +87,26 @@ public class BytebinClient extends AbstractHttpClient {
      * @throws IOException if an error occurs
      */
     public Content postContent(byte[] buf, MediaType contentType, String userAgentExtra) throws IOException, UnsuccessfulRequestException {
-        RequestBody body = RequestBody.create(contentType, buf);
+        return postContent(RequestBody.create(contentType, buf), userAgentExtra);
+    }
+
+    public Content postContent(byte[] buf, MediaType contentType) throws IOException, UnsuccessfulRequestException {
+        return postContent(buf, contentType, null);
+    }
 
+    /**
+     * POSTs GZIP compressed content to bytebin, streaming it from a file.
+     *
+     * @param file the file containing the compressed content
+     * @param contentType the type of the content
+     * @return the key of the resultant content
+     * @throws IOException if an error occurs
+     */
+    public Content postContent(Path file, MediaType contentType) throws IOException, UnsuccessfulRequestException {
+        return postContent(RequestBody.create(contentType, file.toFile()), null);
+    }
+
+    private Content postContent(RequestBody body, String userAgentExtra) throws IOException, UnsuccessfulRequestException {
         String userAgent = this.userAgent;
         if (userAgentExtra != null) {
             userAgent += "/" + userAgentExtra;
@@ -108,10 +127,6 @@ public class BytebinClient extends AbstractHttpClient {
         }
     }
 
-    public Content postContent(byte[] buf, MediaType contentType) throws IOException, UnsuccessfulRequestException {
-        return postContent(buf, contentType, null);
-    }
-
     /**
      * GETs json content from bytebin
      *
@@ -120,24 +135,35 @@ public class BytebinClient extends AbstractHttpClient {
      * @throws IOException if an error occurs
      */
     public JsonElement getJsonContent(String id) throws IOException, UnsuccessfulRequestException {
+        try (Reader reader = getContentReader(id)) {
+            return GsonProvider.normal().fromJson(reader, JsonElement.class);
+        }
+    }
+
+    /**
+     * GETs content from bytebin, as a reader over the response body.
+     *
+     * <p>The content is not buffered in memory, so the caller must close the
+     * reader to release the connection.</p>
+     *
+     * @param id the id of the content
+     * @return a reader for the content
+     * @throws IOException if an error occurs
+     */
+    public Reader getContentReader(String id) throws IOException, UnsuccessfulRequestException {
         Request request = new Request.Builder()
                 .header("User-Agent", this.userAgent)
                 .url(this.url + id)
                 .build();
 
-        try (Response response = makeHttpRequest(request)) {
-            try (ResponseBody responseBody = response.body()) {
-                if (responseBody == null) {
-                    throw new RuntimeException("No response");
-                }
-
-                try (InputStream inputStream = responseBody.byteStream()) {
-                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-                        return GsonProvider.normal().fromJson(reader, JsonElement.class);
-                    }
-                }
-            }
+        Response response = makeHttpRequest(request);
+        ResponseBody responseBody = response.body();
+        if (responseBody == null) {
+            response.close();
+            throw new RuntimeException("No response");
         }
+
+        return new BufferedReader(new InputStreamReader(responseBody.byteStream(), StandardCharsets.UTF_8));
     }
 
     public static final class Content {
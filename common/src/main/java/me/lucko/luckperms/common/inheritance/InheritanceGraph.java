@@ -25,22 +25,37 @@
 
 package me.lucko.luckperms.common.inheritance;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.google.common.annotations.VisibleForTesting;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.graph.Graph;
 import me.lucko.luckperms.common.graph.TraversalAlgorithm;
 import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.HolderType;
 import me.lucko.luckperms.common.model.PermissionHolder;
+import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.util.CaffeineFactory;
 import net.luckperms.api.node.types.InheritanceNode;
 import net.luckperms.api.query.QueryOptions;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A {@link Graph} which represents an "inheritance tree".
+ *
+ * <p>Successor lists of groups and complete traversal orders are memoized. The memoized
+ * results are only valid for the group generation the graph was created in - see
+ * {@link InheritanceGraphFactory}.</p>
  */
 public class InheritanceGraph implements Graph<PermissionHolder> {
     private final LuckPermsPlugin plugin;
@@ -50,13 +65,95 @@ public class InheritanceGraph implements Graph<PermissionHolder> {
      */
     private final QueryOptions queryOptions;
 
+    /**
+     * The group generation this graph was created in
+     */
+    private final long generation;
+
+    /**
+     * Memoized successors of groups
+     */
+    private final Map<Group, List<Group>> groupSuccessors = new ConcurrentHashMap<>();
+
+    /**
+     * Memoized traversals, weakly keyed by their start node
+     */
+    private final Cache<PermissionHolder, Traversal> traversals = CaffeineFactory.newBuilder()
+            .weakKeys()
+            .build();
+
+    /**
+     * Counts calls to {@link #invalidate(PermissionHolder)}, so traversals computed
+     * concurrently with an invalidation aren't memoized
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
     public InheritanceGraph(LuckPermsPlugin plugin, QueryOptions queryOptions) {
+        this(plugin, queryOptions, 0);
+    }
+
+    public InheritanceGraph(LuckPermsPlugin plugin, QueryOptions queryOptions, long generation) {
         this.plugin = plugin;
         this.queryOptions = queryOptions;
+        this.generation = generation;
+    }
+
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Discards any memoized data which depends on the inheritance or weight of the
+     * given holder.
+     *
+     * <p>For a user, this is only the traversal starting at the user. For a group, it
+     * also includes any traversal passing through the group, and any successor list
+     * the group is part of (as its weight affects the ordering).</p>
+     *
+     * @param holder the holder
+     */
+    public void invalidate(PermissionHolder holder) {
+        this.invalidations.incrementAndGet();
+        this.traversals.invalidate(holder);
+
+        if (holder.getType() == HolderType.GROUP) {
+            this.groupSuccessors.remove(holder);
+            this.groupSuccessors.values().removeIf(successors -> successors.contains(holder));
+            this.traversals.asMap().values().removeIf(traversal -> traversal.contains(holder));
+        }
+    }
+
+    /**
+     * Gets if a traversal starting at the given holder is currently memoized.
+     *
+     * @param holder the holder
+     * @return true if a traversal is memoized
+     */
+    @VisibleForTesting
+    boolean isMemoized(PermissionHolder holder) {
+        return this.traversals.getIfPresent(holder) != null;
     }
 
     @Override
     public Iterable<? extends PermissionHolder> successors(PermissionHolder holder) {
+        // the successors of users are only read once per traversal, and their ordering
+        // depends on the users primary group, so only memoize the successors of groups
+        if (holder.getType() != HolderType.GROUP) {
+            return resolveSuccessors(holder);
+        }
+
+        List<Group> successors = this.groupSuccessors.get(holder);
+        if (successors == null) {
+            long invalidations = this.invalidations.get();
+            successors = resolveSuccessors(holder);
+            if (this.invalidations.get() == invalidations) {
+                this.groupSuccessors.putIfAbsent((Group) holder, successors);
+            }
+        }
+        return successors;
+    }
+
+    private List<Group> resolveSuccessors(PermissionHolder holder) {
         Set<Group> successors = new LinkedHashSet<>();
         for (InheritanceNode n : holder.getOwnInheritanceNodes(this.queryOptions)) {
             Group g = this.plugin.getGroupManager().getIfLoaded(n.getGroupName());
@@ -67,7 +164,7 @@ public class InheritanceGraph implements Graph<PermissionHolder> {
 
         List<Group> successorsSorted = new ArrayList<>(successors);
         successorsSorted.sort(holder.getInheritanceComparator());
-        return successorsSorted;
+        return Collections.unmodifiableList(successorsSorted);
     }
 
     /**
@@ -81,20 +178,29 @@ public class InheritanceGraph implements Graph<PermissionHolder> {
      * @return an iterable
      */
     public Iterable<PermissionHolder> traverse(TraversalAlgorithm algorithm, boolean postTraversalSort, PermissionHolder startNode) {
-        Iterable<PermissionHolder> traversal = traverse(algorithm, startNode);
+        String primaryGroup = primaryGroup(startNode);
+
+        Traversal memoized = this.traversals.getIfPresent(startNode);
+        if (memoized != null && memoized.matches(algorithm, postTraversalSort, primaryGroup)) {
+            return memoized.toList(startNode);
+        }
+
+        long invalidations = this.invalidations.get();
+        List<PermissionHolder> resolvedTraversal = new ArrayList<>();
+        for (PermissionHolder node : traverse(algorithm, startNode)) {
+            resolvedTraversal.add(node);
+        }
 
         // perform post traversal sort if needed
         if (postTraversalSort) {
-            List<PermissionHolder> resolvedTraversal = new ArrayList<>();
-            for (PermissionHolder node : traversal) {
-                resolvedTraversal.add(node);
-            }
-
             resolvedTraversal.sort(startNode.getInheritanceComparator());
-            traversal = resolvedTraversal;
         }
 
-        return traversal;
+        Traversal traversal = new Traversal(algorithm, postTraversalSort, primaryGroup, resolvedTraversal, startNode);
+        if (this.invalidations.get() == invalidations) {
+            this.traversals.put(startNode, traversal);
+        }
+        return traversal.toList(startNode);
     }
 
     /**
@@ -111,4 +217,65 @@ public class InheritanceGraph implements Graph<PermissionHolder> {
         );
     }
 
+    private static String primaryGroup(PermissionHolder holder) {
+        if (holder.getType() == HolderType.USER) {
+            return ((User) holder).getPrimaryGroup().getStoredValue().orElse(null);
+        }
+        return null;
+    }
+
+    /**
+     * A memoized traversal.
+     *
+     * <p>The start node is not held strongly (it is the key of the weak cache), and is
+     * instead substituted back in when the traversal is read.</p>
+     */
+    private static final class Traversal {
+        private final TraversalAlgorithm algorithm;
+        private final boolean postTraversalSort;
+        private final String primaryGroup;
+        private final PermissionHolder[] nodes;
+        private final int startIndex;
+
+        Traversal(TraversalAlgorithm algorithm, boolean postTraversalSort, String primaryGroup, List<PermissionHolder> nodes, PermissionHolder startNode) {
+            this.algorithm = algorithm;
+            this.postTraversalSort = postTraversalSort;
+            this.primaryGroup = primaryGroup;
+            this.nodes = nodes.toArray(new PermissionHolder[0]);
+
+            int startIndex = -1;
+            for (int i = 0; i < this.nodes.length; i++) {
+                if (this.nodes[i] == startNode) {
+                    this.nodes[i] = null;
+                    startIndex = i;
+                    break;
+                }
+            }
+            this.startIndex = startIndex;
+        }
+
+        boolean matches(TraversalAlgorithm algorithm, boolean postTraversalSort, String primaryGroup) {
+            return this.algorithm == algorithm &&
+                    this.postTraversalSort == postTraversalSort &&
+                    Objects.equals(this.primaryGroup, primaryGroup);
+        }
+
+        boolean contains(PermissionHolder holder) {
+            for (PermissionHolder node : this.nodes) {
+                if (node == holder) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        List<PermissionHolder> toList(PermissionHolder startNode) {
+            PermissionHolder[] nodes = this.nodes.clone();
+            if (this.startIndex != -1) {
+                nodes[this.startIndex] = startNode;
+            }
+            return Collections.unmodifiableList(Arrays.asList(nodes));
+        }
+    }
+
 }
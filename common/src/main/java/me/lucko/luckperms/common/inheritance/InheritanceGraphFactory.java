@@ -25,32 +25,80 @@
 
 package me.lucko.luckperms.common.inheritance;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import me.lucko.luckperms.common.model.PermissionHolder;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
-import me.lucko.luckperms.common.query.QueryOptionsImpl;
+import me.lucko.luckperms.common.util.CaffeineFactory;
 import net.luckperms.api.query.QueryOptions;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Provides {@link InheritanceGraph}s.
+ *
+ * <p>Graphs are cached per {@link QueryOptions}. Each graph memoizes the results it
+ * computes, so is tagged with the group generation it was created in. The generation
+ * is bumped (and all cached graphs discarded) whenever the set of loaded groups changes,
+ * or the configuration is reloaded. Changes to the inheritance or weight nodes of a
+ * holder only discard the memoized data which includes that holder.</p>
  */
 public class InheritanceGraphFactory {
     private final LuckPermsPlugin plugin;
 
-    private final InheritanceGraph nonContextualGraph;
-    private final InheritanceGraph defaultContextualGraph;
+    /**
+     * The current group generation
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Cached graphs
+     */
+    private final Cache<QueryOptions, InheritanceGraph> graphs = CaffeineFactory.newBuilder()
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build();
 
     public InheritanceGraphFactory(LuckPermsPlugin plugin) {
         this.plugin = plugin;
-        this.nonContextualGraph = new InheritanceGraph(plugin, QueryOptionsImpl.DEFAULT_NON_CONTEXTUAL);
-        this.defaultContextualGraph = new InheritanceGraph(plugin, QueryOptionsImpl.DEFAULT_CONTEXTUAL);
     }
 
     public InheritanceGraph getGraph(QueryOptions queryOptions) {
-        if (queryOptions == QueryOptionsImpl.DEFAULT_NON_CONTEXTUAL) {
-            return this.nonContextualGraph;
-        } else if (queryOptions == QueryOptionsImpl.DEFAULT_CONTEXTUAL) {
-            return this.defaultContextualGraph;
-        } else {
-            return new InheritanceGraph(this.plugin, queryOptions);
+        long generation = this.generation.get();
+
+        InheritanceGraph graph = this.graphs.get(queryOptions, q -> new InheritanceGraph(this.plugin, q, generation));
+        if (graph.getGeneration() != generation) {
+            // created before the last invalidation - replace
+            graph = new InheritanceGraph(this.plugin, queryOptions, generation);
+            this.graphs.put(queryOptions, graph);
+        }
+        return graph;
+    }
+
+    /**
+     * Gets the current group generation.
+     *
+     * @return the generation
+     */
+    public long getGeneration() {
+        return this.generation.get();
+    }
+
+    /**
+     * Bumps the group generation, discarding all cached graphs.
+     */
+    public void invalidate() {
+        this.generation.incrementAndGet();
+        this.graphs.invalidateAll();
+    }
+
+    /**
+     * Discards memoized data which depends on the inheritance or weight of the given holder.
+     *
+     * @param holder the holder
+     */
+    public void invalidate(PermissionHolder holder) {
+        for (InheritanceGraph graph : this.graphs.asMap().values()) {
+            graph.invalidate(holder);
         }
     }
 
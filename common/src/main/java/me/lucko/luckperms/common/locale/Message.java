@@ -1635,6 +1635,28 @@ public interface Message {
                                     .append(text(size, GREEN))
                             ));
                         }
+
+                        if (storageMeta.pendingSaves() != null) {
+                            builder.append(newline());
+                            builder.append(prefixed(text()
+                                    .color(DARK_AQUA)
+                                    .append(text("     "))
+                                    .append(translatable("luckperms.command.info.storage.meta.pending-saves-key"))
+                                    .append(text(": "))
+                                    .append(text(storageMeta.pendingSaves(), GREEN))
+                            ));
+                        }
+
+                        if (storageMeta.flushLatency() != null) {
+                            builder.append(newline());
+                            builder.append(prefixed(text()
+                                    .color(DARK_AQUA)
+                                    .append(text("     "))
+                                    .append(translatable("luckperms.command.info.storage.meta.flush-latency-key"))
+                                    .append(text(": "))
+                                    .append(text(storageMeta.flushLatency() + "ms", GREEN))
+                            ));
+                        }
                     })),
             prefixed(text()
                     .color(AQUA)
@@ -4102,20 +4124,6 @@ public interface Message {
             .append(FULL_STOP)
     );
 
-    Args1<String> IMPORT_UNABLE_TO_READ = code -> prefixed(text()
-            // "&cUnable to read data using the given code. &7({})"
-            .color(RED)
-            .append(translatable("luckperms.command.import.web.unable-to-read"))
-            .append(FULL_STOP)
-            .append(space())
-            .append(text()
-                    .color(GRAY)
-                    .append(OPEN_BRACKET)
-                    .append(text(code))
-                    .append(CLOSE_BRACKET)
-            )
-    );
-
     Args3<Integer, Integer, Integer> IMPORT_PROGRESS = (percent, processed, total) -> prefixed(text()
             // "&b(Import) &b-> &f{}&f% complete &7- &b{}&f/&b{} &foperations complete."
             .append(text()
@@ -0,0 +1,214 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.messaging;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import me.lucko.luckperms.common.messaging.message.AbstractMessage;
+import me.lucko.luckperms.common.model.PermissionHolder;
+import me.lucko.luckperms.common.node.utils.NodeJsonSerializer;
+import me.lucko.luckperms.common.util.Difference;
+import net.luckperms.api.context.Context;
+import net.luckperms.api.node.Node;
+
+import java.time.Instant;
+
+/**
+ * The changes made to the nodes of a holder, sent to other servers so they can
+ * be applied without reloading the holder from storage.
+ *
+ * <p>Each delta carries a version: an order-independent hash of the holders
+ * nodes once the changes have been applied. A receiving server uses it to
+ * check that its own copy of the holder is in the state the changes were made
+ * against, and reloads the holder from storage if it isn't.</p>
+ */
+public final class HolderDelta {
+
+    /** The maximum number of changes to send, larger deltas are replaced by a targeted update */
+    public static final int MAX_CHANGES = 100;
+
+    /** The maximum encoded length of a delta, larger deltas are replaced by a targeted update */
+    public static final int MAX_ENCODED_LENGTH = AbstractMessage.MAX_ENCODED_LENGTH / 4;
+
+    /**
+     * Captures the changes made to a holder since the last delta was captured for it.
+     *
+     * @param holder the holder
+     * @return the delta
+     */
+    public static HolderDelta capture(PermissionHolder holder) {
+        return new HolderDelta(holder.normalData().exportUnsentChanges(), version(holder));
+    }
+
+    /**
+     * Calculates the version of a holders current nodes.
+     *
+     * @param holder the holder
+     * @return the version
+     */
+    public static long version(PermissionHolder holder) {
+        long version = 0;
+        for (Node node : holder.normalData().asList()) {
+            version += hash(node);
+        }
+        return version;
+    }
+
+    // must be consistent between servers, so can't rely on Node#hashCode
+    private static long hash(Node node) {
+        long hash = node.getKey().hashCode();
+        hash = hash * 31 + (node.getValue() ? 1 : 0);
+
+        Instant expiry = node.getExpiry();
+        hash = hash * 31 + (expiry == null ? 0 : expiry.getEpochSecond());
+
+        int contexts = 0;
+        for (Context context : node.getContexts()) {
+            contexts += context.getKey().hashCode() * 31 + context.getValue().hashCode();
+        }
+        hash = hash * 31 + contexts;
+
+        // spread the bits, so that summing hashes of similar nodes doesn't cancel out
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    public static HolderDelta deserialize(JsonElement element) {
+        JsonObject object = element.getAsJsonObject();
+
+        Difference<Node> changes = new Difference<>();
+        changes.recordChanges(Difference.ChangeType.ADD, NodeJsonSerializer.deserializeNodes(object.getAsJsonArray("added")));
+        changes.recordChanges(Difference.ChangeType.REMOVE, NodeJsonSerializer.deserializeNodes(object.getAsJsonArray("removed")));
+
+        return new HolderDelta(changes, object.get("version").getAsLong());
+    }
+
+    private final Difference<Node> changes;
+    private final long version;
+
+    // lazily calculated
+    private int encodedLength = -1;
+
+    HolderDelta(Difference<Node> changes, long version) {
+        this.changes = changes;
+        this.version = version;
+    }
+
+    public Difference<Node> getChanges() {
+        return this.changes;
+    }
+
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Gets the version of the holder before the changes were applied.
+     *
+     * @return the previous version
+     */
+    public long getPreviousVersion() {
+        long version = this.version;
+        for (Difference.Change<Node> change : this.changes.getChanges()) {
+            if (change.type() == Difference.ChangeType.ADD) {
+                version -= hash(change.value());
+            } else {
+                version += hash(change.value());
+            }
+        }
+        return version;
+    }
+
+    public int size() {
+        return this.changes.getChanges().size();
+    }
+
+    /**
+     * Gets the length of the delta once serialized and encoded.
+     *
+     * @return the encoded length
+     */
+    public int encodedLength() {
+        if (this.encodedLength == -1) {
+            this.encodedLength = serialize().toString().length();
+        }
+        return this.encodedLength;
+    }
+
+    /**
+     * Gets if the delta is too large to be sent, and should be replaced by
+     * a targeted update.
+     *
+     * @return true if the delta is too large
+     */
+    public boolean isTooLarge() {
+        return size() > MAX_CHANGES || encodedLength() > MAX_ENCODED_LENGTH;
+    }
+
+    /**
+     * Combines this delta with one captured after it.
+     *
+     * @param next the later delta
+     * @return the combined delta
+     */
+    public HolderDelta merge(HolderDelta next) {
+        Difference<Node> changes = new Difference<Node>().mergeFrom(this.changes).mergeFrom(next.changes);
+        return new HolderDelta(changes, next.version);
+    }
+
+    /**
+     * Applies the changes to the given holder, if its current nodes match the
+     * version the changes were made against.
+     *
+     * @param holder the holder
+     * @return true if the holder is now up to date, false if it is out of sync
+     *         and needs to be reloaded from storage
+     */
+    public boolean applyTo(PermissionHolder holder) {
+        long current = version(holder);
+        if (current == this.version) {
+            return true;
+        }
+        if (current != getPreviousVersion()) {
+            return false;
+        }
+
+        holder.loadNodeChangesFromNetwork(this.changes);
+        return version(holder) == this.version;
+    }
+
+    public JsonObject serialize() {
+        JsonObject object = new JsonObject();
+        object.addProperty("version", this.version);
+        object.add("added", NodeJsonSerializer.serializeNodes(this.changes.getAdded()));
+        object.add("removed", NodeJsonSerializer.serializeNodes(this.changes.getRemoved()));
+        return object;
+    }
+}
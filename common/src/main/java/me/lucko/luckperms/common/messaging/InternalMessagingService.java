@@ -26,10 +26,15 @@
 package me.lucko.luckperms.common.messaging;
 
 import me.lucko.luckperms.common.cache.BufferedRequest;
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.Track;
 import me.lucko.luckperms.common.model.User;
 import net.luckperms.api.actionlog.Action;
 import net.luckperms.api.messenger.Messenger;
 import net.luckperms.api.messenger.MessengerProvider;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.concurrent.CompletableFuture;
 
 public interface InternalMessagingService {
 
@@ -69,6 +74,42 @@ public interface InternalMessagingService {
      */
     void pushUserUpdate(User user);
 
+    /**
+     * Queues an update for a specific group.
+     *
+     * <p>Queued updates are buffered, and sent together in a single message
+     * which only asks other servers to reload the groups that changed. If a
+     * delta is given and enabled in the config, the changes are sent instead.</p>
+     *
+     * @param group the group
+     * @param delta the changes made to the group, or null if unknown
+     * @return a future which completes when the update has been sent
+     */
+    CompletableFuture<Void> queueGroupUpdate(Group group, @Nullable HolderDelta delta);
+
+    default CompletableFuture<Void> queueGroupUpdate(Group group) {
+        return queueGroupUpdate(group, null);
+    }
+
+    /**
+     * Queues an update for a specific track.
+     *
+     * @param track the track
+     * @return a future which completes when the update has been sent
+     * @see #queueGroupUpdate(Group, HolderDelta)
+     */
+    CompletableFuture<Void> queueTrackUpdate(Track track);
+
+    /**
+     * Queues an update for a specific user.
+     *
+     * @param user the user
+     * @param delta the changes made to the user, or null if unknown
+     * @return a future which completes when the update has been sent
+     * @see #queueGroupUpdate(Group, HolderDelta)
+     */
+    CompletableFuture<Void> queueUserUpdate(User user, @Nullable HolderDelta delta);
+
     /**
      * Pushes a log entry to connected servers.
      *
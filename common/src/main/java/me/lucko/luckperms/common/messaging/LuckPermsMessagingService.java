@@ -25,17 +25,31 @@
 
 package me.lucko.luckperms.common.messaging;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.google.common.collect.Iterables;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import me.lucko.luckperms.common.actionlog.LoggedAction;
 import me.lucko.luckperms.common.cache.BufferedRequest;
 import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.messaging.message.AbstractMessage;
 import me.lucko.luckperms.common.messaging.message.ActionLogMessageImpl;
+import me.lucko.luckperms.common.messaging.message.BatchMessageImpl;
 import me.lucko.luckperms.common.messaging.message.CustomMessageImpl;
+import me.lucko.luckperms.common.messaging.message.DeltaUpdateMessageImpl;
+import me.lucko.luckperms.common.messaging.message.GroupUpdateMessageImpl;
+import me.lucko.luckperms.common.messaging.message.TargetedUpdateMessage;
+import me.lucko.luckperms.common.messaging.message.TrackUpdateMessageImpl;
 import me.lucko.luckperms.common.messaging.message.UpdateMessageImpl;
 import me.lucko.luckperms.common.messaging.message.UserUpdateMessageImpl;
+import me.lucko.luckperms.common.messaging.message.UsersUpdateMessageImpl;
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.HolderType;
+import me.lucko.luckperms.common.model.PermissionHolderIdentifier;
+import me.lucko.luckperms.common.model.Track;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.util.CaffeineFactory;
 import me.lucko.luckperms.common.util.ExpiringSet;
 import me.lucko.luckperms.common.util.gson.GsonProvider;
 import me.lucko.luckperms.common.util.gson.JObject;
@@ -52,14 +66,39 @@ import net.luckperms.api.messenger.message.type.UserUpdateMessage;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 public class LuckPermsMessagingService implements InternalMessagingService, IncomingMessageConsumer {
     private final LuckPermsPlugin plugin;
     private final ExpiringSet<UUID> receivedMessages;
     private final PushUpdateBuffer updateBuffer;
+    private final @Nullable OutgoingMessageBatcher batcher;
+
+    // groups, tracks and users waiting to be included in the next targeted update
+    private final Set<String> pendingGroupUpdates = ConcurrentHashMap.newKeySet();
+    private final Set<String> pendingTrackUpdates = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> pendingUserUpdates = ConcurrentHashMap.newKeySet();
+    private final Map<String, HolderDelta> pendingGroupDeltas = new ConcurrentHashMap<>();
+    private final Map<UUID, HolderDelta> pendingUserDeltas = new ConcurrentHashMap<>();
+    private final PushTargetedUpdateBuffer targetedUpdateBuffer;
+
+    // when groups, tracks and users were last reloaded following a targeted update
+    private final ReloadTimes<String> groupReloadTimes = new ReloadTimes<>();
+    private final ReloadTimes<String> trackReloadTimes = new ReloadTimes<>();
+    private final ReloadTimes<UUID> userReloadTimes = new ReloadTimes<>();
 
     private final MessengerProvider messengerProvider;
     private final Messenger messenger;
@@ -73,6 +112,10 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
 
         this.receivedMessages = new ExpiringSet<>(5, TimeUnit.MINUTES);
         this.updateBuffer = new PushUpdateBuffer(plugin);
+        this.batcher = plugin.getConfiguration().get(ConfigKeys.PUSH_BATCHED_MESSAGES)
+                ? new OutgoingMessageBatcher(this.messenger, plugin.getBootstrap().getScheduler(), this::generatePingId)
+                : null;
+        this.targetedUpdateBuffer = new PushTargetedUpdateBuffer(plugin);
     }
 
     @Override
@@ -92,6 +135,9 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
 
     @Override
     public void close() {
+        if (this.batcher != null) {
+            this.batcher.flush();
+        }
         this.messenger.close();
     }
 
@@ -100,6 +146,14 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
         return this.updateBuffer;
     }
 
+    private void sendOutgoingMessage(AbstractMessage message) {
+        if (this.batcher != null) {
+            this.batcher.send(message);
+        } else {
+            this.messenger.sendOutgoingMessage(message);
+        }
+    }
+
     private UUID generatePingId() {
         UUID uuid = UUID.randomUUID();
         this.receivedMessages.add(uuid);
@@ -108,20 +162,156 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
 
     @Override
     public void pushUpdate() {
-        this.plugin.getBootstrap().getScheduler().executeAsync(() -> {
+        // a full update supersedes any targeted updates which haven't been sent yet
+        this.pendingGroupUpdates.clear();
+        this.pendingTrackUpdates.clear();
+        this.pendingUserUpdates.clear();
+        this.pendingGroupDeltas.clear();
+        this.pendingUserDeltas.clear();
+
+        this.plugin.getStorage().flushPendingSaves().whenCompleteAsync((v, ex) -> {
             UUID requestId = generatePingId();
             this.plugin.getLogger().info("[Messaging] Sending ping with id: " + requestId);
-            this.messenger.sendOutgoingMessage(new UpdateMessageImpl(requestId));
-        });
+            sendOutgoingMessage(new UpdateMessageImpl(requestId));
+        }, this.plugin.getBootstrap().getScheduler().async());
     }
 
     @Override
     public void pushUserUpdate(User user) {
-        this.plugin.getBootstrap().getScheduler().executeAsync(() -> {
+        this.plugin.getStorage().flushPendingSaves(Collections.singleton(user.getIdentifier())).whenCompleteAsync((v, ex) -> {
             UUID requestId = generatePingId();
             this.plugin.getLogger().info("[Messaging] Sending user ping for '" + user.getPlainDisplayName() + "' with id: " + requestId);
-            this.messenger.sendOutgoingMessage(new UserUpdateMessageImpl(requestId, user.getUniqueId()));
-        });
+            sendOutgoingMessage(new UserUpdateMessageImpl(requestId, user.getUniqueId()));
+        }, this.plugin.getBootstrap().getScheduler().async());
+    }
+
+    @Override
+    public CompletableFuture<Void> queueGroupUpdate(Group group, @Nullable HolderDelta delta) {
+        if (!this.plugin.getConfiguration().get(ConfigKeys.PUSH_TARGETED_UPDATES)) {
+            return this.updateBuffer.request();
+        }
+
+        queue(this.pendingGroupUpdates, this.pendingGroupDeltas, group.getName(), delta);
+        return this.targetedUpdateBuffer.request();
+    }
+
+    @Override
+    public CompletableFuture<Void> queueTrackUpdate(Track track) {
+        if (!this.plugin.getConfiguration().get(ConfigKeys.PUSH_TARGETED_UPDATES)) {
+            return this.updateBuffer.request();
+        }
+
+        this.pendingTrackUpdates.add(track.getName());
+        return this.targetedUpdateBuffer.request();
+    }
+
+    @Override
+    public CompletableFuture<Void> queueUserUpdate(User user, @Nullable HolderDelta delta) {
+        if (!this.plugin.getConfiguration().get(ConfigKeys.PUSH_TARGETED_UPDATES)) {
+            pushUserUpdate(user);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        queue(this.pendingUserUpdates, this.pendingUserDeltas, user.getUniqueId(), delta);
+        return this.targetedUpdateBuffer.request();
+    }
+
+    private <I> void queue(Set<I> pendingUpdates, Map<I, HolderDelta> pendingDeltas, I id, @Nullable HolderDelta delta) {
+        if (delta != null && this.plugin.getConfiguration().get(ConfigKeys.PUSH_UPDATE_DELTAS)) {
+            pendingDeltas.merge(id, delta, HolderDelta::merge);
+        } else {
+            pendingUpdates.add(id);
+        }
+    }
+
+    private void pushTargetedUpdates() {
+        Set<String> groups = drain(this.pendingGroupUpdates);
+        Set<String> tracks = drain(this.pendingTrackUpdates);
+        Set<UUID> users = drain(this.pendingUserUpdates);
+        Map<String, HolderDelta> groupDeltas = drain(this.pendingGroupDeltas, groups);
+        Map<UUID, HolderDelta> userDeltas = drain(this.pendingUserDeltas, users);
+        if (groups.isEmpty() && tracks.isEmpty() && users.isEmpty() && groupDeltas.isEmpty() && userDeltas.isEmpty()) {
+            return;
+        }
+
+        // only the saves of the holders being sent need to be waited for
+        List<PermissionHolderIdentifier> holders = new ArrayList<>();
+        for (String group : Iterables.concat(groups, groupDeltas.keySet())) {
+            holders.add(new PermissionHolderIdentifier(HolderType.GROUP, group));
+        }
+        for (UUID user : Iterables.concat(users, userDeltas.keySet())) {
+            holders.add(new PermissionHolderIdentifier(HolderType.USER, user.toString()));
+        }
+
+        this.plugin.getStorage().flushPendingSaves(holders).whenCompleteAsync((v, ex) -> {
+            // all changes are in storage by this point, receivers can ignore the
+            // message if they have since reloaded the same data
+            long timestamp = System.currentTimeMillis();
+
+            for (List<String> part : TargetedUpdateMessage.partition(groups)) {
+                UUID requestId = generatePingId();
+                this.plugin.getLogger().info("[Messaging] Sending group update ping for " + part + " with id: " + requestId);
+                sendOutgoingMessage(new GroupUpdateMessageImpl(requestId, part, timestamp));
+            }
+
+            for (List<String> part : TargetedUpdateMessage.partition(tracks)) {
+                UUID requestId = generatePingId();
+                this.plugin.getLogger().info("[Messaging] Sending track update ping for " + part + " with id: " + requestId);
+                sendOutgoingMessage(new TrackUpdateMessageImpl(requestId, part, timestamp));
+            }
+
+            if (users.size() == 1) {
+                // understood by every version, so prefer it when possible
+                UUID requestId = generatePingId();
+                UUID uniqueId = users.iterator().next();
+                this.plugin.getLogger().info("[Messaging] Sending user ping for '" + uniqueId + "' with id: " + requestId);
+                sendOutgoingMessage(new UserUpdateMessageImpl(requestId, uniqueId));
+            } else if (!users.isEmpty()) {
+                for (List<UUID> part : TargetedUpdateMessage.partition(users)) {
+                    UUID requestId = generatePingId();
+                    this.plugin.getLogger().info("[Messaging] Sending user update ping for " + part.size() + " users with id: " + requestId);
+                    sendOutgoingMessage(new UsersUpdateMessageImpl(requestId, part, timestamp));
+                }
+            }
+
+            if (!groupDeltas.isEmpty() || !userDeltas.isEmpty()) {
+                DeltaUpdateMessageImpl message = new DeltaUpdateMessageImpl(generatePingId(), groupDeltas, userDeltas);
+                for (DeltaUpdateMessageImpl part : message.split(this::generatePingId)) {
+                    this.plugin.getLogger().info("[Messaging] Sending delta update for " + part.getGroups().size() + " groups and " + part.getUsers().size() + " users with id: " + part.getId());
+                    sendOutgoingMessage(part);
+                }
+            }
+        }, this.plugin.getBootstrap().getScheduler().async());
+    }
+
+    private static <T> Set<T> drain(Set<T> pending) {
+        Set<T> drained = new LinkedHashSet<>();
+        for (Iterator<T> it = pending.iterator(); it.hasNext(); ) {
+            drained.add(it.next());
+            it.remove();
+        }
+        return drained;
+    }
+
+    private static <I> Map<I, HolderDelta> drain(Map<I, HolderDelta> pending, Set<I> targeted) {
+        Map<I, HolderDelta> drained = new LinkedHashMap<>();
+        for (I id : new ArrayList<>(pending.keySet())) {
+            HolderDelta delta = pending.remove(id);
+
+            // a targeted update for the same holder makes the delta redundant
+            if (delta == null || targeted.contains(id)) {
+                continue;
+            }
+
+            // the holder was saved without any net changes, or with too many to send - other
+            // servers may still be out of sync, so tell them to reload it instead
+            if (delta.size() == 0 || delta.isTooLarge()) {
+                targeted.add(id);
+            } else {
+                drained.put(id, delta);
+            }
+        }
+        return drained;
     }
 
     @Override
@@ -134,7 +324,7 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
             }
 
             this.plugin.getLogger().info("[Messaging] Sending log with id: " + requestId);
-            this.messenger.sendOutgoingMessage(new ActionLogMessageImpl(requestId, logEntry));
+            sendOutgoingMessage(new ActionLogMessageImpl(requestId, logEntry));
         });
     }
 
@@ -142,7 +332,7 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
     public void pushCustomPayload(String channelId, String payload) {
         this.plugin.getBootstrap().getScheduler().executeAsync(() -> {
             UUID requestId = generatePingId();
-            this.messenger.sendOutgoingMessage(new CustomMessageImpl(requestId, channelId, payload));
+            sendOutgoingMessage(new CustomMessageImpl(requestId, channelId, payload));
         });
     }
 
@@ -157,6 +347,11 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
         // determine if the message can be handled by us
         boolean valid = message instanceof UpdateMessage ||
                 message instanceof UserUpdateMessage ||
+                message instanceof GroupUpdateMessageImpl ||
+                message instanceof TrackUpdateMessageImpl ||
+                message instanceof UsersUpdateMessageImpl ||
+                message instanceof DeltaUpdateMessageImpl ||
+                message instanceof BatchMessageImpl ||
                 message instanceof ActionLogMessage ||
                 message instanceof CustomMessage;
 
@@ -184,12 +379,14 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
     private boolean consumeIncomingMessageAsString0(@NonNull String encodedString) {
         Objects.requireNonNull(encodedString, "encodedString");
         JsonObject parsed = Objects.requireNonNull(GsonProvider.normal().fromJson(encodedString, JsonObject.class), "parsed");
-        JsonObject json = parsed.getAsJsonObject();
+        return consumeIncomingMessageJson(parsed.getAsJsonObject());
+    }
 
+    private boolean consumeIncomingMessageJson(JsonObject json) {
         // extract id
         JsonElement idElement = json.get("id");
         if (idElement == null) {
-            throw new IllegalStateException("Incoming message has no id argument: " + encodedString);
+            throw new IllegalStateException("Incoming message has no id argument: " + json);
         }
         UUID id = UUID.fromString(idElement.getAsString());
 
@@ -201,7 +398,7 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
         // extract type
         JsonElement typeElement = json.get("type");
         if (typeElement == null) {
-            throw new IllegalStateException("Incoming message has no type argument: " + encodedString);
+            throw new IllegalStateException("Incoming message has no type argument: " + json);
         }
         String type = typeElement.getAsString();
 
@@ -217,6 +414,21 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
             case UserUpdateMessageImpl.TYPE:
                 decoded = UserUpdateMessageImpl.decode(content, id);
                 break;
+            case GroupUpdateMessageImpl.TYPE:
+                decoded = GroupUpdateMessageImpl.decode(content, id);
+                break;
+            case TrackUpdateMessageImpl.TYPE:
+                decoded = TrackUpdateMessageImpl.decode(content, id);
+                break;
+            case UsersUpdateMessageImpl.TYPE:
+                decoded = UsersUpdateMessageImpl.decode(content, id);
+                break;
+            case DeltaUpdateMessageImpl.TYPE:
+                decoded = DeltaUpdateMessageImpl.decode(content, id);
+                break;
+            case BatchMessageImpl.TYPE:
+                decoded = BatchMessageImpl.decode(content, id);
+                break;
             case ActionLogMessageImpl.TYPE:
                 decoded = ActionLogMessageImpl.decode(content, id);
                 break;
@@ -279,6 +491,173 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
             this.plugin.getStorage().loadUser(user.getUniqueId(), null)
                     .thenRunAsync(() -> this.plugin.getEventDispatcher().dispatchNetworkPostSync(msgId, SyncType.SPECIFIC_USER, true, userUniqueId));
             
+        } else if (message instanceof GroupUpdateMessageImpl) {
+            GroupUpdateMessageImpl msg = (GroupUpdateMessageImpl) message;
+            UUID msgId = msg.getId();
+
+            if (this.plugin.getEventDispatcher().dispatchNetworkPreSync(false, msgId, SyncType.FULL, null)) {
+                return;
+            }
+
+            Set<String> groups = this.groupReloadTimes.markReloading(msg.getTargets(), msg.getTimestamp());
+            if (groups.isEmpty()) {
+                this.plugin.getEventDispatcher().dispatchNetworkPostSync(msgId, SyncType.FULL, false, null);
+                return;
+            }
+
+            this.plugin.getLogger().info("[Messaging] Received group update ping for " + groups + " with id: " + msgId);
+            CompletableFuture<?>[] loads = groups.stream()
+                    .map(name -> this.plugin.getStorage().loadGroup(name).thenAccept(group -> {
+                        if (!group.isPresent()) {
+                            this.plugin.getGroupManager().unload(name);
+                        }
+                    }))
+                    .toArray(CompletableFuture[]::new);
+
+            CompletableFuture.allOf(loads).thenRunAsync(() -> {
+                this.plugin.performPlatformDataSync();
+
+                // reloaded groups apply changes to their dependents' caches themselves when
+                // incremental updates are enabled, but a deleted group is simply unloaded
+                if (!this.plugin.getConfiguration().get(ConfigKeys.INCREMENTAL_CACHE_UPDATES) || groups.stream().anyMatch(name -> !this.plugin.getGroupManager().isLoaded(name))) {
+                    this.plugin.getGroupManager().invalidateAllGroupCaches();
+                    this.plugin.getUserManager().invalidateAllUserCaches();
+                }
+
+                this.plugin.getEventDispatcher().dispatchNetworkPostSync(msgId, SyncType.FULL, true, null);
+            });
+
+        } else if (message instanceof TrackUpdateMessageImpl) {
+            TrackUpdateMessageImpl msg = (TrackUpdateMessageImpl) message;
+            UUID msgId = msg.getId();
+
+            if (this.plugin.getEventDispatcher().dispatchNetworkPreSync(false, msgId, SyncType.FULL, null)) {
+                return;
+            }
+
+            Set<String> tracks = this.trackReloadTimes.markReloading(msg.getTargets(), msg.getTimestamp());
+            if (tracks.isEmpty()) {
+                this.plugin.getEventDispatcher().dispatchNetworkPostSync(msgId, SyncType.FULL, false, null);
+                return;
+            }
+
+            this.plugin.getLogger().info("[Messaging] Received track update ping for " + tracks + " with id: " + msgId);
+            CompletableFuture<?>[] loads = tracks.stream()
+                    .map(name -> this.plugin.getStorage().loadTrack(name).thenAccept(track -> {
+                        if (!track.isPresent()) {
+                            this.plugin.getTrackManager().unload(name);
+                        }
+                    }))
+                    .toArray(CompletableFuture[]::new);
+
+            CompletableFuture.allOf(loads)
+                    .thenRunAsync(() -> this.plugin.getEventDispatcher().dispatchNetworkPostSync(msgId, SyncType.FULL, true, null));
+
+        } else if (message instanceof UsersUpdateMessageImpl) {
+            UsersUpdateMessageImpl msg = (UsersUpdateMessageImpl) message;
+            UUID msgId = msg.getId();
+
+            // only users which are loaded on this server need to be reloaded
+            Set<UUID> loaded = new LinkedHashSet<>();
+            for (UUID userUniqueId : msg.getTargets()) {
+                if (this.plugin.getEventDispatcher().dispatchNetworkPreSync(false, msgId, SyncType.SPECIFIC_USER, userUniqueId)) {
+                    continue;
+                }
+
+                if (this.plugin.getUserManager().isLoaded(userUniqueId)) {
+                    loaded.add(userUniqueId);
+                } else {
+                    this.plugin.getEventDispatcher().dispatchNetworkPostSync(msgId, SyncType.SPECIFIC_USER, false, userUniqueId);
+                }
+            }
+
+            Set<UUID> users = this.userReloadTimes.markReloading(loaded, msg.getTimestamp());
+            for (UUID userUniqueId : loaded) {
+                if (!users.contains(userUniqueId)) {
+                    this.plugin.getEventDispatcher().dispatchNetworkPostSync(msgId, SyncType.SPECIFIC_USER, false, userUniqueId);
+                }
+            }
+            if (users.isEmpty()) {
+                return;
+            }
+
+            this.plugin.getLogger().info("[Messaging] Received user update ping for " + users.size() + " users with id: " + msgId);
+            this.plugin.getStorage().loadUsers(users).thenRunAsync(() -> {
+                for (UUID userUniqueId : users) {
+                    this.plugin.getEventDispatcher().dispatchNetworkPostSync(msgId, SyncType.SPECIFIC_USER, true, userUniqueId);
+                }
+            });
+
+        } else if (message instanceof DeltaUpdateMessageImpl) {
+            DeltaUpdateMessageImpl msg = (DeltaUpdateMessageImpl) message;
+            UUID msgId = msg.getId();
+
+            this.plugin.getLogger().info("[Messaging] Received delta update for " + msg.getGroups().size() + " groups and " + msg.getUsers().size() + " users with id: " + msgId);
+
+            if (!msg.getGroups().isEmpty() && !this.plugin.getEventDispatcher().dispatchNetworkPreSync(false, msgId, SyncType.FULL, null)) {
+                // groups which are out of sync are reloaded from storage instead
+                List<CompletableFuture<?>> reloads = new ArrayList<>();
+                for (Map.Entry<String, HolderDelta> entry : msg.getGroups().entrySet()) {
+                    String name = entry.getKey();
+                    Group group = this.plugin.getGroupManager().getIfLoaded(name);
+                    if (group == null || !entry.getValue().applyTo(group)) {
+                        reloads.add(this.plugin.getStorage().loadGroup(name).thenAccept(loaded -> {
+                            if (!loaded.isPresent()) {
+                                this.plugin.getGroupManager().unload(name);
+                            }
+                        }));
+                    }
+                }
+
+                CompletableFuture.allOf(reloads.toArray(new CompletableFuture[0])).thenRunAsync(() -> {
+                    this.plugin.performPlatformDataSync();
+
+                    if (!this.plugin.getConfiguration().get(ConfigKeys.INCREMENTAL_CACHE_UPDATES) || msg.getGroups().keySet().stream().anyMatch(name -> !this.plugin.getGroupManager().isLoaded(name))) {
+                        this.plugin.getGroupManager().invalidateAllGroupCaches();
+                        this.plugin.getUserManager().invalidateAllUserCaches();
+                    }
+
+                    this.plugin.getEventDispatcher().dispatchNetworkPostSync(msgId, SyncType.FULL, true, null);
+                });
+            }
+
+            Set<UUID> outOfSync = new LinkedHashSet<>();
+            for (Map.Entry<UUID, HolderDelta> entry : msg.getUsers().entrySet()) {
+                UUID userUniqueId = entry.getKey();
+                if (this.plugin.getEventDispatcher().dispatchNetworkPreSync(false, msgId, SyncType.SPECIFIC_USER, userUniqueId)) {
+                    continue;
+                }
+
+                User user = this.plugin.getUserManager().getIfLoaded(userUniqueId);
+                if (user == null) {
+                    this.plugin.getEventDispatcher().dispatchNetworkPostSync(msgId, SyncType.SPECIFIC_USER, false, userUniqueId);
+                } else if (entry.getValue().applyTo(user)) {
+                    this.plugin.getEventDispatcher().dispatchNetworkPostSync(msgId, SyncType.SPECIFIC_USER, true, userUniqueId);
+                } else {
+                    outOfSync.add(userUniqueId);
+                }
+            }
+
+            if (!outOfSync.isEmpty()) {
+                this.plugin.getLogger().info("[Messaging] Reloading " + outOfSync.size() + " out of sync users from storage for delta update with id: " + msgId);
+                this.plugin.getStorage().loadUsers(outOfSync).thenRunAsync(() -> {
+                    for (UUID userUniqueId : outOfSync) {
+                        this.plugin.getEventDispatcher().dispatchNetworkPostSync(msgId, SyncType.SPECIFIC_USER, true, userUniqueId);
+                    }
+                });
+            }
+
+        } else if (message instanceof BatchMessageImpl) {
+            BatchMessageImpl msg = (BatchMessageImpl) message;
+
+            for (JsonObject json : msg.getMessages()) {
+                try {
+                    consumeIncomingMessageJson(json);
+                } catch (Exception e) {
+                    this.plugin.getLogger().warn("Unable to decode message in batch with id " + msg.getId() + ": '" + json + "'", e);
+                }
+            }
+
         } else if (message instanceof ActionLogMessage) {
             ActionLogMessage msg = (ActionLogMessage) message;
 
@@ -295,6 +674,55 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
         }
     }
 
+    private final class PushTargetedUpdateBuffer extends BufferedRequest<Void> {
+        PushTargetedUpdateBuffer(LuckPermsPlugin plugin) {
+            super(2, TimeUnit.SECONDS, plugin.getBootstrap().getScheduler());
+        }
+
+        @Override
+        protected Void perform() {
+            pushTargetedUpdates();
+            return null;
+        }
+    }
+
+    /**
+     * Records when objects were last reloaded in response to a targeted update,
+     * so that updates which are delivered late (or more than once) can be ignored.
+     *
+     * @param <I> the identifier type
+     */
+    private static final class ReloadTimes<I> {
+        // allowance for clocks which aren't quite in sync between servers
+        private static final long CLOCK_SKEW_TOLERANCE = TimeUnit.SECONDS.toMillis(2);
+
+        private final Cache<I, Long> times = CaffeineFactory.newBuilder()
+                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .build();
+
+        /**
+         * Filters out objects which have been reloaded since the given version
+         * stamp, and records the rest as being reloaded now.
+         *
+         * @param targets the objects to reload
+         * @param timestamp the version stamp of the update
+         * @return the objects which need reloading
+         */
+        Set<I> markReloading(Collection<I> targets, long timestamp) {
+            long now = System.currentTimeMillis();
+            Set<I> result = new LinkedHashSet<>();
+            for (I target : targets) {
+                Long lastReload = this.times.getIfPresent(target);
+                if (timestamp != TargetedUpdateMessage.NO_TIMESTAMP && lastReload != null && timestamp < lastReload - CLOCK_SKEW_TOLERANCE) {
+                    continue;
+                }
+                this.times.put(target, now);
+                result.add(target);
+            }
+            return result;
+        }
+    }
+
     private final class PushUpdateBuffer extends BufferedRequest<Void> {
         PushUpdateBuffer(LuckPermsPlugin plugin) {
             super(2, TimeUnit.SECONDS, plugin.getBootstrap().getScheduler());
@@ -35,6 +35,7 @@ import me.lucko.luckperms.common.messaging.sql.SqlMessenger;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
 import me.lucko.luckperms.common.storage.implementation.sql.SqlStorage;
+import me.lucko.luckperms.common.storage.implementation.sql.connection.ConnectionFactory;
 import me.lucko.luckperms.common.storage.implementation.sql.connection.hikari.MariaDbConnectionFactory;
 import me.lucko.luckperms.common.storage.implementation.sql.connection.hikari.MySqlConnectionFactory;
 import me.lucko.luckperms.common.storage.implementation.sql.connection.hikari.PostgresConnectionFactory;
@@ -89,6 +90,12 @@ public class MessagingFactory<P extends LuckPermsPlugin> {
             }
         }
 
+        // the sql messenger only supports mysql/mariadb, postgres storage can use
+        // listen/notify wake-ups instead of polling a table
+        if (messagingType.equals("sql") && !hasStorage(MySqlConnectionFactory.class, MariaDbConnectionFactory.class) && hasStorage(PostgresConnectionFactory.class)) {
+            messagingType = "postgresql";
+        }
+
         if (messagingType.equals("auto") || messagingType.equals("notsql")) {
             return null;
         }
@@ -107,6 +114,21 @@ public class MessagingFactory<P extends LuckPermsPlugin> {
         return null;
     }
 
+    @SafeVarargs
+    private final boolean hasStorage(Class<? extends ConnectionFactory>... connectionFactoryTypes) {
+        for (StorageImplementation implementation : this.plugin.getStorage().getImplementations()) {
+            if (implementation instanceof SqlStorage) {
+                ConnectionFactory connectionFactory = ((SqlStorage) implementation).getConnectionFactory();
+                for (Class<? extends ConnectionFactory> type : connectionFactoryTypes) {
+                    if (type.isInstance(connectionFactory)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
     protected InternalMessagingService getServiceFor(String messagingType) {
         if (messagingType.equals("redis")) {
             if (this.plugin.getConfiguration().get(ConfigKeys.REDIS_ENABLED)) {
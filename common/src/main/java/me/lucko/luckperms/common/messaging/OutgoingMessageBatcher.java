@@ -0,0 +1,288 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.messaging;
+
+import com.google.gson.JsonObject;
+import me.lucko.luckperms.common.messaging.message.AbstractMessage;
+import me.lucko.luckperms.common.messaging.message.BatchMessageImpl;
+import me.lucko.luckperms.common.messaging.message.DeltaUpdateMessageImpl;
+import me.lucko.luckperms.common.messaging.message.GroupUpdateMessageImpl;
+import me.lucko.luckperms.common.messaging.message.TargetedUpdateMessage;
+import me.lucko.luckperms.common.messaging.message.TrackUpdateMessageImpl;
+import me.lucko.luckperms.common.messaging.message.UpdateMessageImpl;
+import me.lucko.luckperms.common.messaging.message.UserUpdateMessageImpl;
+import me.lucko.luckperms.common.messaging.message.UsersUpdateMessageImpl;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
+import me.lucko.luckperms.common.util.gson.GsonProvider;
+import net.luckperms.api.messenger.Messenger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Collects outgoing messages for a short time, then sends them to the
+ * messenger together in a single {@link BatchMessageImpl batch}.
+ *
+ * <p>Redundant messages are merged before sending - for example, a number
+ * of user update pings become a single ping for all of the users.</p>
+ */
+public class OutgoingMessageBatcher {
+
+    /** How long messages are collected for before being sent */
+    private static final long WINDOW_MILLIS = 100;
+
+    /** The maximum number of messages in a single batch */
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private final Messenger messenger;
+    private final SchedulerAdapter scheduler;
+    private final Supplier<UUID> idSupplier;
+
+    private final Queue<AbstractMessage> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    public OutgoingMessageBatcher(Messenger messenger, SchedulerAdapter scheduler, Supplier<UUID> idSupplier) {
+        this.messenger = messenger;
+        this.scheduler = scheduler;
+        this.idSupplier = idSupplier;
+    }
+
+    /**
+     * Queues a message to be sent with the next batch.
+     *
+     * @param message the message
+     */
+    public void send(AbstractMessage message) {
+        this.queue.add(message);
+        if (this.scheduled.compareAndSet(false, true)) {
+            this.scheduler.asyncLater(this::flush, WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sends all queued messages.
+     */
+    public void flush() {
+        this.scheduled.set(false);
+
+        List<AbstractMessage> messages = new ArrayList<>();
+        AbstractMessage message;
+        while ((message = this.queue.poll()) != null) {
+            messages.add(message);
+        }
+
+        List<AbstractMessage> merged = new ArrayList<>();
+        for (AbstractMessage msg : merge(messages, this.idSupplier)) {
+            if (msg instanceof DeltaUpdateMessageImpl) {
+                merged.addAll(((DeltaUpdateMessageImpl) msg).split(this.idSupplier));
+            } else {
+                merged.add(msg);
+            }
+        }
+
+        for (int i = 0; i < merged.size(); i += MAX_BATCH_SIZE) {
+            sendBatch(merged.subList(i, Math.min(i + MAX_BATCH_SIZE, merged.size())));
+        }
+    }
+
+    private void sendBatch(List<AbstractMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        if (messages.size() == 1) {
+            this.messenger.sendOutgoingMessage(messages.get(0));
+            return;
+        }
+
+        List<JsonObject> encoded = new ArrayList<>(messages.size());
+        for (AbstractMessage message : messages) {
+            encoded.add(GsonProvider.normal().fromJson(message.asEncodedString(), JsonObject.class));
+        }
+
+        BatchMessageImpl batch = new BatchMessageImpl(this.idSupplier.get(), encoded);
+        if (batch.asEncodedString().length() > AbstractMessage.MAX_ENCODED_LENGTH) {
+            int half = messages.size() / 2;
+            sendBatch(messages.subList(0, half));
+            sendBatch(messages.subList(half, messages.size()));
+            return;
+        }
+
+        this.messenger.sendOutgoingMessage(batch);
+    }
+
+    /**
+     * Merges redundant messages together.
+     *
+     * <p>A full update makes any other update redundant. Otherwise, updates of
+     * the same kind are combined into a single message. Other messages are
+     * returned unchanged and in order.</p>
+     *
+     * @param messages the messages
+     * @param idSupplier supplies ids for any new messages
+     * @return the merged messages
+     */
+    static List<AbstractMessage> merge(List<AbstractMessage> messages, Supplier<UUID> idSupplier) {
+        AbstractMessage fullUpdate = null;
+        Targets<String> groups = new Targets<>();
+        Targets<String> tracks = new Targets<>();
+        Targets<UUID> users = new Targets<>();
+
+        UUID deltasId = null;
+        Map<String, HolderDelta> groupDeltas = new LinkedHashMap<>();
+        Map<UUID, HolderDelta> userDeltas = new LinkedHashMap<>();
+
+        List<AbstractMessage> others = new ArrayList<>();
+
+        for (AbstractMessage message : messages) {
+            if (message instanceof UpdateMessageImpl) {
+                if (fullUpdate == null) {
+                    fullUpdate = message;
+                }
+            } else if (message instanceof GroupUpdateMessageImpl) {
+                GroupUpdateMessageImpl msg = (GroupUpdateMessageImpl) message;
+                groups.add(msg.getId(), msg.getTargets(), msg.getTimestamp());
+            } else if (message instanceof TrackUpdateMessageImpl) {
+                TrackUpdateMessageImpl msg = (TrackUpdateMessageImpl) message;
+                tracks.add(msg.getId(), msg.getTargets(), msg.getTimestamp());
+            } else if (message instanceof UsersUpdateMessageImpl) {
+                UsersUpdateMessageImpl msg = (UsersUpdateMessageImpl) message;
+                users.add(msg.getId(), msg.getTargets(), msg.getTimestamp());
+            } else if (message instanceof UserUpdateMessageImpl) {
+                UserUpdateMessageImpl msg = (UserUpdateMessageImpl) message;
+                users.add(msg.getId(), Collections.singleton(msg.getUserUniqueId()), TargetedUpdateMessage.NO_TIMESTAMP);
+            } else if (message instanceof DeltaUpdateMessageImpl) {
+                DeltaUpdateMessageImpl msg = (DeltaUpdateMessageImpl) message;
+                if (deltasId == null) {
+                    deltasId = msg.getId();
+                }
+                msg.getGroups().forEach((name, delta) -> groupDeltas.merge(name, delta, HolderDelta::merge));
+                msg.getUsers().forEach((uniqueId, delta) -> userDeltas.merge(uniqueId, delta, HolderDelta::merge));
+            } else {
+                others.add(message);
+            }
+        }
+
+        // deltas which have grown too large once merged are replaced by a targeted update
+        for (Iterator<Map.Entry<String, HolderDelta>> it = groupDeltas.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, HolderDelta> entry = it.next();
+            if (entry.getValue().isTooLarge()) {
+                groups.addWithoutTimestamp(entry.getKey(), idSupplier);
+                it.remove();
+            }
+        }
+        for (Iterator<Map.Entry<UUID, HolderDelta>> it = userDeltas.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<UUID, HolderDelta> entry = it.next();
+            if (entry.getValue().isTooLarge()) {
+                users.addWithoutTimestamp(entry.getKey(), idSupplier);
+                it.remove();
+            }
+        }
+
+        List<AbstractMessage> result = new ArrayList<>();
+        if (fullUpdate != null) {
+            result.add(fullUpdate);
+        } else {
+            if (groups.id != null) {
+                groups.forEachPart(idSupplier, (id, part) -> result.add(new GroupUpdateMessageImpl(id, part, groups.timestamp)));
+            }
+            if (tracks.id != null) {
+                tracks.forEachPart(idSupplier, (id, part) -> result.add(new TrackUpdateMessageImpl(id, part, tracks.timestamp)));
+            }
+
+            // holders which are being reloaded anyway don't need their deltas
+            groupDeltas.keySet().removeAll(groups.targets);
+            userDeltas.keySet().removeAll(users.targets);
+            if (!groupDeltas.isEmpty() || !userDeltas.isEmpty()) {
+                result.add(new DeltaUpdateMessageImpl(deltasId, groupDeltas, userDeltas));
+            }
+
+            if (users.targets.size() == 1) {
+                result.add(new UserUpdateMessageImpl(users.id, users.targets.iterator().next()));
+            } else if (!users.targets.isEmpty()) {
+                users.forEachPart(idSupplier, (id, part) -> result.add(new UsersUpdateMessageImpl(id, part, users.timestamp)));
+            }
+        }
+        result.addAll(others);
+        return result;
+    }
+
+    /**
+     * Accumulates the targets of a number of targeted updates.
+     *
+     * @param <I> the identifier type
+     */
+    private static final class Targets<I> {
+        private UUID id = null;
+        private final Set<I> targets = new LinkedHashSet<>();
+        private long timestamp = Long.MAX_VALUE;
+
+        void add(UUID id, Collection<I> targets, long timestamp) {
+            if (this.id == null) {
+                this.id = id;
+            }
+            this.targets.addAll(targets);
+
+            // use the oldest version stamp, so receivers don't skip any of the targets
+            if (timestamp == TargetedUpdateMessage.NO_TIMESTAMP || this.timestamp == TargetedUpdateMessage.NO_TIMESTAMP) {
+                this.timestamp = TargetedUpdateMessage.NO_TIMESTAMP;
+            } else {
+                this.timestamp = Math.min(this.timestamp, timestamp);
+            }
+        }
+
+        void addWithoutTimestamp(I target, Supplier<UUID> idSupplier) {
+            add(this.id != null ? this.id : idSupplier.get(), Collections.singleton(target), TargetedUpdateMessage.NO_TIMESTAMP);
+        }
+
+        /**
+         * Splits the targets into parts small enough to send in a single message.
+         * The first part keeps the accumulated id, the rest are given a new id.
+         *
+         * @param idSupplier supplies ids for the additional parts
+         * @param action the action to run for each part
+         */
+        void forEachPart(Supplier<UUID> idSupplier, BiConsumer<UUID, List<I>> action) {
+            List<List<I>> parts = TargetedUpdateMessage.partition(this.targets);
+            for (int i = 0; i < parts.size(); i++) {
+                action.accept(i == 0 ? this.id : idSupplier.get(), parts.get(i));
+            }
+        }
+    }
+}
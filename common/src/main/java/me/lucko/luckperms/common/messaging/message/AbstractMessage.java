@@ -32,6 +32,14 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import java.util.UUID;
 
 public abstract class AbstractMessage implements Message, OutgoingMessage {
+
+    /**
+     * The maximum length of an encoded message - the sql messenger stores
+     * messages in a TEXT column and plugin messages are written with
+     * writeUTF, both of which are limited to 64KB.
+     */
+    public static final int MAX_ENCODED_LENGTH = 16000;
+
     private final UUID id;
 
     public AbstractMessage(UUID id) {
@@ -0,0 +1,139 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.messaging.message;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import me.lucko.luckperms.common.messaging.LuckPermsMessagingService;
+import me.lucko.luckperms.common.util.gson.GsonProvider;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A message containing a number of other messages, sent together.
+ *
+ * <p>Large batches are gzip compressed.</p>
+ */
+public class BatchMessageImpl extends AbstractMessage {
+    public static final String TYPE = "batch";
+
+    /** The encoded length of the contained messages above which they are compressed */
+    private static final int COMPRESSION_THRESHOLD = 512;
+
+    public static BatchMessageImpl decode(@Nullable JsonElement content, UUID id) {
+        if (content == null) {
+            throw new IllegalStateException("Missing content");
+        }
+
+        JsonObject obj = content.getAsJsonObject();
+
+        JsonArray messages;
+        if (obj.has("compressed")) {
+            byte[] compressed = Base64.getDecoder().decode(obj.get("compressed").getAsString());
+            try (Reader reader = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(compressed)), StandardCharsets.UTF_8)) {
+                messages = GsonProvider.normal().fromJson(reader, JsonArray.class);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else if (obj.has("messages")) {
+            messages = obj.getAsJsonArray("messages");
+        } else {
+            throw new IllegalStateException("Incoming message has no 'messages' argument: " + content);
+        }
+
+        List<JsonObject> decoded = new ArrayList<>(messages.size());
+        for (JsonElement message : messages) {
+            decoded.add(message.getAsJsonObject());
+        }
+        return new BatchMessageImpl(id, decoded);
+    }
+
+    private final List<JsonObject> messages;
+    private String encoded;
+
+    public BatchMessageImpl(UUID id, List<JsonObject> messages) {
+        super(id);
+        this.messages = Collections.unmodifiableList(new ArrayList<>(messages));
+    }
+
+    /**
+     * Gets the contained messages, in the encoded form produced by
+     * {@link LuckPermsMessagingService#encodeMessageAsString(String, UUID, JsonElement)}.
+     *
+     * @return the messages
+     */
+    public List<JsonObject> getMessages() {
+        return this.messages;
+    }
+
+    @Override
+    public synchronized @NonNull String asEncodedString() {
+        if (this.encoded != null) {
+            return this.encoded;
+        }
+
+        JsonArray messages = new JsonArray();
+        this.messages.forEach(messages::add);
+        String messagesString = GsonProvider.normal().toJson(messages);
+
+        JsonObject content = new JsonObject();
+        if (messagesString.length() > COMPRESSION_THRESHOLD) {
+            content.addProperty("compressed", Base64.getEncoder().encodeToString(compress(messagesString)));
+        } else {
+            content.add("messages", messages);
+        }
+
+        return this.encoded = LuckPermsMessagingService.encodeMessageAsString(TYPE, getId(), content);
+    }
+
+    private static byte[] compress(String string) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8)) {
+            writer.write(string);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
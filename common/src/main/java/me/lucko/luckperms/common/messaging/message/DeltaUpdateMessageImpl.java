@@ -0,0 +1,164 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.messaging.message;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import me.lucko.luckperms.common.messaging.HolderDelta;
+import me.lucko.luckperms.common.messaging.LuckPermsMessagingService;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * A message containing the changes made to a set of groups and users.
+ *
+ * <p>Receivers apply the changes directly to their copies of the holders, and only
+ * reload them from storage if they are out of sync.</p>
+ */
+public class DeltaUpdateMessageImpl extends AbstractMessage {
+    public static final String TYPE = "deltaupdate";
+
+    /** The maximum length of the changes in a single message, leaving room for the rest of the message */
+    private static final int MAX_CONTENT_LENGTH = MAX_ENCODED_LENGTH - 200;
+
+    public static DeltaUpdateMessageImpl decode(@Nullable JsonElement content, UUID id) {
+        if (content == null) {
+            throw new IllegalStateException("Missing content");
+        }
+
+        JsonObject object = content.getAsJsonObject();
+
+        Map<String, HolderDelta> groups = new LinkedHashMap<>();
+        JsonElement groupsElement = object.get("groups");
+        if (groupsElement != null) {
+            for (Map.Entry<String, JsonElement> entry : groupsElement.getAsJsonObject().entrySet()) {
+                groups.put(entry.getKey(), HolderDelta.deserialize(entry.getValue()));
+            }
+        }
+
+        Map<UUID, HolderDelta> users = new LinkedHashMap<>();
+        JsonElement usersElement = object.get("users");
+        if (usersElement != null) {
+            for (Map.Entry<String, JsonElement> entry : usersElement.getAsJsonObject().entrySet()) {
+                users.put(UUID.fromString(entry.getKey()), HolderDelta.deserialize(entry.getValue()));
+            }
+        }
+
+        return new DeltaUpdateMessageImpl(id, groups, users);
+    }
+
+    private final Map<String, HolderDelta> groups;
+    private final Map<UUID, HolderDelta> users;
+
+    public DeltaUpdateMessageImpl(UUID id, Map<String, HolderDelta> groups, Map<UUID, HolderDelta> users) {
+        super(id);
+        this.groups = Collections.unmodifiableMap(new LinkedHashMap<>(groups));
+        this.users = Collections.unmodifiableMap(new LinkedHashMap<>(users));
+    }
+
+    public Map<String, HolderDelta> getGroups() {
+        return this.groups;
+    }
+
+    public Map<UUID, HolderDelta> getUsers() {
+        return this.users;
+    }
+
+    /**
+     * Splits the message into messages which are each short enough to send.
+     *
+     * <p>The first message keeps the id of this message, the rest are given a new id.</p>
+     *
+     * @param idSupplier supplies ids for the additional messages
+     * @return the messages
+     */
+    public List<DeltaUpdateMessageImpl> split(Supplier<UUID> idSupplier) {
+        List<DeltaUpdateMessageImpl> messages = new ArrayList<>();
+        Map<String, HolderDelta> groups = new LinkedHashMap<>();
+        Map<UUID, HolderDelta> users = new LinkedHashMap<>();
+        int length = 0;
+
+        for (Map.Entry<String, HolderDelta> entry : this.groups.entrySet()) {
+            int entryLength = entryLength(entry.getKey(), entry.getValue());
+            if (length + entryLength > MAX_CONTENT_LENGTH && length != 0) {
+                messages.add(new DeltaUpdateMessageImpl(messages.isEmpty() ? getId() : idSupplier.get(), groups, users));
+                groups.clear();
+                length = 0;
+            }
+            groups.put(entry.getKey(), entry.getValue());
+            length += entryLength;
+        }
+
+        for (Map.Entry<UUID, HolderDelta> entry : this.users.entrySet()) {
+            int entryLength = entryLength(entry.getKey().toString(), entry.getValue());
+            if (length + entryLength > MAX_CONTENT_LENGTH && length != 0) {
+                messages.add(new DeltaUpdateMessageImpl(messages.isEmpty() ? getId() : idSupplier.get(), groups, users));
+                groups.clear();
+                users.clear();
+                length = 0;
+            }
+            users.put(entry.getKey(), entry.getValue());
+            length += entryLength;
+        }
+
+        if (length != 0 || messages.isEmpty()) {
+            messages.add(new DeltaUpdateMessageImpl(messages.isEmpty() ? getId() : idSupplier.get(), groups, users));
+        }
+        return messages;
+    }
+
+    // the quoted key, a colon, the delta and a comma
+    private static int entryLength(String key, HolderDelta delta) {
+        return key.length() + delta.encodedLength() + 4;
+    }
+
+    @Override
+    public @NonNull String asEncodedString() {
+        JsonObject content = new JsonObject();
+
+        if (!this.groups.isEmpty()) {
+            JsonObject groups = new JsonObject();
+            this.groups.forEach((name, delta) -> groups.add(name, delta.serialize()));
+            content.add("groups", groups);
+        }
+
+        if (!this.users.isEmpty()) {
+            JsonObject users = new JsonObject();
+            this.users.forEach((uniqueId, delta) -> users.add(uniqueId.toString(), delta.serialize()));
+            content.add("users", users);
+        }
+
+        return LuckPermsMessagingService.encodeMessageAsString(TYPE, getId(), content);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.messaging.message;
+
+import com.google.gson.JsonElement;
+import me.lucko.luckperms.common.messaging.LuckPermsMessagingService;
+import me.lucko.luckperms.common.util.Iterators;
+import me.lucko.luckperms.common.util.gson.JArray;
+import me.lucko.luckperms.common.util.gson.JObject;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * A message informing other servers that a specific set of objects
+ * (groups, tracks or users) has changed.
+ *
+ * <p>Unlike an {@link UpdateMessageImpl update message}, receivers only need to
+ * reload the objects identified by the message.</p>
+ *
+ * @param <I> the identifier type
+ */
+public abstract class TargetedUpdateMessage<I> extends AbstractMessage {
+
+    /** Indicates that the message was sent without a version stamp */
+    public static final long NO_TIMESTAMP = 0L;
+
+    /** The maximum number of targets in a single message, keeping it under {@link #MAX_ENCODED_LENGTH} */
+    public static final int MAX_TARGETS = 250;
+
+    /**
+     * Splits a set of targets into lists which can each be sent in a single message.
+     *
+     * @param targets the targets
+     * @param <I> the identifier type
+     * @return the split targets
+     */
+    public static <I> List<List<I>> partition(Collection<I> targets) {
+        return Iterators.divideIterable(targets, MAX_TARGETS);
+    }
+
+    protected static <I> Set<I> decodeTargets(@Nullable JsonElement content, String key, Function<String, I> parser) {
+        if (content == null) {
+            throw new IllegalStateException("Missing content");
+        }
+
+        JsonElement targetsElement = content.getAsJsonObject().get(key);
+        if (targetsElement == null) {
+            throw new IllegalStateException("Incoming message has no " + key + " argument: " + content);
+        }
+
+        Set<I> targets = new LinkedHashSet<>();
+        for (JsonElement element : targetsElement.getAsJsonArray()) {
+            targets.add(parser.apply(element.getAsString()));
+        }
+        return targets;
+    }
+
+    protected static long decodeTimestamp(JsonElement content) {
+        JsonElement timestampElement = content.getAsJsonObject().get("timestamp");
+        return timestampElement == null ? NO_TIMESTAMP : timestampElement.getAsLong();
+    }
+
+    private final Set<I> targets;
+    private final long timestamp;
+
+    protected TargetedUpdateMessage(UUID id, Collection<I> targets, long timestamp) {
+        super(id);
+        this.targets = Collections.unmodifiableSet(new LinkedHashSet<>(targets));
+        this.timestamp = timestamp;
+    }
+
+    protected abstract String getType();
+
+    protected abstract String getTargetsKey();
+
+    /**
+     * Gets the identifiers of the objects which have changed.
+     *
+     * @return the changed objects
+     */
+    public Set<I> getTargets() {
+        return this.targets;
+    }
+
+    /**
+     * Gets the time (in unix millis) when the changes were written to storage
+     * by the sending server, or {@link #NO_TIMESTAMP} if not known.
+     *
+     * @return the version stamp
+     */
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    @Override
+    public @NonNull String asEncodedString() {
+        JArray targets = new JArray();
+        for (I target : this.targets) {
+            targets.add(target.toString());
+        }
+
+        return LuckPermsMessagingService.encodeMessageAsString(
+                getType(), getId(), new JObject()
+                        .add(getTargetsKey(), targets)
+                        .consume(o -> {
+                            if (this.timestamp != NO_TIMESTAMP) {
+                                o.add("timestamp", this.timestamp);
+                            }
+                        })
+                        .toJson()
+        );
+    }
+}
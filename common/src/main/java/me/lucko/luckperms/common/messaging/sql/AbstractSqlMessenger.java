@@ -31,6 +31,7 @@ import net.luckperms.api.messenger.message.OutgoingMessage;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -43,6 +44,12 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  */
 public abstract class AbstractSqlMessenger implements Messenger {
 
+    /** The maximum number of rows removed by a single housekeeping query */
+    private static final int HOUSEKEEPING_BATCH_SIZE = 1000;
+
+    /** The MySQL error code for a duplicate index name */
+    private static final int ER_DUP_KEYNAME = 1061;
+
     private final IncomingMessageConsumer consumer;
     private long lastId = -1;
 
@@ -59,7 +66,7 @@ public abstract class AbstractSqlMessenger implements Messenger {
     public void init() throws SQLException {
         try (Connection c = getConnection()) {
             // init table
-            String createStatement = "CREATE TABLE IF NOT EXISTS `" + getTableName() + "` (`id` INT AUTO_INCREMENT NOT NULL, `time` TIMESTAMP NOT NULL, `msg` TEXT NOT NULL, PRIMARY KEY (`id`)) DEFAULT CHARSET = utf8mb4";
+            String createStatement = "CREATE TABLE IF NOT EXISTS `" + getTableName() + "` (`id` INT AUTO_INCREMENT NOT NULL, `time` TIMESTAMP NOT NULL, `msg` TEXT NOT NULL, PRIMARY KEY (`id`), INDEX `" + getTableName() + "_time` (`time`)) DEFAULT CHARSET = utf8mb4";
             try (Statement s = c.createStatement()) {
                 try {
                     s.execute(createStatement);
@@ -73,6 +80,18 @@ public abstract class AbstractSqlMessenger implements Messenger {
                 }
             }
 
+            // tables created by older versions don't have an index on time
+            if (!hasTimeIndex(c)) {
+                try (Statement s = c.createStatement()) {
+                    s.execute("ALTER TABLE `" + getTableName() + "` ADD INDEX `" + getTableName() + "_time` (`time`)");
+                } catch (SQLException e) {
+                    // another server may have added the index at the same time
+                    if (e.getErrorCode() != ER_DUP_KEYNAME && !hasTimeIndex(c)) {
+                        throw e;
+                    }
+                }
+            }
+
             // pull last id
             try (PreparedStatement ps = c.prepareStatement("SELECT MAX(`id`) as `latest` FROM `" + getTableName() + "`")) {
                 try (ResultSet rs = ps.executeQuery()) {
@@ -84,6 +103,27 @@ public abstract class AbstractSqlMessenger implements Messenger {
         }
     }
 
+    private boolean hasTimeIndex(Connection c) throws SQLException {
+        DatabaseMetaData metaData = c.getMetaData();
+        try (ResultSet tables = metaData.getTables(c.getCatalog(), null, "%", null)) {
+            while (tables.next()) {
+                String tableName = tables.getString(3);
+                if (!tableName.equalsIgnoreCase(getTableName())) {
+                    continue;
+                }
+
+                try (ResultSet rs = metaData.getIndexInfo(c.getCatalog(), tables.getString(2), tableName, false, true)) {
+                    while (rs.next()) {
+                        if ("time".equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
     @Override
     public void sendOutgoingMessage(@NonNull OutgoingMessage outgoingMessage) {
         this.lock.readLock().lock();
@@ -104,15 +144,22 @@ public abstract class AbstractSqlMessenger implements Messenger {
         }
     }
 
-    public void pollMessages() {
+    /**
+     * Polls for and consumes new messages.
+     *
+     * @return the number of messages received
+     */
+    public int pollMessages() {
         this.lock.readLock().lock();
         if (this.closed) {
             this.lock.readLock().unlock();
-            return;
+            return 0;
         }
 
+        int received = 0;
         try (Connection c = getConnection()) {
-            try (PreparedStatement ps = c.prepareStatement("SELECT `id`, `msg` FROM `" + getTableName() + "` WHERE `id` > ? AND (NOW() - `time` < 30)")) {
+            // compare the column against a constant, so the time index can be used
+            try (PreparedStatement ps = c.prepareStatement("SELECT `id`, `msg` FROM `" + getTableName() + "` WHERE `id` > ? AND `time` > DATE_SUB(NOW(), INTERVAL 30 SECOND)")) {
                 ps.setLong(1, this.lastId);
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
@@ -121,6 +168,7 @@ public abstract class AbstractSqlMessenger implements Messenger {
 
                         String message = rs.getString("msg");
                         this.consumer.consumeIncomingMessageAsString(message);
+                        received++;
                     }
                 }
             }
@@ -129,6 +177,7 @@ public abstract class AbstractSqlMessenger implements Messenger {
         } finally {
             this.lock.readLock().unlock();
         }
+        return received;
     }
 
     public void runHousekeeping() {
@@ -139,8 +188,12 @@ public abstract class AbstractSqlMessenger implements Messenger {
         }
 
         try (Connection c = getConnection()) {
-            try (PreparedStatement ps = c.prepareStatement("DELETE FROM `" + getTableName() + "` WHERE (NOW() - `time` > 60)")) {
-                ps.execute();
+            // delete in batches, to avoid holding locks on the table for too long
+            try (PreparedStatement ps = c.prepareStatement("DELETE FROM `" + getTableName() + "` WHERE `time` < DATE_SUB(NOW(), INTERVAL 60 SECOND) LIMIT " + HOUSEKEEPING_BATCH_SIZE)) {
+                int deleted;
+                do {
+                    deleted = ps.executeUpdate();
+                } while (deleted >= HOUSEKEEPING_BATCH_SIZE);
             }
         } catch (SQLException e) {
             e.printStackTrace();
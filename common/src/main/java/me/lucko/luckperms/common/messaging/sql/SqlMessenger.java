@@ -36,12 +36,26 @@ import java.sql.SQLException;
 import java.util.concurrent.TimeUnit;
 
 public class SqlMessenger extends AbstractSqlMessenger {
+
+    /** The poll interval used when messages have recently been received */
+    private static final long MIN_POLL_INTERVAL_MILLIS = 500;
+
+    /** The poll interval the messenger backs off to when the table is idle */
+    private static final long MAX_POLL_INTERVAL_MILLIS = 5000;
+
+    /** How long the messenger stays at the minimum interval after activity */
+    private static final long ACTIVE_PERIOD_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
     private final LuckPermsPlugin plugin;
     private final SqlStorage sqlStorage;
 
-    private SchedulerTask pollTask;
+    private volatile SchedulerTask pollTask;
     private SchedulerTask housekeepingTask;
 
+    private volatile boolean polling = false;
+    private volatile long lastActivity = 0;
+    private long pollInterval = MIN_POLL_INTERVAL_MILLIS;
+
     public SqlMessenger(LuckPermsPlugin plugin, SqlStorage sqlStorage, IncomingMessageConsumer consumer) {
         super(consumer);
         this.plugin = plugin;
@@ -58,12 +72,38 @@ public class SqlMessenger extends AbstractSqlMessenger {
 
         // schedule poll tasks
         SchedulerAdapter scheduler = this.plugin.getBootstrap().getScheduler();
-        this.pollTask = scheduler.asyncRepeating(this::pollMessages, 1, TimeUnit.SECONDS);
+        this.polling = true;
+        schedulePoll();
         this.housekeepingTask = scheduler.asyncRepeating(this::runHousekeeping, 30, TimeUnit.SECONDS);
     }
 
+    private void schedulePoll() {
+        if (this.polling) {
+            this.pollTask = this.plugin.getBootstrap().getScheduler().asyncLater(this::poll, this.pollInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void poll() {
+        try {
+            if (pollMessages() > 0) {
+                this.lastActivity = System.currentTimeMillis();
+            }
+        } finally {
+            // poll frequently while messages are being exchanged, and back off
+            // gradually once the table goes quiet
+            if (System.currentTimeMillis() - this.lastActivity < ACTIVE_PERIOD_MILLIS) {
+                this.pollInterval = MIN_POLL_INTERVAL_MILLIS;
+            } else {
+                this.pollInterval = Math.min(this.pollInterval * 2, MAX_POLL_INTERVAL_MILLIS);
+            }
+            schedulePoll();
+        }
+    }
+
     @Override
     public void close() {
+        this.polling = false;
+
         SchedulerTask task = this.pollTask;
         if (task != null) {
             task.cancel();
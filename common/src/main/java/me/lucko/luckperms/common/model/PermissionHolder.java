@@ -29,8 +29,10 @@ import com.google.common.collect.Iterables;
 import me.lucko.luckperms.common.cacheddata.HolderCachedDataManager;
 import me.lucko.luckperms.common.cacheddata.result.IntegerResult;
 import me.lucko.luckperms.common.cacheddata.type.MetaAccumulator;
+import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.inheritance.InheritanceComparator;
 import me.lucko.luckperms.common.inheritance.InheritanceGraph;
+import me.lucko.luckperms.common.model.nodemap.CopyOnWriteNodeMap;
 import me.lucko.luckperms.common.model.nodemap.NodeMap;
 import me.lucko.luckperms.common.model.nodemap.NodeMapMutable;
 import me.lucko.luckperms.common.model.nodemap.RecordedNodeMap;
@@ -39,6 +41,7 @@ import me.lucko.luckperms.common.node.comparator.NodeWithContextComparator;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.query.DataSelector;
 import me.lucko.luckperms.common.util.Difference;
+import me.lucko.luckperms.common.util.Predicates;
 import net.kyori.adventure.text.Component;
 import net.luckperms.api.context.ContextSet;
 import net.luckperms.api.model.data.DataMutateResult;
@@ -60,12 +63,16 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.OptionalInt;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.IntFunction;
 import java.util.function.Predicate;
 
@@ -136,11 +143,18 @@ public abstract class PermissionHolder {
     protected PermissionHolder(LuckPermsPlugin plugin, String objectName) {
         this.plugin = plugin;
         this.identifier = new PermissionHolderIdentifier(getType(), objectName);
-        this.normalNodes = new RecordedNodeMap(new NodeMapMutable(this, DataType.NORMAL));
-        this.transientNodes = new NodeMapMutable(this, DataType.TRANSIENT);
+        this.normalNodes = new RecordedNodeMap(createNodeMap(DataType.NORMAL));
+        this.transientNodes = createNodeMap(DataType.TRANSIENT);
         this.inheritanceComparator = InheritanceComparator.getFor(this);
     }
 
+    private NodeMap createNodeMap(DataType type) {
+        if (this.plugin.getConfiguration().get(ConfigKeys.COPY_ON_WRITE_NODE_MAPS)) {
+            return new CopyOnWriteNodeMap(this, type);
+        }
+        return new NodeMapMutable(this, type);
+    }
+
     // getters
 
     public LuckPermsPlugin getPlugin() {
@@ -215,16 +229,116 @@ public abstract class PermissionHolder {
         getPlugin().getEventDispatcher().dispatchDataRecalculate(this);
     }
 
+    /**
+     * Invalidates the holders cached data following a change to its nodes.
+     *
+     * <p>When incremental cache updates are enabled, changes which don't affect the
+     * inheritance tree are patched into the existing cached data of this holder (and of
+     * any loaded holders which inherit from it), instead of discarding it.</p>
+     *
+     * @param changes the changes made to the holders nodes
+     */
+    protected void invalidateCache(Difference<Node> changes) {
+        if (!this.plugin.getConfiguration().get(ConfigKeys.INCREMENTAL_CACHE_UPDATES)) {
+            invalidateCache();
+            invalidateInheritanceGraphs(changes);
+            return;
+        }
+
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        boolean resolveShorthand = this.plugin.getConfiguration().get(ConfigKeys.APPLYING_SHORTHAND);
+        boolean incremental = true;
+        boolean metaChanged = false;
+        Set<String> changedKeys = new HashSet<>();
+
+        for (Difference.Change<Node> change : changes.getChanges()) {
+            Node node = change.value();
+
+            // changes to inheritance, weight or display name affect more than the resolved nodes
+            if (NodeType.INHERITANCE.matches(node) || NodeType.WEIGHT.matches(node) || NodeType.DISPLAY_NAME.matches(node)) {
+                incremental = false;
+                break;
+            }
+
+            if (NodeType.META_OR_CHAT_META.matches(node)) {
+                metaChanged = true;
+            }
+
+            changedKeys.add(node.getKey().toLowerCase(Locale.ROOT));
+            if (resolveShorthand) {
+                for (String s : node.resolveShorthand()) {
+                    changedKeys.add(s.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+
+        if (incremental) {
+            getCachedData().applyChanges(this, changedKeys, metaChanged);
+            getPlugin().getEventDispatcher().dispatchDataRecalculate(this);
+        } else {
+            invalidateCache();
+            invalidateInheritanceGraphs(changes);
+        }
+
+        // changes to a group can affect any holder which inherits from it
+        if (getType() == HolderType.GROUP) {
+            List<PermissionHolder> dependents = new ArrayList<>();
+            dependents.addAll(this.plugin.getGroupManager().getAll().values());
+            dependents.addAll(this.plugin.getUserManager().getAll().values());
+
+            for (PermissionHolder holder : dependents) {
+                if (holder == this) {
+                    continue;
+                }
+
+                if (incremental) {
+                    holder.getCachedData().applyChanges(this, changedKeys, metaChanged);
+                } else {
+                    holder.getCachedData().invalidate(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards memoized inheritance graph data if the changes affect the inheritance tree.
+     *
+     * <p>Must be called after the holders own caches (e.g. the weight of a group) have
+     * been invalidated, so rebuilt traversals don't see the previous values.</p>
+     *
+     * @param changes the changes made to the holders nodes
+     */
+    private void invalidateInheritanceGraphs(Difference<Node> changes) {
+        for (Difference.Change<Node> change : changes.getChanges()) {
+            Node node = change.value();
+            if (NodeType.INHERITANCE.matches(node) || NodeType.WEIGHT.matches(node)) {
+                this.plugin.getInheritanceGraphFactory().invalidate(this);
+                return;
+            }
+        }
+    }
+
     public void loadNodesFromStorage(Iterable<? extends Node> set) {
         // TODO: should we attempt to "replay" existing changes on top of the new data?
         normalData().discardChanges();
-        normalData().bypass().setContent(set);
-        invalidateCache();
+        normalData().discardUnsentChanges();
+        Difference<Node> changes = normalData().bypass().setContent(set);
+        invalidateCache(changes);
+    }
+
+    public Difference<Node> loadNodeChangesFromNetwork(Difference<Node> changes) {
+        // the changes have already been saved by the server which made them
+        Difference<Node> res = normalData().bypass().applyChanges(changes);
+        invalidateCache(res);
+        return res;
     }
 
     public Difference<Node> setNodes(DataType type, Iterable<? extends Node> set, boolean callEvent) {
         Difference<Node> res = getData(type).setContent(set);
-        invalidateCache();
+        invalidateCache(res);
         if (callEvent) {
             getPlugin().getEventDispatcher().dispatchNodeChanges(this, type, res);
         }
@@ -233,7 +347,7 @@ public abstract class PermissionHolder {
 
     public Difference<Node> setNodes(DataType type, Difference<Node> changes, boolean callEvent) {
         Difference<Node> res = getData(type).applyChanges(changes);
-        invalidateCache();
+        invalidateCache(res);
         if (callEvent) {
             getPlugin().getEventDispatcher().dispatchNodeChanges(this, type, res);
         }
@@ -241,8 +355,8 @@ public abstract class PermissionHolder {
     }
 
     public void mergeNodes(DataType type, Iterable<? extends Node> set) {
-        getData(type).addAll(set);
-        invalidateCache();
+        Difference<Node> changes = getData(type).addAll(set);
+        invalidateCache(changes);
     }
 
     private DataType[] queryOrder(QueryOptions queryOptions) {
@@ -353,18 +467,21 @@ public abstract class PermissionHolder {
     }
 
     public <M extends Map<String, Node>> M exportPermissions(IntFunction<M> mapFactory, QueryOptions queryOptions, boolean convertToLowercase, boolean resolveShorthand) {
+        return exportPermissions(mapFactory, queryOptions, convertToLowercase, resolveShorthand, Predicates.alwaysTrue());
+    }
+
+    public <M extends Map<String, Node>> M exportPermissions(IntFunction<M> mapFactory, QueryOptions queryOptions, boolean convertToLowercase, boolean resolveShorthand, Predicate<? super String> keyFilter) {
         List<Node> entries = resolveInheritedNodes(queryOptions);
         M map = mapFactory.apply(entries.size());
-        processExportedPermissions(map, entries, convertToLowercase, resolveShorthand);
+        processExportedPermissions(map, entries, convertToLowercase, resolveShorthand, keyFilter);
         return map;
     }
 
-    private static void processExportedPermissions(Map<String, Node> accumulator, List<Node> entries, boolean convertToLowercase, boolean resolveShorthand) {
+    private static void processExportedPermissions(Map<String, Node> accumulator, List<Node> entries, boolean convertToLowercase, boolean resolveShorthand, Predicate<? super String> keyFilter) {
         for (Node node : entries) {
-            if (convertToLowercase) {
-                accumulator.putIfAbsent(node.getKey().toLowerCase(Locale.ROOT), node);
-            } else {
-                accumulator.putIfAbsent(node.getKey(), node);
+            String key = convertToLowercase ? node.getKey().toLowerCase(Locale.ROOT) : node.getKey();
+            if (keyFilter.test(key)) {
+                accumulator.putIfAbsent(key, node);
             }
         }
 
@@ -372,16 +489,99 @@ public abstract class PermissionHolder {
             for (Node node : entries) {
                 Collection<String> shorthand = node.resolveShorthand();
                 for (String s : shorthand) {
-                    if (convertToLowercase) {
-                        accumulator.putIfAbsent(s.toLowerCase(Locale.ROOT), node);
-                    } else {
-                        accumulator.putIfAbsent(s, node);
+                    String key = convertToLowercase ? s.toLowerCase(Locale.ROOT) : s;
+                    if (keyFilter.test(key)) {
+                        accumulator.putIfAbsent(key, node);
                     }
                 }
             }
         }
     }
 
+    /**
+     * Resolves both the permissions and the meta of this holder with a single traversal
+     * of the inheritance tree.
+     *
+     * <p>The result is the same as calling {@link #exportPermissions(IntFunction, QueryOptions, boolean, boolean)}
+     * and {@link #accumulateMeta(MetaAccumulator, QueryOptions)} separately. If the tree is
+     * large enough (see {@link ConfigKeys#CACHED_DATA_PARALLELISM_THRESHOLD}), the nodes of each
+     * holder in the tree are collected in parallel on the worker pool.</p>
+     *
+     * @param mapFactory a function to create a map instance to return the permissions in
+     * @param accumulator the accumulator to add resolved meta to
+     * @param queryOptions the query options
+     * @param convertToLowercase if permission keys should be converted to lowercase
+     * @param resolveShorthand if shorthand permissions should be expanded
+     * @param <M> the map type
+     * @return the resolved permissions
+     */
+    public <M extends Map<String, Node>> M exportPermissionsAndMeta(IntFunction<M> mapFactory, MetaAccumulator accumulator, QueryOptions queryOptions, boolean convertToLowercase, boolean resolveShorthand) {
+        InheritanceGraph graph = this.plugin.getInheritanceGraphFactory().getGraph(queryOptions);
+
+        List<PermissionHolder> inheritanceTree = new ArrayList<>();
+        Iterables.addAll(inheritanceTree, graph.traverse(this));
+
+        int parallelismThreshold = this.plugin.getConfiguration().get(ConfigKeys.CACHED_DATA_PARALLELISM_THRESHOLD);
+        Executor executor = parallelismThreshold > 0 && inheritanceTree.size() >= parallelismThreshold
+                ? this.plugin.getBootstrap().getScheduler().async()
+                : null;
+
+        List<List<Node>> ownNodes = collectOwnNodes(inheritanceTree, queryOptions, executor);
+        boolean resolveInheritance = queryOptions.flag(Flag.RESOLVE_INHERITANCE);
+
+        List<Node> entries = new ArrayList<>();
+        for (int i = 0; i < inheritanceTree.size(); i++) {
+            PermissionHolder holder = inheritanceTree.get(i);
+            List<Node> nodes = ownNodes.get(i);
+
+            // permissions are only inherited if RESOLVE_INHERITANCE is set, meta always is
+            if (resolveInheritance || holder == this) {
+                entries.addAll(nodes);
+            }
+
+            // accumulate meta
+            for (Node node : nodes) {
+                if (NodeType.META_OR_CHAT_META.matches(node)) {
+                    accumulator.accumulateNode(node);
+                }
+            }
+
+            // accumulate weight
+            IntegerResult<WeightNode> weight = holder.getWeightResult();
+            if (!weight.isNull()) {
+                accumulator.accumulateWeight(weight);
+            }
+        }
+
+        completeMeta(accumulator, queryOptions);
+
+        M map = mapFactory.apply(entries.size());
+        processExportedPermissions(map, entries, convertToLowercase, resolveShorthand, Predicates.alwaysTrue());
+        return map;
+    }
+
+    private static List<List<Node>> collectOwnNodes(List<PermissionHolder> holders, QueryOptions queryOptions, @Nullable Executor executor) {
+        List<List<Node>> nodes = new ArrayList<>(holders.size());
+        if (executor == null || holders.size() < 2) {
+            for (PermissionHolder holder : holders) {
+                nodes.add(holder.getOwnNodes(queryOptions));
+            }
+            return nodes;
+        }
+
+        // fan out for all but the first holder, which is handled by the calling thread
+        List<CompletableFuture<List<Node>>> futures = new ArrayList<>(holders.size() - 1);
+        for (PermissionHolder holder : holders.subList(1, holders.size())) {
+            futures.add(CompletableFuture.supplyAsync(() -> holder.getOwnNodes(queryOptions), executor));
+        }
+
+        nodes.add(holders.get(0).getOwnNodes(queryOptions));
+        for (CompletableFuture<List<Node>> future : futures) {
+            nodes.add(future.join());
+        }
+        return nodes;
+    }
+
     public MetaAccumulator accumulateMeta(QueryOptions queryOptions) {
         return accumulateMeta(MetaAccumulator.makeFromConfig(this.plugin), queryOptions);
     }
@@ -405,6 +605,11 @@ public abstract class PermissionHolder {
             }
         }
 
+        completeMeta(accumulator, queryOptions);
+        return accumulator;
+    }
+
+    private void completeMeta(MetaAccumulator accumulator, QueryOptions queryOptions) {
         // accumulate primary group
         if (this instanceof User) {
             String primaryGroup = ((User) this).getPrimaryGroup().calculateValue(queryOptions);
@@ -412,7 +617,6 @@ public abstract class PermissionHolder {
         }
 
         accumulator.complete();
-        return accumulator;
     }
 
     /**
@@ -430,7 +634,7 @@ public abstract class PermissionHolder {
     private boolean auditTemporaryNodes(DataType dataType) {
         Difference<Node> result = getData(dataType).removeIf(Node::hasExpired);
         if (!result.isEmpty()) {
-            invalidateCache();
+            invalidateCache(result);
         }
         this.plugin.getEventDispatcher().dispatchNodeChanges(this, dataType, result);
         return !result.isEmpty();
@@ -463,7 +667,7 @@ public abstract class PermissionHolder {
         }
 
         Difference<Node> changes = getData(dataType).add(node);
-        invalidateCache();
+        invalidateCache(changes);
         if (callEvent) {
             this.plugin.getEventDispatcher().dispatchNodeChanges(this, dataType, changes);
         }
@@ -500,7 +704,7 @@ public abstract class PermissionHolder {
                 if (newNode != null) {
                     // Remove the old Node & add the new one.
                     Difference<Node> changes = data.removeThenAdd(otherMatch, newNode);
-                    invalidateCache();
+                    invalidateCache(changes);
                     this.plugin.getEventDispatcher().dispatchNodeChanges(this, dataType, changes);
 
                     return new MergedNodeResult(DataMutateResult.SUCCESS, newNode);
@@ -518,7 +722,7 @@ public abstract class PermissionHolder {
         }
 
         Difference<Node> changes = getData(dataType).remove(node);
-        invalidateCache();
+        invalidateCache(changes);
         this.plugin.getEventDispatcher().dispatchNodeChanges(this, dataType, changes);
 
         return DataMutateResult.SUCCESS;
@@ -540,7 +744,7 @@ public abstract class PermissionHolder {
 
                     // Remove the old Node & add the new one.
                     Difference<Node> changes = data.removeThenAdd(otherMatch, newNode);
-                    invalidateCache();
+                    invalidateCache(changes);
                     this.plugin.getEventDispatcher().dispatchNodeChanges(this, dataType, changes);
 
                     return new MergedNodeResult(DataMutateResult.SUCCESS, newNode);
@@ -568,7 +772,7 @@ public abstract class PermissionHolder {
             getPlugin().getUserManager().giveDefaultIfNeeded((User) this);
         }
 
-        invalidateCache();
+        invalidateCache(changes);
         this.plugin.getEventDispatcher().dispatchNodeClear(this, dataType, changes);
         return true;
     }
@@ -585,7 +789,7 @@ public abstract class PermissionHolder {
             getPlugin().getUserManager().giveDefaultIfNeeded((User) this);
         }
 
-        invalidateCache();
+        invalidateCache(changes);
         this.plugin.getEventDispatcher().dispatchNodeClear(this, dataType, changes);
         return true;
     }
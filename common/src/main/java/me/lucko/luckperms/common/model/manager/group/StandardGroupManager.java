@@ -39,4 +39,24 @@ public class StandardGroupManager extends AbstractGroupManager<Group> {
     public Group apply(String name) {
         return new Group(name, this.plugin);
     }
+
+    @Override
+    public Group getOrMake(String id) {
+        Group group = getIfLoaded(id);
+        if (group == null) {
+            group = super.getOrMake(id);
+
+            // a newly loaded group may complete a previously broken inheritance link
+            this.plugin.getInheritanceGraphFactory().invalidate();
+        }
+        return group;
+    }
+
+    @Override
+    public void unload(String id) {
+        super.unload(id);
+        if (id != null) {
+            this.plugin.getInheritanceGraphFactory().invalidate();
+        }
+    }
 }
@@ -0,0 +1,439 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.model.nodemap;
+
+import com.google.common.collect.ImmutableCollection;
+import com.google.common.collect.ImmutableSet;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.model.PermissionHolder;
+import me.lucko.luckperms.common.util.Difference;
+import net.luckperms.api.context.ContextSatisfyMode;
+import net.luckperms.api.context.ContextSet;
+import net.luckperms.api.context.ImmutableContextSet;
+import net.luckperms.api.model.data.DataType;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.NodeType;
+import net.luckperms.api.node.types.InheritanceNode;
+import net.luckperms.api.query.QueryOptions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A {@link NodeMap} which publishes an immutable, array-backed snapshot of its
+ * contents after every write.
+ *
+ * <p>Reads are lock free and iterate over plain arrays, grouped by context set, with
+ * inheritance nodes and nodes of each {@link NodeType} split out in advance. Writes
+ * copy the current snapshot into a {@link NodeMapMutable}, apply the change to it
+ * (so the semantics are identical), and then publish a new snapshot. This makes writes
+ * considerably more expensive, so this implementation is only suitable when reads
+ * vastly outnumber writes.</p>
+ */
+public class CopyOnWriteNodeMap implements NodeMap {
+
+    /**
+     * The types which can be returned by {@link Node#getType()}, and so have their own slice
+     */
+    private static final Set<NodeType<?>> CONCRETE_TYPES = ImmutableSet.of(
+            NodeType.PERMISSION, NodeType.REGEX_PERMISSION, NodeType.INHERITANCE, NodeType.PREFIX,
+            NodeType.SUFFIX, NodeType.META, NodeType.WEIGHT, NodeType.DISPLAY_NAME
+    );
+
+    private final PermissionHolder holder;
+    private final DataType type;
+
+    /**
+     * The current snapshot. Replaced (never modified) by writes.
+     */
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * Used to serialise writes. Reads don't lock.
+     */
+    private final Lock lock = new ReentrantLock();
+
+    public CopyOnWriteNodeMap(PermissionHolder holder, DataType type) {
+        this.holder = holder;
+        this.type = type;
+    }
+
+    protected ContextSatisfyMode defaultSatisfyMode() {
+        return this.holder.getPlugin().getConfiguration().get(ConfigKeys.CONTEXT_SATISFY_MODE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.snapshot.size == 0;
+    }
+
+    @Override
+    public int size() {
+        return this.snapshot.size;
+    }
+
+    @Override
+    public Map<ImmutableContextSet, Collection<Node>> asMap() {
+        Map<ImmutableContextSet, Collection<Node>> map = new HashMap<>();
+        for (Entry entry : this.snapshot.entries) {
+            map.put(entry.context, new ArrayList<>(Arrays.asList(entry.nodes)));
+        }
+        return map;
+    }
+
+    @Override
+    public Map<ImmutableContextSet, Collection<InheritanceNode>> inheritanceAsMap() {
+        Map<ImmutableContextSet, Collection<InheritanceNode>> map = new HashMap<>();
+        for (Entry entry : this.snapshot.entries) {
+            if (entry.inheritanceNodes.length != 0) {
+                map.put(entry.context, new ArrayList<>(Arrays.asList(entry.inheritanceNodes)));
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public void forEach(Consumer<? super Node> consumer) {
+        for (Entry entry : this.snapshot.entries) {
+            for (Node node : entry.nodes) {
+                consumer.accept(node);
+            }
+        }
+    }
+
+    @Override
+    public void forEach(QueryOptions filter, Consumer<? super Node> consumer) {
+        ContextSatisfyMode satisfyMode = defaultSatisfyMode();
+        for (Entry entry : this.snapshot.entries) {
+            for (Node node : entry.select(filter, satisfyMode)) {
+                consumer.accept(node);
+            }
+        }
+    }
+
+    @Override
+    public void copyTo(Collection<? super Node> collection) {
+        for (Entry entry : this.snapshot.entries) {
+            Collections.addAll(collection, entry.nodes);
+        }
+    }
+
+    @Override
+    public void copyTo(ImmutableCollection.Builder<? super Node> collection) {
+        for (Entry entry : this.snapshot.entries) {
+            for (Node node : entry.nodes) {
+                collection.add(node);
+            }
+        }
+    }
+
+    @Override
+    public void copyTo(Collection<? super Node> collection, QueryOptions filter) {
+        ContextSatisfyMode satisfyMode = defaultSatisfyMode();
+        for (Entry entry : this.snapshot.entries) {
+            Collections.addAll(collection, entry.select(filter, satisfyMode));
+        }
+    }
+
+    @Override
+    public <T extends Node> void copyTo(Collection<? super T> collection, NodeType<T> type, QueryOptions filter) {
+        if (type == NodeType.INHERITANCE) {
+            //noinspection unchecked
+            copyInheritanceNodesTo((Collection<? super InheritanceNode>) collection, filter);
+            return;
+        }
+
+        ContextSatisfyMode satisfyMode = defaultSatisfyMode();
+        for (Entry entry : this.snapshot.entries) {
+            if (!filter.satisfies(entry.context, satisfyMode) || NodeMapBase.normalNodesExcludeTest(filter, entry.context)) {
+                continue;
+            }
+
+            if (!CONCRETE_TYPES.contains(type)) {
+                // composite types (e.g. META_OR_CHAT_META) span several slices
+                for (Node node : entry.nodes) {
+                    if (type.matches(node)) {
+                        collection.add(type.cast(node));
+                    }
+                }
+                continue;
+            }
+
+            Node[] nodes = entry.nodesByType.get(type);
+            if (nodes != null) {
+                for (Node node : nodes) {
+                    collection.add(type.cast(node));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void copyInheritanceNodesTo(Collection<? super InheritanceNode> collection) {
+        for (Entry entry : this.snapshot.entries) {
+            Collections.addAll(collection, entry.inheritanceNodes);
+        }
+    }
+
+    @Override
+    public void copyInheritanceNodesTo(ImmutableCollection.Builder<? super InheritanceNode> collection) {
+        for (Entry entry : this.snapshot.entries) {
+            for (InheritanceNode node : entry.inheritanceNodes) {
+                collection.add(node);
+            }
+        }
+    }
+
+    @Override
+    public void copyInheritanceNodesTo(Collection<? super InheritanceNode> collection, QueryOptions filter) {
+        ContextSatisfyMode satisfyMode = defaultSatisfyMode();
+        for (Entry entry : this.snapshot.entries) {
+            if (entry.inheritanceNodes.length != 0 &&
+                    filter.satisfies(entry.context, satisfyMode) &&
+                    NodeMapBase.inheritanceNodesIncludeTest(filter, entry.context)) {
+                Collections.addAll(collection, entry.inheritanceNodes);
+            }
+        }
+    }
+
+    @Override
+    public Collection<Node> nodesInContext(ContextSet context) {
+        Entry entry = this.snapshot.index.get(context.immutableCopy());
+        if (entry == null) {
+            return Collections.emptySet();
+        }
+        return new ArrayList<>(Arrays.asList(entry.nodes));
+    }
+
+    @Override
+    public Collection<InheritanceNode> inheritanceNodesInContext(ContextSet context) {
+        Entry entry = this.snapshot.index.get(context.immutableCopy());
+        if (entry == null) {
+            return Collections.emptySet();
+        }
+        return new ArrayList<>(Arrays.asList(entry.inheritanceNodes));
+    }
+
+    // mutate methods
+
+    private Difference<Node> write(Function<NodeMap, Difference<Node>> mutation) {
+        this.lock.lock();
+        try {
+            NodeMapMutable working = new NodeMapMutable(this.holder, this.type);
+            for (Entry entry : this.snapshot.entries) {
+                for (Node node : entry.nodes) {
+                    working.add(node);
+                }
+            }
+
+            Difference<Node> result = mutation.apply(working);
+            if (!result.isEmpty()) {
+                this.snapshot = Snapshot.of(working);
+            }
+            return result;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public Difference<Node> add(Node nodeWithoutInheritanceOrigin) {
+        return write(map -> map.add(nodeWithoutInheritanceOrigin));
+    }
+
+    @Override
+    public Difference<Node> remove(Node node) {
+        return write(map -> map.remove(node));
+    }
+
+    @Override
+    public Difference<Node> removeExact(Node node) {
+        return write(map -> map.removeExact(node));
+    }
+
+    @Override
+    public Difference<Node> removeIf(Predicate<? super Node> predicate) {
+        return write(map -> map.removeIf(predicate));
+    }
+
+    @Override
+    public Difference<Node> removeIf(ContextSet contextSet, Predicate<? super Node> predicate) {
+        return write(map -> map.removeIf(contextSet, predicate));
+    }
+
+    @Override
+    public Difference<Node> removeThenAdd(Node nodeToRemove, Node nodeToAdd) {
+        return write(map -> map.removeThenAdd(nodeToRemove, nodeToAdd));
+    }
+
+    @Override
+    public Difference<Node> clear() {
+        Difference<Node> result = new Difference<>();
+
+        this.lock.lock();
+        try {
+            for (Entry entry : this.snapshot.entries) {
+                result.recordChanges(Difference.ChangeType.REMOVE, Arrays.asList(entry.nodes));
+            }
+            this.snapshot = Snapshot.EMPTY;
+        } finally {
+            this.lock.unlock();
+        }
+
+        return result;
+    }
+
+    @Override
+    public Difference<Node> clear(ContextSet contextSet) {
+        return write(map -> map.clear(contextSet));
+    }
+
+    @Override
+    public Difference<Node> setContent(Iterable<? extends Node> set) {
+        return write(map -> map.setContent(set));
+    }
+
+    @Override
+    public Difference<Node> setContent(Stream<? extends Node> stream) {
+        return write(map -> map.setContent(stream));
+    }
+
+    @Override
+    public Difference<Node> applyChanges(Difference<Node> changes) {
+        return write(map -> map.applyChanges(changes));
+    }
+
+    @Override
+    public Difference<Node> addAll(Iterable<? extends Node> set) {
+        return write(map -> map.addAll(set));
+    }
+
+    @Override
+    public Difference<Node> addAll(Stream<? extends Node> stream) {
+        return write(map -> map.addAll(stream));
+    }
+
+    /**
+     * An immutable snapshot of the contents of the map.
+     */
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new Entry[0], 0);
+
+        static Snapshot of(NodeMapMutable map) {
+            List<Entry> entries = new ArrayList<>();
+            int size = 0;
+
+            // the maps are already ordered by context set, and the nodes by priority
+            for (Map.Entry<ImmutableContextSet, SortedSet<Node>> e : map.map().entrySet()) {
+                if (e.getValue().isEmpty()) {
+                    continue;
+                }
+
+                Node[] nodes = e.getValue().toArray(new Node[0]);
+                SortedSet<InheritanceNode> inheritance = map.inheritanceMap().get(e.getKey());
+                InheritanceNode[] inheritanceNodes = inheritance == null
+                        ? new InheritanceNode[0]
+                        : inheritance.toArray(new InheritanceNode[0]);
+
+                entries.add(new Entry(e.getKey(), nodes, inheritanceNodes));
+                size += nodes.length;
+            }
+
+            return new Snapshot(entries.toArray(new Entry[0]), size);
+        }
+
+        final Entry[] entries;
+        final Map<ImmutableContextSet, Entry> index;
+        final int size;
+
+        private Snapshot(Entry[] entries, int size) {
+            this.entries = entries;
+            this.size = size;
+            this.index = new HashMap<>(entries.length);
+            for (Entry entry : entries) {
+                this.index.put(entry.context, entry);
+            }
+        }
+    }
+
+    /**
+     * The nodes in a single context set.
+     */
+    private static final class Entry {
+        final ImmutableContextSet context;
+        final Node[] nodes;
+        final InheritanceNode[] inheritanceNodes;
+        final Map<NodeType<?>, Node[]> nodesByType;
+
+        Entry(ImmutableContextSet context, Node[] nodes, InheritanceNode[] inheritanceNodes) {
+            this.context = context;
+            this.nodes = nodes;
+            this.inheritanceNodes = inheritanceNodes;
+
+            // collectors preserve encounter order, so each slice stays in priority order
+            Map<NodeType<?>, List<Node>> byType = Arrays.stream(nodes)
+                    .collect(Collectors.groupingBy(Node::getType, IdentityHashMap::new, Collectors.toList()));
+            this.nodesByType = new IdentityHashMap<>(byType.size());
+            byType.forEach((type, list) -> this.nodesByType.put(type, list.toArray(new Node[0])));
+        }
+
+        /**
+         * Selects the nodes in this entry which should be included for the given filter.
+         */
+        Node[] select(QueryOptions filter, ContextSatisfyMode satisfyMode) {
+            if (!filter.satisfies(this.context, satisfyMode)) {
+                return EMPTY_NODES;
+            }
+
+            if (NodeMapBase.normalNodesExcludeTest(filter, this.context)) {
+                if (NodeMapBase.inheritanceNodesIncludeTest(filter, this.context)) {
+                    return this.inheritanceNodes;
+                }
+                return EMPTY_NODES;
+            }
+
+            return this.nodes;
+        }
+
+        private static final Node[] EMPTY_NODES = new Node[0];
+    }
+
+}
@@ -57,6 +57,12 @@ public class RecordedNodeMap implements NodeMap {
     private final Lock lock = new ReentrantLock();
     private Difference<Node> changes = new Difference<>();
 
+    /**
+     * The changes which haven't been taken by {@link #exportUnsentChanges()} yet, or null
+     * if they aren't being recorded
+     */
+    private Difference<Node> unsentChanges = null;
+
     public RecordedNodeMap(NodeMap delegate) {
         this.delegate = delegate;
     }
@@ -74,6 +80,15 @@ public class RecordedNodeMap implements NodeMap {
         }
     }
 
+    public Difference<Node> copyChanges() {
+        this.lock.lock();
+        try {
+            return new Difference<Node>().mergeFrom(this.changes);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
     public Difference<Node> exportChanges(Predicate<Difference<Node>> onlyIf) {
         this.lock.lock();
         try {
@@ -88,6 +103,56 @@ public class RecordedNodeMap implements NodeMap {
         }
     }
 
+    /**
+     * Takes the changes recorded since this method was last called, so they can be sent
+     * to other servers. Unlike {@link #exportChanges(Predicate)}, these aren't consumed
+     * when the holder is saved.
+     *
+     * <p>Changes are only recorded separately once this method has been called, so the
+     * first call returns the changes since the holder was last saved or loaded.</p>
+     *
+     * @return the unsent changes
+     */
+    public Difference<Node> exportUnsentChanges() {
+        this.lock.lock();
+        try {
+            Difference<Node> unsent = this.unsentChanges != null ? this.unsentChanges : new Difference<Node>().mergeFrom(this.changes);
+            this.unsentChanges = new Difference<>();
+            return unsent;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Discards the changes which haven't been taken by {@link #exportUnsentChanges()} yet.
+     */
+    public void discardUnsentChanges() {
+        this.lock.lock();
+        try {
+            if (this.unsentChanges != null) {
+                this.unsentChanges = new Difference<>();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Puts changes taken by {@link #exportChanges(Predicate)} back into the log, ahead of
+     * any changes recorded since. Used when the exported changes could not be saved.
+     *
+     * @param exported the exported changes
+     */
+    public void restoreChanges(Difference<Node> exported) {
+        this.lock.lock();
+        try {
+            this.changes = new Difference<Node>().mergeFrom(exported).mergeFrom(this.changes);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
     public Difference<Node> addDefaultNodeToChangeSet() {
         Difference<Node> diff = new Difference<>();
         diff.recordChange(Difference.ChangeType.ADD, Inheritance.builder(GroupManager.DEFAULT_GROUP_NAME).build());
@@ -98,6 +163,9 @@ public class RecordedNodeMap implements NodeMap {
         this.lock.lock();
         try {
             this.changes.mergeFrom(result);
+            if (this.unsentChanges != null) {
+                this.unsentChanges.mergeFrom(result);
+            }
         } finally {
             this.lock.unlock();
         }
@@ -36,6 +36,7 @@ import org.checkerframework.checker.nullness.qual.Nullable;
  */
 public abstract class ConstraintNodeMatcher<T extends Node> implements NodeMatcher<T> {
     private final Constraint constraint;
+    private volatile boolean cancelled = false;
 
     protected ConstraintNodeMatcher(Constraint constraint) {
         this.constraint = constraint;
@@ -45,6 +46,17 @@ public abstract class ConstraintNodeMatcher<T extends Node> implements NodeMatch
         return this.constraint;
     }
 
+    /**
+     * Requests that any storage searches using this matcher stop early.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
     public abstract @Nullable T filterConstraintMatch(@NonNull Node node);
 
     public @Nullable T match(Node node) {
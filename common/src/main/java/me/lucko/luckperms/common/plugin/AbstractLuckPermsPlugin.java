@@ -28,6 +28,7 @@ package me.lucko.luckperms.common.plugin;
 import me.lucko.luckperms.common.actionlog.LogDispatcher;
 import me.lucko.luckperms.common.api.ApiRegistrationUtil;
 import me.lucko.luckperms.common.api.LuckPermsApiProvider;
+import me.lucko.luckperms.common.cacheddata.PermissionCacheInterner;
 import me.lucko.luckperms.common.calculator.CalculatorFactory;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.config.LuckPermsConfiguration;
@@ -109,6 +110,7 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
     private SyncTask.Buffer syncTaskBuffer;
     private InheritanceGraphFactory inheritanceGraphFactory;
     private CalculatorFactory calculatorFactory;
+    private PermissionCacheInterner permissionCacheInterner;
     private LuckPermsApiProvider apiProvider;
     private EventDispatcher eventDispatcher;
     private SimpleExtensionManager extensionManager;
@@ -139,7 +141,7 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
         Message.STARTUP_BANNER.send(getConsoleSender(), getBootstrap());
 
         // load some utilities early
-        this.verboseHandler = new VerboseHandler(getBootstrap().getScheduler());
+        this.verboseHandler = new VerboseHandler(getBootstrap().getScheduler(), getLogger());
         this.logDispatcher = new LogDispatcher(this);
 
         // load configuration
@@ -216,6 +218,7 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
 
         // init calculator factory
         this.calculatorFactory = provideCalculatorFactory();
+        this.permissionCacheInterner = new PermissionCacheInterner(this);
 
         // setup contextmanager & register common calculators
         setupContextManager();
@@ -418,6 +421,12 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
         if (meta.sizeBytes() != null) {
             map.put("storageSizeBytes", meta.sizeBytes());
         }
+        if (meta.pendingSaves() != null) {
+            map.put("storagePendingSaves", meta.pendingSaves());
+        }
+        if (meta.flushLatency() != null) {
+            map.put("storageFlushLatency", meta.flushLatency());
+        }
 
         return HealthCheckResult.healthy(map);
     }
@@ -553,6 +562,11 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
         return this.calculatorFactory;
     }
 
+    @Override
+    public PermissionCacheInterner getPermissionCacheInterner() {
+        return this.permissionCacheInterner;
+    }
+
     @Override
     public LuckPermsApiProvider getApiProvider() {
         return this.apiProvider;
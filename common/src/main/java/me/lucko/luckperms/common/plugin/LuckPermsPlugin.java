@@ -27,6 +27,7 @@ package me.lucko.luckperms.common.plugin;
 
 import me.lucko.luckperms.common.actionlog.LogDispatcher;
 import me.lucko.luckperms.common.api.LuckPermsApiProvider;
+import me.lucko.luckperms.common.cacheddata.PermissionCacheInterner;
 import me.lucko.luckperms.common.calculator.CalculatorFactory;
 import me.lucko.luckperms.common.command.CommandManager;
 import me.lucko.luckperms.common.command.abstraction.Command;
@@ -215,6 +216,13 @@ public interface LuckPermsPlugin {
      */
     CalculatorFactory getCalculatorFactory();
 
+    /**
+     * Gets the interner used to share permission caches between users.
+     *
+     * @return the permission cache interner
+     */
+    PermissionCacheInterner getPermissionCacheInterner();
+
     /**
      * Gets the verbose debug handler instance.
      *
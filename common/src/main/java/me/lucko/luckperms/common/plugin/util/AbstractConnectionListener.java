@@ -25,6 +25,7 @@
 
 package me.lucko.luckperms.common.plugin.util;
 
+import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import net.luckperms.api.model.PlayerSaveResult;
@@ -33,6 +34,7 @@ import net.luckperms.api.platform.Platform;
 
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -41,9 +43,11 @@ import java.util.concurrent.ConcurrentHashMap;
 public abstract class AbstractConnectionListener {
     private final LuckPermsPlugin plugin;
     private final Set<UUID> uniqueConnections = ConcurrentHashMap.newKeySet();
+    private final LoginUserLoader userLoader;
 
     protected AbstractConnectionListener(LuckPermsPlugin plugin) {
         this.plugin = plugin;
+        this.userLoader = new LoginUserLoader(plugin, plugin.getConfiguration().get(ConfigKeys.LOGIN_BATCH_SIZE));
     }
 
     /**
@@ -59,15 +63,44 @@ public abstract class AbstractConnectionListener {
         this.uniqueConnections.add(uniqueId);
     }
 
-    public User loadUser(UUID uniqueId, String username) {
+    /**
+     * Loads the data for a connecting player.
+     *
+     * <p>The player's uuid data is saved at the same time as their permission data is
+     * loaded, and the load may be combined with those of other connecting players.</p>
+     *
+     * @param uniqueId the players unique id
+     * @param username the players username
+     * @return a future encapsulating the loaded user
+     */
+    public CompletableFuture<User> loadUserAsync(UUID uniqueId, String username) {
         final long startTime = System.currentTimeMillis();
 
         // register with the housekeeper to avoid accidental unloads
         this.plugin.getUserManager().getHouseKeeper().registerUsage(uniqueId);
 
         // save uuid data.
-        PlayerSaveResult saveResult = this.plugin.getStorage().savePlayerData(uniqueId, username).join();
+        CompletableFuture<Void> saveFuture = this.plugin.getStorage().savePlayerData(uniqueId, username)
+                .thenAccept(saveResult -> handlePlayerSaveResult(uniqueId, username, saveResult));
+
+        // load the user's data, independently of the uuid data
+        CompletableFuture<User> loadFuture = this.userLoader.load(uniqueId, username);
+
+        return loadFuture.thenCombine(saveFuture, (user, v) -> {
+            if (user == null) {
+                throw new NullPointerException("User is null");
+            }
+
+            final long time = System.currentTimeMillis() - startTime;
+            if (time >= 1000) {
+                this.plugin.getLogger().warn("Processing login for " + username + " took " + time + "ms.");
+            }
 
+            return user;
+        });
+    }
+
+    private void handlePlayerSaveResult(UUID uniqueId, String username, PlayerSaveResult saveResult) {
         // fire UserFirstLogin event
         if (saveResult.includes(PlayerSaveResult.Outcome.CLEAN_INSERT)) {
             this.plugin.getEventDispatcher().dispatchUserFirstLogin(uniqueId, username);
@@ -97,18 +130,6 @@ public abstract class AbstractConnectionListener {
 
             this.plugin.getLogger().warn("See here for more info: https://luckperms.net/wiki/Network-Installation#pre-setup");
         }
-
-        User user = this.plugin.getStorage().loadUser(uniqueId, username).join();
-        if (user == null) {
-            throw new NullPointerException("User is null");
-        }
-
-        final long time = System.currentTimeMillis() - startTime;
-        if (time >= 1000) {
-            this.plugin.getLogger().warn("Processing login for " + username + " took " + time + "ms.");
-        }
-
-        return user;
     }
 
     public void handleDisconnect(UUID uniqueId) {
@@ -0,0 +1,182 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.plugin.util;
+
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.storage.Storage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads users for connecting players, combining concurrent requests where possible.
+ *
+ * <p>Requests to load a user which is already being loaded share the existing load.
+ * Requests which arrive while the maximum number of loads are already running are
+ * queued, and loaded together in a single batch once a load finishes. This means a
+ * burst of logins (e.g. after a restart) only needs a handful of round trips to the
+ * storage, without adding any latency when logins are infrequent.</p>
+ */
+public class LoginUserLoader {
+
+    /** The maximum number of loads which can run at once */
+    private static final int MAX_CONCURRENT_LOADS = 4;
+
+    private final LuckPermsPlugin plugin;
+
+    /** The maximum number of users to load in a single batch */
+    private final int maxBatchSize;
+
+    /** The loads which are queued or running, keyed by unique id */
+    private final Map<UUID, CompletableFuture<User>> loads = new ConcurrentHashMap<>();
+
+    /** The loads waiting to be started */
+    private final Queue<PendingLoad> queue = new ConcurrentLinkedQueue<>();
+
+    /** The number of loads currently running */
+    private final AtomicInteger running = new AtomicInteger(0);
+
+    public LoginUserLoader(LuckPermsPlugin plugin, int maxBatchSize) {
+        this.plugin = plugin;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /**
+     * Loads a user.
+     *
+     * @param uniqueId the users unique id
+     * @param username the users username
+     * @return a future encapsulating the loaded user
+     */
+    public CompletableFuture<User> load(UUID uniqueId, String username) {
+        CompletableFuture<User> future = new CompletableFuture<>();
+        CompletableFuture<User> existing = this.loads.putIfAbsent(uniqueId, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        future.whenComplete((user, ex) -> this.loads.remove(uniqueId, future));
+        this.queue.add(new PendingLoad(uniqueId, username, future));
+        drain();
+        return future;
+    }
+
+    private void drain() {
+        while (!this.queue.isEmpty()) {
+            int running = this.running.get();
+            if (running >= MAX_CONCURRENT_LOADS) {
+                // the next load to finish will pick up the queue
+                return;
+            }
+            if (!this.running.compareAndSet(running, running + 1)) {
+                continue;
+            }
+
+            List<PendingLoad> batch = new ArrayList<>();
+            for (PendingLoad load; batch.size() < this.maxBatchSize && (load = this.queue.poll()) != null; ) {
+                batch.add(load);
+            }
+
+            if (batch.isEmpty()) {
+                this.running.decrementAndGet();
+                continue;
+            }
+
+            loadBatch(batch).whenComplete((v, ex) -> {
+                this.running.decrementAndGet();
+                drain();
+            });
+        }
+    }
+
+    private CompletableFuture<Void> loadBatch(List<PendingLoad> batch) {
+        Storage storage = this.plugin.getStorage();
+
+        if (batch.size() == 1 || !storage.canBatchLoadUsers()) {
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                PendingLoad load = batch.get(i);
+                futures[i] = storage.loadUser(load.uniqueId, load.username).whenComplete((user, ex) -> load.complete(user, ex));
+            }
+            return CompletableFuture.allOf(futures).handle((v, ex) -> null);
+        }
+
+        Set<UUID> uniqueIds = new HashSet<>();
+        for (PendingLoad load : batch) {
+            // create the user with the username they're connecting with first,
+            // in the same way as a single load would
+            this.plugin.getUserManager().getOrMake(load.uniqueId, load.username);
+            uniqueIds.add(load.uniqueId);
+        }
+
+        return storage.loadUsers(uniqueIds).handle((users, ex) -> {
+            for (PendingLoad load : batch) {
+                if (ex != null) {
+                    load.complete(null, ex);
+                    continue;
+                }
+
+                User user = users.get(load.uniqueId);
+                if (user != null && user.auditTemporaryNodes()) {
+                    storage.saveUser(user);
+                }
+                load.complete(user, null);
+            }
+            return null;
+        });
+    }
+
+    private static final class PendingLoad {
+        private final UUID uniqueId;
+        private final String username;
+        private final CompletableFuture<User> future;
+
+        PendingLoad(UUID uniqueId, String username, CompletableFuture<User> future) {
+            this.uniqueId = uniqueId;
+            this.username = username;
+            this.future = future;
+        }
+
+        void complete(User user, Throwable ex) {
+            if (ex != null) {
+                this.future.completeExceptionally(ex);
+            } else {
+                this.future.complete(user);
+            }
+        }
+    }
+
+}
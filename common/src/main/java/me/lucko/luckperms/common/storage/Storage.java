@@ -26,16 +26,25 @@
 package me.lucko.luckperms.common.storage;
 
 import com.google.common.collect.ImmutableList;
+import me.lucko.luckperms.common.actionlog.ActionFilter;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
 import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.HolderType;
+import me.lucko.luckperms.common.model.PermissionHolderIdentifier;
 import me.lucko.luckperms.common.model.Track;
 import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.node.comparator.NodeEntryComparator;
 import me.lucko.luckperms.common.node.matcher.ConstraintNodeMatcher;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
 import me.lucko.luckperms.common.storage.implementation.split.SplitStorage;
+import me.lucko.luckperms.common.storage.implementation.split.SplitStorageType;
+import me.lucko.luckperms.common.storage.implementation.sql.SqlStorage;
 import me.lucko.luckperms.common.storage.misc.NodeEntry;
+import me.lucko.luckperms.common.storage.misc.NodeEntryPage;
+import me.lucko.luckperms.common.util.CompletableFutures;
 import me.lucko.luckperms.common.util.Throwing;
 import net.luckperms.api.actionlog.Action;
 import net.luckperms.api.event.cause.CreationCause;
@@ -45,6 +54,7 @@ import net.luckperms.api.node.Node;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -61,16 +71,39 @@ import java.util.concurrent.CompletionException;
 public class Storage {
     private final LuckPermsPlugin plugin;
     private final StorageImplementation implementation;
+    private final WriteBehindQueue writeBehindQueue;
+
+    /** Bulk updates which are currently being applied, so they can be cancelled on shutdown */
+    private final Set<BulkUpdate> runningBulkUpdates = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
 
     public Storage(LuckPermsPlugin plugin, StorageImplementation implementation) {
+        this(plugin, implementation, 0);
+    }
+
+    public Storage(LuckPermsPlugin plugin, StorageImplementation implementation, long writeBehindDelay) {
         this.plugin = plugin;
         this.implementation = implementation;
+        this.writeBehindQueue = writeBehindDelay > 0 ? new WriteBehindQueue(plugin, implementation, writeBehindDelay) : null;
     }
 
     public StorageImplementation getImplementation() {
         return this.implementation;
     }
 
+    /**
+     * Gets if the storage can load a set of users with fewer round trips than
+     * loading each of them individually.
+     *
+     * @return if {@link #loadUsers(Set)} is more efficient than repeated calls to {@link #loadUser(UUID, String)}
+     */
+    public boolean canBatchLoadUsers() {
+        StorageImplementation implementation = this.implementation;
+        if (implementation instanceof SplitStorage) {
+            implementation = ((SplitStorage) implementation).getImplementation(SplitStorageType.USER);
+        }
+        return implementation instanceof SqlStorage;
+    }
+
     public Collection<StorageImplementation> getImplementations() {
         if (this.implementation instanceof SplitStorage) {
             return ((SplitStorage) this.implementation).getImplementations().values();
@@ -105,6 +138,56 @@ public class Storage {
         }, this.plugin.getBootstrap().getScheduler().async());
     }
 
+    private void flushPendingSaves(HolderType type, String name) {
+        if (this.writeBehindQueue != null) {
+            this.writeBehindQueue.flush(new PermissionHolderIdentifier(type, name));
+        }
+    }
+
+    private void flushAllPendingSaves() {
+        if (this.writeBehindQueue != null) {
+            this.writeBehindQueue.flushPending();
+        }
+    }
+
+    /**
+     * Gets a future which completes once all user and group saves requested
+     * before the call have been written to the storage implementation.
+     *
+     * @return a future
+     */
+    public CompletableFuture<Void> flushPendingSaves() {
+        if (this.writeBehindQueue == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return this.writeBehindQueue.awaitPendingSaves();
+    }
+
+    /**
+     * Gets a future which completes once the saves of the given holders requested
+     * before the call have been written to the storage implementation.
+     *
+     * @param identifiers the holder identifiers
+     * @return a future
+     */
+    public CompletableFuture<Void> flushPendingSaves(Collection<PermissionHolderIdentifier> identifiers) {
+        if (this.writeBehindQueue == null || identifiers.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return this.writeBehindQueue.awaitPendingSaves(identifiers);
+    }
+
+    /**
+     * Gets if user and group saves are buffered before being written, in which
+     * case the futures returned by {@link #saveUser(User)} and {@link #saveGroup(Group)}
+     * may not complete for some time.
+     *
+     * @return if saves are buffered
+     */
+    public boolean isBufferingSaves() {
+        return this.writeBehindQueue != null;
+    }
+
     public String getName() {
         return this.implementation.getImplementationName();
     }
@@ -118,6 +201,16 @@ public class Storage {
     }
 
     public void shutdown() {
+        synchronized (this.runningBulkUpdates) {
+            this.runningBulkUpdates.forEach(BulkUpdate::cancel);
+        }
+
+        try {
+            flushAllPendingSaves();
+        } catch (Exception e) {
+            this.plugin.getLogger().severe("Failed to flush pending saves", e);
+        }
+
         try {
             this.implementation.shutdown();
         } catch (Exception e) {
@@ -126,7 +219,16 @@ public class Storage {
     }
 
     public StorageMetadata getMeta() {
-        return this.implementation.getMeta();
+        StorageMetadata meta = this.implementation.getMeta();
+        if (this.writeBehindQueue != null) {
+            meta.pendingSaves(this.writeBehindQueue.getQueueDepth());
+
+            long flushLatency = this.writeBehindQueue.getAverageFlushLatency();
+            if (flushLatency >= 0) {
+                meta.flushLatency(flushLatency);
+            }
+        }
+        return meta;
     }
 
     public CompletableFuture<Void> logAction(Action entry) {
@@ -137,12 +239,25 @@ public class Storage {
         return future(this.implementation::getLog);
     }
 
+    public CompletableFuture<LogPage> getLogPage(ActionFilter filter, int pageNumber, int pageSize) {
+        return future(() -> this.implementation.getLogPage(filter, pageNumber, pageSize));
+    }
+
     public CompletableFuture<Void> applyBulkUpdate(BulkUpdate bulkUpdate) {
-        return future(() -> this.implementation.applyBulkUpdate(bulkUpdate));
+        return future(() -> {
+            this.runningBulkUpdates.add(bulkUpdate);
+            try {
+                flushAllPendingSaves();
+                this.implementation.applyBulkUpdate(bulkUpdate);
+            } finally {
+                this.runningBulkUpdates.remove(bulkUpdate);
+            }
+        });
     }
 
     public CompletableFuture<User> loadUser(UUID uniqueId, String username) {
         return future(() -> {
+            flushPendingSaves(HolderType.USER, uniqueId.toString());
             User user = this.implementation.loadUser(uniqueId, username);
             if (user != null) {
                 this.plugin.getEventDispatcher().dispatchUserLoad(user);
@@ -153,6 +268,7 @@ public class Storage {
 
     public CompletableFuture<Map<UUID, User>> loadUsers(Set<UUID> uniqueIds) {
         return future(() -> {
+            flushAllPendingSaves();
             Map<UUID, User> users = this.implementation.loadUsers(uniqueIds);
             for (User user : users.values()) {
                 this.plugin.getEventDispatcher().dispatchUserLoad(user);
@@ -162,23 +278,57 @@ public class Storage {
     }
 
     public CompletableFuture<Void> saveUser(User user) {
+        if (this.writeBehindQueue != null) {
+            return this.writeBehindQueue.enqueue(user);
+        }
         return future(() -> this.implementation.saveUser(user));
     }
 
+    public CompletableFuture<Void> saveUsers(Collection<User> users) {
+        if (this.writeBehindQueue != null) {
+            return users.stream()
+                    .map(this.writeBehindQueue::enqueue)
+                    .collect(CompletableFutures.collector());
+        }
+        return future(() -> this.implementation.saveUsers(users));
+    }
+
     public CompletableFuture<Set<UUID>> getUniqueUsers() {
-        return future(this.implementation::getUniqueUsers);
+        return future(() -> {
+            flushAllPendingSaves();
+            return this.implementation.getUniqueUsers();
+        });
     }
 
     public <N extends Node> CompletableFuture<List<NodeEntry<UUID, N>>> searchUserNodes(ConstraintNodeMatcher<N> constraint) {
         return future(() -> {
+            flushAllPendingSaves();
             List<NodeEntry<UUID, N>> result = this.implementation.searchUserNodes(constraint);
             result.removeIf(entry -> entry.getNode().hasExpired());
             return ImmutableList.copyOf(result);
         });
     }
 
+    /**
+     * Searches for user nodes, returning a single page of the results.
+     *
+     * <p>Results are ordered using {@link NodeEntryComparator}, which can't be expressed
+     * as a database query - so the matching nodes are found using the storage indexes,
+     * then sorted and paged here.</p>
+     *
+     * @param constraint the constraint
+     * @param pageNumber the page number, starting at 1
+     * @param pageSize the number of entries per page
+     * @param <N> the node type
+     * @return the page, or the first page if the page number is out of range
+     */
+    public <N extends Node> CompletableFuture<NodeEntryPage<UUID, N>> searchUserNodes(ConstraintNodeMatcher<N> constraint, int pageNumber, int pageSize) {
+        return searchUserNodes(constraint).thenApply(results -> NodeEntryPage.of(results, pageNumber, pageSize));
+    }
+
     public CompletableFuture<Group> createAndLoadGroup(String name, CreationCause cause) {
         return future(() -> {
+            flushPendingSaves(HolderType.GROUP, name.toLowerCase(Locale.ROOT));
             Group group = this.implementation.createAndLoadGroup(name.toLowerCase(Locale.ROOT));
             if (group != null) {
                 this.plugin.getEventDispatcher().dispatchGroupCreate(group, cause);
@@ -189,6 +339,7 @@ public class Storage {
 
     public CompletableFuture<Optional<Group>> loadGroup(String name) {
         return future(() -> {
+            flushPendingSaves(HolderType.GROUP, name.toLowerCase(Locale.ROOT));
             Optional<Group> group = this.implementation.loadGroup(name.toLowerCase(Locale.ROOT));
             if (group.isPresent()) {
                 this.plugin.getEventDispatcher().dispatchGroupLoad(group.get());
@@ -199,17 +350,22 @@ public class Storage {
 
     public CompletableFuture<Void> loadAllGroups() {
         return future(() -> {
+            flushAllPendingSaves();
             this.implementation.loadAllGroups();
             this.plugin.getEventDispatcher().dispatchGroupLoadAll();
         });
     }
 
     public CompletableFuture<Void> saveGroup(Group group) {
+        if (this.writeBehindQueue != null) {
+            return this.writeBehindQueue.enqueue(group);
+        }
         return future(() -> this.implementation.saveGroup(group));
     }
 
     public CompletableFuture<Void> deleteGroup(Group group, DeletionCause cause) {
         return future(() -> {
+            flushPendingSaves(HolderType.GROUP, group.getName());
             this.implementation.deleteGroup(group);
             this.plugin.getEventDispatcher().dispatchGroupDelete(group, cause);
         });
@@ -217,12 +373,27 @@ public class Storage {
 
     public <N extends Node> CompletableFuture<List<NodeEntry<String, N>>> searchGroupNodes(ConstraintNodeMatcher<N> constraint) {
         return future(() -> {
+            flushAllPendingSaves();
             List<NodeEntry<String, N>> result = this.implementation.searchGroupNodes(constraint);
             result.removeIf(entry -> entry.getNode().hasExpired());
             return ImmutableList.copyOf(result);
         });
     }
 
+    /**
+     * Searches for group nodes, returning a single page of the results.
+     *
+     * @param constraint the constraint
+     * @param pageNumber the page number, starting at 1
+     * @param pageSize the number of entries per page
+     * @param <N> the node type
+     * @return the page, or the first page if the page number is out of range
+     * @see #searchUserNodes(ConstraintNodeMatcher, int, int)
+     */
+    public <N extends Node> CompletableFuture<NodeEntryPage<String, N>> searchGroupNodes(ConstraintNodeMatcher<N> constraint, int pageNumber, int pageSize) {
+        return searchGroupNodes(constraint).thenApply(results -> NodeEntryPage.of(results, pageNumber, pageSize));
+    }
+
     public CompletableFuture<Track> createAndLoadTrack(String name, CreationCause cause) {
         return future(() -> {
             Track track = this.implementation.createAndLoadTrack(name.toLowerCase(Locale.ROOT));
@@ -272,7 +443,10 @@ public class Storage {
     }
 
     public CompletableFuture<Void> deletePlayerData(UUID uniqueId) {
-        return future(() -> this.implementation.deletePlayerData(uniqueId));
+        return future(() -> {
+            flushPendingSaves(HolderType.USER, uniqueId.toString());
+            this.implementation.deletePlayerData(uniqueId);
+        });
     }
 
     public CompletableFuture<UUID> getPlayerUniqueId(String username) {
@@ -66,6 +66,8 @@ public class StorageFactory {
     }
 
     public Storage getInstance() {
+        int writeBehindDelay = this.plugin.getConfiguration().get(ConfigKeys.WRITE_BEHIND_DELAY);
+
         Storage storage;
         if (this.plugin.getConfiguration().get(ConfigKeys.SPLIT_STORAGE)) {
             this.plugin.getLogger().info("Loading storage provider... [SPLIT STORAGE]");
@@ -76,12 +78,12 @@ public class StorageFactory {
                     .collect(ImmutableCollectors.toEnumMap(StorageType.class, e -> e, this::createNewImplementation));
 
             // make a base implementation
-            storage = new Storage(this.plugin, new SplitStorage(this.plugin, backing, mappedTypes));
+            storage = new Storage(this.plugin, new SplitStorage(this.plugin, backing, mappedTypes), writeBehindDelay);
 
         } else {
             StorageType type = this.plugin.getConfiguration().get(ConfigKeys.STORAGE_METHOD);
             this.plugin.getLogger().info("Loading storage provider... [" + type.name() + "]");
-            storage = new Storage(this.plugin, createNewImplementation(type));
+            storage = new Storage(this.plugin, createNewImplementation(type), writeBehindDelay);
         }
 
         storage.init();
@@ -34,6 +34,10 @@ public class StorageMetadata {
     // local
     private Long sizeBytes;
 
+    // write-behind
+    private Integer pendingSaves;
+    private Long flushLatency;
+
     public Boolean connected() {
         return this.connected;
     }
@@ -46,6 +50,14 @@ public class StorageMetadata {
         return this.sizeBytes;
     }
 
+    public Integer pendingSaves() {
+        return this.pendingSaves;
+    }
+
+    public Long flushLatency() {
+        return this.flushLatency;
+    }
+
     public StorageMetadata connected(boolean connected) {
         this.connected = connected;
         return this;
@@ -61,6 +73,16 @@ public class StorageMetadata {
         return this;
     }
 
+    public StorageMetadata pendingSaves(int pendingSaves) {
+        this.pendingSaves = pendingSaves;
+        return this;
+    }
+
+    public StorageMetadata flushLatency(long flushLatency) {
+        this.flushLatency = flushLatency;
+        return this;
+    }
+
     public StorageMetadata combine(StorageMetadata other) {
         if (this.connected == null || (other.connected != null && !other.connected)) {
             this.connected = other.connected;
@@ -71,6 +93,12 @@ public class StorageMetadata {
         if (this.sizeBytes == null || (other.sizeBytes != null && other.sizeBytes > this.sizeBytes)) {
             this.sizeBytes = other.sizeBytes;
         }
+        if (this.pendingSaves == null || (other.pendingSaves != null && other.pendingSaves > this.pendingSaves)) {
+            this.pendingSaves = other.pendingSaves;
+        }
+        if (this.flushLatency == null || (other.flushLatency != null && other.flushLatency > this.flushLatency)) {
+            this.flushLatency = other.flushLatency;
+        }
         return this;
     }
 
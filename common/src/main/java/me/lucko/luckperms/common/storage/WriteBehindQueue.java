@@ -0,0 +1,277 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage;
+
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.HolderType;
+import me.lucko.luckperms.common.model.PermissionHolder;
+import me.lucko.luckperms.common.model.PermissionHolderIdentifier;
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerTask;
+import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
+import me.lucko.luckperms.common.util.Iterators;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffers user & group saves before they are written to a {@link StorageImplementation}.
+ *
+ * <p>Saves are coalesced per {@link PermissionHolderIdentifier} - if a holder is saved
+ * again before the pending save has been flushed, only a single write is performed.</p>
+ */
+public class WriteBehindQueue {
+
+    /** The maximum number of holders to write in a single batch */
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private final LuckPermsPlugin plugin;
+    private final StorageImplementation implementation;
+    private final long delayMillis;
+
+    /** The pending saves, guarded by 'this' */
+    private final Map<PermissionHolderIdentifier, PendingSave> pending = new LinkedHashMap<>();
+    private SchedulerTask scheduledFlush = null;
+
+    /** The latest save of each holder which is being written, guarded by 'this' */
+    private final Map<PermissionHolderIdentifier, PendingSave> writing = new HashMap<>();
+
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushNanos = new AtomicLong();
+
+    public WriteBehindQueue(LuckPermsPlugin plugin, StorageImplementation implementation, long delayMillis) {
+        this.plugin = plugin;
+        this.implementation = implementation;
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * Queues a save for the given holder.
+     *
+     * @param holder the holder to save
+     * @return a future which completes once the holder has been written
+     */
+    public CompletableFuture<Void> enqueue(PermissionHolder holder) {
+        SchedulerAdapter scheduler = this.plugin.getBootstrap().getScheduler();
+
+        PendingSave save;
+        boolean flushNow;
+        synchronized (this) {
+            save = this.pending.computeIfAbsent(holder.getIdentifier(), PendingSave::new);
+            save.holder = holder;
+
+            flushNow = this.pending.size() >= MAX_BATCH_SIZE;
+            if (!flushNow && this.scheduledFlush == null) {
+                this.scheduledFlush = scheduler.asyncLater(this::flushPending, this.delayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (flushNow) {
+            scheduler.executeAsync(this::flushPending);
+        }
+        return save.future;
+    }
+
+    /**
+     * Writes all pending saves, blocking until they and any writes already in
+     * progress have completed.
+     */
+    public void flushPending() {
+        List<PendingSave> saves;
+        List<PendingSave> inProgress;
+        synchronized (this) {
+            if (this.scheduledFlush != null) {
+                this.scheduledFlush.cancel();
+                this.scheduledFlush = null;
+            }
+            inProgress = new ArrayList<>(this.writing.values());
+            saves = new ArrayList<>(this.pending.values());
+            this.pending.clear();
+            saves.forEach(this::startWriting);
+        }
+
+        if (!saves.isEmpty()) {
+            write(saves);
+        }
+        inProgress.forEach(PendingSave::await);
+    }
+
+    /**
+     * Writes the pending save for the given holder (if any), blocking until it
+     * and any write of the holder already in progress have completed.
+     *
+     * @param identifier the holder identifier
+     */
+    public void flush(PermissionHolderIdentifier identifier) {
+        PendingSave save;
+        PendingSave inProgress;
+        synchronized (this) {
+            save = this.pending.remove(identifier);
+            if (save != null) {
+                startWriting(save);
+            }
+            inProgress = this.writing.get(identifier);
+        }
+
+        if (save != null) {
+            write(Collections.singletonList(save));
+        }
+        if (inProgress != null) {
+            inProgress.await();
+        }
+    }
+
+    /**
+     * Flushes the queue asynchronously.
+     *
+     * @return a future which completes once all saves queued before the call have been written
+     */
+    public CompletableFuture<Void> awaitPendingSaves() {
+        return CompletableFuture.runAsync(this::flushPending, this.plugin.getBootstrap().getScheduler().async());
+    }
+
+    /**
+     * Flushes the pending saves of the given holders asynchronously.
+     *
+     * @param identifiers the holder identifiers
+     * @return a future which completes once the saves of the holders queued before the call have been written
+     */
+    public CompletableFuture<Void> awaitPendingSaves(Collection<PermissionHolderIdentifier> identifiers) {
+        return CompletableFuture.runAsync(() -> identifiers.forEach(this::flush), this.plugin.getBootstrap().getScheduler().async());
+    }
+
+    public synchronized int getQueueDepth() {
+        return this.pending.size();
+    }
+
+    /**
+     * Gets the average time taken to flush the queue.
+     *
+     * @return the average flush latency in milliseconds, or -1 if the queue has not been flushed yet
+     */
+    public long getAverageFlushLatency() {
+        long count = this.flushCount.get();
+        if (count == 0) {
+            return -1;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(this.flushNanos.get() / count);
+    }
+
+    // must be called while synchronized on 'this'
+    private void startWriting(PendingSave save) {
+        // writes of the same holder must happen in order
+        save.previous = this.writing.put(save.identifier, save);
+    }
+
+    private void write(List<PendingSave> saves) {
+        long start = System.nanoTime();
+
+        for (PendingSave save : saves) {
+            if (save.previous != null) {
+                save.previous.await();
+                save.previous = null;
+            }
+        }
+
+        List<PendingSave> users = new ArrayList<>();
+        for (PendingSave save : saves) {
+            if (save.holder.getType() == HolderType.USER) {
+                users.add(save);
+                continue;
+            }
+
+            try {
+                this.implementation.saveGroup((Group) save.holder);
+                save.future.complete(null);
+            } catch (Exception e) {
+                this.plugin.getLogger().warn("Failed to save group " + save.holder.getIdentifier().getName(), e);
+                save.future.completeExceptionally(e);
+            }
+        }
+
+        for (List<PendingSave> batch : Iterators.divideIterable(users, MAX_BATCH_SIZE)) {
+            List<User> batchUsers = new ArrayList<>(batch.size());
+            for (PendingSave save : batch) {
+                batchUsers.add((User) save.holder);
+            }
+
+            try {
+                this.implementation.saveUsers(batchUsers);
+                batch.forEach(save -> save.future.complete(null));
+            } catch (Exception e) {
+                this.plugin.getLogger().warn("Failed to save batch of " + batch.size() + " users", e);
+                batch.forEach(save -> save.future.completeExceptionally(e));
+            }
+        }
+
+        synchronized (this) {
+            for (PendingSave save : saves) {
+                this.writing.remove(save.identifier, save);
+            }
+        }
+
+        this.flushCount.incrementAndGet();
+        this.flushNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    private static final class PendingSave {
+        private final PermissionHolderIdentifier identifier;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private PermissionHolder holder;
+
+        /** The previous save of the same holder, which must be written first */
+        private PendingSave previous;
+
+        PendingSave(PermissionHolderIdentifier identifier) {
+            this.identifier = identifier;
+        }
+
+        /**
+         * Waits for the save to be written, ignoring any failure - it has already been
+         * reported to whoever requested the save.
+         */
+        void await() {
+            try {
+                this.future.join();
+            } catch (CompletionException | CancellationException e) {
+                // ignore
+            }
+        }
+    }
+
+}
@@ -25,7 +25,9 @@
 
 package me.lucko.luckperms.common.storage.implementation;
 
+import me.lucko.luckperms.common.actionlog.ActionFilter;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.Track;
@@ -39,6 +41,7 @@ import net.luckperms.api.model.PlayerSaveResult;
 import net.luckperms.api.node.Node;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -60,6 +63,8 @@ public interface StorageImplementation {
 
     Log getLog() throws Exception;
 
+    LogPage getLogPage(ActionFilter filter, int pageNumber, int pageSize) throws Exception;
+
     void applyBulkUpdate(BulkUpdate bulkUpdate) throws Exception;
 
     User loadUser(UUID uniqueId, String username) throws Exception;
@@ -68,6 +73,8 @@ public interface StorageImplementation {
 
     void saveUser(User user) throws Exception;
 
+    void saveUsers(Collection<User> users) throws Exception;
+
     Set<UUID> getUniqueUsers() throws Exception;
 
     <N extends Node> List<NodeEntry<UUID, N>> searchUserNodes(ConstraintNodeMatcher<N> constraint) throws Exception;
@@ -26,7 +26,9 @@
 package me.lucko.luckperms.common.storage.implementation.file;
 
 import com.google.common.collect.Iterables;
+import me.lucko.luckperms.common.actionlog.ActionFilter;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
 import me.lucko.luckperms.common.context.ImmutableContextSetImpl;
 import me.lucko.luckperms.common.context.serializer.ContextSetConfigurateSerializer;
@@ -172,6 +174,11 @@ public abstract class AbstractConfigurateStorage implements StorageImplementatio
         return this.actionLogger.getLog();
     }
 
+    @Override
+    public LogPage getLogPage(ActionFilter filter, int pageNumber, int pageSize) throws IOException {
+        return this.actionLogger.getLogPage(filter, pageNumber, pageSize);
+    }
+
     @Override
     public User loadUser(UUID uniqueId, String username) throws IOException {
         User user = this.plugin.getUserManager().getOrMake(uniqueId, username);
@@ -240,6 +247,13 @@ public abstract class AbstractConfigurateStorage implements StorageImplementatio
         }
     }
 
+    @Override
+    public void saveUsers(Collection<User> users) throws IOException {
+        for (User user : users) {
+            saveUser(user);
+        }
+    }
+
     @Override
     public Group createAndLoadGroup(String name) throws IOException {
         Group group = this.plugin.getGroupManager().getOrMake(name);
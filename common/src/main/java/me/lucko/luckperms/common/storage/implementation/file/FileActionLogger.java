@@ -28,20 +28,32 @@ package me.lucko.luckperms.common.storage.implementation.file;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.stream.JsonReader;
+import me.lucko.luckperms.common.actionlog.ActionFilter;
 import me.lucko.luckperms.common.actionlog.ActionJsonSerializer;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogPage;
+import me.lucko.luckperms.common.actionlog.LoggedAction;
 import me.lucko.luckperms.common.cache.BufferedRequest;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.util.Paginated;
 import me.lucko.luckperms.common.util.gson.GsonProvider;
 import net.luckperms.api.actionlog.Action;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -67,6 +79,17 @@ public class FileActionLogger {
 
     private final SaveBuffer saveBuffer;
 
+    /**
+     * An index of the position of each entry in the file, used to read
+     * pages of the log without parsing the whole file
+     */
+    private final LineIndex index = new LineIndex();
+
+    /**
+     * Lock to ensure the index isn't updated by multiple threads
+     */
+    private final ReentrantLock indexLock = new ReentrantLock();
+
     public FileActionLogger(LuckPermsPlugin plugin) {
         this.saveBuffer = new SaveBuffer(plugin);
     }
@@ -157,6 +180,163 @@ public class FileActionLogger {
         return log.build();
     }
 
+    public LogPage getLogPage(ActionFilter filter, int pageNumber, int pageSize) throws IOException {
+        int offset = Paginated.offset(pageNumber, pageSize);
+
+        // if there is log content waiting to be written, flush immediately before trying to read
+        if (this.saveBuffer.isEnqueued()) {
+            this.saveBuffer.requestDirectly();
+        }
+
+        if (!Files.exists(this.contentFile)) {
+            return new LogPage(Collections.emptyList(), pageNumber, pageSize, 0);
+        }
+
+        this.indexLock.lock();
+        try (FileChannel channel = FileChannel.open(this.contentFile, StandardOpenOption.READ)) {
+            this.index.update(channel);
+
+            // the index positions of the matching entries, oldest first
+            int[] matches;
+            int total;
+
+            if (filter.equals(ActionFilter.all())) {
+                matches = null;
+                total = this.index.size;
+            } else {
+                matches = new int[64];
+                total = 0;
+
+                // read sequentially through the indexed entries (not closed, as that would close the channel)
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0)), 65536));
+                long position = 0;
+                byte[] buf = new byte[512];
+
+                for (int i = 0; i < this.index.size; i++) {
+                    long start = this.index.starts[i];
+                    int length = this.index.lengths[i];
+
+                    in.skipBytes((int) (start - position));
+                    if (buf.length < length) {
+                        buf = new byte[length];
+                    }
+                    in.readFully(buf, 0, length);
+                    position = start + length;
+
+                    LoggedAction action = parse(new String(buf, 0, length, StandardCharsets.UTF_8));
+                    if (action != null && filter.test(action)) {
+                        if (total == matches.length) {
+                            matches = Arrays.copyOf(matches, total * 2);
+                        }
+                        matches[total++] = i;
+                    }
+                }
+            }
+
+            List<LoggedAction> content = new ArrayList<>(pageSize);
+            for (int i = total - 1 - offset; i >= 0 && i > total - 1 - offset - pageSize; i--) {
+                int entry = matches == null ? i : matches[i];
+                LoggedAction action = parse(this.index.read(channel, entry));
+                if (action != null) {
+                    content.add(action);
+                }
+            }
+
+            return new LogPage(content, pageNumber, pageSize, total);
+        } finally {
+            this.indexLock.unlock();
+        }
+    }
+
+    private static LoggedAction parse(String line) {
+        try {
+            JsonElement parsed = GsonProvider.parser().parse(line);
+            return ActionJsonSerializer.deserialize(parsed);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * The start offset & length of each (non-empty) line in the content file.
+     */
+    private static final class LineIndex {
+        private long[] starts = new long[1024];
+        private int[] lengths = new int[1024];
+        private int size = 0;
+
+        /** The number of bytes of the file which have been indexed */
+        private long indexedLength = 0;
+        /** The start of the line currently being indexed */
+        private long lineStart = 0;
+        /** The last byte that was indexed */
+        private byte previous = 0;
+
+        /**
+         * Indexes any content appended to the file since the last update.
+         *
+         * @param channel the file channel
+         * @throws IOException if an i/o error occurs
+         */
+        void update(FileChannel channel) throws IOException {
+            long fileSize = channel.size();
+            if (fileSize < this.indexedLength) {
+                // the file has been truncated or replaced
+                this.size = 0;
+                this.indexedLength = 0;
+                this.lineStart = 0;
+                this.previous = 0;
+            }
+
+            ByteBuffer buf = ByteBuffer.allocate(65536);
+            long position = this.indexedLength;
+            while (position < fileSize) {
+                buf.clear();
+                int read = channel.read(buf, position);
+                if (read <= 0) {
+                    break;
+                }
+
+                for (int i = 0; i < read; i++) {
+                    byte b = buf.get(i);
+                    if (b == '\n') {
+                        long end = this.previous == '\r' ? position + i - 1 : position + i;
+                        add(this.lineStart, end);
+                        this.lineStart = position + i + 1;
+                    }
+                    this.previous = b;
+                }
+                position += read;
+            }
+            this.indexedLength = position;
+        }
+
+        private void add(long start, long end) {
+            if (end <= start) {
+                return;
+            }
+            if (this.size == this.starts.length) {
+                this.starts = Arrays.copyOf(this.starts, this.size * 2);
+                this.lengths = Arrays.copyOf(this.lengths, this.size * 2);
+            }
+            this.starts[this.size] = start;
+            this.lengths[this.size] = (int) (end - start);
+            this.size++;
+        }
+
+        String read(FileChannel channel, int entry) throws IOException {
+            ByteBuffer buf = ByteBuffer.allocate(this.lengths[entry]);
+            long start = this.starts[entry];
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, start + buf.position()) < 0) {
+                    throw new EOFException();
+                }
+            }
+            return new String(buf.array(), 0, buf.limit(), StandardCharsets.UTF_8);
+        }
+    }
+
     private final class SaveBuffer extends BufferedRequest<Void> {
         public SaveBuffer(LuckPermsPlugin plugin) {
             super(2, TimeUnit.SECONDS, plugin.getBootstrap().getScheduler());
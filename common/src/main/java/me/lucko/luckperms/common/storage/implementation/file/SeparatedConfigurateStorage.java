@@ -45,15 +45,22 @@ import ninja.leaping.configurate.ConfigurationNode;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -63,6 +70,15 @@ import java.util.stream.Stream;
  * The data for each user/group/track is stored in a separate file.
  */
 public class SeparatedConfigurateStorage extends AbstractConfigurateStorage {
+    /** The number of files processed by each task when scanning a storage location */
+    private static final int SCAN_CHUNK_SIZE = 256;
+
+    /** The maximum number of scan tasks queued at once */
+    private static final int SCAN_PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    /** How often to log the progress of a long-running scan, in milliseconds */
+    private static final long SCAN_PROGRESS_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+
     private final String fileExtension;
     private final Predicate<Path> fileExtensionFilter;
 
@@ -212,41 +228,21 @@ public class SeparatedConfigurateStorage extends AbstractConfigurateStorage {
     @Override
     public void applyBulkUpdate(BulkUpdate bulkUpdate) throws Exception {
         if (bulkUpdate.getDataType().isIncludingUsers()) {
-            try (Stream<Path> s = Files.list(getDirectory(StorageLocation.USERS))) {
-                s.filter(this.fileExtensionFilter).forEach(file -> {
-                    try {
-                        registerFileAction(StorageLocation.USERS, file);
-                        ConfigurationNode object = readFile(file);
-                        if (processBulkUpdate(bulkUpdate, object, HolderType.USER)) {
-                            saveFile(file, object);
-                        }
-                    } catch (Exception e) {
-                        this.plugin.getLogger().severe(
-                                "Exception whilst performing bulkupdate",
-                                new FileIOException(file.getFileName().toString(), e)
-                        );
-                    }
-                });
-            }
+            scanFiles(StorageLocation.USERS, "performing bulkupdate", bulkUpdate::isCancelled, (file, results) -> {
+                ConfigurationNode object = readFile(file);
+                if (processBulkUpdate(bulkUpdate, object, HolderType.USER)) {
+                    saveFile(file, object);
+                }
+            });
         }
 
         if (bulkUpdate.getDataType().isIncludingGroups()) {
-            try (Stream<Path> s = Files.list(getDirectory(StorageLocation.GROUPS))) {
-                s.filter(this.fileExtensionFilter).forEach(file -> {
-                    try {
-                        registerFileAction(StorageLocation.GROUPS, file);
-                        ConfigurationNode object = readFile(file);
-                        if (processBulkUpdate(bulkUpdate, object, HolderType.GROUP)) {
-                            saveFile(file, object);
-                        }
-                    } catch (Exception e) {
-                        this.plugin.getLogger().severe(
-                                "Exception whilst performing bulkupdate",
-                                new FileIOException(file.getFileName().toString(), e)
-                        );
-                    }
-                });
-            }
+            scanFiles(StorageLocation.GROUPS, "performing bulkupdate", bulkUpdate::isCancelled, (file, results) -> {
+                ConfigurationNode object = readFile(file);
+                if (processBulkUpdate(bulkUpdate, object, HolderType.GROUP)) {
+                    saveFile(file, object);
+                }
+            });
         }
     }
 
@@ -264,31 +260,18 @@ public class SeparatedConfigurateStorage extends AbstractConfigurateStorage {
 
     @Override
     public <N extends Node> List<NodeEntry<UUID, N>> searchUserNodes(ConstraintNodeMatcher<N> constraint) throws IOException {
-        List<NodeEntry<UUID, N>> held = new ArrayList<>();
-        try (Stream<Path> stream = Files.list(getDirectory(StorageLocation.USERS))) {
-            stream.filter(this.fileExtensionFilter)
-                    .forEach(file -> {
-                        String fileName = file.getFileName().toString();
-                        try {
-                            registerFileAction(StorageLocation.USERS, file);
-                            ConfigurationNode object = readFile(file);
-                            UUID holder = UUID.fromString(fileName.substring(0, fileName.length() - this.fileExtension.length()));
-                            Set<Node> nodes = readNodes(object);
-                            for (Node e : nodes) {
-                                N match = constraint.match(e);
-                                if (match != null) {
-                                    held.add(NodeEntry.of(holder, match));
-                                }
-                            }
-                        } catch (Exception e) {
-                            this.plugin.getLogger().severe(
-                                    "Exception whilst searching user nodes",
-                                    new FileIOException(file.getFileName().toString(), e)
-                            );
-                        }
-                    });
-        }
-        return held;
+        return scanFiles(StorageLocation.USERS, "searching user nodes", constraint::isCancelled, (file, results) -> {
+            String fileName = file.getFileName().toString();
+            ConfigurationNode object = readFile(file);
+            UUID holder = UUID.fromString(fileName.substring(0, fileName.length() - this.fileExtension.length()));
+            Set<Node> nodes = readNodes(object);
+            for (Node e : nodes) {
+                N match = constraint.match(e);
+                if (match != null) {
+                    results.add(NodeEntry.of(holder, match));
+                }
+            }
+        });
     }
 
     @Override
@@ -310,31 +293,18 @@ public class SeparatedConfigurateStorage extends AbstractConfigurateStorage {
 
     @Override
     public <N extends Node> List<NodeEntry<String, N>> searchGroupNodes(ConstraintNodeMatcher<N> constraint) throws IOException {
-        List<NodeEntry<String, N>> held = new ArrayList<>();
-        try (Stream<Path> stream = Files.list(getDirectory(StorageLocation.GROUPS))) {
-            stream.filter(this.fileExtensionFilter)
-                    .forEach(file -> {
-                        String fileName = file.getFileName().toString();
-                        try {
-                            registerFileAction(StorageLocation.GROUPS, file);
-                            ConfigurationNode object = readFile(file);
-                            String holder = fileName.substring(0, fileName.length() - this.fileExtension.length());
-                            Set<Node> nodes = readNodes(object);
-                            for (Node e : nodes) {
-                                N match = constraint.match(e);
-                                if (match != null) {
-                                    held.add(NodeEntry.of(holder, match));
-                                }
-                            }
-                        } catch (Exception e) {
-                            this.plugin.getLogger().severe(
-                                    "Exception whilst searching group nodes",
-                                    new FileIOException(file.getFileName().toString(), e)
-                            );
-                        }
-                    });
-        }
-        return held;
+        return scanFiles(StorageLocation.GROUPS, "searching group nodes", constraint::isCancelled, (file, results) -> {
+            String fileName = file.getFileName().toString();
+            ConfigurationNode object = readFile(file);
+            String holder = fileName.substring(0, fileName.length() - this.fileExtension.length());
+            Set<Node> nodes = readNodes(object);
+            for (Node e : nodes) {
+                N match = constraint.match(e);
+                if (match != null) {
+                    results.add(NodeEntry.of(holder, match));
+                }
+            }
+        });
     }
 
     @Override
@@ -354,4 +324,83 @@ public class SeparatedConfigurateStorage extends AbstractConfigurateStorage {
         this.plugin.getTrackManager().retainAll(tracks);
     }
 
+    /**
+     * Processes every file in a storage location, in parallel on the scheduler's worker pool.
+     *
+     * <p>Files are processed in chunks, and only a bounded number of chunks are queued at once,
+     * so the directory listing is never read too far ahead of the workers.</p>
+     *
+     * @param location the location to scan
+     * @param action a description of the operation, used in log messages
+     * @param cancelled a signal that the operation should stop early
+     * @param processor the function to apply to each file
+     * @param <R> the result type
+     * @return the combined results, in directory listing order
+     * @throws IOException if the directory could not be listed
+     */
+    private <R> List<R> scanFiles(StorageLocation location, String action, BooleanSupplier cancelled, FileProcessor<R> processor) throws IOException {
+        Executor executor = this.plugin.getBootstrap().getScheduler().async();
+        Deque<CompletableFuture<List<R>>> inFlight = new ArrayDeque<>();
+        AtomicInteger processed = new AtomicInteger();
+        List<R> results = new ArrayList<>();
+
+        long lastProgressReport = System.currentTimeMillis();
+        try (Stream<Path> stream = Files.list(getDirectory(location))) {
+            Iterator<Path> files = stream.filter(this.fileExtensionFilter).iterator();
+            while (files.hasNext() && !cancelled.getAsBoolean()) {
+                List<Path> chunk = new ArrayList<>(SCAN_CHUNK_SIZE);
+                while (files.hasNext() && chunk.size() < SCAN_CHUNK_SIZE) {
+                    chunk.add(files.next());
+                }
+
+                // wait for the oldest chunk to finish before queueing another
+                if (inFlight.size() >= SCAN_PARALLELISM) {
+                    results.addAll(inFlight.removeFirst().join());
+                }
+                inFlight.addLast(CompletableFuture.supplyAsync(() -> scanChunk(location, chunk, action, cancelled, processor, processed), executor));
+
+                long now = System.currentTimeMillis();
+                if (now - lastProgressReport >= SCAN_PROGRESS_INTERVAL) {
+                    lastProgressReport = now;
+                    this.plugin.getLogger().info("[Storage] Still " + action + " - processed " + processed.get() + " files so far");
+                }
+            }
+        } finally {
+            while (!inFlight.isEmpty()) {
+                results.addAll(inFlight.removeFirst().join());
+            }
+        }
+
+        if (cancelled.getAsBoolean()) {
+            this.plugin.getLogger().warn("[Storage] Cancelled " + action + " after processing " + processed.get() + " files");
+        }
+        return results;
+    }
+
+    private <R> List<R> scanChunk(StorageLocation location, List<Path> chunk, String action, BooleanSupplier cancelled, FileProcessor<R> processor, AtomicInteger processed) {
+        List<R> results = new ArrayList<>();
+        for (Path file : chunk) {
+            if (cancelled.getAsBoolean()) {
+                break;
+            }
+
+            try {
+                registerFileAction(location, file);
+                processor.process(file, results);
+            } catch (Exception e) {
+                this.plugin.getLogger().severe(
+                        "Exception whilst " + action,
+                        new FileIOException(file.getFileName().toString(), e)
+                );
+            }
+            processed.incrementAndGet();
+        }
+        return results;
+    }
+
+    @FunctionalInterface
+    private interface FileProcessor<R> {
+        void process(Path file, List<R> results) throws Exception;
+    }
+
 }
@@ -31,14 +31,40 @@ import com.mongodb.MongoClientOptions;
 import com.mongodb.MongoClientURI;
 import com.mongodb.MongoCredential;
 import com.mongodb.ServerAddress;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Collation;
+import com.mongodb.client.model.CollationStrength;
+import com.mongodb.client.model.DeleteOneModel;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UnwindOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.UpdateResult;
+import me.lucko.luckperms.common.actionlog.ActionFilter;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.actionlog.LoggedAction;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
+import me.lucko.luckperms.common.bulkupdate.BulkUpdateStatistics;
+import me.lucko.luckperms.common.bulkupdate.action.DeleteAction;
+import me.lucko.luckperms.common.bulkupdate.comparison.Comparison;
+import me.lucko.luckperms.common.bulkupdate.comparison.Constraint;
+import me.lucko.luckperms.common.bulkupdate.comparison.StandardComparison;
+import me.lucko.luckperms.common.bulkupdate.query.Query;
+import me.lucko.luckperms.common.bulkupdate.query.QueryField;
 import me.lucko.luckperms.common.context.MutableContextSetImpl;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.HolderType;
@@ -54,6 +80,7 @@ import me.lucko.luckperms.common.storage.misc.NodeEntry;
 import me.lucko.luckperms.common.storage.misc.PlayerSaveResultImpl;
 import me.lucko.luckperms.common.storage.misc.StorageCredentials;
 import me.lucko.luckperms.common.util.Iterators;
+import me.lucko.luckperms.common.util.Paginated;
 import net.luckperms.api.actionlog.Action;
 import net.luckperms.api.context.Context;
 import net.luckperms.api.context.ContextSet;
@@ -64,9 +91,11 @@ import net.luckperms.api.node.Node;
 import net.luckperms.api.node.NodeBuilder;
 import org.bson.Document;
 import org.bson.UuidRepresentation;
+import org.bson.conversions.Bson;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -76,9 +105,19 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class MongoStorage implements StorageImplementation {
+    /** The maximum number of writes sent in a single bulk update batch */
+    private static final int BULK_UPDATE_BATCH_SIZE = 1000;
+
+    /** Case-insensitive collation used to compare node keys */
+    private static final Collation NODE_KEY_COLLATION = Collation.builder()
+            .locale("en")
+            .collationStrength(CollationStrength.SECONDARY)
+            .build();
+
     private final LuckPermsPlugin plugin;
 
     private final StorageCredentials configuration;
@@ -134,6 +173,22 @@ public class MongoStorage implements StorageImplementation {
         }
         
         this.database = this.mongoClient.getDatabase(this.configuration.getDatabase());
+
+        // indexes used by action log queries
+        MongoCollection<Document> actions = this.database.getCollection(this.prefix + "action");
+        actions.createIndex(Indexes.descending("timestamp"));
+        actions.createIndex(Indexes.ascending("source.uniqueId"));
+        actions.createIndex(Indexes.ascending("target.uniqueId"));
+        actions.createIndex(Indexes.ascending("target.name"));
+
+        // indexes used by node searches - nodes may be stored in either the new or the old
+        // format, and both fields need an index for the $or between them to use one
+        IndexOptions nodeKeyIndexOptions = new IndexOptions().collation(NODE_KEY_COLLATION);
+        for (String collection : new String[]{"users", "groups"}) {
+            MongoCollection<Document> c = this.database.getCollection(this.prefix + collection);
+            c.createIndex(Indexes.ascending("permissions.key"), nodeKeyIndexOptions);
+            c.createIndex(Indexes.ascending("permissions.permission"), nodeKeyIndexOptions);
+        }
     }
 
     @Override
@@ -196,98 +251,204 @@ public class MongoStorage implements StorageImplementation {
         MongoCollection<Document> c = this.database.getCollection(this.prefix + "action");
         try (MongoCursor<Document> cursor = c.find().iterator()) {
             while (cursor.hasNext()) {
-                Document d = cursor.next();
-
-                if (d.containsKey("source")) {
-                    // new format
-                    Document source = d.get("source", Document.class);
-                    Document target = d.get("target", Document.class);
+                log.add(readAction(cursor.next()));
+            }
+        }
+        return log.build();
+    }
 
-                    UUID targetUniqueId = null;
-                    if (target.containsKey("uniqueId")) {
-                        targetUniqueId = target.get("uniqueId", UUID.class);
-                    }
+    @Override
+    public LogPage getLogPage(ActionFilter filter, int pageNumber, int pageSize) {
+        int offset = Paginated.offset(pageNumber, pageSize);
+        MongoCollection<Document> c = this.database.getCollection(this.prefix + "action");
 
-                    LoggedAction e = LoggedAction.build()
-                            .timestamp(Instant.ofEpochSecond(d.getLong("timestamp")))
-                            .source(source.get("uniqueId", UUID.class))
-                            .sourceName(source.getString("name"))
-                            .targetType(LoggedAction.parseType(target.getString("type")))
-                            .target(targetUniqueId)
-                            .targetName(target.getString("name"))
-                            .description(d.getString("description"))
-                            .build();
-
-                    log.add(e);
-                } else {
-                    // old format
-                    UUID actedUuid = null;
-                    if (d.containsKey("acted")) {
-                        actedUuid = d.get("acted", UUID.class);
-                    }
+        Bson query = actionFilter(filter);
+        int total = (int) Math.min(Integer.MAX_VALUE, c.countDocuments(query));
 
-                    LoggedAction e = LoggedAction.build()
-                            .timestamp(Instant.ofEpochSecond(d.getLong("timestamp")))
-                            .source(d.get("actor", UUID.class))
-                            .sourceName(d.getString("actorName"))
-                            .targetType(LoggedAction.parseTypeCharacter(d.getString("type").charAt(0)))
-                            .target(actedUuid)
-                            .targetName(d.getString("actedName"))
-                            .description(d.getString("action"))
-                            .build();
-
-                    log.add(e);
+        List<LoggedAction> content = new ArrayList<>(pageSize);
+        if (offset < total) {
+            try (MongoCursor<Document> cursor = c.find(query).sort(Sorts.descending("timestamp")).skip(offset).limit(pageSize).iterator()) {
+                while (cursor.hasNext()) {
+                    content.add(readAction(cursor.next()));
                 }
             }
         }
-        return log.build();
+
+        return new LogPage(content, pageNumber, pageSize, total);
+    }
+
+    private static Bson actionFilter(ActionFilter filter) {
+        // entries may be stored in either the new or the old format
+        List<Bson> newFormat = new ArrayList<>();
+        List<Bson> oldFormat = new ArrayList<>();
+        newFormat.add(Filters.exists("source"));
+        oldFormat.add(Filters.exists("source", false));
+
+        if (filter.getSourceUniqueId() != null) {
+            newFormat.add(Filters.eq("source.uniqueId", filter.getSourceUniqueId()));
+            oldFormat.add(Filters.eq("actor", filter.getSourceUniqueId()));
+        }
+        if (filter.getTargetType() != null) {
+            newFormat.add(Filters.eq("target.type", filter.getTargetType().name()));
+            oldFormat.add(Filters.eq("type", Character.toString(LoggedAction.getTypeCharacter(filter.getTargetType()))));
+        }
+        if (filter.getTargetUniqueId() != null) {
+            newFormat.add(Filters.eq("target.uniqueId", filter.getTargetUniqueId()));
+            oldFormat.add(Filters.eq("acted", filter.getTargetUniqueId()));
+        }
+        if (filter.getTargetName() != null) {
+            newFormat.add(Filters.eq("target.name", filter.getTargetName()));
+            oldFormat.add(Filters.eq("actedName", filter.getTargetName()));
+        }
+        if (filter.getSearch() != null) {
+            Pattern pattern = Pattern.compile(Pattern.quote(filter.getSearch()), Pattern.CASE_INSENSITIVE);
+            newFormat.add(Filters.or(Filters.regex("source.name", pattern), Filters.regex("target.name", pattern), Filters.regex("description", pattern)));
+            oldFormat.add(Filters.or(Filters.regex("actorName", pattern), Filters.regex("actedName", pattern), Filters.regex("action", pattern)));
+        }
+
+        return Filters.or(Filters.and(newFormat), Filters.and(oldFormat));
+    }
+
+    private static LoggedAction readAction(Document d) {
+        if (d.containsKey("source")) {
+            // new format
+            Document source = d.get("source", Document.class);
+            Document target = d.get("target", Document.class);
+
+            UUID targetUniqueId = null;
+            if (target.containsKey("uniqueId")) {
+                targetUniqueId = target.get("uniqueId", UUID.class);
+            }
+
+            return LoggedAction.build()
+                    .timestamp(Instant.ofEpochSecond(d.getLong("timestamp")))
+                    .source(source.get("uniqueId", UUID.class))
+                    .sourceName(source.getString("name"))
+                    .targetType(LoggedAction.parseType(target.getString("type")))
+                    .target(targetUniqueId)
+                    .targetName(target.getString("name"))
+                    .description(d.getString("description"))
+                    .build();
+        } else {
+            // old format
+            UUID actedUuid = null;
+            if (d.containsKey("acted")) {
+                actedUuid = d.get("acted", UUID.class);
+            }
+
+            return LoggedAction.build()
+                    .timestamp(Instant.ofEpochSecond(d.getLong("timestamp")))
+                    .source(d.get("actor", UUID.class))
+                    .sourceName(d.getString("actorName"))
+                    .targetType(LoggedAction.parseTypeCharacter(d.getString("type").charAt(0)))
+                    .target(actedUuid)
+                    .targetName(d.getString("actedName"))
+                    .description(d.getString("action"))
+                    .build();
+        }
     }
 
     @Override
     public void applyBulkUpdate(BulkUpdate bulkUpdate) {
         if (bulkUpdate.getDataType().isIncludingUsers()) {
-            MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
-            try (MongoCursor<Document> cursor = c.find().iterator()) {
-                while (cursor.hasNext()) {
-                    Document d = cursor.next();
-                    UUID uuid = getDocumentId(d);
-                    Document results = processBulkUpdate(d, bulkUpdate, HolderType.USER);
-                    if (results != null) {
-                        c.replaceOne(new Document("_id", uuid), results);
-                    }
-                }
-            }
+            applyBulkUpdate(this.database.getCollection(this.prefix + "users"), bulkUpdate, HolderType.USER);
         }
 
         if (bulkUpdate.getDataType().isIncludingGroups()) {
-            MongoCollection<Document> c = this.database.getCollection(this.prefix + "groups");
-            try (MongoCursor<Document> cursor = c.find().iterator()) {
-                while (cursor.hasNext()) {
-                    Document d = cursor.next();
-                    String holder = d.getString("_id");
-                    Document results = processBulkUpdate(d, bulkUpdate, HolderType.GROUP);
-                    if (results != null) {
-                        c.replaceOne(new Document("_id", holder), results);
-                    }
+            applyBulkUpdate(this.database.getCollection(this.prefix + "groups"), bulkUpdate, HolderType.GROUP);
+        }
+    }
+
+    private static void applyBulkUpdate(MongoCollection<Document> c, BulkUpdate bulkUpdate, HolderType holderType) {
+        Bson filter = bulkUpdateFilter(bulkUpdate, "");
+
+        // deletions which only depend on the node key can be applied entirely server-side
+        if (filter != null && bulkUpdate.getAction() instanceof DeleteAction && isKeyOnly(bulkUpdate)) {
+            BulkUpdateStatistics stats = bulkUpdate.getStatistics();
+            if (bulkUpdate.isTrackingStatistics()) {
+                stats.incrementAffectedNodes(countNodes(c, matchingNodesPipeline(filter, bulkUpdateFilter(bulkUpdate, "permissions."))));
+            }
+
+            UpdateResult result = c.updateMany(
+                    Filters.elemMatch("permissions", filter),
+                    Updates.pull("permissions", filter),
+                    new UpdateOptions().collation(NODE_KEY_COLLATION)
+            );
+
+            if (bulkUpdate.isTrackingStatistics()) {
+                stats.incrementAffected(holderType, (int) result.getModifiedCount());
+            }
+            return;
+        }
+
+        // otherwise, only fetch the holders which could be affected, and write back the changed ones in batches
+        FindIterable<Document> candidates = filter == null
+                ? c.find()
+                : c.find(Filters.elemMatch("permissions", filter)).collation(NODE_KEY_COLLATION);
+
+        List<WriteModel<Document>> batch = new ArrayList<>();
+        try (MongoCursor<Document> cursor = candidates.projection(Projections.include("permissions")).iterator()) {
+            while (cursor.hasNext()) {
+                Document d = cursor.next();
+                Set<Node> results = bulkUpdate.apply(new HashSet<>(nodesFromDoc(d)), holderType);
+                if (results == null) {
+                    continue;
+                }
+
+                List<Document> newNodes = results.stream()
+                        .map(MongoStorage::nodeToDoc)
+                        .collect(Collectors.toList());
+
+                batch.add(new UpdateOneModel<>(
+                        Filters.eq("_id", d.get("_id")),
+                        Updates.combine(Updates.set("permissions", newNodes), Updates.unset("perms"))
+                ));
+
+                if (batch.size() >= BULK_UPDATE_BATCH_SIZE) {
+                    c.bulkWrite(batch, new BulkWriteOptions().ordered(true));
+                    batch.clear();
                 }
             }
         }
+
+        if (!batch.isEmpty()) {
+            c.bulkWrite(batch, new BulkWriteOptions().ordered(true));
+        }
     }
 
-    private Document processBulkUpdate(Document document, BulkUpdate bulkUpdate, HolderType holderType) {
-        Set<Node> nodes = new HashSet<>(nodesFromDoc(document));
-        Set<Node> results = bulkUpdate.apply(nodes, holderType);
+    /**
+     * Translates the node key queries of a bulk update into a node filter.
+     *
+     * <p>Queries which can't be translated are left to be evaluated locally.</p>
+     *
+     * @param bulkUpdate the bulk update
+     * @param prefix the prefix of the node fields
+     * @return the filter, or null if none of the queries can be translated
+     */
+    private static Bson bulkUpdateFilter(BulkUpdate bulkUpdate, String prefix) {
+        List<Bson> filters = new ArrayList<>();
+        for (Query query : bulkUpdate.getQueries()) {
+            if (query.getField() == QueryField.PERMISSION) {
+                Bson filter = nodeKeyFilter(query.getConstraint(), prefix);
+                if (filter != null) {
+                    filters.add(filter);
+                }
+            }
+        }
 
-        if (results == null) {
+        if (filters.isEmpty()) {
             return null;
         }
+        return filters.size() == 1 ? filters.get(0) : Filters.and(filters);
+    }
 
-        List<Document> newNodes = results.stream()
-                .map(MongoStorage::nodeToDoc)
-                .collect(Collectors.toList());
-
-        document.append("permissions", newNodes).remove("perms");
-        return document;
+    private static boolean isKeyOnly(BulkUpdate bulkUpdate) {
+        for (Query query : bulkUpdate.getQueries()) {
+            if (query.getField() != QueryField.PERMISSION || nodeKeyFilter(query.getConstraint(), "") == null) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
@@ -343,6 +504,26 @@ public class MongoStorage implements StorageImplementation {
         }
     }
 
+    @Override
+    public void saveUsers(Collection<User> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+
+        List<WriteModel<Document>> writes = new ArrayList<>(users.size());
+        for (User user : users) {
+            user.normalData().discardChanges();
+            if (!this.plugin.getUserManager().isNonDefaultUser(user)) {
+                writes.add(new DeleteOneModel<>(new Document("_id", user.getUniqueId())));
+            } else {
+                writes.add(new ReplaceOneModel<>(new Document("_id", user.getUniqueId()), userToDoc(user), new ReplaceOptions().upsert(true)));
+            }
+        }
+
+        MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
+        c.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    }
+
     @Override
     public Set<UUID> getUniqueUsers() {
         Set<UUID> uuids = new HashSet<>();
@@ -363,7 +544,7 @@ public class MongoStorage implements StorageImplementation {
     public <N extends Node> List<NodeEntry<UUID, N>> searchUserNodes(ConstraintNodeMatcher<N> constraint) throws Exception {
         List<NodeEntry<UUID, N>> held = new ArrayList<>();
         MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
-        try (MongoCursor<Document> cursor = c.find().iterator()) {
+        try (MongoCursor<Document> cursor = findNodeHolders(c, constraint).iterator()) {
             while (cursor.hasNext()) {
                 Document d = cursor.next();
                 UUID holder = getDocumentId(d);
@@ -445,7 +626,7 @@ public class MongoStorage implements StorageImplementation {
     public <N extends Node> List<NodeEntry<String, N>> searchGroupNodes(ConstraintNodeMatcher<N> constraint) throws Exception {
         List<NodeEntry<String, N>> held = new ArrayList<>();
         MongoCollection<Document> c = this.database.getCollection(this.prefix + "groups");
-        try (MongoCursor<Document> cursor = c.find().iterator()) {
+        try (MongoCursor<Document> cursor = findNodeHolders(c, constraint).iterator()) {
             while (cursor.hasNext()) {
                 Document d = cursor.next();
                 String holder = d.getString("_id");
@@ -462,6 +643,106 @@ public class MongoStorage implements StorageImplementation {
         return held;
     }
 
+    private static FindIterable<Document> findNodeHolders(MongoCollection<Document> c, ConstraintNodeMatcher<?> constraint) {
+        Bson filter = nodeKeyFilter(constraint.getConstraint(), "");
+        if (filter == null) {
+            return c.find();
+        }
+        return c.find(Filters.elemMatch("permissions", filter)).collation(NODE_KEY_COLLATION);
+    }
+
+    /**
+     * Creates an aggregation pipeline which outputs one document per matching node,
+     * tagged with its position in the holder's node list.
+     *
+     * @param filter the node filter
+     * @param unwoundFilter the same filter, with fields prefixed by "permissions."
+     * @return the pipeline
+     */
+    private static List<Bson> matchingNodesPipeline(Bson filter, Bson unwoundFilter) {
+        List<Bson> pipeline = new ArrayList<>();
+        pipeline.add(Aggregates.match(Filters.elemMatch("permissions", filter)));
+        pipeline.add(Aggregates.unwind("$permissions", new UnwindOptions().includeArrayIndex("index")));
+        pipeline.add(Aggregates.match(unwoundFilter));
+        return pipeline;
+    }
+
+    private static int countNodes(MongoCollection<Document> c, List<Bson> pipeline) {
+        List<Bson> countPipeline = new ArrayList<>(pipeline);
+        countPipeline.add(Aggregates.count("total"));
+
+        Document count = c.aggregate(countPipeline).collation(NODE_KEY_COLLATION).first();
+        return count == null ? 0 : count.getInteger("total", 0);
+    }
+
+    /**
+     * Translates a constraint into a query on the node key,
+     * so that holders without a matching node can be excluded by the database.
+     *
+     * <p>Negated comparisons are not translated, as a holder can have both
+     * matching and non-matching nodes.</p>
+     *
+     * @param constraint the constraint
+     * @param prefix the prefix of the node fields
+     * @return the filter, or null if the constraint can only be evaluated locally
+     */
+    private static Bson nodeKeyFilter(Constraint constraint, String prefix) {
+        Comparison comparison = constraint.getComparison();
+        String expression = constraint.getExpressionValue();
+
+        // nodes may be stored in either the new or the old format
+        if (comparison == StandardComparison.EQUAL) {
+            return Filters.or(
+                    Filters.eq(prefix + "key", expression),
+                    Filters.eq(prefix + "permission", expression)
+            );
+        } else if (comparison == StandardComparison.SIMILAR) {
+            return Filters.or(
+                    similarFilter(prefix + "key", expression),
+                    similarFilter(prefix + "permission", expression)
+            );
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Translates a LIKE expression into a filter on a field.
+     *
+     * <p>Regular expressions can't use an index with a collation, so the literal
+     * prefix of the expression is also matched as a range. Under {@link #NODE_KEY_COLLATION}
+     * the range is case-insensitive and can use the node key index, leaving the
+     * regular expression to filter the remaining candidates.</p>
+     *
+     * @param field the field
+     * @param expression the LIKE expression
+     * @return the filter
+     */
+    private static Bson similarFilter(String field, String expression) {
+        Pattern pattern = StandardComparison.compilePatternForLikeSyntax(expression);
+        Bson regex = Filters.regex(field, "^" + pattern.pattern() + "$", "i");
+
+        int wildcard = expression.length();
+        for (String w : new String[]{StandardComparison.WILDCARD, StandardComparison.WILDCARD_ONE}) {
+            int i = expression.indexOf(w);
+            if (i != -1) {
+                wildcard = Math.min(wildcard, i);
+            }
+        }
+
+        String literalPrefix = expression.substring(0, wildcard);
+        if (literalPrefix.isEmpty()) {
+            return regex;
+        }
+
+        // U+FFFF sorts after every other character in the collation
+        return Filters.and(
+                Filters.gte(field, literalPrefix),
+                Filters.lt(field, literalPrefix + '\uffff'),
+                regex
+        );
+    }
+
     @Override
     public Track createAndLoadTrack(String name) {
         Track track = this.plugin.getTrackManager().getOrMake(name);
@@ -26,7 +26,9 @@
 package me.lucko.luckperms.common.storage.implementation.split;
 
 import com.google.common.collect.ImmutableMap;
+import me.lucko.luckperms.common.actionlog.ActionFilter;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.Track;
@@ -41,6 +43,7 @@ import net.luckperms.api.actionlog.Action;
 import net.luckperms.api.model.PlayerSaveResult;
 import net.luckperms.api.node.Node;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -62,6 +65,10 @@ public class SplitStorage implements StorageImplementation {
         return this.implementations;
     }
 
+    public StorageImplementation getImplementation(SplitStorageType type) {
+        return implFor(type);
+    }
+
     private StorageImplementation implFor(SplitStorageType type) {
         return this.implementations.get(this.types.get(type));
     }
@@ -122,6 +129,11 @@ public class SplitStorage implements StorageImplementation {
         return implFor(SplitStorageType.LOG).getLog();
     }
 
+    @Override
+    public LogPage getLogPage(ActionFilter filter, int pageNumber, int pageSize) throws Exception {
+        return implFor(SplitStorageType.LOG).getLogPage(filter, pageNumber, pageSize);
+    }
+
     @Override
     public void applyBulkUpdate(BulkUpdate bulkUpdate) throws Exception {
         StorageType userType = this.types.get(SplitStorageType.USER);
@@ -150,6 +162,11 @@ public class SplitStorage implements StorageImplementation {
         implFor(SplitStorageType.USER).saveUser(user);
     }
 
+    @Override
+    public void saveUsers(Collection<User> users) throws Exception {
+        implFor(SplitStorageType.USER).saveUsers(users);
+    }
+
     @Override
     public Set<UUID> getUniqueUsers() throws Exception {
         return implFor(SplitStorageType.USER).getUniqueUsers();
@@ -27,8 +27,11 @@ package me.lucko.luckperms.common.storage.implementation.sql;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import com.google.gson.reflect.TypeToken;
+import me.lucko.luckperms.common.actionlog.ActionFilter;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.actionlog.LoggedAction;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdateStatistics;
@@ -44,9 +47,11 @@ import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.StorageMetadata;
 import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
 import me.lucko.luckperms.common.storage.implementation.sql.connection.ConnectionFactory;
+import me.lucko.luckperms.common.storage.implementation.sql.connection.file.NonClosableConnection;
 import me.lucko.luckperms.common.storage.misc.NodeEntry;
 import me.lucko.luckperms.common.storage.misc.PlayerSaveResultImpl;
 import me.lucko.luckperms.common.util.Difference;
+import me.lucko.luckperms.common.util.Paginated;
 import me.lucko.luckperms.common.util.Uuids;
 import me.lucko.luckperms.common.util.gson.GsonProvider;
 import net.luckperms.api.actionlog.Action;
@@ -60,6 +65,7 @@ import java.io.InputStream;
 import java.lang.reflect.Type;
 import java.sql.BatchUpdateException;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -67,8 +73,10 @@ import java.sql.Statement;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -127,6 +135,37 @@ public class SqlStorage implements StorageImplementation {
 
     private static final String ACTION_INSERT = "INSERT INTO '{prefix}actions' (time, actor_uuid, actor_name, type, acted_uuid, acted_name, action) VALUES(?, ?, ?, ?, ?, ?, ?)";
     private static final String ACTION_SELECT_ALL = "SELECT * FROM '{prefix}actions'";
+    private static final String ACTION_SELECT = "SELECT * FROM '{prefix}actions' WHERE 1=1";
+    private static final String ACTION_COUNT = "SELECT COUNT(*) FROM '{prefix}actions' WHERE 1=1";
+    /** The indexes on the actions table, keyed by index name */
+    private static final Map<String, String> ACTION_CREATE_INDEXES = ImmutableMap.of(
+            "{prefix}actions_time", "CREATE INDEX '{prefix}actions_time' ON '{prefix}actions' (time)",
+            "{prefix}actions_actor_uuid", "CREATE INDEX '{prefix}actions_actor_uuid' ON '{prefix}actions' (actor_uuid)",
+            "{prefix}actions_acted_uuid", "CREATE INDEX '{prefix}actions_acted_uuid' ON '{prefix}actions' (acted_uuid)",
+            "{prefix}actions_acted_name", "CREATE INDEX '{prefix}actions_acted_name' ON '{prefix}actions' (acted_name)"
+    );
+
+    /** The column definition used to index permission strings, keyed by dialect */
+    private static final Map<String, String> PERMISSION_INDEX_COLUMN = ImmutableMap.of(
+            // utf8mb4 keys are limited to 767 bytes on older versions
+            "MySQL", "permission(191)",
+            "MariaDB", "permission(191)",
+            // allows LIKE 'prefix%' queries to use the index regardless of collation
+            "PostgreSQL", "permission varchar_pattern_ops"
+    );
+    private static final String PERMISSION_INDEX_COLUMN_DEFAULT = "permission";
+    private static final String USER_PERMISSIONS_CREATE_INDEX = "CREATE INDEX '{prefix}user_permissions_permission' ON '{prefix}user_permissions' ({column})";
+    private static final String GROUP_PERMISSIONS_CREATE_INDEX = "CREATE INDEX '{prefix}group_permissions_permission' ON '{prefix}group_permissions' ({column})";
+
+    /** The maximum number of rows written by a single multi-row insert statement */
+    private static final Map<String, Integer> MAX_INSERT_ROWS = ImmutableMap.of(
+            // older versions of SQLite only allow 999 parameters in a statement
+            "SQLite", 100
+    );
+    private static final int MAX_INSERT_ROWS_DEFAULT = 500;
+
+    private static final HolderReader<UUID> USER_HOLDER_READER = rs -> UUID.fromString(rs.getString("uuid"));
+    private static final HolderReader<String> GROUP_HOLDER_READER = rs -> rs.getString("name");
 
     private final LuckPermsPlugin plugin;
     
@@ -168,6 +207,41 @@ public class SqlStorage implements StorageImplementation {
 
         if (!tableExists) {
             applySchema();
+        } else {
+            createIndexes();
+        }
+    }
+
+    /**
+     * Adds the indexes used by action log and node search queries to tables
+     * created before they were part of the schema.
+     */
+    private void createIndexes() throws SQLException {
+        String permissionColumn = PERMISSION_INDEX_COLUMN.getOrDefault(this.connectionFactory.getImplementationName(), PERMISSION_INDEX_COLUMN_DEFAULT);
+
+        Map<String, Map<String, String>> indexes = ImmutableMap.of(
+                "{prefix}actions", ACTION_CREATE_INDEXES,
+                "{prefix}user_permissions", ImmutableMap.of("{prefix}user_permissions_permission", USER_PERMISSIONS_CREATE_INDEX.replace("{column}", permissionColumn)),
+                "{prefix}group_permissions", ImmutableMap.of("{prefix}group_permissions_permission", GROUP_PERMISSIONS_CREATE_INDEX.replace("{column}", permissionColumn))
+        );
+
+        try (Connection c = this.connectionFactory.getConnection()) {
+            for (Map.Entry<String, Map<String, String>> table : indexes.entrySet()) {
+                Set<String> existing = getIndexNames(c, this.statementProcessor.apply(table.getKey()));
+
+                for (Map.Entry<String, String> index : table.getValue().entrySet()) {
+                    String name = this.statementProcessor.apply(index.getKey());
+                    if (existing.contains(name.toLowerCase(Locale.ROOT))) {
+                        continue;
+                    }
+
+                    try (Statement s = c.createStatement()) {
+                        s.execute(this.statementProcessor.apply(index.getValue()));
+                    } catch (SQLException e) {
+                        this.plugin.getLogger().warn("Unable to create index " + name + ", queries against it may be slow", e);
+                    }
+                }
+            }
         }
     }
 
@@ -256,6 +330,64 @@ public class SqlStorage implements StorageImplementation {
         return log.build();
     }
 
+    @Override
+    public LogPage getLogPage(ActionFilter filter, int pageNumber, int pageSize) throws SQLException {
+        int offset = Paginated.offset(pageNumber, pageSize);
+        List<LoggedAction> content = new ArrayList<>(pageSize);
+        int total = 0;
+
+        try (Connection c = this.connectionFactory.getConnection()) {
+            PreparedStatementBuilder count = new PreparedStatementBuilder().append(ACTION_COUNT);
+            appendActionFilter(filter, count);
+            try (PreparedStatement ps = count.build(c, this.statementProcessor)) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        total = rs.getInt(1);
+                    }
+                }
+            }
+
+            if (offset < total) {
+                PreparedStatementBuilder select = new PreparedStatementBuilder().append(ACTION_SELECT);
+                appendActionFilter(filter, select);
+                select.append(" ORDER BY time DESC, id DESC LIMIT " + pageSize + " OFFSET " + offset);
+                try (PreparedStatement ps = select.build(c, this.statementProcessor)) {
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            content.add(readAction(rs));
+                        }
+                    }
+                }
+            }
+        }
+
+        return new LogPage(content, pageNumber, pageSize, total);
+    }
+
+    private static void appendActionFilter(ActionFilter filter, PreparedStatementBuilder builder) {
+        if (filter.getSourceUniqueId() != null) {
+            builder.append(" AND actor_uuid=").variable(filter.getSourceUniqueId().toString());
+        }
+        if (filter.getTargetType() != null) {
+            builder.append(" AND type=").variable(Character.toString(LoggedAction.getTypeCharacter(filter.getTargetType())));
+        }
+        if (filter.getTargetUniqueId() != null) {
+            builder.append(" AND acted_uuid=").variable(filter.getTargetUniqueId().toString());
+        }
+        if (filter.getTargetName() != null) {
+            builder.append(" AND acted_name=").variable(filter.getTargetName());
+        }
+        if (filter.getSearch() != null) {
+            // wildcard characters in the query are not escaped, as the escape clause
+            // syntax varies between dialects - this can only widen the results slightly
+            String pattern = "%" + filter.getSearch() + "%";
+            builder.append(" AND (LOWER(actor_name) LIKE ").variable(pattern)
+                    .append(" OR LOWER(acted_name) LIKE ").variable(pattern)
+                    .append(" OR LOWER(action) LIKE ").variable(pattern)
+                    .append(")");
+        }
+    }
+
     @Override
     public void applyBulkUpdate(BulkUpdate bulkUpdate) throws SQLException {
         BulkUpdateStatistics stats = bulkUpdate.getStatistics();
@@ -373,6 +505,59 @@ public class SqlStorage implements StorageImplementation {
 
     @Override
     public void saveUser(User user) throws SQLException {
+        saveUsers(Collections.singletonList(user));
+    }
+
+    @Override
+    public void saveUsers(Collection<User> users) throws SQLException {
+        Set<UUID> deletions = new HashSet<>();
+        Map<String, Difference<Node>> changes = new HashMap<>();
+        Map<UUID, SqlPlayerData> playerData = new HashMap<>();
+
+        // the changes taken from each user, so they can be put back if the save fails
+        Map<User, Difference<Node>> exported = new HashMap<>();
+
+        for (User user : new LinkedHashSet<>(users)) {
+            Difference<Node> userChanges = exportChanges(user, exported);
+
+            // if the user only has the default group, delete their data
+            if (userChanges == null) {
+                deletions.add(user.getUniqueId());
+                continue;
+            }
+
+            changes.put(user.getUniqueId().toString(), userChanges);
+            playerData.put(user.getUniqueId(), new SqlPlayerData(
+                    user.getPrimaryGroup().getStoredValue().orElse(GroupManager.DEFAULT_GROUP_NAME),
+                    user.getUsername().orElse("null").toLowerCase(Locale.ROOT)
+            ));
+        }
+
+        if (deletions.isEmpty() && changes.isEmpty()) {
+            return;
+        }
+
+        try (Connection c = this.connectionFactory.getConnection()) {
+            transaction(c, () -> {
+                deleteUsers(c, deletions);
+                updateUserPermissions(c, changes);
+                insertPlayerData(c, playerData);
+            });
+        } catch (SQLException | RuntimeException e) {
+            // the transaction was rolled back, so none of the changes were saved
+            exported.forEach((user, userChanges) -> user.normalData().restoreChanges(userChanges));
+            throw e;
+        }
+    }
+
+    /**
+     * Exports the changes made to a users nodes since they were last saved.
+     *
+     * @param user the user
+     * @param exported a map to record the changes taken from the user in
+     * @return the changes, or null if the users data should be deleted
+     */
+    private Difference<Node> exportChanges(User user, Map<User, Difference<Node>> exported) {
         Difference<Node> changes = user.normalData().exportChanges(results -> {
             if (this.plugin.getUserManager().isNonDefaultUser(user)) {
                 return true;
@@ -387,27 +572,16 @@ public class SqlStorage implements StorageImplementation {
             return true;
         });
 
-        // if the user only has the default group, delete their data
+        if (changes != null) {
+            exported.put(user, changes);
+        }
+
         boolean isDefaultUser = !this.plugin.getUserManager().isNonDefaultUser(user);
         if (changes != null && isDefaultUser) {
             user.normalData().addDefaultNodeToChangeSet();
             changes = null;
         }
-
-        if (changes == null) {
-            try (Connection c = this.connectionFactory.getConnection()) {
-                deleteUser(c, user.getUniqueId());
-            }
-            return;
-        }
-
-        try (Connection c = this.connectionFactory.getConnection()) {
-            updateUserPermissions(c, user.getUniqueId(), changes.getAdded(), changes.getRemoved());
-            insertPlayerData(c, user.getUniqueId(), new SqlPlayerData(
-                    user.getPrimaryGroup().getStoredValue().orElse(GroupManager.DEFAULT_GROUP_NAME),
-                    user.getUsername().orElse("null").toLowerCase(Locale.ROOT)
-            ));
-        }
+        return changes;
     }
 
     @Override
@@ -433,26 +607,9 @@ public class SqlStorage implements StorageImplementation {
         PreparedStatementBuilder builder = new PreparedStatementBuilder().append(USER_PERMISSIONS_SELECT_PERMISSION);
         constraint.getConstraint().appendSql(builder, "permission");
 
-        List<NodeEntry<UUID, N>> held = new ArrayList<>();
         try (Connection c = this.connectionFactory.getConnection()) {
-            try (PreparedStatement ps = builder.build(c, this.statementProcessor)) {
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        UUID holder = UUID.fromString(rs.getString("uuid"));
-                        Node node = readNode(rs);
-                        if (node == null) {
-                            continue;
-                        }
-
-                        N match = constraint.filterConstraintMatch(node);
-                        if (match != null) {
-                            held.add(NodeEntry.of(holder, match));
-                        }
-                    }
-                }
-            }
+            return selectNodes(c, builder, constraint, USER_HOLDER_READER);
         }
-        return held;
     }
 
 
@@ -513,7 +670,10 @@ public class SqlStorage implements StorageImplementation {
 
         if (!changes.isEmpty()) {
             try (Connection c = this.connectionFactory.getConnection()) {
-                updateGroupPermissions(c, group.getName(), changes.getAdded(), changes.getRemoved());
+                transaction(c, () -> updateGroupPermissions(c, group.getName(), changes));
+            } catch (SQLException | RuntimeException e) {
+                group.normalData().restoreChanges(changes);
+                throw e;
             }
         }
     }
@@ -537,21 +697,25 @@ public class SqlStorage implements StorageImplementation {
         PreparedStatementBuilder builder = new PreparedStatementBuilder().append(GROUP_PERMISSIONS_SELECT_PERMISSION);
         constraint.getConstraint().appendSql(builder, "permission");
 
-        List<NodeEntry<String, N>> held = new ArrayList<>();
         try (Connection c = this.connectionFactory.getConnection()) {
-            try (PreparedStatement ps = builder.build(c, this.statementProcessor)) {
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        String holder = rs.getString("name");
-                        Node node = readNode(rs);
-                        if (node == null) {
-                            continue;
-                        }
+            return selectNodes(c, builder, constraint, GROUP_HOLDER_READER);
+        }
+    }
 
-                        N match = constraint.filterConstraintMatch(node);
-                        if (match != null) {
-                            held.add(NodeEntry.of(holder, match));
-                        }
+    private <H extends Comparable<H>, N extends Node> List<NodeEntry<H, N>> selectNodes(Connection c, PreparedStatementBuilder builder, ConstraintNodeMatcher<N> constraint, HolderReader<H> holderReader) throws SQLException {
+        List<NodeEntry<H, N>> held = new ArrayList<>();
+        try (PreparedStatement ps = builder.build(c, this.statementProcessor)) {
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    H holder = holderReader.read(rs);
+                    Node node = readNode(rs);
+                    if (node == null) {
+                        continue;
+                    }
+
+                    N match = constraint.filterConstraintMatch(node);
+                    if (match != null) {
+                        held.add(NodeEntry.of(holder, match));
                     }
                 }
             }
@@ -756,6 +920,11 @@ public class SqlStorage implements StorageImplementation {
                 .build();
     }
 
+    @FunctionalInterface
+    private interface HolderReader<H> {
+        H read(ResultSet rs) throws SQLException;
+    }
+
     private static Node readNode(ResultSet rs) throws SQLException {
         long id = rs.getLong("id");
         String permission = rs.getString("permission");
@@ -799,70 +968,146 @@ public class SqlStorage implements StorageImplementation {
     }
 
     private static void writeNode(Node node, PreparedStatement ps) throws SQLException {
+        writeNode(node, ps, 0);
+    }
+
+    private static void writeNode(Node node, PreparedStatement ps, int offset) throws SQLException {
         MutableContextSet contexts = node.getContexts().mutableCopy();
         String server = getFirstContextValue(contexts, DefaultContextKeys.SERVER_KEY);
         String world = getFirstContextValue(contexts, DefaultContextKeys.WORLD_KEY);
         long expiry = node.hasExpiry() ? node.getExpiry().getEpochSecond() : 0L;
 
-        ps.setString(2, node.getKey());
-        ps.setBoolean(3, node.getValue());
-        ps.setString(4, server);
-        ps.setString(5, world);
-        ps.setLong(6, expiry);
-        ps.setString(7, GsonProvider.normal().toJson(ContextSetJsonSerializer.serialize(contexts)));
+        ps.setString(offset + 2, node.getKey());
+        ps.setBoolean(offset + 3, node.getValue());
+        ps.setString(offset + 4, server);
+        ps.setString(offset + 5, world);
+        ps.setLong(offset + 6, expiry);
+        ps.setString(offset + 7, GsonProvider.normal().toJson(ContextSetJsonSerializer.serialize(contexts)));
     }
 
-    private void updateUserPermissions(Connection c, UUID user, Set<Node> add, Set<Node> delete) throws SQLException {
-        updatePermissions(c, user.toString(), add, delete, USER_PERMISSIONS_DELETE_SPECIFIC, USER_PERMISSIONS_DELETE_SPECIFIC_PROPS, USER_PERMISSIONS_INSERT);
+    private void updateUserPermissions(Connection c, Map<String, Difference<Node>> changes) throws SQLException {
+        updatePermissions(c, changes, USER_PERMISSIONS_DELETE_SPECIFIC, USER_PERMISSIONS_DELETE_SPECIFIC_PROPS, USER_PERMISSIONS_INSERT);
     }
 
-    private void updateGroupPermissions(Connection c, String group, Set<Node> add, Set<Node> delete) throws SQLException {
-        updatePermissions(c, group, add, delete, GROUP_PERMISSIONS_DELETE_SPECIFIC, GROUP_PERMISSIONS_DELETE_SPECIFIC_PROPS, GROUP_PERMISSIONS_INSERT);
+    private void updateGroupPermissions(Connection c, String group, Difference<Node> changes) throws SQLException {
+        updatePermissions(c, Collections.singletonMap(group, changes), GROUP_PERMISSIONS_DELETE_SPECIFIC, GROUP_PERMISSIONS_DELETE_SPECIFIC_PROPS, GROUP_PERMISSIONS_INSERT);
     }
 
-    private void updatePermissions(Connection c, String holder, Set<Node> add, Set<Node> delete, String deleteSpecificQuery, String deleteQuery, String insertQuery) throws SQLException {
-        if (!delete.isEmpty()) {
-            List<Long> deleteRows = new ArrayList<>(delete.size());
-            List<Node> deleteNodes = new ArrayList<>(delete.size());
-            for (Node node : delete) {
+    private void updatePermissions(Connection c, Map<String, Difference<Node>> changes, String deleteSpecificQuery, String deleteQuery, String insertQuery) throws SQLException {
+        List<Long> deleteRows = new ArrayList<>();
+        List<Map.Entry<String, Node>> deleteNodes = new ArrayList<>();
+        List<Map.Entry<String, Node>> insertNodes = new ArrayList<>();
+
+        for (Map.Entry<String, Difference<Node>> entry : changes.entrySet()) {
+            String holder = entry.getKey();
+            for (Node node : entry.getValue().getRemoved()) {
                 SqlRowId rowId = node.getMetadata(SqlRowId.KEY).orElse(null);
                 if (rowId != null) {
                     deleteRows.add(rowId.getRowId());
                 } else {
-                    deleteNodes.add(node);
+                    deleteNodes.add(Maps.immutableEntry(holder, node));
                 }
             }
+            for (Node node : entry.getValue().getAdded()) {
+                insertNodes.add(Maps.immutableEntry(holder, node));
+            }
+        }
 
-            if (!deleteRows.isEmpty()) {
-                try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(deleteSpecificQuery))) {
-                    for (Long id : deleteRows) {
-                        ps.setLong(1, id);
-                        ps.addBatch();
-                    }
-                    ps.executeBatch();
+        if (!deleteRows.isEmpty()) {
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(deleteSpecificQuery))) {
+                for (Long id : deleteRows) {
+                    ps.setLong(1, id);
+                    ps.addBatch();
                 }
+                ps.executeBatch();
             }
-            if (!deleteNodes.isEmpty()) {
-                try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(deleteQuery))) {
-                    for (Node node : deleteNodes) {
-                        ps.setString(1, holder);
-                        writeNode(node, ps);
-                        ps.addBatch();
-                    }
-                    ps.executeBatch();
+        }
+        if (!deleteNodes.isEmpty()) {
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(deleteQuery))) {
+                for (Map.Entry<String, Node> entry : deleteNodes) {
+                    ps.setString(1, entry.getKey());
+                    writeNode(entry.getValue(), ps);
+                    ps.addBatch();
                 }
+                ps.executeBatch();
             }
         }
+        if (!insertNodes.isEmpty()) {
+            insertPermissions(c, insertNodes, insertQuery);
+        }
+    }
 
-        if (!add.isEmpty()) {
-            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(insertQuery))) {
-                for (Node node : add) {
-                    ps.setString(1, holder);
-                    writeNode(node, ps);
-                    ps.addBatch();
+    /**
+     * Inserts permission rows using multi-row insert statements, so that large saves
+     * don't need a round trip per row.
+     *
+     * @param c the connection
+     * @param rows the rows to insert, holder -> node
+     * @param insertQuery the single row insert query
+     * @throws SQLException if an error occurs
+     */
+    private void insertPermissions(Connection c, List<Map.Entry<String, Node>> rows, String insertQuery) throws SQLException {
+        int maxRows = MAX_INSERT_ROWS.getOrDefault(this.connectionFactory.getImplementationName(), MAX_INSERT_ROWS_DEFAULT);
+
+        String fullQuery = null;
+        for (int from = 0; from < rows.size(); from += maxRows) {
+            List<Map.Entry<String, Node>> chunk = rows.subList(from, Math.min(rows.size(), from + maxRows));
+
+            String query;
+            if (chunk.size() == maxRows) {
+                if (fullQuery == null) {
+                    fullQuery = createMultiRowInsert(insertQuery, maxRows);
                 }
-                ps.executeBatch();
+                query = fullQuery;
+            } else {
+                query = createMultiRowInsert(insertQuery, chunk.size());
             }
+
+            try (PreparedStatement ps = c.prepareStatement(query)) {
+                int offset = 0;
+                for (Map.Entry<String, Node> row : chunk) {
+                    ps.setString(offset + 1, row.getKey());
+                    writeNode(row.getValue(), ps, offset);
+                    offset += 7;
+                }
+                ps.execute();
+            }
+        }
+    }
+
+    private String createMultiRowInsert(String insertQuery, int rows) {
+        String values = insertQuery.substring(insertQuery.lastIndexOf('('));
+        StringBuilder sb = new StringBuilder(insertQuery);
+        for (int i = 1; i < rows; i++) {
+            sb.append(", ").append(values);
+        }
+        return this.statementProcessor.apply(sb.toString());
+    }
+
+    /**
+     * Runs the given action in a transaction, if supported by the connection.
+     *
+     * @param c the connection
+     * @param action the action
+     * @throws SQLException if an error occurs
+     */
+    private static void transaction(Connection c, SqlAction action) throws SQLException {
+        // file based databases share a single connection between all threads, so we can't
+        // use transactions without other unrelated statements becoming part of them
+        if (c instanceof NonClosableConnection || !c.getAutoCommit()) {
+            action.run();
+            return;
+        }
+
+        c.setAutoCommit(false);
+        try {
+            action.run();
+            c.commit();
+        } catch (SQLException | RuntimeException e) {
+            c.rollback();
+            throw e;
+        } finally {
+            c.setAutoCommit(true);
         }
     }
 
@@ -947,41 +1192,60 @@ public class SqlStorage implements StorageImplementation {
         return this.statementProcessor.apply(baseQuery) + param;
     }
 
-    private void deleteUser(Connection c, UUID user) throws SQLException {
+    private void deleteUsers(Connection c, Set<UUID> users) throws SQLException {
+        if (users.isEmpty()) {
+            return;
+        }
+
         try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_PERMISSIONS_DELETE))) {
-            ps.setString(1, user.toString());
-            ps.execute();
+            for (UUID user : users) {
+                ps.setString(1, user.toString());
+                ps.addBatch();
+            }
+            ps.executeBatch();
         }
         try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_UPDATE_PRIMARY_GROUP_BY_UUID))) {
-            ps.setString(1, GroupManager.DEFAULT_GROUP_NAME);
-            ps.setString(2, user.toString());
-            ps.execute();
+            for (UUID user : users) {
+                ps.setString(1, GroupManager.DEFAULT_GROUP_NAME);
+                ps.setString(2, user.toString());
+                ps.addBatch();
+            }
+            ps.executeBatch();
         }
     }
 
-    private void insertPlayerData(Connection c, UUID user, SqlPlayerData data) throws SQLException {
-        boolean hasPrimaryGroupSaved;
-        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_SELECT_PRIMARY_GROUP_BY_UUID))) {
-            ps.setString(1, user.toString());
-            try (ResultSet rs = ps.executeQuery()) {
-                hasPrimaryGroupSaved = rs.next();
-            }
+    private void insertPlayerData(Connection c, Map<UUID, SqlPlayerData> data) throws SQLException {
+        if (data.isEmpty()) {
+            return;
         }
 
-        if (hasPrimaryGroupSaved) {
-            // update
+        Set<UUID> saved = selectPlayerData(c, data.keySet()).keySet();
+
+        List<Map.Entry<UUID, SqlPlayerData>> updates = new ArrayList<>();
+        List<Map.Entry<UUID, SqlPlayerData>> inserts = new ArrayList<>();
+        for (Map.Entry<UUID, SqlPlayerData> entry : data.entrySet()) {
+            (saved.contains(entry.getKey()) ? updates : inserts).add(entry);
+        }
+
+        if (!updates.isEmpty()) {
             try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_UPDATE_PRIMARY_GROUP_BY_UUID))) {
-                ps.setString(1, data.primaryGroup);
-                ps.setString(2, user.toString());
-                ps.execute();
+                for (Map.Entry<UUID, SqlPlayerData> entry : updates) {
+                    ps.setString(1, entry.getValue().primaryGroup);
+                    ps.setString(2, entry.getKey().toString());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
             }
-        } else {
-            // insert
+        }
+        if (!inserts.isEmpty()) {
             try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_INSERT))) {
-                ps.setString(1, user.toString());
-                ps.setString(2, data.username);
-                ps.setString(3, data.primaryGroup);
-                ps.execute();
+                for (Map.Entry<UUID, SqlPlayerData> entry : inserts) {
+                    ps.setString(1, entry.getKey().toString());
+                    ps.setString(2, entry.getValue().username);
+                    ps.setString(3, entry.getValue().primaryGroup);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
             }
         }
     }
@@ -1094,6 +1358,43 @@ public class SqlStorage implements StorageImplementation {
         }
     }
 
+    /**
+     * Gets the names of the indexes on a table, in lower case.
+     *
+     * @param connection the connection
+     * @param table the table name, matched case-insensitively
+     * @return the index names
+     */
+    private static Set<String> getIndexNames(Connection connection, String table) throws SQLException {
+        Set<String> indexes = new HashSet<>();
+
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet tables = metaData.getTables(connection.getCatalog(), null, "%", null)) {
+            while (tables.next()) {
+                String tableName = tables.getString(3);
+                if (!tableName.equalsIgnoreCase(table)) {
+                    continue;
+                }
+
+                try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), tables.getString(2), tableName, false, true)) {
+                    while (rs.next()) {
+                        String indexName = rs.getString("INDEX_NAME");
+                        if (indexName != null) {
+                            indexes.add(indexName.toLowerCase(Locale.ROOT));
+                        }
+                    }
+                }
+            }
+        }
+
+        return indexes;
+    }
+
+    @FunctionalInterface
+    private interface SqlAction {
+        void run() throws SQLException;
+    }
+
     private static final class SqlPlayerData {
         private final String primaryGroup;
         private final String username;
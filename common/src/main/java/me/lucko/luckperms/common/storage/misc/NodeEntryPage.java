@@ -0,0 +1,104 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.misc;
+
+import com.google.common.collect.ImmutableList;
+import me.lucko.luckperms.common.node.comparator.NodeEntryComparator;
+import me.lucko.luckperms.common.util.Paginated;
+import net.luckperms.api.node.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single page of node search results, ordered using {@link NodeEntryComparator}.
+ *
+ * @param <H> the holder type
+ * @param <N> the node type
+ */
+public final class NodeEntryPage<H extends Comparable<H>, N extends Node> {
+
+    /**
+     * Creates a page from the complete list of results.
+     *
+     * <p>If the page number is out of range, the first page is returned instead.</p>
+     *
+     * @param results all results
+     * @param pageNumber the page number, starting at 1
+     * @param pageSize the number of entries per page
+     * @return the page
+     */
+    public static <H extends Comparable<H>, N extends Node> NodeEntryPage<H, N> of(List<NodeEntry<H, N>> results, int pageNumber, int pageSize) {
+        List<NodeEntry<H, N>> sorted = new ArrayList<>(results);
+        sorted.sort(NodeEntryComparator.normal());
+
+        int offset = Paginated.offset(pageNumber, pageSize);
+        if (offset >= sorted.size()) {
+            pageNumber = 1;
+            offset = 0;
+        }
+
+        List<NodeEntry<H, N>> content = sorted.subList(offset, Math.min(sorted.size(), offset + pageSize));
+        return new NodeEntryPage<>(content, pageNumber, pageSize, sorted.size());
+    }
+
+    private final List<NodeEntry<H, N>> content;
+    private final int pageNumber;
+    private final int pageSize;
+    private final int totalEntries;
+
+    public NodeEntryPage(List<NodeEntry<H, N>> content, int pageNumber, int pageSize, int totalEntries) {
+        this.content = ImmutableList.copyOf(content);
+        this.pageNumber = pageNumber;
+        this.pageSize = pageSize;
+        this.totalEntries = totalEntries;
+    }
+
+    public List<NodeEntry<H, N>> getContent() {
+        return this.content;
+    }
+
+    public int getPageNumber() {
+        return this.pageNumber;
+    }
+
+    public int getPageSize() {
+        return this.pageSize;
+    }
+
+    public int getTotalEntries() {
+        return this.totalEntries;
+    }
+
+    public int getMaxPages() {
+        return (int) Math.ceil((double) this.totalEntries / (double) this.pageSize);
+    }
+
+    @Override
+    public String toString() {
+        return "NodeEntryPage(pageNumber=" + this.pageNumber + ", pageSize=" + this.pageSize + ", totalEntries=" + this.totalEntries + ", content=" + this.content + ")";
+    }
+}
@@ -29,6 +29,9 @@ import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class ExpireTemporaryTask implements Runnable {
     private final LuckPermsPlugin plugin;
 
@@ -46,12 +49,18 @@ public class ExpireTemporaryTask implements Runnable {
             }
         }
 
+        List<User> userChanges = new ArrayList<>();
         for (User user : this.plugin.getUserManager().getAll().values()) {
             if (user.auditTemporaryNodes()) {
-                this.plugin.getStorage().saveUser(user);
+                userChanges.add(user);
             }
         }
 
+        // save users together, the storage can write them in one go
+        if (!userChanges.isEmpty()) {
+            this.plugin.getStorage().saveUsers(userChanges);
+        }
+
         if (groupChanges) {
             this.plugin.getGroupManager().invalidateAllGroupCaches();
             this.plugin.getUserManager().invalidateAllUserCaches();
@@ -44,6 +44,23 @@ public class Paginated<T> {
         this.content = ImmutableList.copyOf(content);
     }
 
+    /**
+     * Gets the index of the first element on the given page.
+     *
+     * @param pageNo the page number, starting at 1
+     * @param pageSize the number of elements per page
+     * @return the offset
+     */
+    public static int offset(int pageNo, int pageSize) {
+        if (pageNo < 1) {
+            throw new IllegalArgumentException("pageNo cannot be less than 1: " + pageNo);
+        }
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize cannot be less than 1: " + pageSize);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, (long) (pageNo - 1) * pageSize);
+    }
+
     public List<T> getContent() {
         return this.content;
     }
@@ -0,0 +1,117 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.verbose;
+
+import me.lucko.luckperms.common.verbose.event.VerboseEvent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free ring buffer of {@link VerboseEvent}s.
+ *
+ * <p>Events can be offered by any number of threads, but must only be polled
+ * by one thread at a time. When the buffer is full, new events are rejected
+ * rather than blocking the thread which made the check.</p>
+ */
+final class VerboseEventBuffer {
+
+    /** The events in the buffer */
+    private final AtomicReferenceArray<VerboseEvent> events;
+    /** The sequence number of each slot, used to coordinate producers and the consumer */
+    private final AtomicLongArray sequences;
+    /** The mask used to map a position onto a slot */
+    private final int mask;
+
+    /** The position the next event will be written to */
+    private final AtomicLong head = new AtomicLong();
+    /** The position the next event will be read from */
+    private long tail = 0;
+
+    VerboseEventBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+
+        this.events = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+
+        for (int i = 0; i < capacity; i++) {
+            this.sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an event to the buffer.
+     *
+     * @param event the event
+     * @return true if the event was added, false if the buffer is full
+     */
+    public boolean offer(VerboseEvent event) {
+        long pos = this.head.get();
+        while (true) {
+            int slot = (int) (pos & this.mask);
+            long diff = this.sequences.get(slot) - pos;
+
+            if (diff == 0) {
+                // the slot is free - try to claim it
+                if (this.head.compareAndSet(pos, pos + 1)) {
+                    this.events.set(slot, event);
+                    this.sequences.lazySet(slot, pos + 1);
+                    return true;
+                }
+                pos = this.head.get();
+            } else if (diff < 0) {
+                // the consumer hasn't got to this slot yet, so the buffer is full
+                return false;
+            } else {
+                // another producer claimed the slot first
+                pos = this.head.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest event from the buffer.
+     *
+     * @return the event, or null if the buffer is empty
+     */
+    public VerboseEvent poll() {
+        int slot = (int) (this.tail & this.mask);
+        if (this.sequences.get(slot) != this.tail + 1) {
+            return null;
+        }
+
+        VerboseEvent event = this.events.get(slot);
+        this.events.lazySet(slot, null);
+        this.sequences.lazySet(slot, this.tail + this.mask + 1);
+        this.tail++;
+        return event;
+    }
+
+}
@@ -25,11 +25,17 @@
 
 package me.lucko.luckperms.common.verbose;
 
+import me.lucko.luckperms.common.verbose.event.MetaCheckEvent;
+import me.lucko.luckperms.common.verbose.event.PermissionCheckEvent;
 import me.lucko.luckperms.common.verbose.event.VerboseEvent;
+import me.lucko.luckperms.common.verbose.event.VerboseEventType;
 import me.lucko.luckperms.common.verbose.expression.BooleanExpressionCompiler;
 import me.lucko.luckperms.common.verbose.expression.BooleanExpressionCompiler.AST;
 import me.lucko.luckperms.common.verbose.expression.BooleanExpressionCompiler.LexerException;
 import me.lucko.luckperms.common.verbose.expression.BooleanExpressionCompiler.ParserException;
+import me.lucko.luckperms.common.verbose.expression.BooleanExpressionCompiler.Transformer;
+
+import java.util.Locale;
 
 /**
  * Represents a verbose filter expression.
@@ -40,6 +46,7 @@ import me.lucko.luckperms.common.verbose.expression.BooleanExpressionCompiler.Pa
 public final class VerboseFilter {
     private final String expression;
     private final AST ast;
+    private final CheckPredicate predicate;
 
     public static VerboseFilter acceptAll() {
         return new VerboseFilter("", AST.ALWAYS_TRUE);
@@ -60,6 +67,7 @@ public final class VerboseFilter {
     private VerboseFilter(String expression, AST ast) {
         this.expression = expression;
         this.ast = ast;
+        this.predicate = ast.transform(PredicateCompiler.INSTANCE);
     }
 
     /**
@@ -77,6 +85,27 @@ public final class VerboseFilter {
         }
     }
 
+    /**
+     * Evaluates whether a check would pass the filter, without creating an event for it.
+     *
+     * <p>This is equivalent to {@link #evaluate(VerboseEvent)}, but can be called from the
+     * thread making the check before any event data has been allocated.</p>
+     *
+     * @param type the type of check
+     * @param checkTarget the target of the check
+     * @param key the permission or meta key which was checked for
+     * @param result the value of the check result
+     * @return if the check passes the filter
+     */
+    public boolean test(VerboseEventType type, VerboseCheckTarget checkTarget, String key, Object result) {
+        try {
+            return this.predicate.test(type, checkTarget, key, result);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
     public boolean isBlank() {
         return this.ast == AST.ALWAYS_TRUE;
     }
@@ -85,4 +114,49 @@ public final class VerboseFilter {
     public String toString() {
         return isBlank() ? "any" : this.expression;
     }
+
+    @FunctionalInterface
+    private interface CheckPredicate {
+        boolean test(VerboseEventType type, VerboseCheckTarget checkTarget, String key, Object result);
+    }
+
+    /**
+     * Compiles an {@link AST} into a {@link CheckPredicate}, matching variables in the same
+     * way as {@link PermissionCheckEvent#eval(String)} and {@link MetaCheckEvent#eval(String)}.
+     */
+    private enum PredicateCompiler implements Transformer<CheckPredicate> {
+        INSTANCE;
+
+        @Override
+        public CheckPredicate constant(boolean value) {
+            return (type, checkTarget, key, result) -> value;
+        }
+
+        @Override
+        public CheckPredicate variable(String variable) {
+            boolean permission = variable.equals("permission");
+            boolean meta = variable.equals("meta");
+            String prefix = variable.toLowerCase(Locale.ROOT);
+
+            return (type, checkTarget, key, result) -> (type == VerboseEventType.PERMISSION ? permission : meta) ||
+                    checkTarget.describe().equalsIgnoreCase(variable) ||
+                    key.regionMatches(true, 0, prefix, 0, prefix.length()) ||
+                    String.valueOf(result).equalsIgnoreCase(variable);
+        }
+
+        @Override
+        public CheckPredicate not(CheckPredicate child) {
+            return (type, checkTarget, key, result) -> !child.test(type, checkTarget, key, result);
+        }
+
+        @Override
+        public CheckPredicate and(CheckPredicate left, CheckPredicate right) {
+            return (type, checkTarget, key, result) -> left.test(type, checkTarget, key, result) && right.test(type, checkTarget, key, result);
+        }
+
+        @Override
+        public CheckPredicate or(CheckPredicate left, CheckPredicate right) {
+            return (type, checkTarget, key, result) -> left.test(type, checkTarget, key, result) || right.test(type, checkTarget, key, result);
+        }
+    }
 }
@@ -27,6 +27,7 @@ package me.lucko.luckperms.common.verbose;
 
 import me.lucko.luckperms.common.cacheddata.result.StringResult;
 import me.lucko.luckperms.common.cacheddata.result.TristateResult;
+import me.lucko.luckperms.common.plugin.logging.PluginLogger;
 import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
 import me.lucko.luckperms.common.plugin.scheduler.SchedulerTask;
 import me.lucko.luckperms.common.sender.Sender;
@@ -34,39 +35,80 @@ import me.lucko.luckperms.common.verbose.event.CheckOrigin;
 import me.lucko.luckperms.common.verbose.event.MetaCheckEvent;
 import me.lucko.luckperms.common.verbose.event.PermissionCheckEvent;
 import me.lucko.luckperms.common.verbose.event.VerboseEvent;
+import me.lucko.luckperms.common.verbose.event.VerboseEventType;
 import net.luckperms.api.query.QueryOptions;
 
 import java.util.Map;
-import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Accepts {@link VerboseEvent}s and passes them onto registered {@link VerboseListener}s.
  */
 public class VerboseHandler implements AutoCloseable {
 
+    /** The maximum number of events which can be waiting to be handled */
+    private static final int BUFFER_CAPACITY = 1 << 16;
+
+    /** How often events are passed onto listeners, in milliseconds */
+    private static final long TICK_INTERVAL = 100;
+
     /** A map of currently registered listeners */
     private final Map<UUID, VerboseListener> listeners;
-    /** A queue of verbose events to be handled */
-    private final Queue<VerboseEvent> queue;
+    /** A buffer of verbose events to be handled */
+    private final VerboseEventBuffer buffer;
     /** If there are any listeners registered */
     private boolean listening = false;
+    /** If events should be sampled (all registered listeners allow sampling) */
+    private boolean sampling = false;
+    /** The filters of the registered listeners */
+    private volatile VerboseFilter[] filters = new VerboseFilter[0];
+    /** The number of checks made while any listeners are registered */
+    private final LongAdder checkCount = new LongAdder();
     /** The tick task */
     private final SchedulerTask task;
+    /** The logger, passed to listeners to report problems with their recordings */
+    private final PluginLogger logger;
 
-    public VerboseHandler(SchedulerAdapter scheduler) {
+    /** Only 1 in every {@code sampleRate} checks are captured */
+    private volatile int sampleRate = 1;
+    /** The maximum number of events to capture each second, or 0 for no limit */
+    private volatile int maxEventsPerSecond = 0;
+    /** The number of events which can still be captured before the next tick */
+    private final AtomicInteger captureBudget = new AtomicInteger();
+    /** The fraction of an event (in thousandths) left over from previous refills, guarded by {@link #captureBudget} */
+    private long captureBudgetRemainder = 0;
+
+    public VerboseHandler(SchedulerAdapter scheduler, PluginLogger logger) {
+        this.logger = logger;
         this.listeners = new ConcurrentHashMap<>();
-        this.queue = new ConcurrentLinkedQueue<>();
-        this.task = scheduler.asyncRepeating(this::tick, 100, TimeUnit.MILLISECONDS);
+        this.buffer = new VerboseEventBuffer(BUFFER_CAPACITY);
+        this.task = scheduler.asyncRepeating(this::tick, TICK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets the limits on how many checks are captured while listeners are registered.
+     *
+     * @param sampleRate only capture 1 in every {@code sampleRate} checks
+     * @param maxEventsPerSecond the maximum number of events to capture each second, or 0 for no limit
+     */
+    public void setCaptureLimits(int sampleRate, int maxEventsPerSecond) {
+        this.sampleRate = Math.max(1, sampleRate);
+        synchronized (this.captureBudget) {
+            this.maxEventsPerSecond = Math.max(0, maxEventsPerSecond);
+            this.captureBudgetRemainder = 0;
+        }
+        refillCaptureBudget();
     }
 
     /**
      * Offers permission check data to the handler, to be eventually passed onto listeners.
      *
-     * <p>The check data is added to a queue to be processed later, to avoid blocking
+     * <p>The check data is added to a buffer to be processed later, to avoid blocking
      * the main thread each time a permission check is made.</p>
      *
      * @param origin the origin of the check
@@ -81,18 +123,23 @@ public class VerboseHandler implements AutoCloseable {
             return;
         }
 
+        // test the check against the listener filters before creating an event for it
+        this.checkCount.increment();
+        VerboseFilter matchedFilter;
+        if (!sample() || (matchedFilter = match(VerboseEventType.PERMISSION, checkTarget, permission, result.result())) == null || !acquireCapture()) {
+            return;
+        }
+
         long time = System.currentTimeMillis();
-        Throwable trace = new Throwable();
         String thread = Thread.currentThread().getName();
 
-        // add the check data to a queue to be processed later.
-        this.queue.offer(new PermissionCheckEvent(origin, checkTarget, checkQueryOptions, time, trace, thread, permission, result));
+        offer(new PermissionCheckEvent(origin, checkTarget, checkQueryOptions, time, null, thread, permission, result), matchedFilter);
     }
 
     /**
      * Offers meta check data to the handler, to be eventually passed onto listeners.
      *
-     * <p>The check data is added to a queue to be processed later, to avoid blocking
+     * <p>The check data is added to a buffer to be processed later, to avoid blocking
      * the main thread each time a meta check is made.</p>
      *
      * @param origin the origin of the check
@@ -107,12 +154,77 @@ public class VerboseHandler implements AutoCloseable {
             return;
         }
 
+        // test the check against the listener filters before creating an event for it
+        this.checkCount.increment();
+        VerboseFilter matchedFilter;
+        if (!sample() || (matchedFilter = match(VerboseEventType.META, checkTarget, key, result.result())) == null || !acquireCapture()) {
+            return;
+        }
+
         long time = System.currentTimeMillis();
-        Throwable trace = new Throwable();
         String thread = Thread.currentThread().getName();
 
-        // add the check data to a queue to be processed later.
-        this.queue.offer(new MetaCheckEvent(origin, checkTarget, checkQueryOptions, time, trace, thread, key, result));
+        offer(new MetaCheckEvent(origin, checkTarget, checkQueryOptions, time, null, thread, key, result), matchedFilter);
+    }
+
+    /**
+     * Gets if a meta check would be accepted by any of the registered listeners.
+     *
+     * <p>Callers which need to allocate to build the result for
+     * {@link #offerMetaCheckEvent(CheckOrigin, VerboseCheckTarget, QueryOptions, String, StringResult)}
+     * can use this to skip doing so for checks which would be discarded anyway.</p>
+     *
+     * @param checkTarget the target of the meta check
+     * @param key the meta key which was checked for
+     * @param result the value of the meta check result
+     * @return if the check should be offered to the handler
+     */
+    public boolean wantsMetaCheckEvent(VerboseCheckTarget checkTarget, String key, Object result) {
+        if (!this.listening) {
+            return false;
+        }
+
+        if (match(VerboseEventType.META, checkTarget, key, result) == null) {
+            // the check won't be offered, so count it here
+            this.checkCount.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests a check against the filters of the registered listeners.
+     *
+     * @return the first filter which accepts the check, or null if none do
+     */
+    private VerboseFilter match(VerboseEventType type, VerboseCheckTarget checkTarget, String key, Object result) {
+        for (VerboseFilter filter : this.filters) {
+            if (filter.test(type, checkTarget, key, result)) {
+                return filter;
+            }
+        }
+        return null;
+    }
+
+    private boolean sample() {
+        int sampleRate = this.sampleRate;
+        return !this.sampling || sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+    }
+
+    private boolean acquireCapture() {
+        return !this.sampling || this.maxEventsPerSecond == 0 || this.captureBudget.getAndDecrement() > 0;
+    }
+
+    private void offer(VerboseEvent event, VerboseFilter matchedFilter) {
+        // the event has passed at least one listener filter, so it's worth capturing the stack trace
+        event.captureTrace();
+
+        // the listener which owns the filter doesn't need to evaluate it again
+        event.setMatchedFilter(matchedFilter);
+
+        // add the check data to a buffer to be processed later.
+        // if the buffer is full, the event is dropped rather than blocking the check
+        this.buffer.offer(event);
     }
 
     /**
@@ -123,16 +235,31 @@ public class VerboseHandler implements AutoCloseable {
      * @param notify if the sender should be notified in chat on each check
      */
     public void registerListener(Sender sender, VerboseFilter filter, boolean notify) {
+        registerListener(sender, filter, notify, true);
+    }
+
+    /**
+     * Registers a new listener for the given player.
+     *
+     * @param sender the sender to notify, if notify is true
+     * @param filter the filter string
+     * @param notify if the sender should be notified in chat on each check
+     * @param sampled if the capture limits should apply while the listener is registered
+     */
+    public void registerListener(Sender sender, VerboseFilter filter, boolean notify, boolean sampled) {
         // flush out anything before this listener was added
         flush();
 
-        this.listeners.put(sender.getUniqueId(), new VerboseListener(sender, filter, notify));
-        this.listening = true;
+        this.listeners.put(sender.getUniqueId(), new VerboseListener(sender, filter, notify, sampled, this.checkCount::sum, this.logger));
+        updateListeningState();
     }
 
     /**
      * Removes a listener for a given player
      *
+     * <p>The caller is responsible for {@link VerboseListener#close() closing} the
+     * listener once it is done with the recorded data.</p>
+     *
      * @param sender the sender
      * @return the existing listener, if one was actually registered
      */
@@ -140,25 +267,55 @@ public class VerboseHandler implements AutoCloseable {
         // immediately flush, so the listener gets all current data
         flush();
 
-        return this.listeners.remove(sender.getUniqueId());
+        VerboseListener listener = this.listeners.remove(sender.getUniqueId());
+        updateListeningState();
+        return listener;
     }
 
     private void tick() {
         // remove listeners where the sender is no longer valid
-        this.listeners.values().removeIf(l -> !l.getNotifiedSender().isValid());
+        this.listeners.values().removeIf(l -> {
+            if (l.getNotifiedSender().isValid()) {
+                return false;
+            }
+            l.close();
+            return true;
+        });
 
-        // handle all events in the queue
+        // handle all events in the buffer
         flush();
 
         // update listening state
+        updateListeningState();
+        refillCaptureBudget();
+    }
+
+    private void updateListeningState() {
+        this.filters = this.listeners.values().stream().map(VerboseListener::getFilter).toArray(VerboseFilter[]::new);
+        this.sampling = this.listeners.values().stream().allMatch(VerboseListener::isSampled);
         this.listening = !this.listeners.isEmpty();
     }
 
+    private void refillCaptureBudget() {
+        synchronized (this.captureBudget) {
+            int maxEventsPerSecond = this.maxEventsPerSecond;
+            if (maxEventsPerSecond == 0) {
+                return;
+            }
+
+            // carry the fractional part over to the next tick, so rates which
+            // are less than one event per tick are still respected
+            long budget = this.captureBudgetRemainder + maxEventsPerSecond * TICK_INTERVAL;
+            this.captureBudget.set((int) (budget / 1000));
+            this.captureBudgetRemainder = budget % 1000;
+        }
+    }
+
     /**
      * Flushes the pending events to listeners.
      */
     public synchronized void flush() {
-        for (VerboseEvent e; (e = this.queue.poll()) != null; ) {
+        for (VerboseEvent e; (e = this.buffer.poll()) != null; ) {
             for (VerboseListener listener : this.listeners.values()) {
                 listener.acceptEvent(e);
             }
@@ -168,6 +325,8 @@ public class VerboseHandler implements AutoCloseable {
     @Override
     public void close() {
         this.task.cancel();
+        this.listeners.values().forEach(VerboseListener::close);
+        this.listeners.clear();
     }
 
 }
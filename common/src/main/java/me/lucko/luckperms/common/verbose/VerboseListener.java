@@ -26,16 +26,17 @@
 package me.lucko.luckperms.common.verbose;
 
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import me.lucko.luckperms.common.cacheddata.result.TristateResult;
 import me.lucko.luckperms.common.http.AbstractHttpClient;
 import me.lucko.luckperms.common.http.BytebinClient;
 import me.lucko.luckperms.common.http.UnsuccessfulRequestException;
 import me.lucko.luckperms.common.locale.Message;
+import me.lucko.luckperms.common.plugin.logging.PluginLogger;
 import me.lucko.luckperms.common.sender.Sender;
 import me.lucko.luckperms.common.util.DurationFormatter;
 import me.lucko.luckperms.common.util.StackTracePrinter;
 import me.lucko.luckperms.common.util.gson.GsonProvider;
-import me.lucko.luckperms.common.util.gson.JArray;
 import me.lucko.luckperms.common.util.gson.JObject;
 import me.lucko.luckperms.common.verbose.event.CheckOrigin;
 import me.lucko.luckperms.common.verbose.event.MetaCheckEvent;
@@ -49,11 +50,12 @@ import net.luckperms.api.node.Node;
 import net.luckperms.api.node.types.MetaNode;
 import net.luckperms.api.query.QueryMode;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
@@ -62,6 +64,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 import java.util.zip.GZIPOutputStream;
 
 /**
@@ -71,8 +74,6 @@ public class VerboseListener {
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss z")
             .withZone(ZoneId.systemDefault());
 
-    // how much data should we store before stopping.
-    private static final int DATA_TRUNCATION = 10000;
     // how many lines should we include in each stack trace send as a chat message
     private static final int STACK_TRUNCATION_CHAT = 15;
     // how many lines should we include in each stack trace in the web output
@@ -108,18 +109,25 @@ public class VerboseListener {
     private final VerboseFilter filter;
     // if we should notify the sender
     private final boolean notify;
-    // the number of events we have processed
-    private final AtomicInteger counter = new AtomicInteger(0);
+    // if the handler is allowed to sample the events passed to this listener
+    private final boolean sampled;
+    // the total number of checks made by the handler, and its value when the listener was registered
+    private final LongSupplier checkCount;
+    private final long initialCheckCount;
     // the number of events we have processed and accepted, based on the filter rules for this
     // listener
     private final AtomicInteger matchedCounter = new AtomicInteger(0);
-    // the events which passed the filter, up to a max size of #DATA_TRUNCATION
-    private final List<VerboseEvent> results = new ArrayList<>(DATA_TRUNCATION / 10);
+    // the events which passed the filter, streamed to disk as they are accepted
+    private final VerboseRecording recording;
 
-    public VerboseListener(Sender notifiedSender, VerboseFilter filter, boolean notify) {
+    public VerboseListener(Sender notifiedSender, VerboseFilter filter, boolean notify, boolean sampled, LongSupplier checkCount, PluginLogger logger) {
         this.notifiedSender = notifiedSender;
         this.filter = filter;
         this.notify = notify;
+        this.sampled = sampled;
+        this.checkCount = checkCount;
+        this.initialCheckCount = checkCount.getAsLong();
+        this.recording = new VerboseRecording(logger);
     }
 
     /**
@@ -128,21 +136,16 @@ public class VerboseListener {
      * @param event the event to process
      */
     public void acceptEvent(VerboseEvent event) {
-        // increment handled counter
-        this.counter.incrementAndGet();
-
         // check if the data passes our filter
-        if (!this.filter.evaluate(event)) {
+        if (!event.passes(this.filter)) {
             return;
         }
 
         // increment the matched filter
         this.matchedCounter.incrementAndGet();
 
-        // record the check, if we have space for it
-        if (this.results.size() < DATA_TRUNCATION) {
-            this.results.add(event);
-        }
+        // record the check
+        this.recording.record(event.toJson(shouldFilterStackTrace(event) ? WEB_FILTERED_PRINTER : WEB_UNFILTERED_PRINTER));
 
         // handle notifications
         if (this.notify) {
@@ -238,6 +241,8 @@ public class VerboseListener {
     /**
      * Uploads the captured data in this listener to a paste and returns the url
      *
+     * <p>The recorded data is deleted afterwards.</p>
+     *
      * @param bytebin the bytebin instance to upload with
      * @return the url
      */
@@ -246,42 +251,58 @@ public class VerboseListener {
         String startDate = DATE_FORMAT.format(this.startTime);
         String endDate = DATE_FORMAT.format(Instant.now());
         String duration = DurationFormatter.CONCISE.formatString(Duration.between(this.startTime, Instant.now()));
-        boolean truncated = this.matchedCounter.get() > this.results.size();
+        boolean truncated = this.recording.isTruncated();
 
-        JObject metadata = new JObject()
+        JsonObject metadata = new JObject()
                 .add("startTime", startDate)
                 .add("endTime", endDate)
                 .add("duration", duration)
                 .add("count", new JObject()
                         .add("matched", this.matchedCounter.get())
-                        .add("total", this.counter.get())
+                        .add("total", this.checkCount.getAsLong() - this.initialCheckCount)
                 )
                 .add("uploader", new JObject()
                         .add("name", this.notifiedSender.getNameWithLocation())
                         .add("uuid", this.notifiedSender.getUniqueId().toString())
                 )
                 .add("filter", this.filter.toString())
-                .add("truncated", truncated);
+                .add("truncated", truncated)
+                .toJson();
 
-        JArray data = new JArray();
-        for (VerboseEvent event : this.results) {
-            data.add(event.toJson(shouldFilterStackTrace(event) ? WEB_FILTERED_PRINTER : WEB_UNFILTERED_PRINTER));
+        // stream the payload from the recording into a compressed file, then upload that
+        Path payload = Files.createTempFile("luckperms-verbose-upload-", ".json.gz");
+        try {
+            try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(payload)), StandardCharsets.UTF_8)))) {
+                writer.beginObject();
+                writer.name("metadata");
+                GsonProvider.normal().toJson(metadata, writer);
+                writer.name("data");
+                writer.beginArray();
+                this.recording.writeTo(writer);
+                writer.endArray();
+                writer.endObject();
+            }
+
+            return bytebin.postContent(payload, AbstractHttpClient.JSON_TYPE).key();
+        } finally {
+            Files.deleteIfExists(payload);
+            close();
         }
-        this.results.clear();
+    }
 
-        JsonObject payload = new JObject()
-                .add("metadata", metadata)
-                .add("data", data)
-                .toJson();
+    /**
+     * Deletes any data recorded by this listener.
+     */
+    public void close() {
+        this.recording.close();
+    }
 
-        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
-        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(bytesOut), StandardCharsets.UTF_8)) {
-            GsonProvider.normal().toJson(payload, writer);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    public VerboseFilter getFilter() {
+        return this.filter;
+    }
 
-        return bytebin.postContent(bytesOut.toByteArray(), AbstractHttpClient.JSON_TYPE).key();
+    public boolean isSampled() {
+        return this.sampled;
     }
 
     public Sender getNotifiedSender() {
@@ -0,0 +1,269 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.verbose;
+
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import me.lucko.luckperms.common.plugin.logging.PluginLogger;
+import me.lucko.luckperms.common.util.gson.GsonProvider;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records serialized verbose events to a set of rolling, compressed JSON-lines files.
+ *
+ * <p>Events are written to the current segment file as they are recorded. Once a segment
+ * reaches {@link #MAX_SEGMENT_SIZE}, a new one is started, and if there are more than
+ * {@link #MAX_SEGMENTS} segments, the oldest one is deleted. This means long recordings
+ * keep the most recent events without holding them all in memory.</p>
+ *
+ * <p>Events may be recorded while another thread is writing out or closing the
+ * recording, so all access to its state is synchronized. The segment files are read
+ * back without holding the lock, so writing out a large recording doesn't block
+ * threads trying to record events.</p>
+ */
+final class VerboseRecording implements AutoCloseable {
+
+    /** The (uncompressed) number of characters at which a new segment is started */
+    private static final long MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /** The maximum number of segments to keep */
+    private static final int MAX_SEGMENTS = 8;
+
+    private final PluginLogger logger;
+    private final long maxSegmentSize;
+    private final int maxSegments;
+
+    /** The completed segments, oldest first */
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    /** The segment currently being written to */
+    private Segment current = null;
+    /** The writer for the current segment */
+    private Writer writer = null;
+
+    /** The number of events in segments which have been handed off to be written out */
+    private int writtenOut = 0;
+    /** The number of events which were discarded when old segments were deleted */
+    private int discarded = 0;
+    /** The number of events which couldn't be recorded because writing failed */
+    private int dropped = 0;
+    /** If the recording has failed, and is no longer accepting events */
+    private boolean failed = false;
+    /** If the recording has been written out or closed, and is no longer accepting events */
+    private boolean closed = false;
+
+    VerboseRecording(PluginLogger logger) {
+        this(logger, MAX_SEGMENT_SIZE, MAX_SEGMENTS);
+    }
+
+    VerboseRecording(PluginLogger logger, long maxSegmentSize, int maxSegments) {
+        this.logger = logger;
+        this.maxSegmentSize = maxSegmentSize;
+        this.maxSegments = maxSegments;
+    }
+
+    /**
+     * Records an event.
+     *
+     * <p>Does nothing once the recording has been written out or closed.</p>
+     *
+     * @param event the serialized event
+     */
+    public synchronized void record(JsonObject event) {
+        if (this.closed) {
+            return;
+        }
+        if (this.failed) {
+            this.dropped++;
+            return;
+        }
+
+        try {
+            if (this.current == null || this.current.size >= this.maxSegmentSize) {
+                roll();
+            }
+
+            String line = GsonProvider.normal().toJson(event);
+            this.writer.write(line);
+            this.writer.write('\n');
+            this.current.size += line.length() + 1;
+            this.current.count++;
+        } catch (IOException e) {
+            this.logger.warn("Unable to write to verbose recording, no further events will be recorded", e);
+            this.failed = true;
+            this.dropped += getRecordedCount() + 1;
+            deleteSegments();
+        }
+    }
+
+    private void roll() throws IOException {
+        finishCurrent();
+
+        while (this.segments.size() >= this.maxSegments) {
+            Segment oldest = this.segments.removeFirst();
+            this.discarded += oldest.count;
+            Files.deleteIfExists(oldest.file);
+        }
+
+        Path file = Files.createTempFile("luckperms-verbose-", ".jsonl.gz");
+        this.current = new Segment(file);
+        this.writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(file)), StandardCharsets.UTF_8));
+    }
+
+    private void finishCurrent() throws IOException {
+        if (this.current == null) {
+            return;
+        }
+
+        Writer writer = this.writer;
+        this.segments.addLast(this.current);
+        this.current = null;
+        this.writer = null;
+        writer.close();
+    }
+
+    private void deleteSegments() {
+        try {
+            finishCurrent();
+        } catch (IOException e) {
+            // ignore
+        }
+
+        deleteFiles(this.segments);
+        this.segments.clear();
+    }
+
+    private void deleteFiles(Iterable<Segment> segments) {
+        for (Segment segment : segments) {
+            try {
+                Files.deleteIfExists(segment.file);
+            } catch (IOException e) {
+                this.logger.warn("Unable to delete verbose recording segment " + segment.file, e);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of events which are still held by the recording.
+     *
+     * @return the number of recorded events
+     */
+    public synchronized int getRecordedCount() {
+        int count = this.writtenOut + (this.current == null ? 0 : this.current.count);
+        for (Segment segment : this.segments) {
+            count += segment.count;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of events which have been discarded to keep the recording within its size limit.
+     *
+     * @return the number of discarded events
+     */
+    public synchronized int getDiscardedCount() {
+        return this.discarded;
+    }
+
+    /**
+     * Gets if any events offered to the recording are no longer held by it, either because
+     * they were discarded to keep within the size limit, or because writing failed.
+     *
+     * @return if the recording is incomplete
+     */
+    public synchronized boolean isTruncated() {
+        return this.discarded != 0 || this.dropped != 0;
+    }
+
+    /**
+     * Stops recording, and writes each recorded event (oldest first) as an element
+     * of the current JSON array. The recorded data is deleted once it has been read.
+     *
+     * @param out the writer
+     * @throws IOException if an error occurs
+     */
+    public void writeTo(JsonWriter out) throws IOException {
+        // take ownership of the segments, so they can be read without holding the lock
+        List<Segment> segments;
+        synchronized (this) {
+            this.closed = true;
+            finishCurrent();
+
+            segments = new ArrayList<>(this.segments);
+            this.segments.clear();
+            for (Segment segment : segments) {
+                this.writtenOut += segment.count;
+            }
+        }
+
+        try {
+            for (Segment segment : segments) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(segment.file)), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        out.jsonValue(line);
+                    }
+                }
+            }
+        } finally {
+            deleteFiles(segments);
+        }
+    }
+
+    /**
+     * Stops recording, and deletes the recorded data.
+     */
+    @Override
+    public synchronized void close() {
+        this.closed = true;
+        deleteSegments();
+    }
+
+    private static final class Segment {
+        private final Path file;
+        private long size = 0;
+        private int count = 0;
+
+        Segment(Path file) {
+            this.file = file;
+        }
+    }
+
+}
@@ -30,6 +30,7 @@ import me.lucko.luckperms.common.util.StackTracePrinter;
 import me.lucko.luckperms.common.util.gson.JArray;
 import me.lucko.luckperms.common.util.gson.JObject;
 import me.lucko.luckperms.common.verbose.VerboseCheckTarget;
+import me.lucko.luckperms.common.verbose.VerboseFilter;
 import me.lucko.luckperms.common.verbose.expression.BooleanExpressionCompiler.VariableEvaluator;
 import net.luckperms.api.cacheddata.Result;
 import net.luckperms.api.context.Context;
@@ -44,6 +45,7 @@ import java.util.UUID;
  * Represents a verbose event.
  */
 public abstract class VerboseEvent implements VariableEvaluator {
+    private static final StackTraceElement[] NO_TRACE = new StackTraceElement[0];
 
     /**
      * The origin of the check
@@ -66,15 +68,20 @@ public abstract class VerboseEvent implements VariableEvaluator {
     private final long checkTime;
 
     /**
-     * The throwable created when the check took place
+     * The throwable created when the check took place, or null if a trace hasn't been captured
      */
-    private final Throwable checkTrace;
+    private Throwable checkTrace;
 
     /**
      * The name of the thread where the check took place
      */
     private final String checkThread;
 
+    /**
+     * A filter the event is already known to pass, or null if it hasn't been tested
+     */
+    private VerboseFilter matchedFilter;
+
     protected VerboseEvent(CheckOrigin origin, VerboseCheckTarget checkTarget, QueryOptions checkQueryOptions, long checkTime, Throwable checkTrace, String checkThread) {
         this.origin = origin;
         this.checkTarget = checkTarget;
@@ -103,13 +110,45 @@ public abstract class VerboseEvent implements VariableEvaluator {
     }
 
     public StackTraceElement[] getCheckTrace() {
-        return this.checkTrace.getStackTrace();
+        return this.checkTrace == null ? NO_TRACE : this.checkTrace.getStackTrace();
+    }
+
+    /**
+     * Captures the stack trace of the current thread, if a trace hasn't already been captured.
+     *
+     * <p>Capturing a trace is relatively expensive, so this should only be called (from the
+     * thread which made the check) once the event is known to be wanted by a listener.</p>
+     */
+    public void captureTrace() {
+        if (this.checkTrace == null) {
+            this.checkTrace = new Throwable();
+        }
     }
 
     public String getCheckThread() {
         return this.checkThread;
     }
 
+    /**
+     * Records a filter the event has already been found to pass.
+     *
+     * @param filter the filter
+     */
+    public void setMatchedFilter(VerboseFilter filter) {
+        this.matchedFilter = filter;
+    }
+
+    /**
+     * Gets if the event passes the given filter, only evaluating it if the
+     * event hasn't already been found to pass it.
+     *
+     * @param filter the filter
+     * @return if the event passes the filter
+     */
+    public boolean passes(VerboseFilter filter) {
+        return filter == this.matchedFilter || filter.evaluate(this);
+    }
+
     public abstract VerboseEventType getType();
 
     protected abstract void serializeTo(JObject object);
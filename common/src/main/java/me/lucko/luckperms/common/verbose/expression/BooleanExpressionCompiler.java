@@ -63,11 +63,29 @@ public class BooleanExpressionCompiler {
         boolean eval(String variable);
     }
 
+    /**
+     * Converts an {@link AST} into another representation, one node at a time.
+     *
+     * @param <R> the type of the result
+     */
+    public interface Transformer<R> {
+
+        R constant(boolean value);
+
+        R variable(String variable);
+
+        R not(R child);
+
+        R and(R left, R right);
+
+        R or(R left, R right);
+    }
+
     /**
      * AST for a boolean expression.
      */
     public interface AST {
-        AST ALWAYS_TRUE = e -> true;
+        AST ALWAYS_TRUE = new Constant(true);
 
         /**
          * Evaluates the AST.
@@ -76,6 +94,15 @@ public class BooleanExpressionCompiler {
          * @return the result
          */
         boolean eval(VariableEvaluator variableEvaluator);
+
+        /**
+         * Converts the AST using the given transformer.
+         *
+         * @param transformer the transformer
+         * @param <R> the type of the result
+         * @return the result
+         */
+        <R> R transform(Transformer<R> transformer);
     }
 
     /**
@@ -179,6 +206,24 @@ public class BooleanExpressionCompiler {
 
     /* AST implementations */
 
+    private static final class Constant implements AST {
+        final boolean value;
+
+        Constant(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean eval(VariableEvaluator variableEvaluator) {
+            return this.value;
+        }
+
+        @Override
+        public <R> R transform(Transformer<R> transformer) {
+            return transformer.constant(this.value);
+        }
+    }
+
     private static final class And implements AST {
         AST left;
         AST right;
@@ -187,6 +232,11 @@ public class BooleanExpressionCompiler {
         public boolean eval(VariableEvaluator variableEvaluator) {
             return this.left.eval(variableEvaluator) && this.right.eval(variableEvaluator);
         }
+
+        @Override
+        public <R> R transform(Transformer<R> transformer) {
+            return transformer.and(this.left.transform(transformer), this.right.transform(transformer));
+        }
     }
 
     private static final class Or implements AST {
@@ -197,6 +247,11 @@ public class BooleanExpressionCompiler {
         public boolean eval(VariableEvaluator variableEvaluator) {
             return this.left.eval(variableEvaluator) || this.right.eval(variableEvaluator);
         }
+
+        @Override
+        public <R> R transform(Transformer<R> transformer) {
+            return transformer.or(this.left.transform(transformer), this.right.transform(transformer));
+        }
     }
 
     private static final class Not implements AST {
@@ -206,6 +261,11 @@ public class BooleanExpressionCompiler {
         public boolean eval(VariableEvaluator variableEvaluator) {
             return !this.child.eval(variableEvaluator);
         }
+
+        @Override
+        public <R> R transform(Transformer<R> transformer) {
+            return transformer.not(this.child.transform(transformer));
+        }
     }
 
     private static final class Variable implements AST {
@@ -215,6 +275,11 @@ public class BooleanExpressionCompiler {
         public boolean eval(VariableEvaluator variableEvaluator) {
             return variableEvaluator.eval(this.variable);
         }
+
+        @Override
+        public <R> R transform(Transformer<R> transformer) {
+            return transformer.variable(this.variable);
+        }
     }
 
     /**
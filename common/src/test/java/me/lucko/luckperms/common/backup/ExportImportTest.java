@@ -0,0 +1,227 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.backup;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.config.LuckPermsConfiguration;
+import me.lucko.luckperms.common.event.EventDispatcher;
+import me.lucko.luckperms.common.inheritance.InheritanceGraphFactory;
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.PrimaryGroupHolder;
+import me.lucko.luckperms.common.model.Track;
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.model.manager.group.GroupManager;
+import me.lucko.luckperms.common.model.manager.group.StandardGroupManager;
+import me.lucko.luckperms.common.model.manager.track.StandardTrackManager;
+import me.lucko.luckperms.common.model.manager.track.TrackManager;
+import me.lucko.luckperms.common.model.manager.user.StandardUserManager;
+import me.lucko.luckperms.common.model.manager.user.UserManager;
+import me.lucko.luckperms.common.node.types.Inheritance;
+import me.lucko.luckperms.common.node.types.Meta;
+import me.lucko.luckperms.common.node.types.Permission;
+import me.lucko.luckperms.common.node.types.Prefix;
+import me.lucko.luckperms.common.node.types.Weight;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.plugin.bootstrap.LuckPermsBootstrap;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
+import me.lucko.luckperms.common.sender.Sender;
+import me.lucko.luckperms.common.storage.Storage;
+import me.lucko.luckperms.common.storage.TestH2ConnectionFactory;
+import me.lucko.luckperms.common.storage.implementation.sql.SqlStorage;
+import me.lucko.luckperms.common.tasks.SyncTask;
+import net.luckperms.api.event.cause.CreationCause;
+import net.luckperms.api.model.data.DataType;
+import net.luckperms.api.node.Node;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.AdditionalAnswers.answer;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+
+@ExtendWith(MockitoExtension.class)
+public class ExportImportTest {
+
+    @Mock private LuckPermsPlugin plugin;
+    @Mock private LuckPermsBootstrap bootstrap;
+    @Mock private LuckPermsConfiguration configuration;
+    @Mock private SchedulerAdapter scheduler;
+    @Mock private Sender sender;
+
+    @TempDir
+    Path directory;
+
+    private ExecutorService executor;
+    private final List<SqlStorage> databases = new ArrayList<>();
+
+    // the storage and managers currently in use by the plugin
+    private Storage storage;
+    private StandardUserManager userManager;
+    private StandardGroupManager groupManager;
+    private StandardTrackManager trackManager;
+
+    @BeforeEach
+    public void setupMocks() {
+        this.executor = Executors.newFixedThreadPool(4);
+
+        lenient().when(this.plugin.getBootstrap()).thenReturn(this.bootstrap);
+        lenient().when(this.plugin.getConfiguration()).thenReturn(this.configuration);
+        lenient().when(this.plugin.getEventDispatcher()).thenReturn(mock(EventDispatcher.class));
+        lenient().when(this.plugin.getInheritanceGraphFactory()).thenReturn(new InheritanceGraphFactory(this.plugin));
+        lenient().when(this.plugin.getConsoleSender()).thenReturn(mock(Sender.class));
+        lenient().when(this.plugin.getSyncTaskBuffer()).thenReturn(mock(SyncTask.Buffer.class));
+        lenient().when(this.plugin.getStorage()).thenAnswer(invocation -> this.storage);
+        //noinspection unchecked,rawtypes
+        lenient().when(this.plugin.getUserManager()).thenAnswer(invocation -> (UserManager) this.userManager);
+        lenient().when(this.plugin.getGroupManager()).thenAnswer(invocation -> (GroupManager) this.groupManager);
+        lenient().when(this.plugin.getTrackManager()).thenAnswer(invocation -> (TrackManager) this.trackManager);
+        lenient().when(this.bootstrap.getScheduler()).thenReturn(this.scheduler);
+        lenient().when(this.bootstrap.getResourceStream(anyString()))
+                .then(answer((String path) -> ExportImportTest.class.getClassLoader().getResourceAsStream(path)));
+        lenient().when(this.scheduler.async()).thenReturn(this.executor);
+
+        lenient().when(this.configuration.get(ConfigKeys.COPY_ON_WRITE_NODE_MAPS)).thenReturn(false);
+        lenient().when(this.configuration.get(ConfigKeys.PRIMARY_GROUP_CALCULATION)).thenReturn(PrimaryGroupHolder.AllParentsByWeight::new);
+        lenient().when(this.configuration.get(ConfigKeys.PRIMARY_GROUP_CALCULATION_METHOD)).thenReturn("parents-by-weight");
+        lenient().when(this.configuration.get(ConfigKeys.INCREMENTAL_CACHE_UPDATES)).thenReturn(false);
+        lenient().when(this.configuration.get(ConfigKeys.DEBUG_LOGINS)).thenReturn(false);
+        lenient().when(this.configuration.get(ConfigKeys.EXPORT_THREADS)).thenReturn(2);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        this.databases.forEach(SqlStorage::shutdown);
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Switches the plugin to a new, empty database, with empty managers.
+     *
+     * @param name the database name
+     */
+    private void useDatabase(String name) throws Exception {
+        SqlStorage database = new SqlStorage(this.plugin, new TestH2ConnectionFactory(name), "luckperms_");
+        database.init();
+        this.databases.add(database);
+
+        this.storage = new Storage(this.plugin, database);
+        this.userManager = new StandardUserManager(this.plugin);
+        this.groupManager = new StandardGroupManager(this.plugin);
+        this.trackManager = new StandardTrackManager(this.plugin);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        useDatabase("export");
+
+        Map<String, Set<Node>> groups = new HashMap<>();
+        groups.put("default", ImmutableSet.of(
+                Permission.builder().permission("test.default").build()
+        ));
+        groups.put("admin", ImmutableSet.of(
+                Inheritance.builder("default").build(),
+                Weight.builder(10).build(),
+                Prefix.builder("[Admin]", 100).build(),
+                Meta.builder("colour", "red").withContext("server", "survival").build(),
+                Permission.builder().permission("test.admin").value(false).expiry(4102444800L).build()
+        ));
+        for (Map.Entry<String, Set<Node>> entry : groups.entrySet()) {
+            Group group = this.storage.createAndLoadGroup(entry.getKey(), CreationCause.INTERNAL).join();
+            group.setNodes(DataType.NORMAL, entry.getValue(), false);
+            this.storage.saveGroup(group).join();
+        }
+
+        List<String> trackGroups = ImmutableList.of("default", "admin");
+        Track track = this.storage.createAndLoadTrack("staff", CreationCause.INTERNAL).join();
+        track.setGroups(trackGroups);
+        this.storage.saveTrack(track).join();
+
+        // enough users to be exported and imported in several batches - users with
+        // only the default group aren't stored, so aren't expected to be exported
+        Map<UUID, Set<Node>> users = new HashMap<>();
+        for (int i = 0; i < 250; i++) {
+            UUID uniqueId = UUID.randomUUID();
+            User user = this.storage.loadUser(uniqueId, "user" + i).join();
+            if (i % 2 == 0) {
+                user.setNodes(DataType.NORMAL, ImmutableSet.of(
+                        Inheritance.builder("admin").build(),
+                        Permission.builder().permission("test.user." + i).withContext("world", "nether").build()
+                ), false);
+                user.getPrimaryGroup().setStoredValue("admin");
+                users.put(uniqueId, user.normalData().asSet());
+            }
+            this.storage.saveUser(user).join();
+        }
+
+        Path file = this.directory.resolve("export.json.gz");
+        new Exporter.SaveFile(this.plugin, this.sender, file, true, true).run();
+
+        useDatabase("import");
+
+        try (Reader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            new Importer(this.plugin, this.sender, reader, false).run();
+        }
+
+        for (Map.Entry<String, Set<Node>> entry : groups.entrySet()) {
+            Group group = this.storage.loadGroup(entry.getKey()).join().orElse(null);
+            assertEquals(entry.getValue(), group == null ? null : group.normalData().asSet(), entry.getKey());
+        }
+
+        Track importedTrack = this.storage.loadTrack("staff").join().orElse(null);
+        assertEquals(trackGroups, importedTrack == null ? null : importedTrack.getGroups());
+
+        assertEquals(users.keySet(), this.storage.getUniqueUsers().join());
+        for (UUID uniqueId : users.keySet()) {
+            User user = this.storage.loadUser(uniqueId, null).join();
+            assertEquals(users.get(uniqueId), user.normalData().asSet());
+            assertEquals("admin", user.getPrimaryGroup().getStoredValue().orElse(null));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.cacheddata;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+import me.lucko.luckperms.common.cacheddata.result.StringResult;
+import me.lucko.luckperms.common.cacheddata.type.MetaAccumulator;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.metastacking.SimpleMetaStackDefinition;
+import me.lucko.luckperms.common.metastacking.StandardStackElements;
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.manager.group.StandardGroupManager;
+import me.lucko.luckperms.common.node.types.Inheritance;
+import me.lucko.luckperms.common.node.types.Meta;
+import me.lucko.luckperms.common.node.types.Permission;
+import me.lucko.luckperms.common.node.types.Prefix;
+import me.lucko.luckperms.common.node.types.Weight;
+import me.lucko.luckperms.common.query.QueryOptionsImpl;
+import net.luckperms.api.metastacking.DuplicateRemovalFunction;
+import net.luckperms.api.metastacking.MetaStackDefinition;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.types.MetaNode;
+import net.luckperms.api.query.Flag;
+import net.luckperms.api.query.QueryOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CombinedResolutionTest {
+
+    private static final MetaStackDefinition STACK_DEFINITION = new SimpleMetaStackDefinition(
+            ImmutableList.of(StandardStackElements.HIGHEST), DuplicateRemovalFunction.RETAIN_ALL, "", " ", ""
+    );
+
+    private TestCachedDataFixture fixture;
+    private StandardGroupManager groupManager;
+
+    @BeforeEach
+    public void setupMocks() {
+        this.fixture = new TestCachedDataFixture();
+        this.fixture.setAsyncExecutor(ForkJoinPool.commonPool());
+        this.groupManager = this.fixture.getGroupManager();
+    }
+
+    @ParameterizedTest(name = "[{index}] {0}, {1}")
+    @CsvSource({
+            "true,  0",
+            "true,  1",
+            "false, 0",
+            "false, 1"
+    })
+    public void testCombinedMatchesSeparate(boolean resolveInheritance, int parallelismThreshold) {
+        this.fixture.setConfig(ConfigKeys.CACHED_DATA_PARALLELISM_THRESHOLD, parallelismThreshold);
+
+        Group member = this.groupManager.getOrMake("member");
+        member.normalData().add(Permission.builder().permission("test.one").build());
+        member.normalData().add(Permission.builder().permission("test.two").value(false).build());
+        member.normalData().add(Prefix.builder("member", 10).build());
+        member.normalData().add(Meta.builder("colour", "blue").build());
+
+        Group vip = this.groupManager.getOrMake("vip");
+        vip.normalData().add(Inheritance.builder().group("member").build());
+        vip.normalData().add(Permission.builder().permission("test.two").build());
+        vip.normalData().add(Permission.builder().permission("test.[three,four]").build());
+        vip.normalData().add(Prefix.builder("vip", 20).build());
+        vip.normalData().add(Weight.builder(5).build());
+
+        QueryOptions queryOptions = QueryOptionsImpl.DEFAULT_CONTEXTUAL.toBuilder()
+                .flag(Flag.RESOLVE_INHERITANCE, resolveInheritance)
+                .build();
+
+        Map<String, Node> expectedPermissions = vip.exportPermissions(HashMap::new, queryOptions, true, true);
+        MetaAccumulator expectedMeta = vip.accumulateMeta(new MetaAccumulator(STACK_DEFINITION, STACK_DEFINITION), queryOptions);
+
+        MetaAccumulator meta = new MetaAccumulator(STACK_DEFINITION, STACK_DEFINITION);
+        Map<String, Node> permissions = vip.exportPermissionsAndMeta(HashMap::new, meta, queryOptions, true, true);
+
+        assertEquals(expectedPermissions, permissions);
+        assertEquals(values(expectedMeta.getMeta()), values(meta.getMeta()));
+        assertEquals(Maps.transformValues(expectedMeta.getPrefixes(), StringResult::result), Maps.transformValues(meta.getPrefixes(), StringResult::result));
+        assertEquals(expectedMeta.getWeight().intResult(), meta.getWeight().intResult());
+    }
+
+    private static Map<String, List<String>> values(ListMultimap<String, StringResult<MetaNode>> meta) {
+        Map<String, List<String>> values = new HashMap<>();
+        meta.forEach((key, result) -> values.computeIfAbsent(key, k -> new ArrayList<>()).add(result.result()));
+        return values;
+    }
+
+}
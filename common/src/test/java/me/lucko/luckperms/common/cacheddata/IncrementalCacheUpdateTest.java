@@ -0,0 +1,102 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.cacheddata;
+
+import me.lucko.luckperms.common.cacheddata.type.PermissionCache;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.manager.group.StandardGroupManager;
+import me.lucko.luckperms.common.node.types.Inheritance;
+import me.lucko.luckperms.common.node.types.Permission;
+import me.lucko.luckperms.common.query.QueryOptionsImpl;
+import net.luckperms.api.model.data.DataType;
+import net.luckperms.api.util.Tristate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class IncrementalCacheUpdateTest {
+
+    private StandardGroupManager groupManager;
+
+    @BeforeEach
+    public void setupMocks() {
+        TestCachedDataFixture fixture = new TestCachedDataFixture();
+        fixture.setConfig(ConfigKeys.INCREMENTAL_CACHE_UPDATES, true);
+        this.groupManager = fixture.getGroupManager();
+    }
+
+    private static Tristate check(PermissionCache cache, String permission) {
+        return cache.checkPermission(permission);
+    }
+
+    @Test
+    public void testChangesAppliedToDependents() {
+        Group member = this.groupManager.getOrMake("member");
+        member.normalData().add(Permission.builder().permission("test.one").build());
+
+        Group vip = this.groupManager.getOrMake("vip");
+        vip.normalData().add(Inheritance.builder().group("member").build());
+
+        PermissionCache cache = vip.getCachedData().getPermissionData(QueryOptionsImpl.DEFAULT_CONTEXTUAL);
+        assertEquals(Tristate.TRUE, check(cache, "test.one"));
+        assertEquals(Tristate.UNDEFINED, check(cache, "test.two"));
+        assertEquals(Tristate.UNDEFINED, check(cache, "other.node"));
+
+        member.setNode(DataType.NORMAL, Permission.builder().permission("test.two").build(), false);
+        assertSame(cache, vip.getCachedData().getPermissionData(QueryOptionsImpl.DEFAULT_CONTEXTUAL));
+        assertEquals(Tristate.TRUE, check(cache, "test.two"));
+
+        member.setNode(DataType.NORMAL, Permission.builder().permission("other.*").value(false).build(), false);
+        assertEquals(Tristate.FALSE, check(cache, "other.node"));
+
+        member.unsetNode(DataType.NORMAL, Permission.builder().permission("test.one").build());
+        assertSame(cache, vip.getCachedData().getPermissionData(QueryOptionsImpl.DEFAULT_CONTEXTUAL));
+        assertEquals(Tristate.UNDEFINED, check(cache, "test.one"));
+        assertEquals(Tristate.TRUE, check(cache, "test.two"));
+    }
+
+    @Test
+    public void testInheritanceChangeInvalidates() {
+        Group member = this.groupManager.getOrMake("member");
+        member.normalData().add(Permission.builder().permission("test.one").build());
+
+        Group vip = this.groupManager.getOrMake("vip");
+
+        PermissionCache cache = vip.getCachedData().getPermissionData(QueryOptionsImpl.DEFAULT_CONTEXTUAL);
+        assertEquals(Tristate.UNDEFINED, check(cache, "test.one"));
+
+        vip.setNode(DataType.NORMAL, Inheritance.builder().group("member").build(), false);
+
+        PermissionCache newCache = vip.getCachedData().getPermissionData(QueryOptionsImpl.DEFAULT_CONTEXTUAL);
+        assertNotSame(cache, newCache);
+        assertEquals(Tristate.TRUE, check(newCache, "test.one"));
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.cacheddata;
+
+import me.lucko.luckperms.common.cacheddata.result.TristateResult;
+import me.lucko.luckperms.common.cacheddata.type.SharedPermissionCache;
+import me.lucko.luckperms.common.model.HolderType;
+import me.lucko.luckperms.common.model.InheritanceOrigin;
+import me.lucko.luckperms.common.model.PermissionHolderIdentifier;
+import me.lucko.luckperms.common.node.types.Permission;
+import me.lucko.luckperms.common.query.QueryOptionsImpl;
+import me.lucko.luckperms.common.verbose.VerboseCheckTarget;
+import me.lucko.luckperms.common.verbose.event.CheckOrigin;
+import net.luckperms.api.cacheddata.CachedDataManager;
+import net.luckperms.api.cacheddata.CachedPermissionData;
+import net.luckperms.api.model.data.DataType;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.metadata.types.InheritanceOriginMetadata;
+import net.luckperms.api.query.QueryOptions;
+import net.luckperms.api.util.Tristate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class PermissionCacheInternerTest {
+
+    private static final PermissionHolderIdentifier ALICE = new PermissionHolderIdentifier(HolderType.USER, "alice");
+    private static final PermissionHolderIdentifier BOB = new PermissionHolderIdentifier(HolderType.USER, "bob");
+    private static final PermissionHolderIdentifier DEFAULT = new PermissionHolderIdentifier(HolderType.GROUP, "default");
+    private static final PermissionHolderIdentifier VIP = new PermissionHolderIdentifier(HolderType.GROUP, "vip");
+
+    @Mock private CachedDataManager.Container<CachedPermissionData> container;
+
+    private PermissionCacheInterner interner;
+
+    @BeforeEach
+    public void setupMocks() {
+        this.interner = new PermissionCacheInterner(new TestCachedDataFixture().getPlugin());
+    }
+
+    private static Node node(String permission, PermissionHolderIdentifier origin) {
+        return Permission.builder()
+                .permission(permission)
+                .withMetadata(InheritanceOriginMetadata.KEY, new InheritanceOrigin(origin, DataType.NORMAL))
+                .build();
+    }
+
+    private static ConcurrentHashMap<String, Node> permissions(PermissionHolderIdentifier holder, PermissionHolderIdentifier group) {
+        ConcurrentHashMap<String, Node> map = new ConcurrentHashMap<>();
+        map.put("group." + group.getName(), node("group." + group.getName(), holder));
+        map.put("test.inherited", node("test.inherited", group));
+        return map;
+    }
+
+    private static CacheMetadata metadata(PermissionHolderIdentifier holder, QueryOptions queryOptions) {
+        return new CacheMetadata(HolderType.USER, VerboseCheckTarget.of(VerboseCheckTarget.USER_TYPE, holder.getName()), queryOptions);
+    }
+
+    private PermissionCacheInterner.Entry intern(PermissionHolderIdentifier holder, ConcurrentHashMap<String, Node> permissions, QueryOptions queryOptions) {
+        return this.interner.intern(holder, metadata(holder, queryOptions), permissions);
+    }
+
+    @Test
+    public void testIdenticalDataIsShared() {
+        PermissionCacheInterner.Entry alice = intern(ALICE, permissions(ALICE, DEFAULT), QueryOptionsImpl.DEFAULT_CONTEXTUAL);
+        PermissionCacheInterner.Entry bob = intern(BOB, permissions(BOB, DEFAULT), QueryOptionsImpl.DEFAULT_CONTEXTUAL);
+
+        assertSame(alice, bob);
+        assertEquals(1, this.interner.size());
+    }
+
+    @Test
+    public void testDifferentDataIsNotShared() {
+        PermissionCacheInterner.Entry alice = intern(ALICE, permissions(ALICE, DEFAULT), QueryOptionsImpl.DEFAULT_CONTEXTUAL);
+        PermissionCacheInterner.Entry bob = intern(BOB, permissions(BOB, VIP), QueryOptionsImpl.DEFAULT_CONTEXTUAL);
+        assertNotSame(alice, bob);
+
+        // same keys, but inherited from the user instead of the group
+        ConcurrentHashMap<String, Node> own = permissions(BOB, DEFAULT);
+        own.put("test.inherited", node("test.inherited", BOB));
+        assertNotSame(alice, intern(BOB, own, QueryOptionsImpl.DEFAULT_CONTEXTUAL));
+
+        // same data, but different query options
+        assertNotSame(alice, intern(BOB, permissions(BOB, DEFAULT), QueryOptionsImpl.DEFAULT_NON_CONTEXTUAL));
+    }
+
+    @Test
+    public void testResultsAreLocalised() {
+        QueryOptions queryOptions = QueryOptionsImpl.DEFAULT_CONTEXTUAL;
+        PermissionCacheInterner.Entry aliceEntry = intern(ALICE, permissions(ALICE, DEFAULT), queryOptions);
+        PermissionCacheInterner.Entry bobEntry = intern(BOB, permissions(BOB, DEFAULT), queryOptions);
+
+        SharedPermissionCache alice = new SharedPermissionCache(queryOptions, metadata(ALICE, queryOptions), ALICE, aliceEntry, this.container);
+        SharedPermissionCache bob = new SharedPermissionCache(queryOptions, metadata(BOB, queryOptions), BOB, bobEntry, this.container);
+
+        // own nodes appear to come from the holder checking them
+        TristateResult aliceOwn = alice.checkPermission("group.default", CheckOrigin.INTERNAL);
+        TristateResult bobOwn = bob.checkPermission("group.default", CheckOrigin.INTERNAL);
+        assertEquals(Tristate.TRUE, bobOwn.result());
+        assertEquals(ALICE, aliceOwn.node().metadata(InheritanceOriginMetadata.KEY).getOrigin());
+        assertEquals(BOB, bobOwn.node().metadata(InheritanceOriginMetadata.KEY).getOrigin());
+
+        // repeated checks reuse the localised result
+        assertSame(bobOwn, bob.checkPermission("group.default", CheckOrigin.INTERNAL));
+
+        // inherited nodes are left alone
+        TristateResult bobInherited = bob.checkPermission("test.inherited", CheckOrigin.INTERNAL);
+        assertEquals(DEFAULT, bobInherited.node().metadata(InheritanceOriginMetadata.KEY).getOrigin());
+
+        assertEquals(Tristate.UNDEFINED, bob.checkPermission("test.missing", CheckOrigin.INTERNAL).result());
+        assertSame(alice.getCalculator(), bob.getCalculator());
+    }
+
+    @Test
+    public void testSharedDataCantBeChanged() {
+        QueryOptions queryOptions = QueryOptionsImpl.DEFAULT_CONTEXTUAL;
+        PermissionCacheInterner.Entry entry = intern(ALICE, permissions(ALICE, DEFAULT), queryOptions);
+        SharedPermissionCache cache = new SharedPermissionCache(queryOptions, metadata(ALICE, queryOptions), ALICE, entry, this.container);
+
+        assertFalse(cache.canApplyChanges());
+        assertFalse(cache.applyChanges(new ConcurrentHashMap<>(), Collections.singleton("test.inherited")));
+        assertEquals(Tristate.TRUE, cache.checkPermission("test.inherited", CheckOrigin.INTERNAL).result());
+    }
+
+    @Test
+    public void testInvalidateOnlyDropsOwnEntry() {
+        QueryOptions queryOptions = QueryOptionsImpl.DEFAULT_CONTEXTUAL;
+        PermissionCacheInterner.Entry entry = intern(ALICE, permissions(ALICE, DEFAULT), queryOptions);
+        SharedPermissionCache cache = new SharedPermissionCache(queryOptions, metadata(ALICE, queryOptions), ALICE, entry, this.container);
+
+        cache.invalidateCache();
+        verify(this.container).invalidate(queryOptions);
+
+        // the shared data is still handed out to other holders
+        assertSame(entry, intern(BOB, permissions(BOB, DEFAULT), queryOptions));
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.cacheddata;
+
+import me.lucko.luckperms.common.cacheddata.type.PermissionCache;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.manager.group.StandardGroupManager;
+import me.lucko.luckperms.common.node.types.Permission;
+import me.lucko.luckperms.common.query.QueryOptionsImpl;
+import net.luckperms.api.model.data.DataType;
+import net.luckperms.api.util.Tristate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class StaleWhileRevalidateTest {
+
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    private StandardGroupManager groupManager;
+
+    @BeforeEach
+    public void setupMocks() {
+        TestCachedDataFixture fixture = new TestCachedDataFixture();
+        fixture.setConfig(ConfigKeys.ASYNC_CACHED_DATA_REFRESH, true);
+        fixture.setAsyncExecutor(this.tasks::add);
+        this.groupManager = fixture.getGroupManager();
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = this.tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    @Test
+    public void testStaleValueServedUntilRefreshed() {
+        Group group = this.groupManager.getOrMake("test");
+        group.normalData().add(Permission.builder().permission("test.one").build());
+
+        PermissionCache cache = group.getCachedData().getPermissionData(QueryOptionsImpl.DEFAULT_CONTEXTUAL);
+        assertEquals(Tristate.TRUE, cache.checkPermission("test.one"));
+
+        group.setNode(DataType.NORMAL, Permission.builder().permission("test.two").build(), false);
+
+        // the previous value is still served, and a single refresh is queued
+        assertSame(cache, group.getCachedData().getPermissionData(QueryOptionsImpl.DEFAULT_CONTEXTUAL));
+        assertEquals(1, this.tasks.size());
+
+        runTasks();
+
+        PermissionCache newCache = group.getCachedData().getPermissionData(QueryOptionsImpl.DEFAULT_CONTEXTUAL);
+        assertNotSame(cache, newCache);
+        assertEquals(Tristate.TRUE, newCache.checkPermission("test.two"));
+    }
+
+    @Test
+    public void testInvalidationsCoalesced() {
+        Group group = this.groupManager.getOrMake("test");
+        PermissionCache cache = group.getCachedData().getPermissionData(QueryOptionsImpl.DEFAULT_CONTEXTUAL);
+
+        group.setNode(DataType.NORMAL, Permission.builder().permission("test.one").build(), false);
+        group.setNode(DataType.NORMAL, Permission.builder().permission("test.two").build(), false);
+        assertEquals(1, this.tasks.size());
+
+        runTasks();
+
+        PermissionCache newCache = group.getCachedData().getPermissionData(QueryOptionsImpl.DEFAULT_CONTEXTUAL);
+        assertNotSame(cache, newCache);
+        assertEquals(Tristate.TRUE, newCache.checkPermission("test.one"));
+        assertEquals(Tristate.TRUE, newCache.checkPermission("test.two"));
+        assertEquals(0, this.tasks.size());
+    }
+
+    @Test
+    public void testReloadReplacesEveryEntry() {
+        Group group = this.groupManager.getOrMake("test");
+        PermissionCache contextual = group.getCachedData().getPermissionData(QueryOptionsImpl.DEFAULT_CONTEXTUAL);
+        PermissionCache nonContextual = group.getCachedData().getPermissionData(QueryOptionsImpl.DEFAULT_NON_CONTEXTUAL);
+
+        group.getCachedData().permissionData().reload().join();
+
+        // reloading one entry doesn't stop the others from being replaced
+        assertNotSame(contextual, group.getCachedData().getPermissionData(QueryOptionsImpl.DEFAULT_CONTEXTUAL));
+        assertNotSame(nonContextual, group.getCachedData().getPermissionData(QueryOptionsImpl.DEFAULT_NON_CONTEXTUAL));
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.cacheddata;
+
+import com.google.common.collect.ImmutableList;
+import me.lucko.luckperms.common.calculator.PermissionCalculator;
+import me.lucko.luckperms.common.calculator.processor.DirectProcessor;
+import me.lucko.luckperms.common.calculator.processor.WildcardProcessor;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.config.LuckPermsConfiguration;
+import me.lucko.luckperms.common.config.generic.key.ConfigKey;
+import me.lucko.luckperms.common.event.EventDispatcher;
+import me.lucko.luckperms.common.graph.TraversalAlgorithm;
+import me.lucko.luckperms.common.inheritance.InheritanceGraphFactory;
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.model.manager.group.GroupManager;
+import me.lucko.luckperms.common.model.manager.group.StandardGroupManager;
+import me.lucko.luckperms.common.model.manager.user.UserManager;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.plugin.bootstrap.LuckPermsBootstrap;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
+import me.lucko.luckperms.common.treeview.PermissionRegistry;
+import me.lucko.luckperms.common.verbose.VerboseHandler;
+import net.luckperms.api.context.ContextSatisfyMode;
+
+import java.util.Collections;
+import java.util.concurrent.Executor;
+
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+
+/**
+ * A mocked {@link LuckPermsPlugin} with a real group manager, for testing cached data.
+ *
+ * <p>The configuration starts out with the default values of the options read by
+ * cached data, and async tasks run straight away unless another executor is set.</p>
+ */
+public class TestCachedDataFixture {
+    private final LuckPermsPlugin plugin = mock(LuckPermsPlugin.class);
+    private final LuckPermsConfiguration configuration = mock(LuckPermsConfiguration.class);
+    private final SchedulerAdapter scheduler = mock(SchedulerAdapter.class);
+    private final StandardGroupManager groupManager = new StandardGroupManager(this.plugin);
+
+    @SuppressWarnings("unchecked")
+    public TestCachedDataFixture() {
+        LuckPermsBootstrap bootstrap = mock(LuckPermsBootstrap.class);
+        UserManager<User> userManager = mock(UserManager.class);
+
+        //noinspection rawtypes
+        lenient().when(this.plugin.getGroupManager()).thenReturn((GroupManager) this.groupManager);
+        //noinspection rawtypes
+        lenient().when(this.plugin.getUserManager()).thenReturn((UserManager) userManager);
+        lenient().when(userManager.getAll()).thenReturn(Collections.emptyMap());
+        lenient().when(this.plugin.getInheritanceGraphFactory()).thenReturn(new InheritanceGraphFactory(this.plugin));
+        lenient().when(this.plugin.getConfiguration()).thenReturn(this.configuration);
+        lenient().when(this.plugin.getEventDispatcher()).thenReturn(mock(EventDispatcher.class));
+        lenient().when(this.plugin.getVerboseHandler()).thenReturn(mock(VerboseHandler.class));
+        lenient().when(this.plugin.getPermissionRegistry()).thenReturn(mock(PermissionRegistry.class));
+        lenient().when(this.plugin.getCalculatorFactory()).thenReturn((queryOptions, metadata) ->
+                new PermissionCalculator(this.plugin, metadata, ImmutableList.of(new DirectProcessor(), new WildcardProcessor())));
+        lenient().when(this.plugin.getBootstrap()).thenReturn(bootstrap);
+        lenient().when(bootstrap.getScheduler()).thenReturn(this.scheduler);
+        setAsyncExecutor(Runnable::run);
+
+        setConfig(ConfigKeys.COPY_ON_WRITE_NODE_MAPS, false);
+        setConfig(ConfigKeys.INCREMENTAL_CACHE_UPDATES, false);
+        setConfig(ConfigKeys.COMBINED_CACHED_DATA_RESOLUTION, false);
+        setConfig(ConfigKeys.CACHED_DATA_PARALLELISM_THRESHOLD, 0);
+        setConfig(ConfigKeys.ASYNC_CACHED_DATA_REFRESH, false);
+        setConfig(ConfigKeys.SHARE_PERMISSION_CACHES, false);
+        setConfig(ConfigKeys.APPLYING_SHORTHAND, true);
+        setConfig(ConfigKeys.CONTEXT_SATISFY_MODE, ContextSatisfyMode.AT_LEAST_ONE_VALUE_PER_KEY);
+        setConfig(ConfigKeys.GROUP_WEIGHTS, Collections.emptyMap());
+        setConfig(ConfigKeys.INHERITANCE_TRAVERSAL_ALGORITHM, TraversalAlgorithm.DEPTH_FIRST_PRE_ORDER);
+        setConfig(ConfigKeys.POST_TRAVERSAL_INHERITANCE_SORT, false);
+    }
+
+    public LuckPermsPlugin getPlugin() {
+        return this.plugin;
+    }
+
+    public StandardGroupManager getGroupManager() {
+        return this.groupManager;
+    }
+
+    /**
+     * Sets the value returned by the configuration for the given key.
+     *
+     * @param key the key
+     * @param value the value
+     * @param <T> the value type
+     */
+    public <T> void setConfig(ConfigKey<T> key, T value) {
+        lenient().when(this.configuration.get(key)).thenReturn(value);
+    }
+
+    /**
+     * Sets the executor used to run async tasks.
+     *
+     * @param executor the executor
+     */
+    public void setAsyncExecutor(Executor executor) {
+        lenient().when(this.scheduler.async()).thenReturn(executor);
+    }
+
+}
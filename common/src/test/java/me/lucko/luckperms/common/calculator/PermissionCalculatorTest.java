@@ -27,9 +27,11 @@ package me.lucko.luckperms.common.calculator;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Uninterruptibles;
 import me.lucko.luckperms.common.cacheddata.CacheMetadata;
 import me.lucko.luckperms.common.cacheddata.result.TristateResult;
 import me.lucko.luckperms.common.calculator.processor.AbstractOverrideWildcardProcessor;
+import me.lucko.luckperms.common.calculator.processor.CompiledTrieProcessor;
 import me.lucko.luckperms.common.calculator.processor.DirectProcessor;
 import me.lucko.luckperms.common.calculator.processor.PermissionProcessor;
 import me.lucko.luckperms.common.calculator.processor.RegexProcessor;
@@ -53,13 +55,20 @@ import org.junit.jupiter.params.provider.CsvSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 
@@ -221,6 +230,118 @@ public class PermissionCalculatorTest {
         }
     }
 
+    @ParameterizedTest
+    @CsvSource({
+            "test",
+            "test.node1",
+            "test.node2",
+            "one.two.three.four",
+            "one.two.three.test",
+            "one.two.three.*",
+            "one.two.three",
+            "one.two.test",
+            "one.two.*",
+            "one.two",
+            "one.test",
+            "one.*",
+            "one",
+            "*",
+            "hello1",
+            "helloo",
+            "regexes2",
+            "overridetest.test",
+            "overridetest",
+            "one..two",
+            ".one",
+    })
+    public void testCompiledTrie(String node) {
+        PermissionCalculator expectedCalculator = createCalculator(new DirectProcessor(), new RegexProcessor(), new WildcardProcessor(), new SpongeWildcardProcessor());
+        expectedCalculator.setSourcePermissions(EXAMPLE_PERMISSIONS);
+
+        PermissionCalculator calculator = createCalculator(new CompiledTrieProcessor(true, true, true));
+        calculator.setSourcePermissions(EXAMPLE_PERMISSIONS);
+
+        TristateResult expected = expectedCalculator.checkPermission(node, CheckOrigin.INTERNAL);
+        TristateResult result = calculator.checkPermission(node, CheckOrigin.INTERNAL);
+        assertEquals(expected.result(), result.result());
+        assertEquals(expected.node(), result.node());
+        assertSame(expected.processorClass(), result.processorClass());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "one.test, TRUE",
+            "one.two.test, TRUE",
+            "test, UNDEFINED",
+    })
+    public void testCompiledTrieImplicitWildcard(String node, Tristate expected) {
+        PermissionCalculator calculator = createCalculator(new CompiledTrieProcessor(false, false, true));
+        calculator.setSourcePermissions(EXAMPLE_PERMISSIONS);
+
+        TristateResult result = calculator.checkPermission(node, CheckOrigin.INTERNAL);
+        assertEquals(expected, result.result());
+        if (expected != Tristate.UNDEFINED) {
+            assertSame(SpongeWildcardProcessor.class, result.processorClass());
+        }
+    }
+
+    @Test
+    public void testBoundedLookupCache() {
+        AtomicInteger calculations = new AtomicInteger();
+        DirectProcessor processor = new DirectProcessor() {
+            @Override
+            public TristateResult hasPermission(String permission) {
+                calculations.incrementAndGet();
+                return super.hasPermission(permission);
+            }
+        };
+
+        PermissionCalculator calculator = new PermissionCalculator(this.plugin, MOCK_METADATA, ImmutableList.of(processor), 1);
+        calculator.setSourcePermissions(EXAMPLE_PERMISSIONS);
+
+        assertEquals(Tristate.TRUE, calculator.checkPermission("test.node1", CheckOrigin.INTERNAL).result());
+        assertEquals(Tristate.TRUE, calculator.checkPermission("test.node1", CheckOrigin.INTERNAL).result());
+        assertEquals(1, calculations.get());
+
+        assertEquals(Tristate.FALSE, calculator.checkPermission("test.node2", CheckOrigin.INTERNAL).result());
+        assertEquals(Tristate.TRUE, calculator.checkPermission("test.node1", CheckOrigin.INTERNAL).result());
+    }
+
+    @Test
+    public void testRefreshDuringLookup() throws Exception {
+        Map<String, Node> source = new ConcurrentHashMap<>(EXAMPLE_PERMISSIONS);
+        CountDownLatch calculated = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+
+        // blocks the first lookup after it has read the source map
+        DirectProcessor processor = new DirectProcessor() {
+            @Override
+            public TristateResult hasPermission(String permission) {
+                TristateResult result = super.hasPermission(permission);
+                if (calculated.getCount() != 0) {
+                    calculated.countDown();
+                    Uninterruptibles.awaitUninterruptibly(proceed);
+                }
+                return result;
+            }
+        };
+
+        PermissionCalculator calculator = createCalculator(processor);
+        calculator.setSourcePermissions(source);
+
+        CompletableFuture<TristateResult> lookup = CompletableFuture.supplyAsync(() -> calculator.checkPermission("test.node1", CheckOrigin.INTERNAL));
+        assertTrue(calculated.await(5, TimeUnit.SECONDS));
+
+        // change the node while the lookup is still in progress
+        source.put("test.node1", NodeBuilders.determineMostApplicable("test.node1").value(false).build());
+        calculator.refresh(Collections.singleton("test.node1"));
+        proceed.countDown();
+
+        // the in-flight lookup sees the old value, but it must not be kept in the cache
+        assertEquals(Tristate.TRUE, lookup.get(5, TimeUnit.SECONDS).result());
+        assertEquals(Tristate.FALSE, calculator.checkPermission("test.node1", CheckOrigin.INTERNAL).result());
+    }
+
     @Test
     public void testOverrideWildcard() {
         AbstractOverrideWildcardProcessor overrideProcessor = new AbstractOverrideWildcardProcessor(true) {
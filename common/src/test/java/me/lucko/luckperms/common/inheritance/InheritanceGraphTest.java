@@ -0,0 +1,168 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.inheritance;
+
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.config.LuckPermsConfiguration;
+import me.lucko.luckperms.common.event.EventDispatcher;
+import me.lucko.luckperms.common.graph.TraversalAlgorithm;
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.PermissionHolder;
+import me.lucko.luckperms.common.model.manager.group.GroupManager;
+import me.lucko.luckperms.common.model.manager.group.StandardGroupManager;
+import me.lucko.luckperms.common.node.types.Inheritance;
+import me.lucko.luckperms.common.node.types.Weight;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.query.QueryOptionsImpl;
+import net.luckperms.api.context.ContextSatisfyMode;
+import net.luckperms.api.model.data.DataType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+
+@ExtendWith(MockitoExtension.class)
+public class InheritanceGraphTest {
+
+    @Mock private LuckPermsPlugin plugin;
+    @Mock private LuckPermsConfiguration configuration;
+
+    private StandardGroupManager groupManager;
+    private InheritanceGraphFactory graphFactory;
+
+    @BeforeEach
+    public void setupMocks() {
+        this.groupManager = new StandardGroupManager(this.plugin);
+        this.graphFactory = new InheritanceGraphFactory(this.plugin);
+
+        //noinspection unchecked,rawtypes
+        lenient().when(this.plugin.getGroupManager()).thenReturn((GroupManager) this.groupManager);
+        lenient().when(this.plugin.getInheritanceGraphFactory()).thenReturn(this.graphFactory);
+        lenient().when(this.plugin.getConfiguration()).thenReturn(this.configuration);
+        lenient().when(this.plugin.getEventDispatcher()).thenReturn(mock(EventDispatcher.class));
+        lenient().when(this.configuration.get(ConfigKeys.COPY_ON_WRITE_NODE_MAPS)).thenReturn(false);
+        lenient().when(this.configuration.get(ConfigKeys.INCREMENTAL_CACHE_UPDATES)).thenReturn(false);
+        lenient().when(this.configuration.get(ConfigKeys.CONTEXT_SATISFY_MODE)).thenReturn(ContextSatisfyMode.AT_LEAST_ONE_VALUE_PER_KEY);
+        lenient().when(this.configuration.get(ConfigKeys.GROUP_WEIGHTS)).thenReturn(Collections.emptyMap());
+        lenient().when(this.configuration.get(ConfigKeys.INHERITANCE_TRAVERSAL_ALGORITHM)).thenReturn(TraversalAlgorithm.DEPTH_FIRST_PRE_ORDER);
+        lenient().when(this.configuration.get(ConfigKeys.POST_TRAVERSAL_INHERITANCE_SORT)).thenReturn(false);
+    }
+
+    private Group createGroup(String name, int weight, Group... parents) {
+        Group group = this.groupManager.getOrMake(name);
+        for (Group parent : parents) {
+            group.normalData().add(Inheritance.builder().group(parent.getName()).build());
+        }
+        group.normalData().add(Weight.builder().weight(weight).build());
+        return group;
+    }
+
+    private static List<String> traverse(InheritanceGraph graph, PermissionHolder holder) {
+        List<String> names = new ArrayList<>();
+        for (PermissionHolder node : graph.traverse(holder)) {
+            names.add(node.getIdentifier().getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void testGraphsAreCachedPerQueryOptions() {
+        InheritanceGraph graph = this.graphFactory.getGraph(QueryOptionsImpl.DEFAULT_CONTEXTUAL);
+        assertSame(graph, this.graphFactory.getGraph(QueryOptionsImpl.DEFAULT_CONTEXTUAL));
+        assertNotSame(graph, this.graphFactory.getGraph(QueryOptionsImpl.DEFAULT_NON_CONTEXTUAL));
+
+        // loading a group starts a new generation
+        long generation = this.graphFactory.getGeneration();
+        this.groupManager.getOrMake("member");
+        assertTrue(this.graphFactory.getGeneration() > generation);
+
+        InheritanceGraph newGraph = this.graphFactory.getGraph(QueryOptionsImpl.DEFAULT_CONTEXTUAL);
+        assertNotSame(graph, newGraph);
+        assertEquals(this.graphFactory.getGeneration(), newGraph.getGeneration());
+        assertSame(newGraph, this.graphFactory.getGraph(QueryOptionsImpl.DEFAULT_CONTEXTUAL));
+    }
+
+    @Test
+    public void testParentInheritanceChange() {
+        Group member = createGroup("member", 0);
+        Group donor = createGroup("donor", 1);
+        Group vip = createGroup("vip", 5, member);
+        Group staff = createGroup("staff", 10);
+        Group alice = createGroup("alice", 0, vip);
+        Group bob = createGroup("bob", 0, staff);
+
+        InheritanceGraph graph = this.graphFactory.getGraph(QueryOptionsImpl.DEFAULT_CONTEXTUAL);
+        assertEquals(Arrays.asList("alice", "vip", "member"), traverse(graph, alice));
+        assertEquals(Arrays.asList("bob", "staff"), traverse(graph, bob));
+        assertTrue(graph.isMemoized(alice));
+        assertTrue(graph.isMemoized(bob));
+
+        // vip now inherits from donor too - only traversals through vip are affected
+        vip.setNode(DataType.NORMAL, Inheritance.builder().group(donor.getName()).build(), false);
+        assertSame(graph, this.graphFactory.getGraph(QueryOptionsImpl.DEFAULT_CONTEXTUAL));
+        assertFalse(graph.isMemoized(alice));
+        assertTrue(graph.isMemoized(bob));
+
+        assertEquals(Arrays.asList("alice", "vip", "donor", "member"), traverse(graph, alice));
+        assertTrue(graph.isMemoized(alice));
+    }
+
+    @Test
+    public void testParentWeightChange() {
+        Group low = createGroup("low", 1);
+        Group high = createGroup("high", 2);
+        Group staff = createGroup("staff", 10);
+        Group alice = createGroup("alice", 0, low, high);
+        Group bob = createGroup("bob", 0, staff);
+
+        InheritanceGraph graph = this.graphFactory.getGraph(QueryOptionsImpl.DEFAULT_CONTEXTUAL);
+        assertEquals(Arrays.asList("alice", "high", "low"), traverse(graph, alice));
+        assertEquals(Arrays.asList("bob", "staff"), traverse(graph, bob));
+
+        // "low" now has the higher weight, which changes the order of alice's parents
+        low.unsetNode(DataType.NORMAL, Weight.builder().weight(1).build());
+        low.setNode(DataType.NORMAL, Weight.builder().weight(3).build(), false);
+        assertFalse(graph.isMemoized(alice));
+        assertTrue(graph.isMemoized(bob));
+
+        assertEquals(Arrays.asList("alice", "low", "high"), traverse(graph, alice));
+        assertEquals(Arrays.asList("bob", "staff"), traverse(graph, bob));
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.messaging;
+
+import com.google.common.collect.ImmutableSet;
+import me.lucko.luckperms.common.node.types.Inheritance;
+import me.lucko.luckperms.common.node.types.Permission;
+import me.lucko.luckperms.common.util.Difference;
+import net.luckperms.api.node.Node;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HolderDeltaTest {
+
+    private static final Node PERMISSION = Permission.builder().permission("hello.world").withContext("server", "survival").build();
+    private static final Node NEGATED = Permission.builder().permission("hello.world").value(false).withContext("server", "survival").build();
+    private static final Node PARENT = Inheritance.builder("admin").build();
+
+    private static HolderDelta delta(long version, Node added, Node removed) {
+        Difference<Node> changes = new Difference<>();
+        if (added != null) {
+            changes.recordChange(Difference.ChangeType.ADD, added);
+        }
+        if (removed != null) {
+            changes.recordChange(Difference.ChangeType.REMOVE, removed);
+        }
+        return new HolderDelta(changes, version);
+    }
+
+    // the version delta caused by adding a single node
+    private static long hash(Node node) {
+        return -delta(0, node, null).getPreviousVersion();
+    }
+
+    @Test
+    public void testPreviousVersion() {
+        assertEquals(500, delta(500, null, null).getPreviousVersion());
+        assertNotEquals(500, delta(500, PERMISSION, null).getPreviousVersion());
+        assertNotEquals(hash(PERMISSION), hash(NEGATED));
+
+        // the version before the changes is recovered from the version after them
+        long version = 500 + hash(PERMISSION) - hash(PARENT);
+        assertEquals(500, delta(version, PERMISSION, PARENT).getPreviousVersion());
+    }
+
+    @Test
+    public void testMerge() {
+        long initial = 1234;
+        HolderDelta first = delta(initial + hash(PERMISSION), PERMISSION, null);
+        HolderDelta second = delta(first.getVersion() - hash(PERMISSION) + hash(NEGATED), NEGATED, PERMISSION);
+
+        HolderDelta merged = first.merge(second);
+        assertEquals(second.getVersion(), merged.getVersion());
+        assertEquals(initial, merged.getPreviousVersion());
+        assertEquals(ImmutableSet.of(NEGATED), merged.getChanges().getAdded());
+        assertTrue(merged.getChanges().getRemoved().isEmpty());
+    }
+
+    @Test
+    public void testSerializeRoundTrip() {
+        HolderDelta delta = delta(-42, PARENT, PERMISSION);
+
+        HolderDelta deserialized = HolderDelta.deserialize(delta.serialize());
+        assertEquals(-42, deserialized.getVersion());
+        assertEquals(ImmutableSet.of(PARENT), deserialized.getChanges().getAdded());
+        assertEquals(ImmutableSet.of(PERMISSION), deserialized.getChanges().getRemoved());
+        assertEquals(delta.getPreviousVersion(), deserialized.getPreviousVersion());
+    }
+}
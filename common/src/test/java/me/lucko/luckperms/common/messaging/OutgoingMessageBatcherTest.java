@@ -0,0 +1,182 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.messaging;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.JsonObject;
+import me.lucko.luckperms.common.messaging.message.AbstractMessage;
+import me.lucko.luckperms.common.messaging.message.BatchMessageImpl;
+import me.lucko.luckperms.common.messaging.message.CustomMessageImpl;
+import me.lucko.luckperms.common.messaging.message.DeltaUpdateMessageImpl;
+import me.lucko.luckperms.common.messaging.message.GroupUpdateMessageImpl;
+import me.lucko.luckperms.common.messaging.message.TargetedUpdateMessage;
+import me.lucko.luckperms.common.messaging.message.UpdateMessageImpl;
+import me.lucko.luckperms.common.messaging.message.UserUpdateMessageImpl;
+import me.lucko.luckperms.common.messaging.message.UsersUpdateMessageImpl;
+import me.lucko.luckperms.common.node.types.Permission;
+import me.lucko.luckperms.common.util.Difference;
+import me.lucko.luckperms.common.util.gson.GsonProvider;
+import net.luckperms.api.node.Node;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OutgoingMessageBatcherTest {
+
+    @Test
+    public void testMergeUserUpdates() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        CustomMessageImpl custom = new CustomMessageImpl(UUID.randomUUID(), "channel", "payload");
+
+        List<AbstractMessage> merged = OutgoingMessageBatcher.merge(ImmutableList.of(
+                new UserUpdateMessageImpl(UUID.randomUUID(), a),
+                custom,
+                new UserUpdateMessageImpl(UUID.randomUUID(), b),
+                new UserUpdateMessageImpl(UUID.randomUUID(), a)
+        ), UUID::randomUUID);
+
+        assertEquals(2, merged.size());
+        UsersUpdateMessageImpl users = assertInstanceOf(UsersUpdateMessageImpl.class, merged.get(0));
+        assertEquals(ImmutableSet.of(a, b), users.getTargets());
+        assertSame(custom, merged.get(1));
+    }
+
+    @Test
+    public void testMergeGroupUpdates() {
+        List<AbstractMessage> merged = OutgoingMessageBatcher.merge(ImmutableList.of(
+                new GroupUpdateMessageImpl(UUID.randomUUID(), ImmutableSet.of("admin"), 2000L),
+                new GroupUpdateMessageImpl(UUID.randomUUID(), ImmutableSet.of("mod", "admin"), 1000L)
+        ), UUID::randomUUID);
+
+        assertEquals(1, merged.size());
+        GroupUpdateMessageImpl groups = assertInstanceOf(GroupUpdateMessageImpl.class, merged.get(0));
+        assertEquals(ImmutableSet.of("admin", "mod"), groups.getTargets());
+        assertEquals(1000L, groups.getTimestamp());
+    }
+
+    @Test
+    public void testSplitUserUpdates() {
+        List<AbstractMessage> messages = new ArrayList<>();
+        for (int i = 0; i < TargetedUpdateMessage.MAX_TARGETS * 2 + 1; i++) {
+            messages.add(new UserUpdateMessageImpl(UUID.randomUUID(), UUID.randomUUID()));
+        }
+
+        List<AbstractMessage> merged = OutgoingMessageBatcher.merge(messages, UUID::randomUUID);
+
+        assertEquals(3, merged.size());
+        for (AbstractMessage message : merged) {
+            UsersUpdateMessageImpl users = assertInstanceOf(UsersUpdateMessageImpl.class, message);
+            assertTrue(users.getTargets().size() <= TargetedUpdateMessage.MAX_TARGETS);
+            assertTrue(users.asEncodedString().length() <= AbstractMessage.MAX_ENCODED_LENGTH);
+        }
+    }
+
+    @Test
+    public void testFullUpdateSupersedesOthers() {
+        UpdateMessageImpl update = new UpdateMessageImpl(UUID.randomUUID());
+
+        List<AbstractMessage> merged = OutgoingMessageBatcher.merge(ImmutableList.of(
+                new UserUpdateMessageImpl(UUID.randomUUID(), UUID.randomUUID()),
+                update,
+                new GroupUpdateMessageImpl(UUID.randomUUID(), ImmutableSet.of("admin"), 1000L),
+                new UpdateMessageImpl(UUID.randomUUID())
+        ), UUID::randomUUID);
+
+        assertEquals(ImmutableList.of(update), merged);
+    }
+
+    @Test
+    public void testSplitDeltaUpdate() {
+        Map<UUID, HolderDelta> users = new LinkedHashMap<>();
+        for (int i = 0; i < 200; i++) {
+            Difference<Node> changes = new Difference<>();
+            for (int j = 0; j < 10; j++) {
+                changes.recordChange(Difference.ChangeType.ADD, Permission.builder().permission("some.permission." + j).withContext("server", "server" + i).build());
+            }
+            users.put(UUID.randomUUID(), new HolderDelta(changes, i));
+        }
+
+        UUID id = UUID.randomUUID();
+        List<DeltaUpdateMessageImpl> split = new DeltaUpdateMessageImpl(id, ImmutableMap.of(), users).split(UUID::randomUUID);
+
+        assertTrue(split.size() > 1);
+        assertEquals(id, split.get(0).getId());
+
+        Map<UUID, HolderDelta> rejoined = new LinkedHashMap<>();
+        for (DeltaUpdateMessageImpl message : split) {
+            assertTrue(message.asEncodedString().length() <= AbstractMessage.MAX_ENCODED_LENGTH);
+            rejoined.putAll(message.getUsers());
+        }
+        assertEquals(users, rejoined);
+    }
+
+    @Test
+    public void testMergeReplacesLargeDeltas() {
+        UUID uniqueId = UUID.randomUUID();
+        Difference<Node> changes = new Difference<>();
+        for (int i = 0; i <= HolderDelta.MAX_CHANGES; i++) {
+            changes.recordChange(Difference.ChangeType.ADD, Permission.builder().permission("some.permission." + i).build());
+        }
+
+        List<AbstractMessage> merged = OutgoingMessageBatcher.merge(ImmutableList.of(
+                new DeltaUpdateMessageImpl(UUID.randomUUID(), ImmutableMap.of(), ImmutableMap.of(uniqueId, new HolderDelta(changes, 0)))
+        ), UUID::randomUUID);
+
+        assertEquals(1, merged.size());
+        UserUpdateMessageImpl user = assertInstanceOf(UserUpdateMessageImpl.class, merged.get(0));
+        assertEquals(uniqueId, user.getUserUniqueId());
+    }
+
+    @Test
+    public void testBatchRoundTrip() {
+        List<JsonObject> messages = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String encoded = new CustomMessageImpl(UUID.randomUUID(), "channel", "payload " + i).asEncodedString();
+            messages.add(GsonProvider.normal().fromJson(encoded, JsonObject.class));
+        }
+
+        UUID id = UUID.randomUUID();
+        JsonObject json = GsonProvider.normal().fromJson(new BatchMessageImpl(id, messages).asEncodedString(), JsonObject.class);
+
+        // large enough to be compressed
+        assertTrue(json.getAsJsonObject("content").has("compressed"));
+
+        BatchMessageImpl decoded = BatchMessageImpl.decode(json.get("content"), id);
+        assertEquals(messages, decoded.getMessages());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.messaging.message;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.JsonObject;
+import me.lucko.luckperms.common.util.gson.GsonProvider;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TargetedUpdateMessageTest {
+
+    private static JsonObject parse(TargetedUpdateMessage<?> message) {
+        return GsonProvider.normal().fromJson(message.asEncodedString(), JsonObject.class);
+    }
+
+    @Test
+    public void testGroupUpdateRoundTrip() {
+        UUID id = UUID.randomUUID();
+        GroupUpdateMessageImpl message = new GroupUpdateMessageImpl(id, ImmutableSet.of("admin", "mod"), 1234L);
+
+        JsonObject json = parse(message);
+        assertEquals(id.toString(), json.get("id").getAsString());
+        assertEquals(GroupUpdateMessageImpl.TYPE, json.get("type").getAsString());
+
+        GroupUpdateMessageImpl decoded = GroupUpdateMessageImpl.decode(json.get("content"), id);
+        assertEquals(id, decoded.getId());
+        assertEquals(ImmutableSet.of("admin", "mod"), decoded.getTargets());
+        assertEquals(1234L, decoded.getTimestamp());
+    }
+
+    @Test
+    public void testTrackUpdateWithoutTimestamp() {
+        UUID id = UUID.randomUUID();
+        TrackUpdateMessageImpl message = new TrackUpdateMessageImpl(id, ImmutableSet.of("staff"), TargetedUpdateMessage.NO_TIMESTAMP);
+
+        JsonObject json = parse(message);
+        assertFalse(json.getAsJsonObject("content").has("timestamp"));
+
+        TrackUpdateMessageImpl decoded = TrackUpdateMessageImpl.decode(json.get("content"), id);
+        assertEquals(ImmutableSet.of("staff"), decoded.getTargets());
+        assertEquals(TargetedUpdateMessage.NO_TIMESTAMP, decoded.getTimestamp());
+    }
+
+    @Test
+    public void testUsersUpdateRoundTrip() {
+        UUID id = UUID.randomUUID();
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        UsersUpdateMessageImpl message = new UsersUpdateMessageImpl(id, ImmutableSet.of(a, b), 5678L);
+
+        UsersUpdateMessageImpl decoded = UsersUpdateMessageImpl.decode(parse(message).get("content"), id);
+        assertEquals(ImmutableSet.of(a, b), decoded.getTargets());
+        assertEquals(5678L, decoded.getTimestamp());
+    }
+
+    @Test
+    public void testDecodeMissingContent() {
+        assertThrows(IllegalStateException.class, () -> GroupUpdateMessageImpl.decode(null, UUID.randomUUID()));
+        assertThrows(IllegalStateException.class, () -> GroupUpdateMessageImpl.decode(new JsonObject(), UUID.randomUUID()));
+    }
+}
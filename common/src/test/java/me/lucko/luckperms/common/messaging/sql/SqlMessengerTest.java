@@ -0,0 +1,200 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.messaging.sql;
+
+import com.google.common.collect.ImmutableList;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.plugin.bootstrap.LuckPermsBootstrap;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
+import me.lucko.luckperms.common.storage.TestH2ConnectionFactory;
+import me.lucko.luckperms.common.storage.implementation.sql.SqlStorage;
+import net.luckperms.api.messenger.IncomingMessageConsumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@ExtendWith(MockitoExtension.class)
+public class SqlMessengerTest {
+
+    private static final String TABLE = "luckperms_messenger";
+
+    @Mock private LuckPermsPlugin plugin;
+    @Mock private LuckPermsBootstrap bootstrap;
+    @Mock private SchedulerAdapter scheduler;
+    @Mock private IncomingMessageConsumer consumer;
+
+    private final List<Runnable> polls = new ArrayList<>();
+    private final List<Long> pollDelays = new ArrayList<>();
+
+    private TestH2ConnectionFactory connectionFactory;
+    private SqlMessenger messenger;
+
+    @BeforeEach
+    public void setupMocksAndDatabase() throws SQLException {
+        lenient().when(this.plugin.getBootstrap()).thenReturn(this.bootstrap);
+        lenient().when(this.bootstrap.getScheduler()).thenReturn(this.scheduler);
+        lenient().when(this.scheduler.asyncLater(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS))).then(invocation -> {
+            this.polls.add(invocation.getArgument(0));
+            this.pollDelays.add(invocation.getArgument(1));
+            return null;
+        });
+
+        this.connectionFactory = new TestH2ConnectionFactory("messenger", true);
+        this.messenger = new SqlMessenger(this.plugin, new SqlStorage(this.plugin, this.connectionFactory, "luckperms_"), this.consumer);
+    }
+
+    @AfterEach
+    public void shutdown() throws Exception {
+        this.messenger.close();
+        this.connectionFactory.shutdown();
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement s = this.connectionFactory.getConnection().createStatement()) {
+            s.execute(sql);
+        }
+    }
+
+    private void insert(String message, int secondsAgo) throws SQLException {
+        try (PreparedStatement ps = this.connectionFactory.getConnection().prepareStatement("INSERT INTO `" + TABLE + "` (`time`, `msg`) VALUES(DATE_SUB(NOW(), INTERVAL " + secondsAgo + " SECOND), ?)")) {
+            ps.setString(1, message);
+            ps.execute();
+        }
+    }
+
+    private int countMessages() throws SQLException {
+        try (Statement s = this.connectionFactory.getConnection().createStatement()) {
+            try (ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM `" + TABLE + "`")) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    private boolean hasTimeIndex() throws SQLException {
+        Connection c = this.connectionFactory.getConnection();
+        try (ResultSet rs = c.getMetaData().getIndexInfo(c.getCatalog(), null, TABLE.toUpperCase(), false, true)) {
+            while (rs.next()) {
+                if ("time".equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testInitAddsMissingTimeIndex() throws SQLException {
+        // table created by an older version
+        execute("CREATE TABLE `" + TABLE + "` (`id` INT AUTO_INCREMENT NOT NULL, `time` TIMESTAMP NOT NULL, `msg` TEXT NOT NULL, PRIMARY KEY (`id`))");
+
+        this.messenger.init();
+        assertTrue(hasTimeIndex());
+
+        // the index is already there, so it isn't added again
+        new SqlMessenger(this.plugin, new SqlStorage(this.plugin, this.connectionFactory, "luckperms_"), this.consumer).init();
+        assertTrue(hasTimeIndex());
+    }
+
+    @Test
+    public void testInitReportsIndexFailures() throws SQLException {
+        // the index name is taken, but not by an index on time
+        execute("CREATE TABLE `" + TABLE + "` (`id` INT AUTO_INCREMENT NOT NULL, `time` TIMESTAMP NOT NULL, `msg` TEXT NOT NULL, PRIMARY KEY (`id`))");
+        execute("CREATE INDEX `" + TABLE + "_time` ON `" + TABLE + "` (`msg`)");
+
+        assertThrows(RuntimeException.class, this.messenger::init);
+    }
+
+    @Test
+    public void testPollReceivesRecentMessages() throws SQLException {
+        this.messenger.init();
+
+        insert("expired", 45);
+        insert("recent", 10);
+
+        assertEquals(1, this.messenger.pollMessages());
+        verify(this.consumer).consumeIncomingMessageAsString("recent");
+
+        // messages are only received once
+        assertEquals(0, this.messenger.pollMessages());
+        verifyNoMoreInteractions(this.consumer);
+    }
+
+    @Test
+    public void testHousekeepingDeletesInBatches() throws SQLException {
+        this.messenger.init();
+
+        // more expired messages than are deleted by a single query
+        execute("INSERT INTO `" + TABLE + "` (`time`, `msg`) SELECT DATEADD(SECOND, -90, NOW()), 'expired' FROM SYSTEM_RANGE(1, 2500)");
+        insert("recent", 10);
+        insert("not expired", 45);
+
+        this.messenger.runHousekeeping();
+        assertEquals(2, countMessages());
+    }
+
+    @Test
+    public void testPollIntervalBacksOff() throws SQLException {
+        this.messenger.init();
+        assertEquals(500L, this.pollDelays.get(0));
+
+        // the interval doubles while the table is idle, up to the maximum
+        for (int i = 0; i < 5; i++) {
+            this.polls.get(this.polls.size() - 1).run();
+        }
+        assertEquals(ImmutableList.of(500L, 1000L, 2000L, 4000L, 5000L, 5000L), this.pollDelays);
+
+        // and drops back to the minimum once messages are received
+        insert("message", 0);
+        this.polls.get(this.polls.size() - 1).run();
+        this.polls.get(this.polls.size() - 1).run();
+        assertEquals(ImmutableList.of(500L, 500L), this.pollDelays.subList(6, 8));
+        verify(this.consumer).consumeIncomingMessageAsString("message");
+    }
+
+}
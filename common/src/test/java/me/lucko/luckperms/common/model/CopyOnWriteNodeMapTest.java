@@ -0,0 +1,193 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.model;
+
+import com.google.common.collect.ImmutableList;
+import me.lucko.luckperms.common.context.ImmutableContextSetImpl;
+import me.lucko.luckperms.common.model.nodemap.CopyOnWriteNodeMap;
+import me.lucko.luckperms.common.model.nodemap.NodeMap;
+import me.lucko.luckperms.common.model.nodemap.NodeMapMutable;
+import me.lucko.luckperms.common.node.factory.NodeBuilders;
+import me.lucko.luckperms.common.query.QueryOptionsBuilderImpl;
+import me.lucko.luckperms.common.util.Difference;
+import net.luckperms.api.context.ContextSatisfyMode;
+import net.luckperms.api.model.data.DataType;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.NodeType;
+import net.luckperms.api.node.types.InheritanceNode;
+import net.luckperms.api.query.Flag;
+import net.luckperms.api.query.QueryMode;
+import net.luckperms.api.query.QueryOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CopyOnWriteNodeMapTest {
+
+    private static final PermissionHolderIdentifier ORIGIN = new PermissionHolderIdentifier(HolderType.GROUP, "test");
+
+    @Mock private PermissionHolder mockHolder;
+
+    private NodeMapMutable expected;
+    private CopyOnWriteNodeMap actual;
+
+    @BeforeEach
+    public void setupMaps() {
+        when(this.mockHolder.getIdentifier()).thenReturn(ORIGIN);
+
+        this.expected = new NodeMapMutable(this.mockHolder, DataType.NORMAL) {
+            @Override
+            protected ContextSatisfyMode defaultSatisfyMode() {
+                return ContextSatisfyMode.AT_LEAST_ONE_VALUE_PER_KEY;
+            }
+        };
+        this.actual = new CopyOnWriteNodeMap(this.mockHolder, DataType.NORMAL) {
+            @Override
+            protected ContextSatisfyMode defaultSatisfyMode() {
+                return ContextSatisfyMode.AT_LEAST_ONE_VALUE_PER_KEY;
+            }
+        };
+    }
+
+    private static Node makeNode(String key) {
+        return NodeBuilders.determineMostApplicable(key).build();
+    }
+
+    private void apply(Function<NodeMap, Difference<Node>> mutation) {
+        Difference<Node> expectedResult = mutation.apply(this.expected);
+        Difference<Node> actualResult = mutation.apply(this.actual);
+        assertEquals(expectedResult.getAdded(), actualResult.getAdded());
+        assertEquals(expectedResult.getRemoved(), actualResult.getRemoved());
+        assertSameContents();
+    }
+
+    private void assertSameContents() {
+        assertEquals(this.expected.size(), this.actual.size());
+        assertEquals(this.expected.asList(), this.actual.asList());
+        assertEquals(this.expected.inheritanceAsList(), this.actual.inheritanceAsList());
+
+        List<QueryOptions> queries = ImmutableList.of(
+                new QueryOptionsBuilderImpl(QueryMode.NON_CONTEXTUAL).build(),
+                new QueryOptionsBuilderImpl(QueryMode.NON_CONTEXTUAL).flags(EnumSet.noneOf(Flag.class)).build(),
+                new QueryOptionsBuilderImpl(QueryMode.CONTEXTUAL).context(ImmutableContextSetImpl.of("server", "test")).build()
+        );
+
+        for (QueryOptions options : queries) {
+            List<Node> expectedNodes = new ArrayList<>();
+            List<Node> actualNodes = new ArrayList<>();
+            this.expected.copyTo(expectedNodes, options);
+            this.actual.copyTo(actualNodes, options);
+            assertEquals(expectedNodes, actualNodes);
+
+            actualNodes.clear();
+            this.actual.forEach(options, actualNodes::add);
+            assertEquals(expectedNodes, actualNodes);
+
+            for (NodeType<?> type : ImmutableList.of(NodeType.META, NodeType.CHAT_META, NodeType.META_OR_CHAT_META)) {
+                List<Node> expectedTyped = new ArrayList<>();
+                List<Node> actualTyped = new ArrayList<>();
+                this.expected.copyTo(expectedTyped, type, options);
+                this.actual.copyTo(actualTyped, type, options);
+                assertEquals(expectedTyped, actualTyped);
+            }
+
+            List<InheritanceNode> expectedInheritance = new ArrayList<>();
+            List<InheritanceNode> actualInheritance = new ArrayList<>();
+            this.expected.copyInheritanceNodesTo(expectedInheritance, options);
+            this.actual.copyInheritanceNodesTo(actualInheritance, options);
+            assertEquals(expectedInheritance, actualInheritance);
+        }
+    }
+
+    @Test
+    public void testMatchesNodeMapMutable() {
+        assertTrue(this.actual.isEmpty());
+
+        apply(map -> map.add(makeNode("test.one")));
+        apply(map -> map.add(makeNode("test.two").toBuilder().value(false).build()));
+        apply(map -> map.add(makeNode("test.two")));
+        apply(map -> map.add(makeNode("test.three").toBuilder().expiry(1, TimeUnit.HOURS).build()));
+        apply(map -> map.add(makeNode("test.four").toBuilder().withContext("server", "test").build()));
+        apply(map -> map.add(makeNode("group.admin")));
+        apply(map -> map.add(makeNode("group.mod").toBuilder().withContext("server", "test").build()));
+        apply(map -> map.add(makeNode("group.vip").toBuilder().value(false).build()));
+        apply(map -> map.add(makeNode("meta.colour.blue")));
+        apply(map -> map.add(makeNode("prefix.100.hello").toBuilder().withContext("world", "nether").build()));
+
+        apply(map -> map.remove(makeNode("test.one")));
+        apply(map -> map.removeExact(makeNode("test.three")));
+        apply(map -> map.removeExact(makeNode("test.three").toBuilder().expiry(1, TimeUnit.HOURS).build()));
+        apply(map -> map.removeIf(node -> node.getKey().startsWith("prefix.")));
+        apply(map -> map.removeThenAdd(makeNode("group.admin"), makeNode("group.owner")));
+        apply(map -> map.clear(ImmutableContextSetImpl.of("server", "test")));
+        apply(map -> map.addAll(ImmutableList.of(makeNode("a"), makeNode("b"), makeNode("group.c"))));
+
+        apply(map -> map.setContent(ImmutableList.of(makeNode("x"), makeNode("group.y"), makeNode("meta.z.z"))));
+        apply(NodeMap::clear);
+
+        assertTrue(this.actual.isEmpty());
+    }
+
+    @Test
+    public void testCompositeTypes() {
+        apply(map -> map.addAll(ImmutableList.of(
+                makeNode("test.one"),
+                makeNode("prefix.100.hello"),
+                makeNode("suffix.50.world"),
+                makeNode("meta.colour.blue"),
+                makeNode("weight.10"),
+                makeNode("prefix.10.nether").toBuilder().withContext("server", "test").build()
+        )));
+
+        QueryOptions options = new QueryOptionsBuilderImpl(QueryMode.CONTEXTUAL).context(ImmutableContextSetImpl.of("server", "test")).build();
+
+        List<Node> metaOrChatMeta = new ArrayList<>();
+        this.actual.copyTo(metaOrChatMeta, NodeType.META_OR_CHAT_META, options);
+        assertEquals(4, metaOrChatMeta.size());
+        assertTrue(metaOrChatMeta.stream().anyMatch(NodeType.PREFIX::matches));
+        assertTrue(metaOrChatMeta.stream().anyMatch(NodeType.SUFFIX::matches));
+        assertTrue(metaOrChatMeta.stream().anyMatch(NodeType.META::matches));
+        assertTrue(metaOrChatMeta.stream().allMatch(NodeType.META_OR_CHAT_META::matches));
+
+        List<Node> chatMeta = new ArrayList<>();
+        this.actual.copyTo(chatMeta, NodeType.CHAT_META, options);
+        assertEquals(3, chatMeta.size());
+    }
+
+}
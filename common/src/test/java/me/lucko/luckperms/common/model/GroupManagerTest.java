@@ -26,8 +26,10 @@
 package me.lucko.luckperms.common.model;
 
 import com.google.common.collect.ImmutableSet;
+import me.lucko.luckperms.common.inheritance.InheritanceGraphFactory;
 import me.lucko.luckperms.common.model.manager.group.StandardGroupManager;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
@@ -38,6 +40,7 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -46,6 +49,11 @@ public class GroupManagerTest {
 
     @Mock private LuckPermsPlugin plugin;
 
+    @BeforeEach
+    public void setupMocks() {
+        lenient().when(this.plugin.getInheritanceGraphFactory()).thenReturn(new InheritanceGraphFactory(this.plugin));
+    }
+
     @Test
     public void testSanitizeIdentifier() {
         StandardGroupManager manager = new StandardGroupManager(this.plugin) {
@@ -26,6 +26,8 @@
 package me.lucko.luckperms.common.model;
 
 import com.google.common.collect.ImmutableList;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.config.LuckPermsConfiguration;
 import me.lucko.luckperms.common.event.EventDispatcher;
 import me.lucko.luckperms.common.node.types.Permission;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
@@ -47,6 +49,7 @@ import java.util.concurrent.TimeUnit;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -54,10 +57,14 @@ import static org.mockito.Mockito.when;
 public class PermissionHolderTest {
 
     @Mock private LuckPermsPlugin plugin;
+    @Mock private LuckPermsConfiguration configuration;
 
     @BeforeEach
     public void setupMocks() {
         when(this.plugin.getEventDispatcher()).thenReturn(mock(EventDispatcher.class));
+        lenient().when(this.plugin.getConfiguration()).thenReturn(this.configuration);
+        lenient().when(this.configuration.get(ConfigKeys.COPY_ON_WRITE_NODE_MAPS)).thenReturn(false);
+        lenient().when(this.configuration.get(ConfigKeys.INCREMENTAL_CACHE_UPDATES)).thenReturn(false);
     }
 
     @Test
@@ -0,0 +1,137 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.plugin.util;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.model.manager.user.UserManager;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.storage.Storage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class LoginUserLoaderTest {
+
+    @Mock private LuckPermsPlugin plugin;
+    @Mock private Storage storage;
+    @Mock private UserManager<User> userManager;
+
+    private LoginUserLoader loader;
+
+    @BeforeEach
+    public void setupMocks() {
+        lenient().when(this.plugin.getStorage()).thenReturn(this.storage);
+        lenient().doReturn(this.userManager).when(this.plugin).getUserManager();
+
+        this.loader = new LoginUserLoader(this.plugin, 100);
+    }
+
+    @Test
+    public void testConcurrentLoadsShared() {
+        UUID uniqueId = UUID.randomUUID();
+        User user = mock(User.class);
+
+        CompletableFuture<User> storageFuture = new CompletableFuture<>();
+        when(this.storage.loadUser(uniqueId, "Player")).thenReturn(storageFuture);
+
+        CompletableFuture<User> first = this.loader.load(uniqueId, "Player");
+        CompletableFuture<User> second = this.loader.load(uniqueId, "Player");
+        assertSame(first, second);
+        assertFalse(first.isDone());
+
+        storageFuture.complete(user);
+        assertSame(user, first.join());
+        verify(this.storage, times(1)).loadUser(uniqueId, "Player");
+
+        // once the load has finished, the next login should load the user again
+        when(this.storage.loadUser(uniqueId, "Player")).thenReturn(CompletableFuture.completedFuture(user));
+        assertNotSame(first, this.loader.load(uniqueId, "Player"));
+        verify(this.storage, times(2)).loadUser(uniqueId, "Player");
+    }
+
+    @Test
+    public void testQueuedLoadsBatched() {
+        when(this.storage.canBatchLoadUsers()).thenReturn(true);
+
+        // fill up the available loads
+        List<CompletableFuture<User>> running = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            UUID uniqueId = UUID.randomUUID();
+            CompletableFuture<User> storageFuture = new CompletableFuture<>();
+            when(this.storage.loadUser(uniqueId, "Player" + i)).thenReturn(storageFuture);
+
+            this.loader.load(uniqueId, "Player" + i);
+            running.add(storageFuture);
+        }
+
+        // these should be queued, then loaded together
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        User userA = mock(User.class);
+        User userB = mock(User.class);
+        Map<UUID, User> loaded = ImmutableMap.of(a, userA, b, userB);
+        when(this.storage.loadUsers(ImmutableSet.of(a, b))).thenReturn(CompletableFuture.completedFuture(loaded));
+
+        CompletableFuture<User> loadA = this.loader.load(a, "PlayerA");
+        CompletableFuture<User> loadB = this.loader.load(b, "PlayerB");
+        verify(this.storage, never()).loadUsers(any());
+        verify(this.storage, never()).loadUser(a, "PlayerA");
+
+        running.get(0).complete(mock(User.class));
+
+        assertTrue(loadA.isDone());
+        assertSame(userA, loadA.join());
+        assertSame(userB, loadB.join());
+        verify(this.storage, times(1)).loadUsers(ImmutableSet.of(a, b));
+        verify(this.userManager).getOrMake(a, "PlayerA");
+        verify(this.userManager).getOrMake(b, "PlayerB");
+    }
+
+}
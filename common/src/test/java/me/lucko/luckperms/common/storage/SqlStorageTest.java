@@ -26,11 +26,16 @@
 package me.lucko.luckperms.common.storage;
 
 import com.google.common.collect.ImmutableSet;
+import me.lucko.luckperms.common.actionlog.ActionFilter;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.actionlog.LoggedAction;
+import me.lucko.luckperms.common.bulkupdate.comparison.Constraint;
+import me.lucko.luckperms.common.bulkupdate.comparison.StandardComparison;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.config.LuckPermsConfiguration;
 import me.lucko.luckperms.common.event.EventDispatcher;
+import me.lucko.luckperms.common.inheritance.InheritanceGraphFactory;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.PrimaryGroupHolder;
 import me.lucko.luckperms.common.model.User;
@@ -38,14 +43,17 @@ import me.lucko.luckperms.common.model.manager.group.GroupManager;
 import me.lucko.luckperms.common.model.manager.group.StandardGroupManager;
 import me.lucko.luckperms.common.model.manager.user.StandardUserManager;
 import me.lucko.luckperms.common.model.manager.user.UserManager;
+import me.lucko.luckperms.common.node.matcher.ConstraintNodeMatcher;
+import me.lucko.luckperms.common.node.matcher.StandardNodeMatchers;
 import me.lucko.luckperms.common.node.types.Inheritance;
 import me.lucko.luckperms.common.node.types.Permission;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.plugin.bootstrap.LuckPermsBootstrap;
 import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
 import me.lucko.luckperms.common.storage.implementation.sql.SqlStorage;
-import me.lucko.luckperms.common.storage.implementation.sql.connection.ConnectionFactory;
-import me.lucko.luckperms.common.storage.implementation.sql.connection.file.NonClosableConnection;
+import me.lucko.luckperms.common.storage.misc.NodeEntry;
+import me.lucko.luckperms.common.storage.misc.NodeEntryPage;
+import me.lucko.luckperms.common.util.Difference;
 import net.luckperms.api.actionlog.Action;
 import net.luckperms.api.model.PlayerSaveResult;
 import net.luckperms.api.model.PlayerSaveResult.Outcome;
@@ -61,18 +69,21 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.AdditionalAnswers.answer;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -87,21 +98,26 @@ public class SqlStorageTest {
     @Mock private LuckPermsBootstrap bootstrap;
     @Mock private LuckPermsConfiguration configuration;
 
+    private TestH2ConnectionFactory connectionFactory;
     private SqlStorage storage;
 
     @BeforeEach
     public void setupMocksAndDatabase() throws Exception {
         lenient().when(this.plugin.getBootstrap()).thenReturn(this.bootstrap);
         lenient().when(this.plugin.getConfiguration()).thenReturn(this.configuration);
+        lenient().when(this.configuration.get(ConfigKeys.COPY_ON_WRITE_NODE_MAPS)).thenReturn(false);
         lenient().when(this.plugin.getEventDispatcher()).thenReturn(mock(EventDispatcher.class));
+        lenient().when(this.plugin.getInheritanceGraphFactory()).thenReturn(new InheritanceGraphFactory(this.plugin));
         lenient().when(this.bootstrap.getScheduler()).thenReturn(mock(SchedulerAdapter.class));
         lenient().when(this.configuration.get(ConfigKeys.PRIMARY_GROUP_CALCULATION)).thenReturn(PrimaryGroupHolder.AllParentsByWeight::new);
         lenient().when(this.configuration.get(ConfigKeys.PRIMARY_GROUP_CALCULATION_METHOD)).thenReturn("parents-by-weight");
+        lenient().when(this.configuration.get(ConfigKeys.INCREMENTAL_CACHE_UPDATES)).thenReturn(false);
         lenient().when(this.bootstrap.getResourceStream(anyString()))
                 .then(answer((String path) -> SqlStorageTest.class.getClassLoader().getResourceAsStream(path)));
         lenient().when(this.plugin.getEventDispatcher()).thenReturn(mock(EventDispatcher.class));
 
-        this.storage = new SqlStorage(this.plugin, new TestH2ConnectionFactory(), "luckperms_");
+        this.connectionFactory = new TestH2ConnectionFactory();
+        this.storage = new SqlStorage(this.plugin, this.connectionFactory, "luckperms_");
         this.storage.init();
     }
 
@@ -128,6 +144,57 @@ public class SqlStorageTest {
         assertEquals(action, log.getContent().first());
     }
 
+    @Test
+    public void testActionLogPage() throws Exception {
+        UUID source = UUID.randomUUID();
+        UUID user = UUID.randomUUID();
+
+        for (int i = 0; i < 25; i++) {
+            LoggedAction.Builder builder = LoggedAction.build()
+                    .timestamp(Instant.ofEpochSecond(1000 + i))
+                    .source(i % 2 == 0 ? source : UUID.randomUUID())
+                    .sourceName("Source" + i)
+                    .description("set test.permission." + i);
+
+            if (i % 5 == 0) {
+                builder.targetType(Action.Target.Type.USER).target(user).targetName("TestUser");
+            } else {
+                builder.targetType(Action.Target.Type.GROUP).targetName("group" + (i % 3));
+            }
+
+            this.storage.logAction(builder.build());
+        }
+
+        LogPage page = this.storage.getLogPage(ActionFilter.all(), 1, 10);
+        assertEquals(25, page.getTotalEntries());
+        assertEquals(3, page.getMaxPages());
+        assertEquals(10, page.getContent().size());
+        assertEquals(Instant.ofEpochSecond(1024), page.getContent().get(0).getTimestamp());
+        assertEquals(1, page.getEntries().get(0).position());
+
+        page = this.storage.getLogPage(ActionFilter.all(), 3, 10);
+        assertEquals(5, page.getContent().size());
+        assertEquals(Instant.ofEpochSecond(1000), page.getContent().get(4).getTimestamp());
+        assertEquals(25, page.getEntries().get(4).position());
+
+        page = this.storage.getLogPage(ActionFilter.all(), 4, 10);
+        assertEquals(25, page.getTotalEntries());
+        assertTrue(page.getContent().isEmpty());
+
+        page = this.storage.getLogPage(ActionFilter.source(source), 1, 100);
+        assertEquals(13, page.getTotalEntries());
+
+        page = this.storage.getLogPage(ActionFilter.user(user), 1, 100);
+        assertEquals(5, page.getTotalEntries());
+        assertEquals("TestUser", page.getContent().get(0).getTarget().getName());
+
+        page = this.storage.getLogPage(ActionFilter.group("group1"), 1, 100);
+        assertEquals(7, page.getTotalEntries());
+
+        page = this.storage.getLogPage(ActionFilter.search("PERMISSION.1"), 1, 100);
+        assertEquals(11, page.getTotalEntries());
+    }
+
     @Test
     public void testSavePlayerData() throws Exception {
         UUID uniqueId = UUID.randomUUID();
@@ -216,6 +283,45 @@ public class SqlStorageTest {
         assertEquals(nodes, loaded.normalData().asSet());
     }
 
+    @Test
+    public void testSearchGroupNodesPage() throws SQLException {
+        StandardGroupManager groupManager = new StandardGroupManager(this.plugin);
+
+        //noinspection unchecked,rawtypes
+        lenient().when(this.plugin.getGroupManager()).thenReturn((GroupManager) groupManager);
+
+        for (String name : new String[]{"c", "a", "b"}) {
+            Group group = this.storage.createAndLoadGroup(name);
+            for (int i = 0; i < 5; i++) {
+                group.normalData().add(Permission.builder().permission("test." + i).build());
+            }
+            group.normalData().add(Permission.builder().permission("other.permission").build());
+            this.storage.saveGroup(group);
+        }
+
+        ConstraintNodeMatcher<Node> matcher = StandardNodeMatchers.of(Constraint.of(StandardComparison.SIMILAR, "TEST.%"));
+
+        List<NodeEntry<String, Node>> results = this.storage.searchGroupNodes(matcher);
+
+        NodeEntryPage<String, Node> page = NodeEntryPage.of(results, 1, 4);
+        assertEquals(15, page.getTotalEntries());
+        assertEquals(4, page.getMaxPages());
+        assertEquals(4, page.getContent().size());
+        assertEquals("a", page.getContent().get(0).getHolder());
+
+        // sorted by node across all pages, not just within each page
+        page = NodeEntryPage.of(results, 4, 4);
+        assertEquals(3, page.getContent().size());
+        assertEquals("test.0", page.getContent().get(0).getNode().getKey());
+        assertEquals("c", page.getContent().get(2).getHolder());
+
+        // out of range pages fall back to the first page
+        page = NodeEntryPage.of(results, 5, 4);
+        assertEquals(15, page.getTotalEntries());
+        assertEquals(1, page.getPageNumber());
+        assertEquals(4, page.getContent().size());
+    }
+
     @Test
     public void testSaveAndDeleteUser() throws SQLException {
         StandardUserManager userManager = new StandardUserManager(this.plugin);
@@ -258,46 +364,93 @@ public class SqlStorageTest {
         assertEquals(ImmutableSet.of(defaultGroupNode, examplePermission), user.normalData().asSet());
     }
 
-    private static class TestH2ConnectionFactory implements ConnectionFactory {
-        private final NonClosableConnection connection;
+    @Test
+    public void testSaveUsers() throws SQLException {
+        StandardUserManager userManager = new StandardUserManager(this.plugin);
+
+        //noinspection unchecked,rawtypes
+        when(this.plugin.getUserManager()).thenReturn((UserManager) userManager);
 
-        TestH2ConnectionFactory() throws SQLException {
-            this.connection = new NonClosableConnection(
-                    DriverManager.getConnection("jdbc:h2:mem:test")
-            );
-        }
+        InheritanceNode defaultGroupNode = Inheritance.builder(GroupManager.DEFAULT_GROUP_NAME).build();
 
-        @Override
-        public Connection getConnection() {
-            return this.connection;
+        // a user with enough nodes to need more than one insert statement
+        UUID largeUniqueId = UUID.randomUUID();
+        User large = this.storage.loadUser(largeUniqueId, "Large");
+        for (int i = 0; i < 1200; i++) {
+            large.normalData().add(Permission.builder().permission("test." + i).withContext("server", "test").build());
         }
 
-        @Override
-        public String getImplementationName() {
-            return "H2";
-        }
+        UUID smallUniqueId = UUID.randomUUID();
+        User small = this.storage.loadUser(smallUniqueId, "Small");
+        small.normalData().add(Permission.builder().permission("test.small").build());
 
-        @Override
-        public StorageMetadata getMeta() {
-            return new StorageMetadata();
-        }
+        UUID defaultUniqueId = UUID.randomUUID();
+        User defaultUser = this.storage.loadUser(defaultUniqueId, "Default");
 
-        @Override
-        public void init(LuckPermsPlugin plugin) {
+        this.storage.saveUsers(ImmutableSet.of(large, small, defaultUser));
+        assertEquals(ImmutableSet.of(largeUniqueId, smallUniqueId), this.storage.getUniqueUsers());
 
+        // make changes (including resetting one user to default) and save again
+        large.normalData().removeIf(node -> node.getKey().endsWith("1"));
+        Set<Node> largeNodesAfterRemoval = large.normalData().asSet();
+        small.normalData().clear();
+        small.normalData().add(defaultGroupNode);
+
+        this.storage.saveUsers(ImmutableSet.of(large, small));
+        assertEquals(ImmutableSet.of(largeUniqueId), this.storage.getUniqueUsers());
+
+        userManager.unload(largeUniqueId);
+        userManager.unload(smallUniqueId);
+
+        assertEquals(largeNodesAfterRemoval, this.storage.loadUser(largeUniqueId, "Large").normalData().asSet());
+        assertEquals(ImmutableSet.of(defaultGroupNode), this.storage.loadUser(smallUniqueId, "Small").normalData().asSet());
+    }
+
+    @Test
+    public void testSaveUsersRestoresChangesOnFailure() throws SQLException {
+        StandardUserManager userManager = new StandardUserManager(this.plugin);
+
+        //noinspection unchecked,rawtypes
+        when(this.plugin.getUserManager()).thenReturn((UserManager) userManager);
+
+        UUID uniqueId = UUID.randomUUID();
+        User user = this.storage.loadUser(uniqueId, "Player");
+
+        user.normalData().add(Permission.builder().permission("test.restored").build());
+        Set<Difference.Change<Node>> changes = user.normalData().copyChanges().getChanges();
+
+        try (Statement s = this.connectionFactory.getConnection().createStatement()) {
+            s.execute("DROP TABLE `luckperms_user_permissions`");
         }
 
-        @Override
-        public Function<String, String> getStatementProcessor() {
-            return s -> s.replace('\'', '`')
-                    .replace("LIKE", "ILIKE")
-                    .replace("value", "`value`")
-                    .replace("``value``", "`value`");
+        assertThrows(SQLException.class, () -> this.storage.saveUsers(ImmutableSet.of(user)));
+        assertEquals(changes, user.normalData().copyChanges().getChanges());
+    }
+
+    @Test
+    public void testCreateMissingIndexes() throws Exception {
+        Connection c = this.connectionFactory.getConnection();
+        try (Statement s = c.createStatement()) {
+            s.execute("DROP INDEX `luckperms_actions_time`");
         }
+        assertFalse(hasIndex(c, "luckperms_actions", "luckperms_actions_time"));
+
+        // initialising against the existing tables should add the index back, and skip the others
+        new SqlStorage(this.plugin, this.connectionFactory, "luckperms_").init();
+
+        assertTrue(hasIndex(c, "luckperms_actions", "luckperms_actions_time"));
+        assertTrue(hasIndex(c, "luckperms_actions", "luckperms_actions_acted_name"));
+        assertTrue(hasIndex(c, "luckperms_user_permissions", "luckperms_user_permissions_permission"));
+    }
 
-        @Override
-        public void shutdown() throws Exception {
-            this.connection.shutdown();
+    private static boolean hasIndex(Connection connection, String table, String index) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getIndexInfo(connection.getCatalog(), null, table, false, true)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+            return false;
         }
     }
 
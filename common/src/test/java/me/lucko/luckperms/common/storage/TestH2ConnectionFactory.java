@@ -0,0 +1,113 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.storage;
+
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.storage.implementation.sql.connection.ConnectionFactory;
+import me.lucko.luckperms.common.storage.implementation.sql.connection.file.NonClosableConnection;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link ConnectionFactory} for an in-memory H2 database, for use in tests.
+ */
+public class TestH2ConnectionFactory implements ConnectionFactory {
+
+    /** Matches MySQL's {@code DATE_SUB(date, INTERVAL expr unit)}, which H2 doesn't support */
+    private static final Pattern DATE_SUB_PATTERN = Pattern.compile("DATE_SUB\\((.+?), INTERVAL (\\d+) (\\w+)\\)");
+
+    private final NonClosableConnection connection;
+
+    public TestH2ConnectionFactory() throws SQLException {
+        this("test");
+    }
+
+    public TestH2ConnectionFactory(String databaseName) throws SQLException {
+        this(databaseName, false);
+    }
+
+    /**
+     * Creates a connection factory.
+     *
+     * <p>In MySQL mode, calls to {@code DATE_SUB} in prepared statements are translated
+     * to their H2 equivalent, as H2 doesn't support the function.</p>
+     *
+     * @param databaseName the name of the in-memory database
+     * @param mysqlMode if the database should emulate MySQL
+     * @throws SQLException if the connection can't be opened
+     */
+    public TestH2ConnectionFactory(String databaseName, boolean mysqlMode) throws SQLException {
+        if (mysqlMode) {
+            this.connection = new NonClosableConnection(DriverManager.getConnection("jdbc:h2:mem:" + databaseName + ";MODE=MySQL")) {
+                @Override
+                public PreparedStatement prepareStatement(String sql) throws SQLException {
+                    return super.prepareStatement(DATE_SUB_PATTERN.matcher(sql).replaceAll("DATEADD($3, -$2, $1)"));
+                }
+            };
+        } else {
+            this.connection = new NonClosableConnection(
+                    DriverManager.getConnection("jdbc:h2:mem:" + databaseName)
+            );
+        }
+    }
+
+    @Override
+    public Connection getConnection() {
+        return this.connection;
+    }
+
+    @Override
+    public String getImplementationName() {
+        return "H2";
+    }
+
+    @Override
+    public StorageMetadata getMeta() {
+        return new StorageMetadata();
+    }
+
+    @Override
+    public void init(LuckPermsPlugin plugin) {
+
+    }
+
+    @Override
+    public Function<String, String> getStatementProcessor() {
+        return s -> s.replace('\'', '`')
+                .replace("LIKE", "ILIKE")
+                .replace("value", "`value`")
+                .replace("``value``", "`value`");
+    }
+
+    @Override
+    public void shutdown() throws Exception {
+        this.connection.shutdown();
+    }
+}
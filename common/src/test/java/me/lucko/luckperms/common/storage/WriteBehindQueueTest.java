@@ -0,0 +1,193 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage;
+
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.HolderType;
+import me.lucko.luckperms.common.model.PermissionHolderIdentifier;
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.plugin.bootstrap.LuckPermsBootstrap;
+import me.lucko.luckperms.common.plugin.logging.PluginLogger;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerTask;
+import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class WriteBehindQueueTest {
+
+    @Mock private LuckPermsPlugin plugin;
+    @Mock private LuckPermsBootstrap bootstrap;
+    @Mock private SchedulerAdapter scheduler;
+    @Mock private StorageImplementation implementation;
+
+    private WriteBehindQueue queue;
+
+    @BeforeEach
+    public void setupMocks() {
+        lenient().when(this.plugin.getBootstrap()).thenReturn(this.bootstrap);
+        lenient().when(this.plugin.getLogger()).thenReturn(mock(PluginLogger.class));
+        lenient().when(this.bootstrap.getScheduler()).thenReturn(this.scheduler);
+        lenient().when(this.scheduler.asyncLater(any(), anyLong(), any())).thenReturn(mock(SchedulerTask.class));
+
+        this.queue = new WriteBehindQueue(this.plugin, this.implementation, 500);
+    }
+
+    private static Group mockGroup(String name) {
+        Group group = mock(Group.class);
+        lenient().when(group.getType()).thenReturn(HolderType.GROUP);
+        lenient().when(group.getIdentifier()).thenReturn(new PermissionHolderIdentifier(HolderType.GROUP, name));
+        return group;
+    }
+
+    private static User mockUser(UUID uniqueId) {
+        User user = mock(User.class);
+        lenient().when(user.getType()).thenReturn(HolderType.USER);
+        lenient().when(user.getIdentifier()).thenReturn(new PermissionHolderIdentifier(HolderType.USER, uniqueId.toString()));
+        return user;
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        Group group = mockGroup("admin");
+
+        CompletableFuture<Void> first = this.queue.enqueue(group);
+        for (int i = 0; i < 9; i++) {
+            assertSame(first, this.queue.enqueue(group));
+        }
+
+        assertEquals(1, this.queue.getQueueDepth());
+        verify(this.scheduler, times(1)).asyncLater(any(), eq(500L), eq(TimeUnit.MILLISECONDS));
+        verify(this.implementation, never()).saveGroup(any());
+
+        this.queue.flushPending();
+
+        verify(this.implementation, times(1)).saveGroup(group);
+        assertTrue(first.isDone());
+        assertFalse(first.isCompletedExceptionally());
+        assertEquals(0, this.queue.getQueueDepth());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testUsersBatched() throws Exception {
+        User user1 = mockUser(UUID.randomUUID());
+        User user2 = mockUser(UUID.randomUUID());
+
+        this.queue.enqueue(user1);
+        this.queue.enqueue(user2);
+        this.queue.enqueue(user1);
+        this.queue.flushPending();
+
+        verify(this.implementation, times(1)).saveUsers((Collection<User>) (Collection<?>) Arrays.asList(user1, user2));
+        verify(this.implementation, never()).saveUser(any());
+    }
+
+    @Test
+    public void testFlushSingle() throws Exception {
+        Group admin = mockGroup("admin");
+        Group mod = mockGroup("mod");
+
+        CompletableFuture<Void> adminFuture = this.queue.enqueue(admin);
+        CompletableFuture<Void> modFuture = this.queue.enqueue(mod);
+
+        this.queue.flush(admin.getIdentifier());
+
+        verify(this.implementation, times(1)).saveGroup(admin);
+        verify(this.implementation, never()).saveGroup(mod);
+        assertTrue(adminFuture.isDone());
+        assertFalse(modFuture.isDone());
+        assertEquals(1, this.queue.getQueueDepth());
+    }
+
+    @Test
+    public void testFlushWaitsForWriteInProgress() throws Exception {
+        Group group = mockGroup("admin");
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return null;
+        }).when(this.implementation).saveGroup(group);
+
+        CompletableFuture<Void> future = this.queue.enqueue(group);
+        CompletableFuture<Void> flushAll = CompletableFuture.runAsync(this.queue::flushPending);
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // nothing is pending for the group, but its write hasn't finished yet
+        CompletableFuture<Void> flushGroup = CompletableFuture.runAsync(() -> this.queue.flush(group.getIdentifier()));
+        Thread.sleep(100);
+        assertFalse(flushGroup.isDone());
+
+        release.countDown();
+        flushGroup.get(5, TimeUnit.SECONDS);
+        assertTrue(future.isDone());
+        flushAll.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        User user = mockUser(UUID.randomUUID());
+        doThrow(new RuntimeException("test")).when(this.implementation).saveUsers(Collections.singletonList(user));
+
+        CompletableFuture<Void> future = this.queue.enqueue(user);
+        this.queue.flushPending();
+
+        assertTrue(future.isCompletedExceptionally());
+        assertEquals(0, this.queue.getQueueDepth());
+    }
+
+}
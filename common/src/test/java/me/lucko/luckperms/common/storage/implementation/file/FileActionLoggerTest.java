@@ -0,0 +1,150 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.implementation.file;
+
+import me.lucko.luckperms.common.actionlog.ActionFilter;
+import me.lucko.luckperms.common.actionlog.LogPage;
+import me.lucko.luckperms.common.actionlog.LoggedAction;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.plugin.bootstrap.LuckPermsBootstrap;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerTask;
+import net.luckperms.api.actionlog.Action;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+
+@ExtendWith(MockitoExtension.class)
+public class FileActionLoggerTest {
+
+    @Mock private LuckPermsPlugin plugin;
+    @Mock private LuckPermsBootstrap bootstrap;
+    @Mock private SchedulerAdapter scheduler;
+
+    @TempDir
+    Path directory;
+
+    private FileActionLogger logger;
+
+    @BeforeEach
+    public void setup() {
+        lenient().when(this.plugin.getBootstrap()).thenReturn(this.bootstrap);
+        lenient().when(this.bootstrap.getScheduler()).thenReturn(this.scheduler);
+        lenient().when(this.scheduler.asyncLater(any(), anyLong(), any())).thenReturn(mock(SchedulerTask.class));
+
+        this.logger = new FileActionLogger(this.plugin);
+        this.logger.init(this.directory.resolve("actions.json"), this.directory.resolve("actions-legacy.json"));
+    }
+
+    private static LoggedAction action(int i, UUID user) {
+        return LoggedAction.build()
+                .timestamp(Instant.ofEpochSecond(1000 + i))
+                .source(UUID.randomUUID())
+                .sourceName("Source" + i)
+                .targetType(Action.Target.Type.USER)
+                .target(i % 2 == 0 ? user : UUID.randomUUID())
+                .targetName("Target" + i)
+                .description("set test.permission." + i)
+                .build();
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        LogPage page = this.logger.getLogPage(ActionFilter.all(), 1, 10);
+        assertEquals(0, page.getTotalEntries());
+        assertTrue(page.getContent().isEmpty());
+    }
+
+    @Test
+    public void testPages() throws Exception {
+        UUID user = UUID.randomUUID();
+        for (int i = 0; i < 15; i++) {
+            this.logger.logAction(action(i, user));
+        }
+
+        LogPage page = this.logger.getLogPage(ActionFilter.all(), 1, 10);
+        assertEquals(15, page.getTotalEntries());
+        assertEquals(10, page.getContent().size());
+        assertEquals(action(14, user).getTimestamp(), page.getContent().get(0).getTimestamp());
+
+        page = this.logger.getLogPage(ActionFilter.all(), 2, 10);
+        assertEquals(5, page.getContent().size());
+        assertEquals(action(0, user).getTimestamp(), page.getContent().get(4).getTimestamp());
+
+        page = this.logger.getLogPage(ActionFilter.user(user), 1, 3);
+        assertEquals(8, page.getTotalEntries());
+        assertEquals(3, page.getContent().size());
+        assertEquals(action(14, user).getTimestamp(), page.getContent().get(0).getTimestamp());
+        assertEquals(action(10, user).getTimestamp(), page.getContent().get(2).getTimestamp());
+
+        // entries appended after the file has been indexed
+        for (int i = 15; i < 20; i++) {
+            this.logger.logAction(action(i, user));
+        }
+
+        page = this.logger.getLogPage(ActionFilter.all(), 1, 10);
+        assertEquals(20, page.getTotalEntries());
+        assertEquals(action(19, user).getTimestamp(), page.getContent().get(0).getTimestamp());
+
+        page = this.logger.getLogPage(ActionFilter.search("permission.1"), 1, 100);
+        assertEquals(11, page.getTotalEntries());
+    }
+
+    @Test
+    public void testCarriageReturns() throws Exception {
+        UUID user = UUID.randomUUID();
+        this.logger.logAction(action(0, user));
+        this.logger.flush();
+
+        Path file = this.directory.resolve("actions.json");
+        String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+        Files.write(file, Collections.singletonList(content + "\r\n\r\n" + content.replace("\"timestamp\":1000", "\"timestamp\":1001") + "\r"), StandardCharsets.UTF_8, StandardOpenOption.TRUNCATE_EXISTING);
+
+        LogPage page = this.logger.getLogPage(ActionFilter.all(), 1, 10);
+        assertEquals(2, page.getTotalEntries());
+        assertEquals(Instant.ofEpochSecond(1001), page.getContent().get(0).getTimestamp());
+        assertEquals(Instant.ofEpochSecond(1000), page.getContent().get(1).getTimestamp());
+    }
+
+}
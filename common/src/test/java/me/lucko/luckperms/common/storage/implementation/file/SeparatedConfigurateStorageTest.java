@@ -0,0 +1,147 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.storage.implementation.file;
+
+import me.lucko.luckperms.common.bulkupdate.comparison.Constraint;
+import me.lucko.luckperms.common.bulkupdate.comparison.StandardComparison;
+import me.lucko.luckperms.common.node.matcher.ConstraintNodeMatcher;
+import me.lucko.luckperms.common.node.matcher.StandardNodeMatchers;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.plugin.bootstrap.LuckPermsBootstrap;
+import me.lucko.luckperms.common.plugin.logging.PluginLogger;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerTask;
+import me.lucko.luckperms.common.storage.implementation.file.loader.JsonLoader;
+import me.lucko.luckperms.common.storage.misc.NodeEntry;
+import net.luckperms.api.node.Node;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+
+@ExtendWith(MockitoExtension.class)
+public class SeparatedConfigurateStorageTest {
+
+    /** Enough users for the scan to be split into several chunks */
+    private static final int USERS = 1000;
+
+    @Mock private LuckPermsPlugin plugin;
+    @Mock private LuckPermsBootstrap bootstrap;
+    @Mock private SchedulerAdapter scheduler;
+
+    @TempDir
+    Path directory;
+
+    private ExecutorService executor;
+    private SeparatedConfigurateStorage storage;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        this.executor = Executors.newFixedThreadPool(4);
+
+        lenient().when(this.plugin.getBootstrap()).thenReturn(this.bootstrap);
+        lenient().when(this.plugin.getLogger()).thenReturn(mock(PluginLogger.class));
+        lenient().when(this.plugin.getFileWatcher()).thenReturn(Optional.empty());
+        lenient().when(this.bootstrap.getDataDirectory()).thenReturn(this.directory);
+        lenient().when(this.bootstrap.getScheduler()).thenReturn(this.scheduler);
+        lenient().when(this.scheduler.async()).thenReturn(this.executor);
+        lenient().when(this.scheduler.asyncLater(any(), anyLong(), any())).thenReturn(mock(SchedulerTask.class));
+
+        this.storage = new SeparatedConfigurateStorage(this.plugin, "JSON", new JsonLoader(), ".json", "json-storage");
+        this.storage.init();
+
+        Path users = this.directory.resolve("json-storage").resolve("users");
+        for (int i = 0; i < USERS; i++) {
+            UUID uniqueId = UUID.randomUUID();
+            String content = "{\"uuid\": \"" + uniqueId + "\", \"name\": \"user" + i + "\", " +
+                    "\"permissions\": [\"test." + (i % 10) + "\", \"other." + i + "\"]}";
+            Files.write(users.resolve(uniqueId + ".json"), content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @AfterEach
+    public void shutdown() throws Exception {
+        this.executor.shutdownNow();
+        assertTrue(this.executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testParallelScanMatchesSequentialScan() throws Exception {
+        List<NodeEntry<UUID, Node>> parallel = this.storage.searchUserNodes(StandardNodeMatchers.key("test.3"));
+
+        // run the same scan with every chunk processed on the calling thread
+        lenient().when(this.scheduler.async()).thenReturn(Runnable::run);
+        List<NodeEntry<UUID, Node>> sequential = this.storage.searchUserNodes(StandardNodeMatchers.key("test.3"));
+
+        assertEquals(USERS / 10, parallel.size());
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void testCancelledScanStopsWorkers() throws Exception {
+        AtomicInteger matched = new AtomicInteger();
+        ConstraintNodeMatcher<Node> matcher = new ConstraintNodeMatcher<Node>(Constraint.of(StandardComparison.SIMILAR, "%")) {
+            @Override
+            public Node filterConstraintMatch(Node node) {
+                if (matched.incrementAndGet() == 10) {
+                    cancel();
+                }
+                return node;
+            }
+        };
+
+        List<NodeEntry<UUID, Node>> results = this.storage.searchUserNodes(matcher);
+        int matchedOnReturn = matched.get();
+
+        // every worker has finished by the time the scan returns
+        Thread.sleep(100);
+        assertEquals(matchedOnReturn, matched.get());
+        assertEquals(matchedOnReturn, results.size());
+
+        // each worker stops after the file it was processing when the scan was cancelled
+        assertTrue(matchedOnReturn < USERS, "scan did not stop early: " + matchedOnReturn);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.verbose;
+
+import me.lucko.luckperms.common.cacheddata.result.TristateResult;
+import me.lucko.luckperms.common.query.QueryOptionsImpl;
+import me.lucko.luckperms.common.verbose.event.CheckOrigin;
+import me.lucko.luckperms.common.verbose.event.PermissionCheckEvent;
+import me.lucko.luckperms.common.verbose.event.VerboseEvent;
+import net.luckperms.api.util.Tristate;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VerboseEventBufferTest {
+
+    private static VerboseEvent event(String permission) {
+        return new PermissionCheckEvent(
+                CheckOrigin.INTERNAL,
+                VerboseCheckTarget.of(VerboseCheckTarget.USER_TYPE, "Player1"),
+                QueryOptionsImpl.DEFAULT_CONTEXTUAL,
+                System.currentTimeMillis(),
+                null,
+                "test",
+                permission,
+                TristateResult.forMonitoredResult(Tristate.TRUE)
+        );
+    }
+
+    @Test
+    public void testInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new VerboseEventBuffer(0));
+        assertThrows(IllegalArgumentException.class, () -> new VerboseEventBuffer(3));
+    }
+
+    @Test
+    public void testOrderAndBounds() {
+        VerboseEventBuffer buffer = new VerboseEventBuffer(4);
+        assertNull(buffer.poll());
+
+        VerboseEvent[] events = new VerboseEvent[4];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = event("test." + i);
+            assertTrue(buffer.offer(events[i]));
+        }
+
+        // the buffer is full
+        assertFalse(buffer.offer(event("test.overflow")));
+
+        assertSame(events[0], buffer.poll());
+        assertTrue(buffer.offer(event("test.4")));
+
+        for (int i = 1; i < events.length; i++) {
+            assertSame(events[i], buffer.poll());
+        }
+        assertEquals("test.4", ((PermissionCheckEvent) buffer.poll()).getPermission());
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        int producers = 4;
+        int eventsPerProducer = 1000;
+
+        VerboseEventBuffer buffer = new VerboseEventBuffer(4096);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch latch = new CountDownLatch(producers);
+
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            executor.execute(() -> {
+                for (int i = 0; i < eventsPerProducer; i++) {
+                    buffer.offer(event("test." + producer + "." + i));
+                }
+                latch.countDown();
+            });
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        Set<String> seen = new HashSet<>();
+        for (VerboseEvent e; (e = buffer.poll()) != null; ) {
+            seen.add(((PermissionCheckEvent) e).getPermission());
+        }
+        assertEquals(producers * eventsPerProducer, seen.size());
+    }
+
+}
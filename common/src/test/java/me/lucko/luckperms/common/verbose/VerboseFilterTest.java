@@ -31,6 +31,7 @@ import me.lucko.luckperms.common.query.QueryOptionsImpl;
 import me.lucko.luckperms.common.verbose.event.CheckOrigin;
 import me.lucko.luckperms.common.verbose.event.MetaCheckEvent;
 import me.lucko.luckperms.common.verbose.event.PermissionCheckEvent;
+import me.lucko.luckperms.common.verbose.event.VerboseEventType;
 import net.luckperms.api.util.Tristate;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -89,6 +90,10 @@ public class VerboseFilterTest {
 
         assertEquals(expected, filter.evaluate(relevantEvent));
         assertFalse(filter.evaluate(nonRelevantEvent));
+
+        // the pre-check predicate should agree with the event filter
+        assertEquals(expected, filter.test(VerboseEventType.PERMISSION, relevantEvent.getCheckTarget(), relevantEvent.getPermission(), relevantEvent.getResult().result()));
+        assertFalse(filter.test(VerboseEventType.PERMISSION, nonRelevantEvent.getCheckTarget(), nonRelevantEvent.getPermission(), nonRelevantEvent.getResult().result()));
     }
 
     @ParameterizedTest
@@ -132,6 +137,35 @@ public class VerboseFilterTest {
 
         assertEquals(expected, filter.evaluate(relevantEvent));
         assertFalse(filter.evaluate(nonRelevantEvent));
+
+        // the pre-check predicate should agree with the event filter
+        assertEquals(expected, filter.test(VerboseEventType.META, relevantEvent.getCheckTarget(), relevantEvent.getKey(), relevantEvent.getResult().result()));
+        assertFalse(filter.test(VerboseEventType.META, nonRelevantEvent.getCheckTarget(), nonRelevantEvent.getKey(), nonRelevantEvent.getResult().result()));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "weight, true",
+            "null, true",
+            "0, false",
+            "weight & 0, false"
+    })
+    public void testNullMetaResult(String expression, boolean expected) throws InvalidFilterException {
+        VerboseFilter filter = VerboseFilter.compile(expression);
+
+        MetaCheckEvent event = new MetaCheckEvent(
+                CheckOrigin.INTERNAL,
+                VerboseCheckTarget.of(VerboseCheckTarget.USER_TYPE, "Player1"),
+                QueryOptionsImpl.DEFAULT_CONTEXTUAL,
+                System.currentTimeMillis(),
+                new Throwable(),
+                "test",
+                "weight",
+                StringResult.nullResult()
+        );
+
+        assertEquals(expected, filter.evaluate(event));
+        assertEquals(expected, filter.test(VerboseEventType.META, event.getCheckTarget(), "weight", null));
     }
 
 }
@@ -0,0 +1,178 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.verbose;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import me.lucko.luckperms.common.plugin.logging.PluginLogger;
+import me.lucko.luckperms.common.util.gson.GsonProvider;
+import me.lucko.luckperms.common.util.gson.JObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class VerboseRecordingTest {
+
+    private static final PluginLogger LOGGER = mock(PluginLogger.class);
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        StringWriter out = new StringWriter();
+
+        try (VerboseRecording recording = new VerboseRecording(LOGGER)) {
+            for (int i = 0; i < 100; i++) {
+                recording.record(new JObject().add("permission", "test." + i).add("index", i).toJson());
+            }
+            assertEquals(100, recording.getRecordedCount());
+            assertEquals(0, recording.getDiscardedCount());
+
+            JsonWriter writer = new JsonWriter(out);
+            writer.beginArray();
+            recording.writeTo(writer);
+            writer.endArray();
+            writer.flush();
+        }
+
+        JsonArray data = GsonProvider.normal().fromJson(out.toString(), JsonArray.class);
+        assertEquals(100, data.size());
+        for (int i = 0; i < 100; i++) {
+            JsonObject event = data.get(i).getAsJsonObject();
+            assertEquals("test." + i, event.get("permission").getAsString());
+            assertEquals(i, event.get("index").getAsInt());
+        }
+    }
+
+    private static JsonObject event(int i) {
+        // every event serializes to 16 characters, 17 with the line separator
+        return new JObject().add("index", String.format("%04d", i)).toJson();
+    }
+
+    private static JsonArray writeOut(VerboseRecording recording) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginArray();
+        recording.writeTo(writer);
+        writer.endArray();
+        writer.flush();
+        return GsonProvider.normal().fromJson(out.toString(), JsonArray.class);
+    }
+
+    @Test
+    public void testRolloverEvictsOldestSegments() throws IOException {
+        // two events per segment, at most three segments
+        try (VerboseRecording recording = new VerboseRecording(LOGGER, 34, 3)) {
+            for (int i = 0; i < 6; i++) {
+                recording.record(event(i));
+            }
+            assertEquals(6, recording.getRecordedCount());
+            assertEquals(0, recording.getDiscardedCount());
+            assertFalse(recording.isTruncated());
+
+            // the 7th and 9th events each start a new segment, evicting the oldest
+            for (int i = 6; i < 10; i++) {
+                recording.record(event(i));
+            }
+            assertEquals(6, recording.getRecordedCount());
+            assertEquals(4, recording.getDiscardedCount());
+            assertTrue(recording.isTruncated());
+
+            JsonArray data = writeOut(recording);
+            assertEquals(6, data.size());
+            for (int i = 0; i < 6; i++) {
+                assertEquals(String.format("%04d", i + 4), data.get(i).getAsJsonObject().get("index").getAsString());
+            }
+        }
+    }
+
+    @Test
+    public void testRecordAfterClose() throws IOException {
+        VerboseRecording recording = new VerboseRecording(LOGGER, 34, 3);
+        recording.record(event(0));
+        recording.close();
+
+        recording.record(event(1));
+        assertEquals(0, recording.getRecordedCount());
+        assertFalse(recording.isTruncated());
+        assertEquals(0, writeOut(recording).size());
+    }
+
+    @Test
+    public void testRecordAfterWriteTo() throws IOException {
+        try (VerboseRecording recording = new VerboseRecording(LOGGER)) {
+            recording.record(event(0));
+            assertEquals(1, writeOut(recording).size());
+
+            recording.record(event(1));
+            assertEquals(1, recording.getRecordedCount());
+        }
+    }
+
+    @Test
+    public void testConcurrentRecordAndWriteTo() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (VerboseRecording recording = new VerboseRecording(LOGGER, 1024, 4)) {
+            CountDownLatch started = new CountDownLatch(4);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    started.countDown();
+                    for (int i = 0; i < 10000; i++) {
+                        recording.record(event(i));
+                    }
+                }));
+            }
+
+            started.await();
+            JsonArray data = writeOut(recording);
+            int recorded = recording.getRecordedCount();
+            assertEquals(recorded, data.size());
+
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+
+            // nothing is recorded once the data has been written out
+            assertEquals(recorded, recording.getRecordedCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -28,6 +28,7 @@ package me.lucko.luckperms.forge.calculator;
 import me.lucko.luckperms.common.cacheddata.CacheMetadata;
 import me.lucko.luckperms.common.calculator.CalculatorFactory;
 import me.lucko.luckperms.common.calculator.PermissionCalculator;
+import me.lucko.luckperms.common.calculator.processor.CompiledTrieProcessor;
 import me.lucko.luckperms.common.calculator.processor.DirectProcessor;
 import me.lucko.luckperms.common.calculator.processor.PermissionProcessor;
 import me.lucko.luckperms.common.calculator.processor.RegexProcessor;
@@ -53,18 +54,26 @@ public class ForgeCalculatorFactory implements CalculatorFactory {
     public PermissionCalculator build(QueryOptions queryOptions, CacheMetadata metadata) {
         List<PermissionProcessor> processors = new ArrayList<>(5);
 
-        processors.add(new DirectProcessor());
+        if (this.plugin.getConfiguration().get(ConfigKeys.USE_COMPILED_PERMISSION_TRIE)) {
+            processors.add(new CompiledTrieProcessor(
+                    this.plugin.getConfiguration().get(ConfigKeys.APPLYING_REGEX),
+                    this.plugin.getConfiguration().get(ConfigKeys.APPLYING_WILDCARDS),
+                    this.plugin.getConfiguration().get(ConfigKeys.APPLYING_WILDCARDS_SPONGE)
+            ));
+        } else {
+            processors.add(new DirectProcessor());
 
-        if (this.plugin.getConfiguration().get(ConfigKeys.APPLYING_REGEX)) {
-            processors.add(new RegexProcessor());
-        }
+            if (this.plugin.getConfiguration().get(ConfigKeys.APPLYING_REGEX)) {
+                processors.add(new RegexProcessor());
+            }
 
-        if (this.plugin.getConfiguration().get(ConfigKeys.APPLYING_WILDCARDS)) {
-            processors.add(new WildcardProcessor());
-        }
+            if (this.plugin.getConfiguration().get(ConfigKeys.APPLYING_WILDCARDS)) {
+                processors.add(new WildcardProcessor());
+            }
 
-        if (this.plugin.getConfiguration().get(ConfigKeys.APPLYING_WILDCARDS_SPONGE)) {
-            processors.add(new SpongeWildcardProcessor());
+            if (this.plugin.getConfiguration().get(ConfigKeys.APPLYING_WILDCARDS_SPONGE)) {
+                processors.add(new SpongeWildcardProcessor());
+            }
         }
 
         boolean integratedOwner = queryOptions.option(ForgeContextManager.INTEGRATED_SERVER_OWNER).orElse(false);
@@ -72,7 +81,7 @@ public class ForgeCalculatorFactory implements CalculatorFactory {
             processors.add(ServerOwnerProcessor.INSTANCE);
         }
 
-        return new PermissionCalculator(this.plugin, metadata, processors);
+        return new PermissionCalculator(this.plugin, metadata, processors, this.plugin.getConfiguration().get(ConfigKeys.PERMISSION_LOOKUP_CACHE_SIZE));
     }
 
 }
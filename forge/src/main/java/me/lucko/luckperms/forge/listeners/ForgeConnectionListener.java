@@ -50,6 +50,7 @@ import net.minecraftforge.fml.common.Mod;
 import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Mod.EventBusSubscriber
 public class ForgeConnectionListener extends AbstractConnectionListener {
@@ -69,12 +70,10 @@ public class ForgeConnectionListener extends AbstractConnectionListener {
             this.plugin.getLogger().info("Processing pre-login (sync phase) for " + uniqueId + " - " + username);
         }
 
-        event.enqueueWork(CompletableFuture.runAsync(() -> {
-            onPlayerNegotiationAsync(event.getConnection(), uniqueId, username);
-        }, this.plugin.getBootstrap().getScheduler().async()));
+        event.enqueueWork(onPlayerNegotiationAsync(event.getConnection(), uniqueId, username));
     }
 
-    private void onPlayerNegotiationAsync(NetworkManager connection, UUID uniqueId, String username) {
+    private CompletableFuture<Void> onPlayerNegotiationAsync(NetworkManager connection, UUID uniqueId, String username) {
         if (this.plugin.getConfiguration().get(ConfigKeys.DEBUG_LOGINS)) {
             this.plugin.getLogger().info("Processing pre-login (async phase) for " + uniqueId + " - " + username);
         }
@@ -88,20 +87,32 @@ public class ForgeConnectionListener extends AbstractConnectionListener {
            - loading permissions
            - creating a user instance in the UserManager for this connection.
            - setting up cached data. */
+        CompletableFuture<User> loadFuture;
         try {
-            User user = loadUser(uniqueId, username);
-            recordConnection(uniqueId);
-            this.plugin.getEventDispatcher().dispatchPlayerLoginProcess(uniqueId, username, user);
-        } catch (Exception ex) {
-            this.plugin.getLogger().severe("Exception occurred whilst loading data for " + uniqueId + " - " + username, ex);
-            
+            loadFuture = loadUserAsync(uniqueId, username);
+        } catch (Exception e) {
+            // handle failures before the load was started in the same way as failed loads
+            loadFuture = failedFuture(e);
+        }
+
+        return loadFuture.handle((user, ex) -> {
+            if (ex == null) {
+                recordConnection(uniqueId);
+                this.plugin.getEventDispatcher().dispatchPlayerLoginProcess(uniqueId, username, user);
+                return null;
+            }
+
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            this.plugin.getLogger().severe("Exception occurred whilst loading data for " + uniqueId + " - " + username, cause);
+
             if (this.plugin.getConfiguration().get(ConfigKeys.CANCEL_FAILED_LOGINS)) {
                 Component component = TranslationManager.render(Message.LOADING_DATABASE_ERROR.build());
                 connection.send(new SDisconnectLoginPacket(ForgeSenderFactory.toNativeText(component)));
                 connection.disconnect(ForgeSenderFactory.toNativeText(component));
                 this.plugin.getEventDispatcher().dispatchPlayerLoginProcess(uniqueId, username, null);
             }
-        }
+            return null;
+        });
     }
 
     @SubscribeEvent(priority = EventPriority.HIGHEST)
@@ -144,4 +155,10 @@ public class ForgeConnectionListener extends AbstractConnectionListener {
         handleDisconnect(player.getGameProfile().getId());
     }
 
+    private static <T> CompletableFuture<T> failedFuture(Throwable ex) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(ex);
+        return future;
+    }
+
 }